@@ -0,0 +1,44 @@
+package com.mockrunner.benchmark;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of the benchmark jar. Accepts the usual JMH command
+ * line options, e.g. a regular expression selecting the benchmarks
+ * or <code>-p numberStatements=1000</code>. Unless specified otherwise
+ * with <code>-rf</code> and <code>-rff</code>, the results are written as JSON
+ * to <code>mockrunner-benchmarks-&lt;version&gt;.json</code>, so the results of
+ * different releases can be compared, e.g. with the JMH visualizer.
+ */
+public class BenchmarkRunner
+{
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLineOptions);
+        if(!commandLineOptions.getResultFormat().hasValue())
+        {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if(!commandLineOptions.getResult().hasValue())
+        {
+            builder.result(getDefaultResultFile().getPath());
+        }
+        new Runner(builder.build()).run();
+    }
+
+    private static File getDefaultResultFile()
+    {
+        String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+        if(null == version) version = "snapshot";
+        return new File("mockrunner-benchmarks-" + version + ".json");
+    }
+}
@@ -0,0 +1,119 @@
+package com.mockrunner.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mockrunner.util.common.CaseAwareMap;
+
+/**
+ * Compares {@link CaseAwareMap} with the former implementation
+ * {@link LegacyCaseAwareMap}. The keys look like column labels
+ * and are looked up with a different case than they were added,
+ * the way <code>MockResultSet</code> uses the map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseAwareMapBenchmark
+{
+    @Param({"legacy", "current"})
+    private String implementation;
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private String[] keys;
+    private String[] lookupKeys;
+    private Map map;
+
+    @Setup
+    public void setUp()
+    {
+        keys = new String[size];
+        lookupKeys = new String[size];
+        for(int ii = 0; ii < size; ii++)
+        {
+            keys[ii] = "Column_Name_" + ii;
+            lookupKeys[ii] = (ii % 2 == 0) ? keys[ii].toUpperCase() : keys[ii].toLowerCase();
+        }
+        map = createMap();
+        fill(map);
+    }
+
+    private Map createMap()
+    {
+        if("legacy".equals(implementation))
+        {
+            return new LegacyCaseAwareMap();
+        }
+        return new CaseAwareMap();
+    }
+
+    private void fill(Map map)
+    {
+        for(int ii = 0; ii < keys.length; ii++)
+        {
+            map.put(keys[ii], ii);
+        }
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole)
+    {
+        for(String nextKey : lookupKeys)
+        {
+            blackhole.consume(map.get(nextKey));
+        }
+    }
+
+    @Benchmark
+    public void containsMissingKey(Blackhole blackhole)
+    {
+        for(String nextKey : keys)
+        {
+            blackhole.consume(map.containsKey(nextKey + "_"));
+        }
+    }
+
+    @Benchmark
+    public Map put()
+    {
+        Map newMap = createMap();
+        fill(newMap);
+        return newMap;
+    }
+
+    @Benchmark
+    public void overwrite()
+    {
+        for(int ii = 0; ii < lookupKeys.length; ii++)
+        {
+            map.put(lookupKeys[ii], ii);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole)
+    {
+        for(Object nextEntry : map.entrySet())
+        {
+            blackhole.consume(((Map.Entry)nextEntry).getValue());
+        }
+    }
+}
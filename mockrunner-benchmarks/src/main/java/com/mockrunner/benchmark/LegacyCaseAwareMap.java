@@ -0,0 +1,198 @@
+package com.mockrunner.benchmark;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The former two <code>HashMap</code> implementation of
+ * {@link com.mockrunner.util.common.CaseAwareMap}, which converts
+ * every string key to upper case. Only used as baseline for
+ * {@link CaseAwareMapBenchmark}.
+ */
+public class LegacyCaseAwareMap implements Map
+{
+    private boolean isCaseSensitive;
+    private Map caseInsensitiveMap;
+    private Map actualMap;
+     
+    public LegacyCaseAwareMap()
+    {
+        this(false);
+    }
+    
+    public LegacyCaseAwareMap(boolean isCaseSensitive)
+    {
+        this.isCaseSensitive = isCaseSensitive;
+        caseInsensitiveMap = new HashMap();
+        actualMap = new HashMap();
+    }
+    
+    /**
+     * Returns if keys are case sensitive. Defaults to <code>false</code>.
+     * @return are keys case sensitive
+     */ 
+    public boolean isCaseSensitive()
+    {
+        return isCaseSensitive;
+    }
+    
+    /**
+     * Sets if keys are case sensitive.
+     * If set to <code>true</code> this implementation behaves like
+     * a <code>HashMap</code>. Please note, that all entries are cleared
+     * when switching case sensitivity. It's not possible to switch
+     * and keep the entries.
+     * @param isCaseSensitive are keys case sensitive
+     */ 
+    public void setCaseSensitive(boolean isCaseSensitive)
+    {
+        clear();
+        this.isCaseSensitive = isCaseSensitive;
+    }
+    
+    public void clear()
+    {
+        caseInsensitiveMap.clear();
+        actualMap.clear();
+    }
+    
+    public boolean containsKey(Object key)
+    {
+        Object compareKey = getCompareKey(key);
+        return getCompareMap().containsKey(compareKey);
+    }
+    
+    public boolean containsValue(Object value)
+    {
+        return actualMap.containsValue(value);
+    }
+    
+    public Set entrySet()
+    {
+        return actualMap.entrySet();
+    }
+    
+    public Object get(Object key)
+    {
+        Object compareKey = getCompareKey(key);
+        return getCompareMap().get(compareKey);
+    }
+    
+    public boolean isEmpty()
+    {
+        return size() <= 0;
+    }
+    
+    public Set keySet()
+    {
+        return actualMap.keySet();
+    }
+    
+    public Object put(Object key, Object value)
+    {
+        return doConsistentModify(key, new ConsistentPut(value));
+    }
+    
+    public void putAll(Map map)
+    {
+        for (Object nextKey : map.keySet()) {
+            Object nextValue = map.get(nextKey);
+            put(nextKey, nextValue);
+        }
+    }
+    
+    public Object remove(Object key)
+    {
+        return doConsistentModify(key, new ConsistentRemove());
+    }
+    
+    public int size()
+    {
+        return actualMap.size();
+    }
+    
+    public Collection values()
+    {
+        return actualMap.values();
+    }
+    
+    private boolean areKeysEquals(Object actualKey, Object compareKey)
+    {
+        if(null == actualKey && null == compareKey) return true;
+        if(null == actualKey) return false;
+        if(null == compareKey) return false;
+        Object actualCompareKey = getCompareKey(actualKey);
+        return compareKey.equals(actualCompareKey);
+    }
+    
+    private boolean isStringKey(Object key)
+    {
+        return (null != key) && (key instanceof String);
+    }
+    
+    private Object getCompareKey(Object key)
+    {
+        if(isCaseSensitive || !isStringKey(key))
+        {
+            return key;
+        }
+        return ((String)key).toUpperCase();
+    }
+    
+    private Map getCompareMap()
+    {
+        if(isCaseSensitive)
+        {
+            return actualMap;
+        }
+        return caseInsensitiveMap;
+    }
+    
+    private Object doConsistentModify(Object key, ConsistentModify modifier)
+    {
+        Object compareKey = getCompareKey(key);
+        if(!caseInsensitiveMap.containsKey(compareKey))
+        {
+            return modifier.modify(key, compareKey);
+        }
+        for (Object actualKey : actualMap.keySet()) {
+            if (areKeysEquals(actualKey, compareKey)) {
+                return modifier.modify(actualKey, compareKey);
+            }
+        }
+        return null;
+    }
+    
+    private interface ConsistentModify
+    {
+        Object modify(Object key1, Object key2);
+    }
+    
+    private class ConsistentRemove implements ConsistentModify
+    {
+        public Object modify(Object key1, Object key2)
+        {
+            actualMap.remove(key1);
+            return caseInsensitiveMap.remove(key2);
+        }
+    }
+    
+    private class ConsistentPut implements ConsistentModify
+    {
+        private Object value;
+        
+        public ConsistentPut(Object value)
+        {
+            this.value = value;
+        }
+        
+        public Object modify(Object key1, Object key2)
+        {
+            actualMap.put(key1, value);
+            return caseInsensitiveMap.put(key2, value);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.mockrunner.benchmark;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mockrunner.jdbc.JournalPolicy;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Measures <code>MockPreparedStatement.executeQuery</code>, when the
+ * handler has 10, 1000 or 100000 prepared result sets. Half of
+ * the result sets is prepared with parameters. The journal is a
+ * ring buffer, so it does not grow during the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedStatementBenchmark
+{
+    @Param({"10", "1000", "100000"})
+    private int numberStatements;
+
+    @Param({"true", "false"})
+    private boolean exactMatch;
+
+    private PreparedStatement statement;
+    private PreparedStatement parameterStatement;
+    private PreparedStatement unknownStatement;
+
+    @Setup
+    public void setUp() throws SQLException
+    {
+        MockConnection connection = new MockConnection();
+        PreparedStatementResultSetHandler handler = connection.getPreparedStatementResultSetHandler();
+        handler.setExactMatch(exactMatch);
+        handler.setJournalPolicy(JournalPolicy.ringBuffer(1000));
+        for(int ii = 0; ii < numberStatements; ii++)
+        {
+            MockResultSet resultSet = handler.createResultSet(String.valueOf(ii));
+            resultSet.addColumn("id", new Object[] {ii});
+            String sql = getSQL(ii);
+            if(ii % 2 == 0)
+            {
+                handler.prepareResultSet(sql, resultSet);
+            }
+            else
+            {
+                handler.prepareResultSet(sql, resultSet, new Object[] {ii});
+            }
+        }
+        int middle = numberStatements / 2;
+        statement = connection.prepareStatement(getSQL(middle - middle % 2));
+        statement.setInt(1, 0);
+        parameterStatement = connection.prepareStatement(getSQL(middle | 1));
+        parameterStatement.setInt(1, middle | 1);
+        unknownStatement = connection.prepareStatement("select * from unknown where id = ?");
+        unknownStatement.setInt(1, 0);
+    }
+
+    private String getSQL(int index)
+    {
+        return "select * from table" + index + " where id = ?";
+    }
+
+    @Benchmark
+    public ResultSet executeQuery() throws SQLException
+    {
+        return statement.executeQuery();
+    }
+
+    @Benchmark
+    public ResultSet executeQueryWithParameters() throws SQLException
+    {
+        return parameterStatement.executeQuery();
+    }
+
+    @Benchmark
+    public ResultSet executeUnknownQuery() throws SQLException
+    {
+        return unknownStatement.executeQuery();
+    }
+}
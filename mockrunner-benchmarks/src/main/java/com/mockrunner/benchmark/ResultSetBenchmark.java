@@ -0,0 +1,106 @@
+package com.mockrunner.benchmark;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * Measures iterating through a <code>MockResultSet</code> using
+ * the getters by column index and by column label, and cloning
+ * a <code>MockResultSet</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark
+{
+    private final static int NUMBER_COLUMNS = 10;
+
+    @Param({"10", "1000", "100000"})
+    private int numberRows;
+
+    private MockResultSet resultSet;
+    private String[] labels;
+
+    @Setup
+    public void setUp()
+    {
+        resultSet = new MockResultSet("benchmark");
+        labels = new String[NUMBER_COLUMNS];
+        for(int ii = 0; ii < NUMBER_COLUMNS; ii++)
+        {
+            labels[ii] = "COLUMN" + ii;
+            resultSet.addColumn(labels[ii]);
+        }
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            Object[] row = new Object[NUMBER_COLUMNS];
+            for(int jj = 0; jj < NUMBER_COLUMNS; jj++)
+            {
+                row[jj] = (jj % 2 == 0) ? (Object)(ii + jj) : (Object)("value" + ii);
+            }
+            resultSet.addRow(row);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) throws SQLException
+    {
+        resultSet.beforeFirst();
+        while(resultSet.next())
+        {
+            blackhole.consume(resultSet.getObject(1));
+        }
+    }
+
+    @Benchmark
+    public void getByIndex(Blackhole blackhole) throws SQLException
+    {
+        resultSet.beforeFirst();
+        while(resultSet.next())
+        {
+            for(int ii = 1; ii <= NUMBER_COLUMNS; ii += 2)
+            {
+                blackhole.consume(resultSet.getInt(ii));
+                blackhole.consume(resultSet.getString(ii + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getByLabel(Blackhole blackhole) throws SQLException
+    {
+        resultSet.beforeFirst();
+        while(resultSet.next())
+        {
+            for(int ii = 0; ii < NUMBER_COLUMNS; ii += 2)
+            {
+                blackhole.consume(resultSet.getInt(labels[ii]));
+                blackhole.consume(resultSet.getString(labels[ii + 1]));
+            }
+        }
+    }
+
+    @Benchmark
+    public Object cloneResultSet()
+    {
+        return resultSet.clone();
+    }
+}
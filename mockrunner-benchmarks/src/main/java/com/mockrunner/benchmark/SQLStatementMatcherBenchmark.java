@@ -0,0 +1,104 @@
+package com.mockrunner.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mockrunner.jdbc.PatternMatcherCache;
+import com.mockrunner.jdbc.SQLStatementMatcher;
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * Measures {@link SQLStatementMatcher} in its three modes,
+ * i.e. exact match, prefix match and regular expressions, with
+ * a growing number of statements in the data <code>Map</code>.
+ * With <i>cache</i> <code>true</code>, the matcher takes the
+ * compiled patterns from a {@link PatternMatcherCache}, that is
+ * large enough for all statements, i.e. the cached path is measured.
+ * {@link #createPatternMatcher} compares compiling a pattern with
+ * looking it up in the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SQLStatementMatcherBenchmark
+{
+    @Param({"exact", "prefix", "regexp"})
+    private String mode;
+
+    @Param({"10", "1000", "10000"})
+    private int numberStatements;
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private SQLStatementMatcher matcher;
+    private PatternMatcher.Factory patternMatcherFactory;
+    private Map<String, Integer> dataMap;
+    private String query;
+    private String unknownQuery;
+
+    @Setup
+    public void setUp()
+    {
+        boolean exactMatch = "exact".equals(mode);
+        boolean useRegularExpressions = "regexp".equals(mode);
+        PatternMatcherCache patternMatcherCache = cache ? new PatternMatcherCache(numberStatements + 10) : null;
+        matcher = new SQLStatementMatcher(false, exactMatch, useRegularExpressions, patternMatcherCache);
+        patternMatcherFactory = PatternMatcher.Factories.from(false, exactMatch, useRegularExpressions);
+        if(cache) patternMatcherFactory = patternMatcherCache.getCachingFactory(patternMatcherFactory);
+        dataMap = new HashMap<String, Integer>();
+        for(int ii = 0; ii < numberStatements; ii++)
+        {
+            String sql = "select name from table" + ii + " where id = ";
+            dataMap.put(useRegularExpressions ? sql + "[0-9]+" : sql, ii);
+        }
+        query = "select name from table" + (numberStatements / 2) + " where id = ";
+        if(!exactMatch) query += "7";
+        unknownQuery = "update unknown set name = 'x'";
+        for(String nextSQL : dataMap.keySet())
+        {
+            matcher.doStringsMatch(query, nextSQL);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> getMatchingObjects()
+    {
+        return matcher.getMatchingObjects(dataMap, query, true);
+    }
+
+    @Benchmark
+    public List<Integer> getNoMatchingObjects()
+    {
+        return matcher.getMatchingObjects(dataMap, unknownQuery, true);
+    }
+
+    @Benchmark
+    public boolean doStringsMatch()
+    {
+        return matcher.doStringsMatch(query, "select name from table0 where id = ");
+    }
+
+    @Benchmark
+    public PatternMatcher createPatternMatcher()
+    {
+        return patternMatcherFactory.create("select name from table0 where id = ");
+    }
+}
@@ -0,0 +1,70 @@
+package com.mockrunner.benchmark;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+
+/**
+ * Measures <code>JDBCTestModule.verifySQLStatementExecuted</code>
+ * and <code>verifySQLStatementNotExecuted</code> with a journal of
+ * 1000 or 100000 executed statements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerifyBenchmark
+{
+    @Param({"1000", "100000"})
+    private int journalSize;
+
+    @Param({"true", "false"})
+    private boolean exactMatch;
+
+    private JDBCTestModule module;
+    private String lastStatement;
+
+    @Setup
+    public void setUp() throws SQLException
+    {
+        JDBCMockObjectFactory factory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(factory);
+        module.setExactMatch(exactMatch);
+        Statement statement = factory.getMockConnection().createStatement();
+        for(int ii = 0; ii < journalSize; ii++)
+        {
+            lastStatement = "update table" + (ii % 100) + " set value = " + ii;
+            statement.executeUpdate(lastStatement);
+        }
+        factory.restoreDrivers();
+    }
+
+    @Benchmark
+    public void verifySQLStatementExecuted()
+    {
+        module.verifySQLStatementExecuted(lastStatement);
+    }
+
+    @Benchmark
+    public void verifySQLStatementNotExecuted()
+    {
+        module.verifySQLStatementNotExecuted("delete from table0");
+    }
+}
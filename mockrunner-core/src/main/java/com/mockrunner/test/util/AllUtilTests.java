@@ -7,7 +7,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
 	StreamUtilTest.class, ArrayUtilTest.class, CollectionUtilTest.class, StringUtilTest.class,
 	FileUtilTest.class, ClassUtilTest.class, CaseAwareMapTest.class, MethodUtilTest.class,
-	FieldUtilTest.class, XmlUtilTest.class
+	FieldUtilTest.class, XmlUtilTest.class, LRUCacheTest.class
 })
 public class AllUtilTests
 {
@@ -1,6 +1,9 @@
 package com.mockrunner.test.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -231,4 +234,61 @@ public class CaseAwareMapTest extends TestCase
         assertEquals("2", map.remove(2));
         assertNull(map.remove(2));
     }
-}
\ No newline at end of file
+    
+    public void testIterationOrderAndRemove()
+    {
+        map.put("b", "1");
+        map.put(null, "2");
+        map.put("A", "3");
+        map.put("c", "4");
+        map.put("a", "5");
+        assertEquals(Arrays.asList("b", null, "A", "c"), new ArrayList(map.keySet()));
+        assertEquals(Arrays.asList("1", "2", "5", "4"), new ArrayList(map.values()));
+        assertEquals("2", map.get(null));
+        Iterator iterator = map.keySet().iterator();
+        while(iterator.hasNext())
+        {
+            Object next = iterator.next();
+            if(null == next || "c".equals(next)) iterator.remove();
+        }
+        assertEquals(2, map.size());
+        assertFalse(map.containsKey(null));
+        assertFalse(map.containsKey("C"));
+        Map.Entry entry = (Map.Entry)map.entrySet().iterator().next();
+        assertEquals("1", entry.setValue("6"));
+        assertEquals("6", map.get("B"));
+        assertTrue(map.keySet().remove("a"));
+        assertEquals(Arrays.asList("b"), new ArrayList(map.keySet()));
+    }
+    
+    public void testManyKeys()
+    {
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            map.put("Key" + ii, ii);
+        }
+        for(int ii = 0; ii < 1000; ii += 2)
+        {
+            assertEquals(ii, map.remove("KEY" + ii));
+        }
+        for(int ii = 1000; ii < 1500; ii++)
+        {
+            map.put("key" + ii, ii);
+        }
+        assertEquals(1000, map.size());
+        for(int ii = 0; ii < 1500; ii++)
+        {
+            assertEquals(ii % 2 == 1 || ii >= 1000, map.containsKey("kEy" + ii));
+        }
+        assertEquals("Key1", map.keySet().iterator().next());
+    }
+    
+    public void testNonAsciiKeys()
+    {
+        map.put("\u00e4rger", "1");
+        assertEquals("1", map.get("\u00c4RGER"));
+        map.put("\u03a3igma", "2");
+        assertEquals("2", map.get("\u03c3IGMA"));
+        assertNull(map.get("\u00e4rger1"));
+    }
+}
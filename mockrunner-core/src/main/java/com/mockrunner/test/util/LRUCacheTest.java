@@ -0,0 +1,75 @@
+package com.mockrunner.test.util;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.util.common.LRUCache;
+
+public class LRUCacheTest extends TestCase
+{
+    public void testEvictsLeastRecentlyUsed()
+    {
+        LRUCache<String, String> cache = new LRUCache<String, String>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testPutIfAbsent()
+    {
+        LRUCache<String, String> cache = new LRUCache<String, String>(2);
+        assertEquals("1", cache.putIfAbsent("a", "1"));
+        assertEquals("1", cache.putIfAbsent("a", "2"));
+        cache.put("b", "3");
+        cache.putIfAbsent("a", "4");
+        cache.put("c", "5");
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.remove("a"));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        try
+        {
+            cache.put("a", null);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testSetMaxSize()
+    {
+        LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(10);
+        for(int ii = 0; ii < 10; ii++)
+        {
+            cache.put(ii, ii);
+        }
+        cache.get(0);
+        cache.setMaxSize(3);
+        assertEquals(3, cache.getMaxSize());
+        assertEquals(3, cache.size());
+        assertEquals(7, cache.getEvictions());
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        assertEquals(Integer.valueOf(9), cache.get(9));
+        assertNull(cache.get(6));
+        try
+        {
+            new LRUCache<String, String>(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+}
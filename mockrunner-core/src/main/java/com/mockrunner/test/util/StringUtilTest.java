@@ -229,6 +229,25 @@ public class StringUtilTest extends TestCase
         assertFalse(StringUtil.matchesPerl5("a[abc]c", "abc", true));
     }
 
+    public void testMatchesLike()
+    {
+        assertTrue(StringUtil.matchesLike("", "", true));
+        assertTrue(StringUtil.matchesLike("", "%", true));
+        assertTrue(StringUtil.matchesLike("abc", "abc", true));
+        assertTrue(StringUtil.matchesLike("aBc", "a_c", true));
+        assertTrue(StringUtil.matchesLike("aBc", "ABC", false));
+        assertTrue(StringUtil.matchesLike("abcabc", "%bc", true));
+        assertTrue(StringUtil.matchesLike("abxbc", "a%bc%", true));
+        assertTrue(StringUtil.matchesLike("a_c", "a\\_c", true));
+        assertTrue(StringUtil.matchesLike("a.c", "a.c", true));
+        assertFalse(StringUtil.matchesLike("abc", "a\\_c", true));
+        assertFalse(StringUtil.matchesLike("aBc", "abc", true));
+        assertFalse(StringUtil.matchesLike("abc", "ab", true));
+        assertFalse(StringUtil.matchesLike("abc", "a__c", true));
+        assertFalse(StringUtil.matchesLike("abc", "%bcd", true));
+        assertFalse(StringUtil.matchesLike("abc", "a[abc]c", true));
+    }
+
     public void testFieldToString()
     {
         assertEquals("test: class java.lang.String", StringUtil.fieldToString("test", String.class));
@@ -1,9 +1,12 @@
 package com.mockrunner.util.common;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -33,15 +36,30 @@ import java.util.Set;
  * in the above case, you'll get <code>"test"</code>.
  * It is allowed to use non-strings as keys. In this case the <code>Map</code>
  * behaves like a usual <code>HashMap</code>.<br>
+ * The entries are kept in one open addressing hash table. String keys are
+ * hashed and compared character by character ignoring the case, so
+ * lookups do not create upper case copies of the keys. Two strings are
+ * considered to be equal, if <code>String.equalsIgnoreCase</code> is
+ * <code>true</code>. Iterating through the keys, values or entries returns
+ * them in the order they were added.<br>
  * Note: This class is similar to a <code>TreeMap(String.CASE_INSENSITIVE_ORDER)</code>
  *       except that non-strings do not throw a <code>ClassCastException</code>
  *       and that keys are not sorted.
  */
 public class CaseAwareMap implements Map
 {
+    private final static Object REMOVED = new Object();
+    private final static int INITIAL_CAPACITY = 8;
+    
     private boolean isCaseSensitive;
-    private Map caseInsensitiveMap;
-    private Map actualMap;
+    private int[] table;
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int[] exactHashes;
+    private int numberEntries;
+    private int size;
+    private int modCount;
      
     public CaseAwareMap()
     {
@@ -51,8 +69,6 @@ public class CaseAwareMap implements Map
     public CaseAwareMap(boolean isCaseSensitive)
     {
         this.isCaseSensitive = isCaseSensitive;
-        caseInsensitiveMap = new HashMap();
-        actualMap = new HashMap();
     }
     
     /**
@@ -80,30 +96,40 @@ public class CaseAwareMap implements Map
     
     public void clear()
     {
-        caseInsensitiveMap.clear();
-        actualMap.clear();
+        table = null;
+        keys = null;
+        values = null;
+        hashes = null;
+        exactHashes = null;
+        numberEntries = 0;
+        size = 0;
+        modCount++;
     }
     
     public boolean containsKey(Object key)
     {
-        Object compareKey = getCompareKey(key);
-        return getCompareMap().containsKey(compareKey);
+        return findEntry(key) >= 0;
     }
     
     public boolean containsValue(Object value)
     {
-        return actualMap.containsValue(value);
+        for(int ii = 0; ii < numberEntries; ii++)
+        {
+            if(REMOVED != keys[ii] && areValuesEqual(values[ii], value)) return true;
+        }
+        return false;
     }
     
     public Set entrySet()
     {
-        return actualMap.entrySet();
+        return new EntrySet();
     }
     
     public Object get(Object key)
     {
-        Object compareKey = getCompareKey(key);
-        return getCompareMap().get(compareKey);
+        int entry = findEntry(key);
+        if(entry < 0) return null;
+        return values[entry];
     }
     
     public boolean isEmpty()
@@ -113,111 +139,460 @@ public class CaseAwareMap implements Map
     
     public Set keySet()
     {
-        return actualMap.keySet();
+        return new KeySet();
     }
     
     public Object put(Object key, Object value)
     {
-        return doConsistentModify(key, new ConsistentPut(value));
+        int entry = findEntry(key);
+        if(entry >= 0)
+        {
+            Object oldValue = values[entry];
+            values[entry] = value;
+            return oldValue;
+        }
+        if(null == keys || numberEntries >= keys.length)
+        {
+            rebuild();
+        }
+        entry = numberEntries++;
+        keys[entry] = key;
+        values[entry] = value;
+        hashes[entry] = hash(key);
+        insertSlots(entry);
+        size++;
+        modCount++;
+        return null;
     }
     
     public void putAll(Map map)
     {
-        for (Object nextKey : map.keySet()) {
-            Object nextValue = map.get(nextKey);
-            put(nextKey, nextValue);
+        for(Object nextObject : map.entrySet())
+        {
+            Map.Entry nextEntry = (Map.Entry)nextObject;
+            put(nextEntry.getKey(), nextEntry.getValue());
         }
     }
     
     public Object remove(Object key)
     {
-        return doConsistentModify(key, new ConsistentRemove());
+        int entry = findEntry(key);
+        if(entry < 0) return null;
+        Object oldValue = values[entry];
+        removeEntry(entry);
+        return oldValue;
     }
     
     public int size()
     {
-        return actualMap.size();
+        return size;
     }
     
     public Collection values()
     {
-        return actualMap.values();
+        return new Values();
+    }
+    
+    private int hash(Object key)
+    {
+        int hash;
+        if(null == key)
+        {
+            hash = 0;
+        }
+        else if(isCaseInsensitiveKey(key))
+        {
+            hash = getCaseInsensitiveHash((String)key);
+        }
+        else
+        {
+            hash = key.hashCode();
+        }
+        return spread(hash);
+    }
+    
+    private static int spread(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * Case insensitive string keys occupy two slots. The second slot
+     * uses the cached <code>hashCode</code> of the string and is
+     * found without folding the case, if the key is looked up with
+     * the same case it was added with.
+     */
+    private boolean isCaseInsensitiveKey(Object key)
+    {
+        return !isCaseSensitive && (key instanceof String);
+    }
+    
+    private int getCaseInsensitiveHash(String key)
+    {
+        int hash = 0;
+        for(int ii = 0; ii < key.length(); ii++)
+        {
+            hash = 31 * hash + foldCase(key.charAt(ii));
+        }
+        return hash;
+    }
+    
+    private static char foldCase(char character)
+    {
+        if(character < 128)
+        {
+            if(character >= 'A' && character <= 'Z') return (char)(character + ('a' - 'A'));
+            return character;
+        }
+        return Character.toLowerCase(Character.toUpperCase(character));
+    }
+    
+    private static boolean areStringsEqualIgnoreCase(String string1, String string2)
+    {
+        int length = string1.length();
+        if(length != string2.length()) return false;
+        for(int ii = 0; ii < length; ii++)
+        {
+            char char1 = string1.charAt(ii);
+            char char2 = string2.charAt(ii);
+            if(char1 != char2 && foldCase(char1) != foldCase(char2)) return false;
+        }
+        return true;
     }
     
     private boolean areKeysEquals(Object actualKey, Object compareKey)
     {
-        if(null == actualKey && null == compareKey) return true;
-        if(null == actualKey) return false;
-        if(null == compareKey) return false;
-        Object actualCompareKey = getCompareKey(actualKey);
-        return compareKey.equals(actualCompareKey);
+        if(actualKey == compareKey) return true;
+        if(null == actualKey || null == compareKey) return false;
+        if(!isCaseSensitive && (actualKey instanceof String) && (compareKey instanceof String))
+        {
+            return areStringsEqualIgnoreCase((String)actualKey, (String)compareKey);
+        }
+        return actualKey.equals(compareKey);
     }
     
-    private boolean isStringKey(Object key)
+    private boolean areValuesEqual(Object value1, Object value2)
     {
-        return (null != key) && (key instanceof String);
+        if(null == value1) return null == value2;
+        return value1.equals(value2);
     }
     
-    private Object getCompareKey(Object key)
+    private int findEntry(Object key)
     {
-        if(isCaseSensitive || !isStringKey(key))
+        if(null == table) return -1;
+        int mask = table.length - 1;
+        if(isCaseInsensitiveKey(key))
         {
-            return key;
+            int exactHash = spread(key.hashCode());
+            int slot = exactHash & mask;
+            while(0 != table[slot])
+            {
+                int entry = -table[slot] - 1;
+                if(entry >= 0 && exactHash == exactHashes[entry] && key.equals(keys[entry]))
+                {
+                    return entry;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        int hash = hash(key);
+        int slot = hash & mask;
+        while(0 != table[slot])
+        {
+            int entry = table[slot] - 1;
+            if(entry >= 0 && hash == hashes[entry] && areKeysEquals(keys[entry], key))
+            {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private void insertSlots(int entry)
+    {
+        insertSlot(hashes[entry], entry + 1);
+        if(isCaseInsensitiveKey(keys[entry]))
+        {
+            exactHashes[entry] = spread(keys[entry].hashCode());
+            insertSlot(exactHashes[entry], -entry - 1);
+        }
+    }
+    
+    private void insertSlot(int hash, int slotValue)
+    {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while(0 != table[slot])
+        {
+            slot = (slot + 1) & mask;
         }
-        return ((String)key).toUpperCase();
+        table[slot] = slotValue;
     }
     
-    private Map getCompareMap()
+    private int getSlotHash(int slotValue)
     {
-        if(isCaseSensitive)
+        if(slotValue > 0) return hashes[slotValue - 1];
+        return exactHashes[-slotValue - 1];
+    }
+    
+    private void removeEntry(int entry)
+    {
+        removeSlot(hashes[entry], entry + 1);
+        if(isCaseInsensitiveKey(keys[entry]))
         {
-            return actualMap;
+            removeSlot(exactHashes[entry], -entry - 1);
         }
-        return caseInsensitiveMap;
+        keys[entry] = REMOVED;
+        values[entry] = null;
+        size--;
+        modCount++;
     }
     
-    private Object doConsistentModify(Object key, ConsistentModify modifier)
+    private void removeSlot(int hash, int slotValue)
     {
-        Object compareKey = getCompareKey(key);
-        if(!caseInsensitiveMap.containsKey(compareKey))
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while(table[slot] != slotValue)
         {
-            return modifier.modify(key, compareKey);
+            slot = (slot + 1) & mask;
         }
-        for (Object actualKey : actualMap.keySet()) {
-            if (areKeysEquals(actualKey, compareKey)) {
-                return modifier.modify(actualKey, compareKey);
+        int nextSlot = slot;
+        while(true)
+        {
+            nextSlot = (nextSlot + 1) & mask;
+            if(0 == table[nextSlot]) break;
+            int homeSlot = getSlotHash(table[nextSlot]) & mask;
+            if(((nextSlot - homeSlot) & mask) >= ((nextSlot - slot) & mask))
+            {
+                table[slot] = table[nextSlot];
+                slot = nextSlot;
             }
         }
-        return null;
+        table[slot] = 0;
+    }
+    
+    private void rebuild()
+    {
+        int capacity = INITIAL_CAPACITY;
+        while(capacity < 2 * size)
+        {
+            capacity *= 2;
+        }
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int oldNumberEntries = numberEntries;
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        exactHashes = new int[capacity];
+        table = new int[4 * capacity];
+        numberEntries = 0;
+        for(int ii = 0; ii < oldNumberEntries; ii++)
+        {
+            if(REMOVED == oldKeys[ii]) continue;
+            int entry = numberEntries++;
+            keys[entry] = oldKeys[ii];
+            values[entry] = oldValues[ii];
+            hashes[entry] = oldHashes[ii];
+            insertSlots(entry);
+        }
+    }
+    
+    private abstract class EntryIterator implements Iterator
+    {
+        private int nextEntry;
+        private int currentEntry = -1;
+        private int expectedModCount = modCount;
+        
+        public EntryIterator()
+        {
+            skipRemoved();
+        }
+        
+        private void skipRemoved()
+        {
+            while(nextEntry < numberEntries && REMOVED == keys[nextEntry])
+            {
+                nextEntry++;
+            }
+        }
+        
+        public boolean hasNext()
+        {
+            return nextEntry < numberEntries;
+        }
+        
+        protected int nextEntry()
+        {
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(!hasNext()) throw new NoSuchElementException();
+            currentEntry = nextEntry++;
+            skipRemoved();
+            return currentEntry;
+        }
+
+        public void remove()
+        {
+            if(currentEntry < 0) throw new IllegalStateException();
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeEntry(currentEntry);
+            currentEntry = -1;
+            expectedModCount = modCount;
+        }
+    }
+    
+    private class KeySet extends AbstractSet
+    {
+        public Iterator iterator()
+        {
+            return new EntryIterator()
+            {
+                public Object next()
+                {
+                    return keys[nextEntry()];
+                }
+            };
+        }
+        
+        public int size()
+        {
+            return size;
+        }
+        
+        public boolean contains(Object key)
+        {
+            return containsKey(key);
+        }
+        
+        public boolean remove(Object key)
+        {
+            int entry = findEntry(key);
+            if(entry < 0) return false;
+            removeEntry(entry);
+            return true;
+        }
+        
+        public void clear()
+        {
+            CaseAwareMap.this.clear();
+        }
     }
     
-    private interface ConsistentModify
+    private class Values extends AbstractCollection
     {
-        Object modify(Object key1, Object key2);
+        public Iterator iterator()
+        {
+            return new EntryIterator()
+            {
+                public Object next()
+                {
+                    return values[nextEntry()];
+                }
+            };
+        }
+        
+        public int size()
+        {
+            return size;
+        }
+        
+        public boolean contains(Object value)
+        {
+            return containsValue(value);
+        }
+        
+        public void clear()
+        {
+            CaseAwareMap.this.clear();
+        }
     }
     
-    private class ConsistentRemove implements ConsistentModify
+    private class EntrySet extends AbstractSet
     {
-        public Object modify(Object key1, Object key2)
+        public Iterator iterator()
+        {
+            return new EntryIterator()
+            {
+                public Object next()
+                {
+                    return new CaseAwareEntry(nextEntry());
+                }
+            };
+        }
+        
+        public int size()
+        {
+            return size;
+        }
+        
+        public boolean contains(Object object)
+        {
+            if(!(object instanceof Map.Entry)) return false;
+            Map.Entry entry = (Map.Entry)object;
+            int index = findEntry(entry.getKey());
+            return index >= 0 && areValuesEqual(values[index], entry.getValue());
+        }
+        
+        public boolean remove(Object object)
+        {
+            if(!contains(object)) return false;
+            Object key = ((Map.Entry)object).getKey();
+            removeEntry(findEntry(key));
+            return true;
+        }
+        
+        public void clear()
         {
-            actualMap.remove(key1);
-            return caseInsensitiveMap.remove(key2);
+            CaseAwareMap.this.clear();
         }
     }
     
-    private class ConsistentPut implements ConsistentModify
+    private class CaseAwareEntry implements Map.Entry
     {
-        private Object value;
+        private final int entry;
+        private final Object key;
+        private final int expectedModCount = modCount;
+        
+        public CaseAwareEntry(int entry)
+        {
+            this.entry = entry;
+            this.key = keys[entry];
+        }
+        
+        public Object getKey()
+        {
+            return key;
+        }
+        
+        public Object getValue()
+        {
+            if(modCount == expectedModCount) return values[entry];
+            return get(key);
+        }
+        
+        public Object setValue(Object value)
+        {
+            return put(key, value);
+        }
+        
+        public boolean equals(Object object)
+        {
+            if(!(object instanceof Map.Entry)) return false;
+            Map.Entry other = (Map.Entry)object;
+            return areValuesEqual(getKey(), other.getKey()) && areValuesEqual(getValue(), other.getValue());
+        }
         
-        public ConsistentPut(Object value)
+        public int hashCode()
         {
-            this.value = value;
+            return (null == getKey() ? 0 : getKey().hashCode()) ^ (null == getValue() ? 0 : getValue().hashCode());
         }
         
-        public Object modify(Object key1, Object key2)
+        public String toString()
         {
-            actualMap.put(key1, value);
-            return caseInsensitiveMap.put(key2, value);
+            return getKey() + "=" + getValue();
         }
     }
-}
\ No newline at end of file
+}
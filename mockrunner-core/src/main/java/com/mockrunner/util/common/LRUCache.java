@@ -0,0 +1,303 @@
+package com.mockrunner.util.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache that evicts the least recently used entry, if
+ * an entry is added to a full cache. Unlike a cache that is simply
+ * cleared when it's full, the frequently used entries survive,
+ * even if a test produces a lot of different keys.
+ * <br>
+ * This class is thread safe. Lookups do not lock, they only stamp
+ * the entry with the time of the access, so concurrent threads
+ * don't block each other on the hit path. Adding, removing and
+ * evicting entries take a lock. The eviction queue is ordered by
+ * the stamps the entries had when they were queued. Entries that
+ * were used in the meantime are moved to their current position
+ * when they reach the head of the queue, so the entry that is
+ * evicted is always the least recently used one.
+ * <code>null</code> keys and values are not allowed.
+ */
+public class LRUCache<K, V>
+{
+    private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<K, Entry<K, V>>();
+    private final TreeMap<Long, Entry<K, V>> queue = new TreeMap<Long, Entry<K, V>>();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private volatile int maxSize;
+
+    /**
+     * Creates a cache with the specified maximum size.
+     * @param maxSize the maximum number of entries
+     * @throws IllegalArgumentException if <code>maxSize</code> is less than 1
+     */
+    public LRUCache(int maxSize)
+    {
+        checkMaxSize(maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the value for the specified key and marks the
+     * entry as recently used.
+     * @param key the key
+     * @return the value or <code>null</code>, if there's no such entry
+     */
+    public V get(K key)
+    {
+        Entry<K, V> entry = (null == key) ? null : map.get(key);
+        if(null == entry)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        entry.lastAccess = accessCounter.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Adds the specified entry. If the cache is full, the least
+     * recently used entry is evicted.
+     * @param key the key
+     * @param value the value
+     * @return the previous value or <code>null</code>
+     */
+    public synchronized V put(K key, V value)
+    {
+        checkNotNull(key, value);
+        Entry<K, V> previous = map.get(key);
+        if(null != previous)
+        {
+            dequeue(previous);
+        }
+        add(key, value);
+        return (null == previous) ? null : previous.value;
+    }
+
+    /**
+     * Adds the specified entry, if there's no entry for the key.
+     * Otherwise the existing value is kept and marked as recently used.
+     * Use this method, if the value was created outside of the lock
+     * and concurrent threads must end up with the same value.
+     * @param key the key
+     * @param value the value
+     * @return the value that is cached for the key after the call
+     */
+    public V putIfAbsent(K key, V value)
+    {
+        checkNotNull(key, value);
+        Entry<K, V> entry = map.get(key);
+        if(null == entry)
+        {
+            synchronized(this)
+            {
+                entry = map.get(key);
+                if(null == entry)
+                {
+                    add(key, value);
+                    return value;
+                }
+            }
+        }
+        entry.lastAccess = accessCounter.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Removes the entry for the specified key.
+     * @param key the key
+     * @return the removed value or <code>null</code>
+     */
+    public synchronized V remove(K key)
+    {
+        Entry<K, V> entry = (null == key) ? null : map.remove(key);
+        if(null == entry) return null;
+        dequeue(entry);
+        return entry.value;
+    }
+
+    /**
+     * Removes the entry for the specified key, if it's mapped
+     * to the specified value. The values are compared by identity.
+     * @param key the key
+     * @param value the value
+     * @return <code>true</code> if the entry was removed
+     */
+    public synchronized boolean remove(K key, V value)
+    {
+        Entry<K, V> entry = (null == key) ? null : map.get(key);
+        if(null == entry || entry.value != value) return false;
+        map.remove(key);
+        dequeue(entry);
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the keys. Iterating the returned
+     * <code>List</code> does not mark the entries as recently used.
+     * @return the <code>List</code> of keys
+     */
+    public List<K> getKeys()
+    {
+        return new ArrayList<K>(map.keySet());
+    }
+
+    /**
+     * Removes all entries. The statistics are not reset.
+     */
+    public synchronized void clear()
+    {
+        map.clear();
+        queue.clear();
+    }
+
+    /**
+     * Returns the current number of entries.
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return map.size();
+    }
+
+    /**
+     * Sets the maximum number of entries. If the cache contains more
+     * entries, the least recently used ones are evicted.
+     * @param maxSize the maximum number of entries
+     * @throws IllegalArgumentException if <code>maxSize</code> is less than 1
+     */
+    public synchronized void setMaxSize(int maxSize)
+    {
+        checkMaxSize(maxSize);
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     * @return the maximum number of entries
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns how often {@link #get} found an entry.
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns how often {@link #get} did not find an entry.
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns how many entries were evicted because the cache was full.
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics()
+    {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    private void add(K key, V value)
+    {
+        Entry<K, V> entry = new Entry<K, V>(key, value, accessCounter.incrementAndGet());
+        map.put(key, entry);
+        queue.put(entry.queuedAccess, entry);
+        evict();
+    }
+
+    private void dequeue(Entry<K, V> entry)
+    {
+        queue.remove(entry.queuedAccess);
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache contains
+     * at most <i>maxSize</i> entries. Must be called with the lock held.
+     * An entry that was used since it was queued is queued again at the
+     * position of its last access. Every entry is queued again at most
+     * once per call, so lookups of other threads cannot keep the
+     * eviction busy.
+     */
+    private void evict()
+    {
+        int requeueLimit = queue.size();
+        while(queue.size() > maxSize)
+        {
+            Map.Entry<Long, Entry<K, V>> head = queue.pollFirstEntry();
+            Entry<K, V> entry = head.getValue();
+            long lastAccess = entry.lastAccess;
+            if(lastAccess != entry.queuedAccess && requeueLimit-- > 0)
+            {
+                entry.queuedAccess = lastAccess;
+                queue.put(lastAccess, entry);
+            }
+            else
+            {
+                map.remove(entry.key);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void checkMaxSize(int maxSize)
+    {
+        if(maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+    }
+
+    private void checkNotNull(K key, V value)
+    {
+        if(null == key || null == value)
+        {
+            throw new IllegalArgumentException("key and value must not be null");
+        }
+    }
+
+    private static class Entry<K, V>
+    {
+        private final K key;
+        private final V value;
+        private volatile long lastAccess;
+        private long queuedAccess;
+
+        public Entry(K key, V value, long lastAccess)
+        {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = lastAccess;
+            this.queuedAccess = lastAccess;
+        }
+    }
+}
@@ -386,4 +386,64 @@ public class StringUtil
             throw new NestedApplicationException(exc);
         }
     }
+
+    /**
+     * Returns if the SQL <code>LIKE</code> pattern <code>target</code>
+     * matches <code>source</code>, ignoring case, if <code>caseSensitive</code>
+     * is <code>false</code>. <code>%</code> matches any sequence of characters,
+     * <code>_</code> matches one character. A wildcard preceded by
+     * <code>\</code> matches the character itself. The pattern is not
+     * compiled, so this method is much faster than {@link #matchesPerl5}
+     * for patterns that are used only once.
+     * @param source the source String
+     * @param target the pattern
+     * @param caseSensitive is the comparison case sensitive
+     * @return <code>true</code> if the strings matches
+     *         <code>false</code> otherwise
+     */
+    public static boolean matchesLike(String source, String target, boolean caseSensitive)
+    {
+        int sourceIndex = 0;
+        int targetIndex = 0;
+        int backtrackSource = -1;
+        int backtrackTarget = -1;
+        while(sourceIndex < source.length())
+        {
+            if(targetIndex < target.length())
+            {
+                char next = target.charAt(targetIndex);
+                if(next == '%')
+                {
+                    targetIndex++;
+                    backtrackTarget = targetIndex;
+                    backtrackSource = sourceIndex;
+                    continue;
+                }
+                boolean isEscaped = (next == '\\') && (targetIndex + 1 < target.length());
+                if(isEscaped) next = target.charAt(targetIndex + 1);
+                if((next == '_' && !isEscaped) || equals(source.charAt(sourceIndex), next, caseSensitive))
+                {
+                    sourceIndex++;
+                    targetIndex += isEscaped ? 2 : 1;
+                    continue;
+                }
+            }
+            if(backtrackTarget < 0) return false;
+            backtrackSource++;
+            sourceIndex = backtrackSource;
+            targetIndex = backtrackTarget;
+        }
+        while(targetIndex < target.length() && target.charAt(targetIndex) == '%')
+        {
+            targetIndex++;
+        }
+        return targetIndex == target.length();
+    }
+
+    private static boolean equals(char char1, char char2, boolean caseSensitive)
+    {
+        if(char1 == char2) return true;
+        if(caseSensitive) return false;
+        return Character.toUpperCase(char1) == Character.toUpperCase(char2) || Character.toLowerCase(char1) == Character.toLowerCase(char2);
+    }
 }
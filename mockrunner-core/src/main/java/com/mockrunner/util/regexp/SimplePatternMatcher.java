@@ -21,6 +21,20 @@ public class SimplePatternMatcher extends PatternMatcher.Base {
       return "equals";
    }
 
+   /**
+    * @return True if this matcher compares case sensitive.
+    */
+   public boolean isCaseSensitive() {
+      return caseSensitive;
+   }
+
+   /**
+    * @return True if the matched string must be equal to the pattern, false if it must only contain it.
+    */
+   public boolean isExactMatch() {
+      return exactMatch;
+   }
+
    public boolean matches(String string) {
       if (exactMatch) {
          if (caseSensitive) {
@@ -48,5 +62,17 @@ public class SimplePatternMatcher extends PatternMatcher.Base {
       public PatternMatcher create(String pattern) {
          return new SimplePatternMatcher(pattern, caseSensitive, exactMatch);
       }
+
+      @Override
+      public int hashCode() {
+         return (caseSensitive ? 2 : 0) + (exactMatch ? 1 : 0);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (obj == null || obj.getClass() != getClass()) return false;
+         Factory other = (Factory) obj;
+         return caseSensitive == other.caseSensitive && exactMatch == other.exactMatch;
+      }
    }
 }
@@ -58,6 +58,16 @@ public class StartsEndsPatternMatcher extends PatternMatcher.Base {
          }
       }
 
+      @Override
+      public int hashCode() {
+         return getClass().hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         return obj != null && obj.getClass() == getClass();
+      }
+
       private String unescape(String pattern) {
          StringBuilder sb = new StringBuilder(pattern.length());
          boolean escaped = false;
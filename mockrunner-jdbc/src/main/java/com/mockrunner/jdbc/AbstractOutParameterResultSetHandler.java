@@ -4,10 +4,9 @@ import com.mockrunner.mock.jdbc.MockParameterMap;
 import com.mockrunner.util.regexp.PatternMatcher;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Abstract base class for all statement types
@@ -17,11 +16,11 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
 {
     private boolean mustRegisterOutParameters = false;
     private MockParameterMap globalOutParameter = null;
-    private final Map<String, MockParameterMap> outParameterForStatement = new TreeMap<String, MockParameterMap>();
-    private final Map<PatternMatcher, MockParameterMap> outParameterForStatementCompiled = new TreeMap<PatternMatcher, MockParameterMap>();
-    private final Map<String, List<ParameterWrapper<MockParameterMap>>> outParameterForStatementParameters = new TreeMap<String, List<ParameterWrapper<MockParameterMap>>>();
+    private final Map<String, MockParameterMap> outParameterForStatement = new ConcurrentSkipListMap<String, MockParameterMap>();
+    private final Map<PatternMatcher, MockParameterMap> outParameterForStatementCompiled = new ConcurrentSkipListMap<PatternMatcher, MockParameterMap>();
+    private final Map<String, List<ParameterWrapper<MockParameterMap>>> outParameterForStatementParameters = new ConcurrentSkipListMap<String, List<ParameterWrapper<MockParameterMap>>>();
     private final Map<PatternMatcher, List<ParameterWrapper<MockParameterMap>>> outParameterForStatementParametersCompiled
-          = new HashMap<PatternMatcher, List<ParameterWrapper<MockParameterMap>>>();
+          = new PatternMatcherIndex<List<ParameterWrapper<MockParameterMap>>>();
 
     @Override
     protected void onPatternMatcherFactoryChanged() {
@@ -135,7 +134,7 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
     {
         MockParameterMap mockParameterMap = new MockParameterMap(outParameters);
         outParameterForStatement.put(sql, mockParameterMap);
-        outParameterForStatementCompiled.put(getPatternMatcherFactory().create(sql), mockParameterMap);
+        outParameterForStatementCompiled.put(compilePreparedSQL(sql), mockParameterMap);
     }
     
     /**
@@ -202,14 +201,14 @@ public abstract class AbstractOutParameterResultSetHandler extends AbstractParam
      */
     public void prepareOutParameter(String sql, MockParameterMap outParameters, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockParameterMap>> list = getListFromMapForSQLStatement(sql, outParameterForStatementParameters);
+        List<ParameterWrapper<MockParameterMap>> list = getParameterWrapperListFromMap(sql, outParameterForStatementParameters);
         list.add(new ParameterWrapper<MockParameterMap>(new MockParameterMap(outParameters), new MockParameterMap(parameters)));
-        outParameterForStatementParametersCompiled.put(getPatternMatcherFactory().create(sql), list);
+        outParameterForStatementParametersCompiled.put(compilePreparedSQL(sql), list);
     }
     
     public void removeOutParameter(String sql){
         outParameterForStatement.remove(sql);
-        outParameterForStatementCompiled.remove(getPatternMatcherFactory().create(sql));
+        removeCompiled(outParameterForStatement, outParameterForStatementCompiled, sql);
     }
 
     public void removeOutParameter(String sql, MockParameterMap parameters){
@@ -6,7 +6,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 
@@ -22,7 +22,7 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 //    private final Map<String, List<ParameterWrapper<Integer[]>>> updateCountForStatement = new TreeMap<String, List<ParameterWrapper<Integer[]>>>();
 //    private final Map<String, List<ParameterWrapper<SQLException>>> throwsSQLException = new TreeMap<String, List<ParameterWrapper<SQLException>>>();
 //    private final Map<String, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatement = new TreeMap<String, List<ParameterWrapper<MockResultSet>>>();
-	private final Map<String, ParameterSets> executedStatementParameters = new TreeMap<String, ParameterSets>();
+	private final Map<String, ParameterSets> executedStatementParameters = new ConcurrentSkipListMap<String, ParameterSets>();
     
 	/**
 	 * Collects all SQL strings that were executed.
@@ -35,13 +35,38 @@ public abstract class AbstractParameterResultSetHandler extends AbstractResultSe
 		{
 			if(null == executedStatementParameters.get(sql))
 			{
-				executedStatementParameters.put(sql, new ParameterSets(sql));
+				executedStatementParameters.putIfAbsent(sql, new ParameterSets(sql, getJournalPolicy()));
 			}
 			ParameterSets sets = executedStatementParameters.get(sql);
 			sets.addParameterSet(parameters);
 		}
 	}
 	
+	/**
+	 * Collects the parameter maps of a batch.
+	 * @param sql the SQL string
+	 * @param parameterList copies of the parameter maps
+	 */
+	public void addParameterMapsForExecutedStatement(String sql, List<MockParameterMap> parameterList)
+	{
+		if(parameterList.isEmpty()) return;
+		if(null == executedStatementParameters.get(sql))
+		{
+			executedStatementParameters.putIfAbsent(sql, new ParameterSets(sql, getJournalPolicy()));
+		}
+		executedStatementParameters.get(sql).addParameterSets(parameterList);
+	}
+	
+	@Override
+	public void setJournalPolicy(JournalPolicy journalPolicy)
+	{
+		super.setJournalPolicy(journalPolicy);
+		for(ParameterSets sets : executedStatementParameters.values())
+		{
+			sets.setJournalPolicy(journalPolicy);
+		}
+	}
+	
 	/**
 	 * Returns the <code>ParameterSets</code> for a specified
 	 * SQL string.
@@ -3,11 +3,18 @@ package com.mockrunner.jdbc;
 import com.mockrunner.mock.jdbc.MockParameterMap;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.mockrunner.mock.jdbc.MockResultSet;
 import com.mockrunner.util.regexp.PatternMatcher;
@@ -26,31 +33,69 @@ import com.mockrunner.util.regexp.PatternMatcher;
  * of the <code>ResultSet</code> to identify it.
  * The <code>ResultSet</code> objects returned by {@link #getReturnedResultSets}
  * are actually the instances the executed statements returned.
+ * <br>
+ * The handlers are thread safe. Statements may be executed concurrently
+ * from multiple threads, e.g. through the same <code>Connection</code>
+ * of a {@link com.mockrunner.mock.jdbc.MockDataSource}.
  */
 public abstract class AbstractResultSetHandler
 {
+    /**
+     * The maximum number of call sites recorded for one SQL string.
+     */
+    public final static int MAX_CALL_SITES = 10;
+    
     private ResultSetFactory resultSetFactory = ResultSetFactory.Default.INSTANCE;
     private boolean caseSensitive = false;
     private boolean exactMatch = false;
     private boolean useRegularExpressions = false;
+    private boolean normalizeSQL = false;
     private PatternMatcher.Factory patternMatcherFactory = PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions);
+    private PatternMatcherCache patternMatcherCache;
     private boolean continueProcessingOnBatchFailure = false;
     private MockResultSet[] globalResultSets;
     private Integer[] globalUpdateCounts;
-    private final Map<String, Boolean> returnsResultSetMap = new TreeMap<String, Boolean>();
-    private final Map<PatternMatcher, Boolean> returnsResultSetMapCompiled = new HashMap<PatternMatcher, Boolean>();
+    private final Map<String, Boolean> returnsResultSetMap = new ConcurrentSkipListMap<String, Boolean>();
+    private final Map<PatternMatcher, Boolean> returnsResultSetMapCompiled = new PatternMatcherIndex<Boolean>();
     private MockResultSet globalGeneratedKeys;
-    private final List<String> executedStatements = new ArrayList<String>();
-    private final List<MockResultSet[]> returnedResultSets = new ArrayList<MockResultSet[]>();
-    
-    private final Map<String, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatement = new TreeMap<String, List<ParameterWrapper<MockResultSet[]>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatementCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>>();
-    private final Map<String, List<ParameterWrapper<Integer[]>>> updateCountForStatement = new TreeMap<String, List<ParameterWrapper<Integer[]>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<Integer[]>>> updateCountForStatementCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<Integer[]>>>();
-    private final Map<String, List<ParameterWrapper<SQLException>>> throwsSQLException = new TreeMap<String, List<ParameterWrapper<SQLException>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<SQLException>>> throwsSQLExceptionCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<SQLException>>>();
-    private final Map<String, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatement = new TreeMap<String, List<ParameterWrapper<MockResultSet>>>();
-    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatementCompiled = new HashMap<PatternMatcher, List<ParameterWrapper<MockResultSet>>>();
+    private JournalPolicy journalPolicy = JournalPolicy.unbounded();
+    private final Journal<String> executedStatements = new Journal<String>("statement");
+    private final Journal<MockResultSet[]> returnedResultSets = new Journal<MockResultSet[]>("resultset")
+    {
+        @Override
+        protected String format(MockResultSet[] resultSets)
+        {
+            StringBuilder builder = new StringBuilder();
+            for(int ii = 0; ii < resultSets.length; ii++)
+            {
+                if(ii > 0) builder.append(',');
+                builder.append(null == resultSets[ii] ? null : resultSets[ii].getId());
+            }
+            return builder.toString();
+        }
+    };
+    
+    private final Map<String, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatement = new ConcurrentSkipListMap<String, List<ParameterWrapper<MockResultSet[]>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet[]>>> resultSetsForStatementCompiled = new PatternMatcherIndex<List<ParameterWrapper<MockResultSet[]>>>();
+    private final Map<String, List<ParameterWrapper<Integer[]>>> updateCountForStatement = new ConcurrentSkipListMap<String, List<ParameterWrapper<Integer[]>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<Integer[]>>> updateCountForStatementCompiled = new PatternMatcherIndex<List<ParameterWrapper<Integer[]>>>();
+    private final Map<String, List<ParameterWrapper<SQLException>>> throwsSQLException = new ConcurrentSkipListMap<String, List<ParameterWrapper<SQLException>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<SQLException>>> throwsSQLExceptionCompiled = new PatternMatcherIndex<List<ParameterWrapper<SQLException>>>();
+    private final Map<String, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatement = new ConcurrentSkipListMap<String, List<ParameterWrapper<MockResultSet>>>();
+    private final Map<PatternMatcher, List<ParameterWrapper<MockResultSet>>> generatedKeysForStatementCompiled = new PatternMatcherIndex<List<ParameterWrapper<MockResultSet>>>();
+    private final Map<String, LatencyModel> latencyForStatement = new ConcurrentSkipListMap<String, LatencyModel>();
+    private final Map<PatternMatcher, LatencyModel> latencyForStatementCompiled = new PatternMatcherIndex<LatencyModel>();
+    private volatile LatencyModel globalLatency;
+    private volatile LatencyModel fetchLatency;
+    private volatile LatencyModel batchLatency;
+    private final Map<String, BatchFailure> batchFailureForStatement = new ConcurrentSkipListMap<String, BatchFailure>();
+    private final Map<PatternMatcher, BatchFailure> batchFailureForStatementCompiled = new PatternMatcherIndex<BatchFailure>();
+    private volatile LatencyClock latencyClock = LatencyClock.wallClock();
+    private final Map<String, Long> preparedOrder = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong preparedSequence = new AtomicLong();
+    private volatile StatementMetrics statementMetrics;
+    private volatile boolean recordCallSites = false;
+    private final ConcurrentMap<String, Set<String>> callSiteMap = new ConcurrentHashMap<String, Set<String>>();
 
     /**
      * Creates a new <code>ResultSet</code> with a
@@ -173,6 +218,34 @@ public abstract class AbstractResultSetHandler
         resetPatternMatcherFactory();
     }
 
+    /**
+     * Set if SQL strings should be normalized before they are matched.
+     * Irrelevant if regular expressions are used, i.e. <code>useRegularExpressions</code>
+     * is <code>true</code> and <code>exactMatch</code> is <code>false</code>.
+     * Default is <code>false</code>. If this attribute is <code>true</code>,
+     * the specified and the executed SQL strings are compared in the
+     * normalized form of {@link SQLFingerprint}, i.e. whitespace, comments,
+     * the case of unquoted words, literal values and the length of
+     * <code>IN</code> lists are ignored. E.g. a result set prepared for
+     * <i>select * from mytable where id in (1, 2)</i> is returned for
+     * <i>SELECT * FROM mytable WHERE id IN (3, 4, 5)</i>. This allows
+     * exact matching, which is much faster than matching regular
+     * expressions, for SQL strings that are built dynamically.
+     * Please note that of the specified SQL strings with the same normalized
+     * form, only the one prepared last is used, also if the match parameters
+     * are changed later. If it's removed, the one prepared before is used.
+     * This method controls SQL statement matching for prepared results
+     * and update counts. Unlike {@link JDBCTestModule#setNormalizeSQL(boolean)}
+     * it does not control the statement matching of {@link JDBCTestModule}
+     * methods.
+     * @param normalizeSQL should SQL strings be normalized
+     */
+    public void setNormalizeSQL(boolean normalizeSQL)
+    {
+        this.normalizeSQL = normalizeSQL;
+        onPatternMatcherFactoryChanged();
+    }
+
    /**
     * Sets custom factory for patterns for matching SQL statements. When custom factory
     * is set, <code>caseSensitive</code>, </code><code>exactMatch</code>,
@@ -192,6 +265,49 @@ public abstract class AbstractResultSetHandler
         return patternMatcherFactory;
     }
 
+   /**
+    * Sets the cache for compiled patterns. The cache is used whenever
+    * a SQL string is compiled with the current pattern matcher factory.
+    * Usually, the handlers of a {@link com.mockrunner.mock.jdbc.JDBCMockObjectFactory}
+    * share the cache of the factory. Set <code>null</code> to disable caching.
+    * @param patternMatcherCache the cache
+    */
+    public void setPatternMatcherCache(PatternMatcherCache patternMatcherCache) {
+        this.patternMatcherCache = patternMatcherCache;
+    }
+
+   /**
+    * @return The cache for compiled patterns, may be <code>null</code>.
+    */
+    public PatternMatcherCache getPatternMatcherCache() {
+        return patternMatcherCache;
+    }
+
+    protected PatternMatcher createPatternMatcher(String sql) {
+        sql = normalizeSQL(sql);
+        if (null == patternMatcherCache) {
+            return patternMatcherFactory.create(sql);
+        }
+        return patternMatcherCache.getPatternMatcher(patternMatcherFactory, sql);
+    }
+
+    /**
+     * Returns the normalized form of the specified SQL string, if
+     * <code>normalizeSQL</code> is enabled, otherwise the SQL string itself.
+     * @param sql the SQL string
+     * @return the SQL string used for matching
+     */
+    protected String normalizeSQL(String sql) {
+        if (!isNormalizingSQL() || null == sql) {
+            return sql;
+        }
+        return SQLFingerprint.normalize(sql);
+    }
+
+    private boolean isNormalizingSQL() {
+        return normalizeSQL && (exactMatch || !useRegularExpressions);
+    }
+
     protected void resetPatternMatcherFactory() {
         this.patternMatcherFactory = PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions);
         onPatternMatcherFactoryChanged();
@@ -203,6 +319,8 @@ public abstract class AbstractResultSetHandler
         recompile(updateCountForStatement, updateCountForStatementCompiled);
         recompile(throwsSQLException, throwsSQLExceptionCompiled);
         recompile(generatedKeysForStatement, generatedKeysForStatementCompiled);
+        recompile(latencyForStatement, latencyForStatementCompiled);
+        recompile(batchFailureForStatement, batchFailureForStatementCompiled);
     }
 
    /**
@@ -218,6 +336,52 @@ public abstract class AbstractResultSetHandler
         this.continueProcessingOnBatchFailure = continueProcessingOnBatchFailure;
     }
     
+    /**
+     * Sets the {@link JournalPolicy} that defines how many executed
+     * statements, returned <code>ResultSet</code> objects, statements
+     * and parameter sets this handler keeps. The default is
+     * {@link JournalPolicy#unbounded}. Use a bounded policy
+     * for long running tests. Please note that the verify methods
+     * of {@link JDBCTestModule} only see the entries that are kept.
+     * @param journalPolicy the journal policy
+     */
+    public void setJournalPolicy(JournalPolicy journalPolicy)
+    {
+        this.journalPolicy = journalPolicy;
+        executedStatements.setPolicy(journalPolicy);
+        returnedResultSets.setPolicy(journalPolicy);
+    }
+    
+    /**
+     * Returns the {@link JournalPolicy}.
+     * @return the journal policy
+     */
+    public JournalPolicy getJournalPolicy()
+    {
+        return journalPolicy;
+    }
+    
+    /**
+     * Returns the number of executed SQL strings, including
+     * the ones that were not kept because of the {@link JournalPolicy}.
+     * @return the total number of executed SQL strings
+     */
+    public long getNumberExecutedStatements()
+    {
+        return executedStatements.getTotalCount();
+    }
+    
+    /**
+     * Returns the number of returned <code>ResultSet</code> or
+     * <code>ResultSet[]</code> objects, including the ones that were
+     * not kept because of the {@link JournalPolicy}.
+     * @return the total number of returned <code>ResultSet</code> objects
+     */
+    public long getNumberReturnedResultSets()
+    {
+        return returnedResultSets.getTotalCount();
+    }
+    
     /**
      * Collects all SQL strings that were executed.
      * @param sql the SQL string
@@ -225,6 +389,62 @@ public abstract class AbstractResultSetHandler
     public void addExecutedStatement(String sql)
     {
 		executedStatements.add(sql);
+        StatementMetrics metrics = statementMetrics;
+        if(null != metrics) metrics.addExecution(sql);
+        if(recordCallSites) addCallSite(sql, getCallSite());
+    }
+    
+    /**
+     * Collects the SQL strings executed by a batch.
+     * @param sqlList the SQL strings
+     */
+    public void addExecutedStatements(List<String> sqlList)
+    {
+        executedStatements.addAll(sqlList);
+        StatementMetrics metrics = statementMetrics;
+        if(null != metrics) metrics.addExecutions(sqlList);
+        if(recordCallSites)
+        {
+            String callSite = getCallSite();
+            for(String nextSQL : sqlList)
+            {
+                addCallSite(nextSQL, callSite);
+            }
+        }
+    }
+    
+    private void addCallSite(String sql, String callSite)
+    {
+        if(null == callSite) return;
+        Set<String> callSites = callSiteMap.get(sql);
+        if(null == callSites)
+        {
+            callSites = Collections.synchronizedSet(new LinkedHashSet<String>());
+            Set<String> existingCallSites = callSiteMap.putIfAbsent(sql, callSites);
+            if(null != existingCallSites) callSites = existingCallSites;
+        }
+        synchronized(callSites)
+        {
+            if(callSites.size() < MAX_CALL_SITES) callSites.add(callSite);
+        }
+    }
+    
+    private String getCallSite()
+    {
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        for(int ii = 0; ii < stackTrace.length; ii++)
+        {
+            String className = stackTrace[ii].getClassName();
+            if(!isInternalClass(className)) return stackTrace[ii].toString();
+        }
+        return null;
+    }
+    
+    private boolean isInternalClass(String className)
+    {
+        return className.startsWith("com.mockrunner.jdbc.") || className.startsWith("com.mockrunner.mock.") ||
+               className.startsWith("java.") || className.startsWith("javax.") ||
+               className.startsWith("sun.") || className.startsWith("jdk.");
     }
     
     /**
@@ -253,7 +473,8 @@ public abstract class AbstractResultSetHandler
     }
     
     /**
-     * Returns the <code>List</code> of all executed SQL strings.
+     * Returns the <code>List</code> of all executed SQL strings
+     * that are kept according to the {@link JournalPolicy}.
      * @return the <code>List</code> of executed SQL strings
      */
     public List<String> getExecutedStatements()
@@ -261,6 +482,17 @@ public abstract class AbstractResultSetHandler
         return Collections.unmodifiableList(executedStatements);
     }
     
+    /**
+     * Returns the journal of the executed SQL strings, e.g. to
+     * merge it with the journals of other handlers in the
+     * order of execution, see {@link Journal#merge}.
+     * @return the journal of executed SQL strings
+     */
+    Journal<String> getExecutedStatementJournal()
+    {
+        return executedStatements;
+    }
+    
     /**
      * Returns the <code>List</code> of all returned <code>ResultSet</code> 
      * or <code>ResultSet[]</code> objects. The <code>List</code> contains
@@ -346,6 +578,265 @@ public abstract class AbstractResultSetHandler
         this.globalUpdateCounts = null;
     }
     
+    /**
+     * Clears the prepared latencies, including the global
+     * latency and the fetch latency.
+     */
+    public void clearLatencies()
+    {
+        latencyForStatement.clear();
+        latencyForStatementCompiled.clear();
+        globalLatency = null;
+        fetchLatency = null;
+        batchLatency = null;
+    }
+    
+    /**
+     * Sets the {@link LatencyClock} that applies the prepared latencies.
+     * Default is a wall clock, i.e. the executing thread really sleeps.
+     * Use {@link LatencyClock#virtual} for fast and deterministic tests.
+     * @param latencyClock the {@link LatencyClock}
+     */
+    public void setLatencyClock(LatencyClock latencyClock)
+    {
+        this.latencyClock = latencyClock;
+    }
+    
+    /**
+     * Returns the {@link LatencyClock}.
+     * @return the {@link LatencyClock}
+     */
+    public LatencyClock getLatencyClock()
+    {
+        return latencyClock;
+    }
+    
+    /**
+     * Sets the {@link StatementMetrics} that count the executed statements
+     * and the returned <code>ResultSet</code> objects. Usually set for
+     * all handlers of a connection with
+     * {@link com.mockrunner.mock.jdbc.MockConnection#setStatementMetrics}.
+     * Default is <code>null</code>, i.e. no metrics are collected.
+     * @param statementMetrics the {@link StatementMetrics}, may be <code>null</code>
+     */
+    public void setStatementMetrics(StatementMetrics statementMetrics)
+    {
+        this.statementMetrics = statementMetrics;
+    }
+    
+    /**
+     * Returns the {@link StatementMetrics}.
+     * @return the {@link StatementMetrics} or <code>null</code>
+     */
+    public StatementMetrics getStatementMetrics()
+    {
+        return statementMetrics;
+    }
+    
+    /**
+     * Set if the call site, i.e. the first stack frame outside of
+     * Mockrunner and the JDK, is recorded for each executed statement.
+     * The call sites are reported by the {@link QueryPatternAnalyzer}.
+     * Default is <code>false</code>, because capturing the stack trace
+     * is expensive. At most {@link #MAX_CALL_SITES} different call sites
+     * are recorded for each SQL string.
+     * @param recordCallSites should call sites be recorded
+     */
+    public void setRecordCallSites(boolean recordCallSites)
+    {
+        this.recordCallSites = recordCallSites;
+    }
+    
+    /**
+     * Returns if call sites are recorded.
+     * @return <code>true</code> if call sites are recorded
+     */
+    public boolean getRecordCallSites()
+    {
+        return recordCallSites;
+    }
+    
+    /**
+     * Returns the recorded call sites. The keys are the executed
+     * SQL strings, the values are the call sites in the format
+     * of <code>StackTraceElement.toString()</code>.
+     * @return the <code>Map</code> of call sites
+     */
+    public Map<String, Set<String>> getCallSiteMap()
+    {
+        return Collections.unmodifiableMap(callSiteMap);
+    }
+    
+    /**
+     * Prepare the simulated latency of executing the specified SQL string.
+     * The statement delays the execution according to the {@link LatencyModel}
+     * and the {@link LatencyClock}. If the delay exceeds the query timeout
+     * of the statement, the statement waits for the timeout and throws
+     * an <code>SQLTimeoutException</code>.
+     * Please note that you can modify the match parameters with 
+     * {@link #setCaseSensitive}, {@link #setExactMatch} and 
+     * {@link #setUseRegularExpressions}.
+     * @param sql the SQL string
+     * @param latency the {@link LatencyModel}
+     */
+    public void prepareLatency(String sql, LatencyModel latency)
+    {
+        latencyForStatement.put(sql, latency);
+        latencyForStatementCompiled.put(compilePreparedSQL(sql), latency);
+    }
+    
+    /**
+     * Prepare the simulated latency of all SQL strings without
+     * a latency prepared with {@link #prepareLatency}.
+     * @param latency the {@link LatencyModel}, <code>null</code> disables the global latency
+     */
+    public void prepareGlobalLatency(LatencyModel latency)
+    {
+        this.globalLatency = latency;
+    }
+    
+    /**
+     * Prepare the simulated latency of fetching a row. The returned
+     * <code>ResultSet</code> objects delay every call of <code>next</code>
+     * that moves the cursor to a row.
+     * @param latency the {@link LatencyModel}, <code>null</code> disables the fetch latency
+     */
+    public void prepareFetchLatency(LatencyModel latency)
+    {
+        this.fetchLatency = latency;
+    }
+    
+    /**
+     * Prepare the simulated latency of executing a batch. If a batch
+     * latency is prepared, <code>executeBatch</code> is delayed once
+     * according to this model, like a driver that sends the batch in
+     * one round trip, and the latencies of the single commands are
+     * ignored. Otherwise every command of the batch is delayed like
+     * a single statement.
+     * @param latency the {@link LatencyModel}, <code>null</code> disables the batch latency
+     */
+    public void prepareBatchLatency(LatencyModel latency)
+    {
+        this.batchLatency = latency;
+    }
+    
+    /**
+     * Returns the {@link LatencyModel} for executing a batch or <code>null</code>.
+     * @return the {@link LatencyModel} or <code>null</code>
+     */
+    public LatencyModel getBatchLatency()
+    {
+        return batchLatency;
+    }
+    
+    /**
+     * Prepare that the commands at the specified positions fail, if a batch
+     * with the specified SQL string is executed. The positions start with 0.
+     * The failing commands get the result <code>Statement.EXECUTE_FAILED</code>.
+     * If {@link #setContinueProcessingOnBatchFailure} is <code>false</code>,
+     * the batch stops at the first failing command.
+     * Please note that you can modify the match parameters with 
+     * {@link #setCaseSensitive}, {@link #setExactMatch} and 
+     * {@link #setUseRegularExpressions}.
+     * @param sql the SQL string
+     * @param positions the positions of the failing commands
+     */
+    public void prepareBatchFailure(String sql, int[] positions)
+    {
+        prepareBatchFailure(sql, positions, null);
+    }
+    
+    /**
+     * Prepare that the commands at the specified positions fail with the
+     * specified exception, if a batch with the specified SQL string is
+     * executed. See {@link #prepareBatchFailure(String, int[])}.
+     * @param sql the SQL string
+     * @param positions the positions of the failing commands
+     * @param exc the <code>SQLException</code>, <code>null</code> for a default exception
+     */
+    public void prepareBatchFailure(String sql, int[] positions, SQLException exc)
+    {
+        BatchFailure failure = new BatchFailure(positions, exc);
+        batchFailureForStatement.put(sql, failure);
+        batchFailureForStatementCompiled.put(compilePreparedSQL(sql), failure);
+    }
+    
+    /**
+     * Removes the batch failure prepared for the specified SQL string.
+     * @param sql the SQL string
+     */
+    public void removeBatchFailure(String sql)
+    {
+        batchFailureForStatement.remove(sql);
+        removeCompiled(batchFailureForStatement, batchFailureForStatementCompiled, sql);
+    }
+    
+    /**
+     * Clears the prepared batch failures.
+     */
+    public void clearBatchFailures()
+    {
+        batchFailureForStatement.clear();
+        batchFailureForStatementCompiled.clear();
+    }
+    
+    /**
+     * Returns the <code>SQLException</code> for the command at the specified
+     * position of a batch with the specified SQL string or <code>null</code>,
+     * if the command does not fail.
+     * @param sql the SQL string
+     * @param position the position of the command, starting with 0
+     * @return the <code>SQLException</code> or <code>null</code>
+     */
+    public SQLException getBatchFailure(String sql, int position)
+    {
+        if(batchFailureForStatementCompiled.isEmpty()) return null;
+        for(BatchFailure nextFailure : getMatchingObjects(batchFailureForStatementCompiled, sql))
+        {
+            if(nextFailure.fails(position))
+            {
+                return nextFailure.getException(sql, position);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Removes the latency prepared for the specified SQL string.
+     * @param sql the SQL string
+     */
+    public void removeLatency(String sql)
+    {
+        latencyForStatement.remove(sql);
+        removeCompiled(latencyForStatement, latencyForStatementCompiled, sql);
+    }
+    
+    /**
+     * Returns the {@link LatencyModel} for the specified SQL string, i.e. the
+     * first model prepared with {@link #prepareLatency} that matches or the
+     * global latency. Returns <code>null</code>, if there's no latency.
+     * @param sql the SQL string
+     * @return the {@link LatencyModel} or <code>null</code>
+     */
+    public LatencyModel getLatency(String sql)
+    {
+        if(!latencyForStatementCompiled.isEmpty())
+        {
+            List<LatencyModel> list = getMatchingObjects(latencyForStatementCompiled, sql);
+            if(!list.isEmpty()) return list.get(0);
+        }
+        return globalLatency;
+    }
+    
+    /**
+     * Returns the {@link LatencyModel} for fetching a row or <code>null</code>.
+     * @return the {@link LatencyModel} or <code>null</code>
+     */
+    public LatencyModel getFetchLatency()
+    {
+        return fetchLatency;
+    }
+    
 //    /**
 //     * Returns the <code>Map</code> of all <code>ResultSet</code>
 //     * objects, that were added with {@link #prepareResultSet(String, MockResultSet)}.
@@ -714,9 +1205,9 @@ public abstract class AbstractResultSetHandler
 
     protected void prepareResultSet(String sql, MockResultSet resultSet, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockResultSet[]>> list = getListFromMapForSQLStatement(sql, resultSetsForStatement);
+        List<ParameterWrapper<MockResultSet[]>> list = getParameterWrapperListFromMap(sql, resultSetsForStatement);
         list.add(new ParameterWrapper<MockResultSet[]>(new MockResultSet[]{resultSet}, new MockParameterMap(parameters)));
-        resultSetsForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        resultSetsForStatementCompiled.put(compilePreparedSQL(sql), list);
     }
     
     /**
@@ -735,9 +1226,9 @@ public abstract class AbstractResultSetHandler
 
     protected void prepareResultSets(String sql, MockResultSet[] resultSets, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockResultSet[]>> list = getListFromMapForSQLStatement(sql, resultSetsForStatement);
+        List<ParameterWrapper<MockResultSet[]>> list = getParameterWrapperListFromMap(sql, resultSetsForStatement);
         list.add(new ParameterWrapper<MockResultSet[]>(resultSets.clone(), new MockParameterMap(parameters)));
-        resultSetsForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        resultSetsForStatementCompiled.put(compilePreparedSQL(sql), list);
     }    
     
     /**
@@ -773,9 +1264,9 @@ public abstract class AbstractResultSetHandler
     
     protected void prepareUpdateCount(String sql, int updateCount, MockParameterMap parameters)
     {
-        List<ParameterWrapper<Integer[]>> list = getListFromMapForSQLStatement(sql, updateCountForStatement);
+        List<ParameterWrapper<Integer[]>> list = getParameterWrapperListFromMap(sql, updateCountForStatement);
         list.add(new ParameterWrapper<Integer[]>(new Integer[]{updateCount}, new MockParameterMap(parameters)));
-        updateCountForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        updateCountForStatementCompiled.put(compilePreparedSQL(sql), list);
     }    
     
     /**
@@ -794,9 +1285,9 @@ public abstract class AbstractResultSetHandler
     
     public void prepareUpdateCounts(String sql, Integer[] updateCounts, MockParameterMap parameters)
     {
-        List<ParameterWrapper<Integer[]>> list = getListFromMapForSQLStatement(sql, updateCountForStatement);
+        List<ParameterWrapper<Integer[]>> list = getParameterWrapperListFromMap(sql, updateCountForStatement);
         list.add(new ParameterWrapper<Integer[]>(updateCounts.clone(), new MockParameterMap(parameters)));
-        updateCountForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        updateCountForStatementCompiled.put(compilePreparedSQL(sql), list);
     }
     
     /**
@@ -832,9 +1323,9 @@ public abstract class AbstractResultSetHandler
 
     protected void prepareGeneratedKeys(String sql, MockResultSet generatedKeysResult, MockParameterMap parameters)
     {
-        List<ParameterWrapper<MockResultSet>> list = getListFromMapForSQLStatement(sql, generatedKeysForStatement);
+        List<ParameterWrapper<MockResultSet>> list = getParameterWrapperListFromMap(sql, generatedKeysForStatement);
         list.add(new ParameterWrapper<MockResultSet>(generatedKeysResult, new MockParameterMap(parameters)));
-        generatedKeysForStatementCompiled.put(patternMatcherFactory.create(sql), list);
+        generatedKeysForStatementCompiled.put(compilePreparedSQL(sql), list);
     }    
     
     /**
@@ -860,7 +1351,7 @@ public abstract class AbstractResultSetHandler
     public void prepareReturnsResultSet(String sql, boolean returnsResultSet)
     {
         returnsResultSetMap.put(sql, returnsResultSet);
-        returnsResultSetMapCompiled.put(patternMatcherFactory.create(sql), returnsResultSet);
+        returnsResultSetMapCompiled.put(compilePreparedSQL(sql), returnsResultSet);
     }
     
     /**
@@ -901,9 +1392,9 @@ public abstract class AbstractResultSetHandler
     
     protected void prepareThrowsSQLException(String sql, SQLException exc, MockParameterMap parameters)
     {
-        List<ParameterWrapper<SQLException>> list = getListFromMapForSQLStatement(sql, throwsSQLException);
+        List<ParameterWrapper<SQLException>> list = getParameterWrapperListFromMap(sql, throwsSQLException);
         list.add(new ParameterWrapper<SQLException>(exc, new MockParameterMap(parameters)));
-        throwsSQLExceptionCompiled.put(patternMatcherFactory.create(sql), list);
+        throwsSQLExceptionCompiled.put(compilePreparedSQL(sql), list);
     }    
     /**
      * Returns if specified SQL strings should be handled case sensitive.
@@ -932,6 +1423,15 @@ public abstract class AbstractResultSetHandler
         return useRegularExpressions;
     }
 
+    /**
+     * Returns if SQL strings are normalized before they are matched.
+     * @return if SQL strings are normalized
+     */
+    protected boolean getNormalizeSQL()
+    {
+        return normalizeSQL;
+    }
+
     /**
      * Returns if batch processing should be continued if one of 
      * the commands in the batch fails.
@@ -948,7 +1448,7 @@ public abstract class AbstractResultSetHandler
      */
     public void removeAllResultSet(String sql) {
     	  resultSetsForStatement.remove(sql);
-        resultSetsForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        removeCompiled(resultSetsForStatement, resultSetsForStatementCompiled, sql);
     }
 
     /**
@@ -957,7 +1457,7 @@ public abstract class AbstractResultSetHandler
      */
     public void removeAllThrowsSqlException(String sql) {
     	  throwsSQLException.remove(sql);
-        throwsSQLExceptionCompiled.remove(patternMatcherFactory.create(sql));
+        removeCompiled(throwsSQLException, throwsSQLExceptionCompiled, sql);
     }
 
 
@@ -967,7 +1467,7 @@ public abstract class AbstractResultSetHandler
      */
     public void removeAllUpdateCount(String sql) {
     	  updateCountForStatement.remove(sql);
-        updateCountForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        removeCompiled(updateCountForStatement, updateCountForStatementCompiled, sql);
     }
 
 
@@ -977,7 +1477,7 @@ public abstract class AbstractResultSetHandler
      */
     public void removeAllGeneratedKeys(String sql) {
         generatedKeysForStatement.remove(sql);
-        generatedKeysForStatementCompiled.remove(patternMatcherFactory.create(sql));
+        removeCompiled(generatedKeysForStatement, generatedKeysForStatementCompiled, sql);
     }
 
     /**
@@ -990,7 +1490,6 @@ public abstract class AbstractResultSetHandler
 
     protected void removeResultSet(String sql, MockParameterMap parameters, boolean exactMatchParameter) {
         removeMatchingParameterWrapper(sql, parameters, resultSetsForStatement, exactMatchParameter);
-        removeMatchingParameterWrapper(patternMatcherFactory.create(sql), parameters, resultSetsForStatementCompiled, exactMatchParameter);
     }
 
     /**
@@ -1033,6 +1532,11 @@ public abstract class AbstractResultSetHandler
     protected <T> List<T> getMatchingObjects(Map<PatternMatcher, ? extends T> dataMap, String query)
     {
         if(null == query) query = "";
+        query = normalizeSQL(query);
+        if(dataMap instanceof PatternMatcherIndex)
+        {
+            return new ArrayList<T>(((PatternMatcherIndex<? extends T>)dataMap).getMatchingValues(query));
+        }
         List<T> resultList = new ArrayList<T>();
 
         for(Map.Entry<PatternMatcher, ? extends T> entry : dataMap.entrySet()){
@@ -1050,6 +1554,12 @@ public abstract class AbstractResultSetHandler
         List<List<ParameterWrapper<T>>> list = getMatchingObjects(statementMap, sql);
         for(List<ParameterWrapper<T>> wrapperList : list)
         {
+            if(wrapperList instanceof ParameterWrapperList)
+            {
+                ParameterWrapper<T> wrapper = ((ParameterWrapperList<T>)wrapperList).getMatchingWrapper(parameters, exactMatchParameter);
+                if(null != wrapper) return wrapper;
+                continue;
+            }
             for(ParameterWrapper<T> wrapper : wrapperList)
             {
                 if(wrapper.getParameters().doParameterMatch(parameters, exactMatchParameter))
@@ -1064,6 +1574,12 @@ public abstract class AbstractResultSetHandler
     protected <S, T> ParameterWrapper<T> removeMatchingParameterWrapper(S sql, MockParameterMap parameters, Map<S, List<ParameterWrapper<T>>> map, boolean exactMatchParameter)
     {
         List<ParameterWrapper<T>> list = map.get(sql);
+        if(list instanceof ParameterWrapperList)
+        {
+            ParameterWrapper<T> wrapper = ((ParameterWrapperList<T>)list).getMatchingWrapper(parameters, exactMatchParameter);
+            if(null != wrapper) list.remove(wrapper);
+            return wrapper;
+        }
         for(ParameterWrapper<T> wrapper : list)
         {
             if(wrapper.getParameters().doParameterMatch(parameters, exactMatchParameter))
@@ -1075,23 +1591,116 @@ public abstract class AbstractResultSetHandler
         return null;
     }
     
+    /**
+     * Returns the list of {@link ParameterWrapper} objects for the
+     * specified SQL string and creates it, if it does not exist. The
+     * list is indexed by the parameter values, so
+     * {@link #getMatchingParameterWrapper} does not have to compare the
+     * parameters of all wrappers.
+     * @param sql the SQL string
+     * @param map the map of the lists
+     * @return the list of wrappers
+     */
+    protected <S, T> List<ParameterWrapper<T>> getParameterWrapperListFromMap(S sql, Map<S, List<ParameterWrapper<T>>> map)
+    {
+        List<ParameterWrapper<T>> list = map.get(sql);
+        if(null == list)
+        {
+            list = new ParameterWrapperList<T>();
+            List<ParameterWrapper<T>> existingList = map.putIfAbsent(sql, list);
+            if(null != existingList) return existingList;
+        }
+        return list;
+    }
+
     protected <S, T> List<T> getListFromMapForSQLStatement(S sql, Map<S, List<T>> map)
     {
         List<T> list = map.get(sql);
         if(null == list)
         {
-            list = new ArrayList<T>();
-            map.put(sql, list);
+            list = new CopyOnWriteArrayList<T>();
+            List<T> existingList = map.putIfAbsent(sql, list);
+            if(null != existingList) return existingList;
         }
         return list;
     }
 
 
+    /**
+     * Records that the specified SQL string was prepared and returns
+     * its <code>PatternMatcher</code>. If SQL strings are normalized,
+     * different SQL strings may have the same <code>PatternMatcher</code>.
+     * In this case, the SQL string that was prepared last wins, also when
+     * the <code>PatternMatcher</code> objects are compiled again.
+     * @param sql the SQL string
+     * @return the <code>PatternMatcher</code>
+     */
+    protected PatternMatcher compilePreparedSQL(String sql) {
+        preparedOrder.put(sql, preparedSequence.incrementAndGet());
+        return createPatternMatcher(sql);
+    }
+
     protected <T> void recompile(Map<String, T> source, Map<PatternMatcher, T> compiled) {
         compiled.clear();
+        Map<PatternMatcher, String> compiledSQL = new HashMap<PatternMatcher, String>();
         for (Map.Entry<String, T> entry : source.entrySet()) {
-            PatternMatcher patternMatcher = getPatternMatcherFactory().create(entry.getKey());
+            PatternMatcher patternMatcher = createPatternMatcher(entry.getKey());
+            if (!isPreparedLater(entry.getKey(), compiledSQL.get(patternMatcher))) continue;
+            compiledSQL.put(patternMatcher, entry.getKey());
             compiled.put(patternMatcher, entry.getValue());
         }
     }
+
+    /**
+     * Removes the compiled entry of the specified SQL string. If other
+     * SQL strings have the same normalized form, the one prepared last
+     * replaces the removed entry.
+     * @param source the map of the prepared SQL strings
+     * @param compiled the map of the compiled SQL strings
+     * @param sql the removed SQL string
+     */
+    protected <T> void removeCompiled(Map<String, T> source, Map<PatternMatcher, T> compiled, String sql) {
+        PatternMatcher patternMatcher = createPatternMatcher(sql);
+        compiled.remove(patternMatcher);
+        if (!isNormalizingSQL()) return;
+        String latestSQL = null;
+        for (String nextSQL : source.keySet()) {
+            if (patternMatcher.equals(createPatternMatcher(nextSQL)) && isPreparedLater(nextSQL, latestSQL)) {
+                latestSQL = nextSQL;
+            }
+        }
+        if (null != latestSQL) compiled.put(patternMatcher, source.get(latestSQL));
+    }
+
+    private boolean isPreparedLater(String sql, String otherSQL) {
+        if (null == otherSQL) return true;
+        Long order = preparedOrder.get(sql);
+        Long otherOrder = preparedOrder.get(otherSQL);
+        if (null == otherOrder) return true;
+        return null != order && order > otherOrder;
+    }
+    
+    private static class BatchFailure
+    {
+        private final int[] positions;
+        private final SQLException exception;
+        
+        public BatchFailure(int[] positions, SQLException exception)
+        {
+            this.positions = positions.clone();
+            Arrays.sort(this.positions);
+            this.exception = exception;
+        }
+        
+        public boolean fails(int position)
+        {
+            return Arrays.binarySearch(positions, position) >= 0;
+        }
+        
+        public SQLException getException(String sql, int position)
+        {
+            if(null != exception) return exception;
+            return new SQLException("Command " + position + " of the batch failed: " + sql);
+        }
+    }
 }
@@ -191,6 +191,14 @@ public abstract class BasicJDBCTestCaseAdapter
         jdbcTestModule.setUseRegularExpressions(useRegularExpressions);
     }
 
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#setNormalizeSQL(boolean)}
+     */
+    protected void setNormalizeSQL(boolean normalizeSQL)
+    {
+        jdbcTestModule.setNormalizeSQL(normalizeSQL);
+    }
+
     /**
      * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#getStatementResultSetHandler}
      */
@@ -465,6 +473,30 @@ public abstract class BasicJDBCTestCaseAdapter
         jdbcTestModule.verifySQLStatementNotExecuted(sql);
     }
 
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#getQueryPatterns(int)}
+     */
+    protected List<QueryPatternAnalyzer.QueryPattern> getQueryPatterns(int threshold)
+    {
+        return jdbcTestModule.getQueryPatterns(threshold);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyNoNPlusOne(int)}
+     */
+    protected void verifyNoNPlusOne(int threshold)
+    {
+        jdbcTestModule.verifyNoNPlusOne(threshold);
+    }
+
+    /**
+     * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifyNoChattyAccess(int)}
+     */
+    protected void verifyNoChattyAccess(int threshold)
+    {
+        jdbcTestModule.verifyNoChattyAccess(threshold);
+    }
+
     /**
      * Delegates to {@link com.mockrunner.jdbc.JDBCTestModule#verifySQLStatementParameterNumber(String, int, int)}
      */
@@ -1,10 +1,9 @@
 package com.mockrunner.jdbc;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.mockrunner.mock.jdbc.MockCallableStatement;
 
@@ -13,13 +12,13 @@ import com.mockrunner.mock.jdbc.MockCallableStatement;
  */
 public class CallableStatementResultSetHandler extends AbstractOutParameterResultSetHandler
 {
-    private final List<MockCallableStatement> callableStatements;
+    private final Journal<MockCallableStatement> callableStatements;
     private final Map<String, List<MockCallableStatement>> callableStatementMap;
 
     public CallableStatementResultSetHandler()
     {
-        callableStatements = new ArrayList<MockCallableStatement>();
-        callableStatementMap = new TreeMap<String, List<MockCallableStatement>>();
+        callableStatements = new Journal<MockCallableStatement>();
+        callableStatementMap = new ConcurrentSkipListMap<String, List<MockCallableStatement>>();
     }
 
     /**
@@ -33,13 +32,25 @@ public class CallableStatementResultSetHandler extends AbstractOutParameterResul
         List<MockCallableStatement> list = callableStatementMap.get(statement.getSQL());
         if(null == list)
         {
-            list = new ArrayList<MockCallableStatement>();
-            callableStatementMap.put(statement.getSQL(), list);
+            list = new Journal<MockCallableStatement>(null, getJournalPolicy());
+            List<MockCallableStatement> existingList = callableStatementMap.putIfAbsent(statement.getSQL(), list);
+            if(null != existingList) list = existingList;
         }
         list.add(statement);
         callableStatements.add(statement);
     }
 
+    @Override
+    public void setJournalPolicy(JournalPolicy journalPolicy)
+    {
+        super.setJournalPolicy(journalPolicy);
+        callableStatements.setPolicy(journalPolicy);
+        for(List<MockCallableStatement> list : callableStatementMap.values())
+        {
+            ((Journal<MockCallableStatement>)list).setPolicy(journalPolicy);
+        }
+    }
+    
     /**
      * Returns a <code>List</code> of all callable statements.
      * @return the <code>List</code> of {@link MockCallableStatement} objects
@@ -1,12 +1,20 @@
 package com.mockrunner.jdbc;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingResultSet;
 import com.mockrunner.util.common.FileUtil;
 import com.mockrunner.util.common.StringUtil;
 
@@ -22,7 +30,8 @@ import com.mockrunner.util.common.StringUtil;
  * tries to find the file in the absolut or relative path and
  * (if not found) by calling <code>getResource</code>. Note that the
  * file must exist in the local file system and cannot be loaded from
- * inside a jar archive.
+ * inside a jar archive. Huge files can be read lazily,
+ * see {@link #setStreaming}.
  */
 public class FileResultSetFactory implements ResultSetFactory
 {
@@ -33,6 +42,8 @@ public class FileResultSetFactory implements ResultSetFactory
     private boolean useTemplates = false;
     private String templateMarker = null;
     private Map<String, String> templates = null;
+    private boolean streaming = false;
+    private ResultSetFactoryCache cache = null;
 
     public FileResultSetFactory(String fileName)
     {
@@ -149,10 +160,81 @@ public class FileResultSetFactory implements ResultSetFactory
         setTemplateConfiguration("$", defaultTemplates);
     }
 
+    /**
+     * Set if the file should be read lazily while the cursor of the
+     * <code>ResultSet</code> is moved. If this is <code>true</code>,
+     * {@link #create} returns a {@link StreamingResultSet} that reads
+     * the file with a buffered reader and keeps only the current window
+     * of rows in memory, if the <code>ResultSet</code> is
+     * <code>TYPE_FORWARD_ONLY</code>. Use this for huge files.
+     * The number of columns is determined by the first line.
+     * Default is <code>false</code>, i.e. the file is read completely
+     * when the <code>ResultSet</code> is created.
+     * @param streaming should the file be read lazily
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Returns if the file is read lazily. See {@link #setStreaming}.
+     * @return <code>true</code> if the file is read lazily
+     */
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+
+    /**
+     * Sets the cache for the parsed files. If a cache is set,
+     * the file is read only once, as long as it's not modified.
+     * {@link #create} returns copies of the cached <code>ResultSet</code>.
+     * Use {@link ResultSetFactoryCache#getSharedCache} to share the parsed
+     * files with all factories. The cache is not used in streaming mode.
+     * Default is <code>null</code>, i.e. the file is read for
+     * every <code>ResultSet</code>.
+     * @param cache the cache, <code>null</code> disables caching
+     */
+    public void setCache(ResultSetFactoryCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache for the parsed files. See {@link #setCache}.
+     * @return the cache or <code>null</code>, if caching is disabled
+     */
+    public ResultSetFactoryCache getCache()
+    {
+        return cache;
+    }
+
     public MockResultSet create(String id)
+    {
+        final File fileToRead = getFile();
+        final LineParser parser = new LineParser(delimiter, trim, useTemplates ? templateMarker : null, templates);
+        if(streaming)
+        {
+            return createStreamingResultSet(id, fileToRead, parser);
+        }
+        if(null != cache)
+        {
+            List<Object> settings = Arrays.<Object>asList(getClass().getName(), delimiter, firstLineContainsColumnNames, trim, parser.templateMarker, parser.templates);
+            return cache.getResultSet(fileToRead, settings, id, new ResultSetFactory()
+            {
+                public MockResultSet create(String id)
+                {
+                    return createResultSet(id, fileToRead, parser);
+                }
+            });
+        }
+        return createResultSet(id, fileToRead, parser);
+    }
+
+    private MockResultSet createResultSet(String id, File fileToRead, LineParser parser)
     {
         MockResultSet resultSet = new MockResultSet(id);
-        File fileToRead = getFile();
         List<String> lines = FileUtil.getLinesFromFile(fileToRead);
 
         if(lines.isEmpty())
@@ -174,9 +256,73 @@ public class FileResultSetFactory implements ResultSetFactory
         // subsequent loops read the values
         for(int ii = firstLineNumber; ii < lines.size(); ii++)
         {
-            String line = lines.get(ii);
+            resultSet.addRow(parser.parse(lines.get(ii)));
+        }
+        return resultSet;
+    }
+
+    private MockResultSet createStreamingResultSet(String id, File fileToRead, LineParser parser)
+    {
+        List<String> columnNames = new ArrayList<String>();
+        String firstLine = readFirstLine(fileToRead);
+        if(null != firstLine)
+        {
+            String[] values = StringUtil.split(firstLine, delimiter, trim);
+            for(int ii = 0; ii < values.length; ii++)
+            {
+                columnNames.add(firstLineContainsColumnNames ? values[ii] : "Column" + (ii + 1));
+            }
+        }
+        return new StreamingResultSet(id, columnNames, new FileRowSource(fileToRead, firstLineContainsColumnNames, parser));
+    }
+
+    private String readFirstLine(File fileToRead)
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new FileReader(fileToRead));
+            return reader.readLine();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            if(null != reader)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch(IOException ignored)
+                {
+
+                }
+            }
+        }
+    }
+
+    private static class LineParser
+    {
+        private final String delimiter;
+        private final boolean trim;
+        private final String templateMarker;
+        private final Map<String, String> templates;
+
+        public LineParser(String delimiter, boolean trim, String templateMarker, Map<String, String> templates)
+        {
+            this.delimiter = delimiter;
+            this.trim = trim;
+            this.templateMarker = templateMarker;
+            this.templates = (null == templateMarker) ? null : new HashMap<String, String>(templates);
+        }
+
+        public String[] parse(String line)
+        {
             String[] values = StringUtil.split(line, delimiter, trim);
-            if(useTemplates)
+            if(null != templateMarker)
             {
             	for(int yy = 0; yy < values.length; yy++)
             	{
@@ -189,8 +335,76 @@ public class FileResultSetFactory implements ResultSetFactory
             		}
             	}
             }
-            resultSet.addRow(values);
+            return values;
+        }
+    }
+
+    private static class FileRowSource implements StreamingResultSet.RowSource
+    {
+        private final File file;
+        private final boolean skipFirstLine;
+        private final LineParser parser;
+
+        public FileRowSource(File file, boolean skipFirstLine, LineParser parser)
+        {
+            this.file = file;
+            this.skipFirstLine = skipFirstLine;
+            this.parser = parser;
+        }
+
+        public StreamingResultSet.RowReader open() throws SQLException
+        {
+            try
+            {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                if(skipFirstLine)
+                {
+                    reader.readLine();
+                }
+                return new FileRowReader(reader, parser);
+            }
+            catch(IOException exc)
+            {
+                throw new SQLException("Could not read " + file.getPath(), exc);
+            }
+        }
+    }
+
+    private static class FileRowReader implements StreamingResultSet.RowReader
+    {
+        private final BufferedReader reader;
+        private final LineParser parser;
+
+        public FileRowReader(BufferedReader reader, LineParser parser)
+        {
+            this.reader = reader;
+            this.parser = parser;
+        }
+
+        public List<Object> readRow() throws SQLException
+        {
+            try
+            {
+                String line = reader.readLine();
+                if(null == line) return null;
+                return Arrays.asList((Object[])parser.parse(line));
+            }
+            catch(IOException exc)
+            {
+                throw new SQLException(exc);
+            }
+        }
+
+        public void close() throws SQLException
+        {
+            try
+            {
+                reader.close();
+            }
+            catch(IOException exc)
+            {
+                throw new SQLException(exc);
+            }
         }
-        return resultSet;
     }
 }
@@ -5,8 +5,11 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import com.mockrunner.base.NestedApplicationException;
@@ -32,12 +35,18 @@ public class JDBCTestModule
     private boolean caseSensitive = false;
     private boolean exactMatch = false;
     private boolean useRegularExpressions = false;
+    private boolean normalizeSQL = false;
       
     public JDBCTestModule(JDBCMockObjectFactory mockFactory)
     {
         this.mockFactory = mockFactory;
     }
     
+    private SQLStatementMatcher createSQLStatementMatcher()
+    {
+        return new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions, normalizeSQL, mockFactory.getPatternMatcherCache());
+    }
+    
     /**
      * Set if specified SQL statements should be handled case sensitive.
      * Defaults to to <code>false</code>, i.e. <i>INSERT</i> is the same
@@ -98,6 +107,28 @@ public class JDBCTestModule
         this.useRegularExpressions = useRegularExpressions;
     }
     
+    /**
+     * Set if SQL statements should be normalized before they are matched.
+     * Irrelevant if regular expressions are used. Default is <code>false</code>.
+     * If this attribute is <code>true</code>, the specified and the executed
+     * SQL statements are compared in the normalized form of {@link SQLFingerprint},
+     * i.e. whitespace, comments, the case of unquoted words, literal values
+     * and the length of <code>IN</code> lists are ignored. With exact matching,
+     * <code>verifySQLStatementExecuted("select * from mytable where id = ?")</code>
+     * passes if the tested application executed
+     * <i>SELECT * FROM mytable WHERE id = 5</i>.
+     * Please note that this method controls SQL statement
+     * matching for the methods of this class.
+     * In contrast to {@link AbstractResultSetHandler#setNormalizeSQL(boolean)} it does 
+     * not control the prepared results that are returned when the tested application
+     * executes a matching statement.
+     * @param normalizeSQL should SQL statements be normalized
+     */
+    public void setNormalizeSQL(boolean normalizeSQL)
+    {
+        this.normalizeSQL = normalizeSQL;
+    }
+    
     /**
      * Returns the {@link StatementResultSetHandler}. 
      * The {@link StatementResultSetHandler}
@@ -214,7 +245,7 @@ public class JDBCTestModule
     public ParameterSets getExecutedSQLStatementParameterSets(String sql)
     {
         Map<String, ParameterSets> map = getExecutedSQLStatementParameterMap();
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        SQLStatementMatcher matcher = createSQLStatementMatcher();
         List<ParameterSets> list = matcher.getMatchingObjects(map, sql, false);
         if(list != null && list.size() > 0)
         {
@@ -351,7 +382,7 @@ public class JDBCTestModule
     public List<MockPreparedStatement> getPreparedStatements(String sql)
     {
         Map<String, List<MockPreparedStatement>> sqlStatements = mockFactory.getMockConnection().getPreparedStatementResultSetHandler().getPreparedStatementMap();
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        SQLStatementMatcher matcher = createSQLStatementMatcher();
         return matcher.getMatchingObjectsFromCollections(sqlStatements, sql, false); 
     }
     
@@ -410,7 +441,7 @@ public class JDBCTestModule
     public List<MockCallableStatement> getCallableStatements(String sql)
     {
         Map<String, List<MockCallableStatement>> sqlStatements = mockFactory.getMockConnection().getCallableStatementResultSetHandler().getCallableStatementMap();
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        SQLStatementMatcher matcher = createSQLStatementMatcher();
         return matcher.getMatchingObjectsFromCollections(sqlStatements, sql, false); 
     }
     
@@ -581,6 +612,101 @@ public class JDBCTestModule
         return null;
     }
     
+    /**
+     * Returns the N+1 and chatty query patterns found by a
+     * {@link QueryPatternAnalyzer} in the executed SQL statements
+     * of all statement types. The call sites are included, if they are recorded,
+     * see {@link AbstractResultSetHandler#setRecordCallSites}.
+     * @param threshold the maximum number of executions of one query
+     * @return the <code>List</code> of {@link QueryPatternAnalyzer.QueryPattern} objects
+     */
+    public List<QueryPatternAnalyzer.QueryPattern> getQueryPatterns(int threshold)
+    {
+        return getQueryPatterns(threshold, 0);
+    }
+    
+    /**
+     * Returns the N+1 and chatty query patterns found in the executed statements
+     * of all statement types, counting only the executions within a window
+     * of <i>windowSize</i> consecutive statements, see
+     * {@link QueryPatternAnalyzer#setWindowSize}. The statements of all
+     * types are analyzed in the order of execution.
+     * @param threshold the maximum number of executions of one query
+     * @param windowSize the number of consecutive statements, <code>0</code>
+     *        for the whole journal
+     * @return the <code>List</code> of {@link QueryPatternAnalyzer.QueryPattern} objects
+     */
+    public List<QueryPatternAnalyzer.QueryPattern> getQueryPatterns(int threshold, int windowSize)
+    {
+        Map<String, Set<String>> callSiteMap = new HashMap<String, Set<String>>();
+        callSiteMap.putAll(getStatementResultSetHandler().getCallSiteMap());
+        addCallSites(callSiteMap, getPreparedStatementResultSetHandler().getCallSiteMap());
+        addCallSites(callSiteMap, getCallableStatementResultSetHandler().getCallSiteMap());
+        List<String> executedStatements = Journal.merge(getStatementResultSetHandler().getExecutedStatementJournal(),
+                                                        getPreparedStatementResultSetHandler().getExecutedStatementJournal(),
+                                                        getCallableStatementResultSetHandler().getExecutedStatementJournal());
+        QueryPatternAnalyzer analyzer = new QueryPatternAnalyzer(threshold);
+        analyzer.setWindowSize(windowSize);
+        return analyzer.analyze(executedStatements, getExecutedSQLStatementParameterMap(), callSiteMap);
+    }
+    
+    private void addCallSites(Map<String, Set<String>> callSiteMap, Map<String, Set<String>> handlerCallSiteMap)
+    {
+        for(Map.Entry<String, Set<String>> nextEntry : handlerCallSiteMap.entrySet())
+        {
+            Set<String> callSites = callSiteMap.get(nextEntry.getKey());
+            if(null == callSites)
+            {
+                callSiteMap.put(nextEntry.getKey(), nextEntry.getValue());
+            }
+            else
+            {
+                Set<String> mergedCallSites = new LinkedHashSet<String>(callSites);
+                mergedCallSites.addAll(nextEntry.getValue());
+                callSiteMap.put(nextEntry.getKey(), mergedCallSites);
+            }
+        }
+    }
+    
+    /**
+     * Verifies that no query is executed more than <i>threshold</i> times
+     * with different parameters, which usually indicates an N+1 query
+     * problem, i.e. a query executed for each row of a previous query.
+     * See {@link QueryPatternAnalyzer}.
+     * @param threshold the maximum number of executions of one query
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyNoNPlusOne(int threshold)
+    {
+        verifyNoQueryPattern(threshold, QueryPatternAnalyzer.QueryPattern.N_PLUS_ONE);
+    }
+    
+    /**
+     * Verifies that no query is executed more than <i>threshold</i> times
+     * with the same parameters, which usually indicates a missing cache.
+     * See {@link QueryPatternAnalyzer}.
+     * @param threshold the maximum number of executions of one query
+     * @throws VerifyFailedException if verification fails
+     */
+    public void verifyNoChattyAccess(int threshold)
+    {
+        verifyNoQueryPattern(threshold, QueryPatternAnalyzer.QueryPattern.CHATTY);
+    }
+    
+    private void verifyNoQueryPattern(int threshold, int type)
+    {
+        StringBuilder message = new StringBuilder();
+        for(QueryPatternAnalyzer.QueryPattern nextPattern : getQueryPatterns(threshold))
+        {
+            if(nextPattern.getType() != type) continue;
+            message.append(0 == message.length() ? "" : "\n").append(nextPattern);
+        }
+        if(message.length() > 0)
+        {
+            throw new VerifyFailedException(message.toString());
+        }
+    }
+    
     /**
      * Verifies that an SQL statement was executed.
      * @param sql the expected SQL string
@@ -588,7 +714,7 @@ public class JDBCTestModule
      */
     public void verifySQLStatementExecuted(String sql)
     {
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        SQLStatementMatcher matcher = createSQLStatementMatcher();
         if(!matcher.contains(getExecutedSQLStatements(), sql, false))
         {
             throw new VerifyFailedException("Statement " + sql + " not executed.");
@@ -602,7 +728,7 @@ public class JDBCTestModule
      */
     public void verifySQLStatementNotExecuted(String sql)
     {
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        SQLStatementMatcher matcher = createSQLStatementMatcher();
         if(matcher.contains(getExecutedSQLStatements(), sql, false))
         {
             throw new VerifyFailedException("Statement " + sql + " was executed.");
@@ -727,7 +853,7 @@ public class JDBCTestModule
     private MockParameterMap verifyAndGetParametersForSQL(String sql, int indexOfParameterSet)
     {
         verifySQLStatementExecuted(sql);
-        SQLStatementMatcher matcher = new SQLStatementMatcher(caseSensitive, exactMatch, useRegularExpressions);
+        SQLStatementMatcher matcher = createSQLStatementMatcher();
         List<ParameterSets> matchingParameterList = matcher.getMatchingObjects(getExecutedSQLStatementParameterMap(), sql, false);
         if(null == matchingParameterList || matchingParameterList.isEmpty())
         {
@@ -0,0 +1,335 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>List</code> of the entries a result set handler collects,
+ * e.g. the executed SQL strings. The {@link JournalPolicy} defines how many
+ * entries are kept. If the journal is full, the oldest entry is removed.
+ * The journal counts all entries that were added, including the
+ * removed ones, see {@link #getTotalCount}.
+ * <br>
+ * If the journal has a name and the policy spills to a file, each entry
+ * is written to the file using {@link #format}. Journals without
+ * a name are never written to a file.
+ * <br>
+ * Entries can only be added with {@link #add(Object)}.
+ * <br>
+ * Every entry gets a sequence number that is unique across all journals,
+ * so the entries of several journals can be merged in the order they
+ * were added, see {@link #merge}.
+ * <br>
+ * A journal is thread safe. Iterators work on a snapshot of the entries,
+ * so it can be iterated while other threads add entries.
+ */
+public class Journal<T> extends AbstractList<T> implements RandomAccess
+{
+    private final static AtomicLong sequence = new AtomicLong();
+
+    private final String name;
+    private JournalPolicy policy;
+    private Object[] elements;
+    private long[] sequenceNumbers;
+    private int head;
+    private int size;
+    private long totalCount;
+
+    /**
+     * Creates an unbounded journal that is never
+     * written to a file.
+     */
+    public Journal()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates an unbounded journal with the specified name.
+     * @param name the name that is used when entries are written to a file
+     */
+    public Journal(String name)
+    {
+        this(name, JournalPolicy.unbounded());
+    }
+
+    /**
+     * Creates a journal with the specified name and policy.
+     * @param name the name that is used when entries are written to a file
+     * @param policy the policy
+     */
+    public Journal(String name, JournalPolicy policy)
+    {
+        this.name = name;
+        this.policy = policy;
+        elements = new Object[Math.min(policy.getMaxSize(), 10)];
+        sequenceNumbers = new long[elements.length];
+        head = 0;
+        size = 0;
+        totalCount = 0;
+    }
+
+    /**
+     * Returns the name of this journal.
+     * @return the name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the policy of this journal.
+     * @return the policy
+     */
+    public synchronized JournalPolicy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * Sets the policy. If the new policy keeps less entries
+     * than this journal contains, the oldest entries are removed.
+     * @param policy the policy
+     */
+    public synchronized void setPolicy(JournalPolicy policy)
+    {
+        int newSize = Math.min(size, policy.getMaxSize());
+        Object[] newElements = new Object[Math.max(newSize, Math.min(policy.getMaxSize(), 10))];
+        long[] newSequenceNumbers = new long[newElements.length];
+        for(int ii = 0; ii < newSize; ii++)
+        {
+            newElements[ii] = elements[(head + size - newSize + ii) % elements.length];
+            newSequenceNumbers[ii] = sequenceNumbers[(head + size - newSize + ii) % elements.length];
+        }
+        this.policy = policy;
+        elements = newElements;
+        sequenceNumbers = newSequenceNumbers;
+        head = 0;
+        size = newSize;
+        modCount++;
+    }
+
+    /**
+     * Returns the number of entries that were added to this journal
+     * since it was created or cleared, including the entries that
+     * are not kept.
+     * @return the total number of entries
+     */
+    public synchronized long getTotalCount()
+    {
+        return totalCount;
+    }
+
+    @Override
+    public synchronized boolean add(T element)
+    {
+        totalCount++;
+        if(null != name && null != policy.getFile())
+        {
+            String entry = format(element);
+            if(null != entry)
+            {
+                policy.write(name, entry);
+            }
+        }
+        int maxSize = policy.getMaxSize();
+        if(maxSize == 0) return true;
+        if(size == maxSize)
+        {
+            elements[head] = element;
+            sequenceNumbers[head] = sequence.incrementAndGet();
+            head = (head + 1) % elements.length;
+        }
+        else
+        {
+            if(size == elements.length)
+            {
+                grow();
+            }
+            elements[(head + size) % elements.length] = element;
+            sequenceNumbers[(head + size) % elements.length] = sequence.incrementAndGet();
+            size++;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Adds all elements while holding the lock once.
+     * @param elements the elements
+     * @return <code>true</code> if elements were added
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends T> elements)
+    {
+        for(T nextElement : elements)
+        {
+            add(nextElement);
+        }
+        return !elements.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T)elements[(head + index) % elements.length];
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes all entries and resets the total count.
+     */
+    @Override
+    public synchronized void clear()
+    {
+        elements = new Object[Math.min(policy.getMaxSize(), 10)];
+        sequenceNumbers = new long[elements.length];
+        head = 0;
+        size = 0;
+        totalCount = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator()
+    {
+        return snapshot().listIterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index)
+    {
+        return snapshot().listIterator(index);
+    }
+
+    @Override
+    public synchronized Object[] toArray()
+    {
+        return snapshotArray();
+    }
+
+    /**
+     * Merges the kept entries of the specified journals into one
+     * <code>List</code>, in the order they were added, e.g. to get the
+     * SQL strings executed by all statement types in the order of execution.
+     * @param journals the journals
+     * @return the merged entries
+     */
+    @SafeVarargs
+    public static <T> List<T> merge(Journal<? extends T>... journals)
+    {
+        Object[][] entries = new Object[journals.length][];
+        long[][] entrySequenceNumbers = new long[journals.length][];
+        int totalSize = 0;
+        for(int ii = 0; ii < journals.length; ii++)
+        {
+            synchronized(journals[ii])
+            {
+                entries[ii] = journals[ii].snapshotArray();
+                entrySequenceNumbers[ii] = journals[ii].snapshotSequenceNumbers();
+            }
+            totalSize += entries[ii].length;
+        }
+        int[] next = new int[journals.length];
+        List<T> merged = new ArrayList<T>(totalSize);
+        while(merged.size() < totalSize)
+        {
+            int oldest = -1;
+            for(int ii = 0; ii < journals.length; ii++)
+            {
+                if(next[ii] >= entries[ii].length) continue;
+                if(oldest < 0 || entrySequenceNumbers[ii][next[ii]] < entrySequenceNumbers[oldest][next[oldest]])
+                {
+                    oldest = ii;
+                }
+            }
+            @SuppressWarnings("unchecked")
+            T entry = (T)entries[oldest][next[oldest]++];
+            merged.add(entry);
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the text that is written to the file for the specified
+     * entry. Returns <code>String.valueOf(element)</code> by default.
+     * Subclasses may return <code>null</code>, if the entry
+     * should not be written.
+     * @param element the entry
+     * @return the text
+     */
+    protected String format(T element)
+    {
+        return String.valueOf(element);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> snapshot()
+    {
+        Object[] copy;
+        synchronized(this)
+        {
+            copy = snapshotArray();
+        }
+        return (List<T>)Arrays.asList(copy);
+    }
+
+    private Object[] snapshotArray()
+    {
+        Object[] copy = new Object[size];
+        for(int ii = 0; ii < size; ii++)
+        {
+            copy[ii] = elements[(head + ii) % elements.length];
+        }
+        return copy;
+    }
+
+    private long[] snapshotSequenceNumbers()
+    {
+        long[] copy = new long[size];
+        for(int ii = 0; ii < size; ii++)
+        {
+            copy[ii] = sequenceNumbers[(head + ii) % elements.length];
+        }
+        return copy;
+    }
+
+    private void grow()
+    {
+        int newCapacity = (int)Math.min((long)policy.getMaxSize(), Math.max(10L, (long)elements.length * 2));
+        Object[] newElements = new Object[newCapacity];
+        long[] newSequenceNumbers = new long[newCapacity];
+        for(int ii = 0; ii < size; ii++)
+        {
+            newElements[ii] = elements[(head + ii) % elements.length];
+            newSequenceNumbers[ii] = sequenceNumbers[(head + ii) % elements.length];
+        }
+        elements = newElements;
+        sequenceNumbers = newSequenceNumbers;
+        head = 0;
+    }
+}
@@ -0,0 +1,202 @@
+package com.mockrunner.jdbc;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.mockrunner.base.NestedApplicationException;
+
+/**
+ * Defines how many executed statements, returned <code>ResultSet</code>
+ * objects, created statements and parameter sets the result set handlers
+ * keep in memory. See {@link Journal}. The following policies are
+ * supported:
+ * <ul>
+ * <li>{@link #unbounded}: everything is kept (the default)</li>
+ * <li>{@link #ringBuffer}: only the last <i>n</i> entries are kept</li>
+ * <li>{@link #countersOnly}: no entries are kept, only the number of entries is counted</li>
+ * <li>{@link #spillToFile}: every entry is appended as a line of text to a file,
+ *     the last <i>n</i> entries are kept in memory</li>
+ * </ul>
+ * The verify methods of {@link JDBCTestModule} only see the entries
+ * that are kept in memory.
+ * <br>
+ * The file of a spilling policy is opened when the first entry is
+ * written and stays open until {@link #close} is called. Each line
+ * starts with the name of the journal, followed by a tab and the entry.
+ * A policy may be shared by multiple handlers.
+ */
+public class JournalPolicy
+{
+    public final static int UNBOUNDED = 0;
+    public final static int RING_BUFFER = 1;
+    public final static int COUNTERS_ONLY = 2;
+    public final static int SPILL_TO_FILE = 3;
+
+    private final static JournalPolicy UNBOUNDED_POLICY = new JournalPolicy(UNBOUNDED, Integer.MAX_VALUE, null);
+    private final static JournalPolicy COUNTERS_ONLY_POLICY = new JournalPolicy(COUNTERS_ONLY, 0, null);
+
+    private final int mode;
+    private final int maxSize;
+    private final File file;
+    private Writer writer;
+
+    private JournalPolicy(int mode, int maxSize, File file)
+    {
+        this.mode = mode;
+        this.maxSize = maxSize;
+        this.file = file;
+    }
+
+    /**
+     * Returns a policy that keeps all entries.
+     * @return the policy
+     */
+    public static JournalPolicy unbounded()
+    {
+        return UNBOUNDED_POLICY;
+    }
+
+    /**
+     * Returns a policy that keeps the specified number of
+     * most recent entries.
+     * @param maxSize the maximum number of entries
+     * @return the policy
+     */
+    public static JournalPolicy ringBuffer(int maxSize)
+    {
+        if(maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        return new JournalPolicy(RING_BUFFER, maxSize, null);
+    }
+
+    /**
+     * Returns a policy that keeps no entries but
+     * counts them.
+     * @return the policy
+     */
+    public static JournalPolicy countersOnly()
+    {
+        return COUNTERS_ONLY_POLICY;
+    }
+
+    /**
+     * Returns a policy that appends all entries to the specified
+     * file and keeps the specified number of most recent entries
+     * in memory.
+     * @param file the file
+     * @param maxSize the maximum number of entries in memory, may be 0
+     * @return the policy
+     */
+    public static JournalPolicy spillToFile(File file, int maxSize)
+    {
+        if(null == file)
+        {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        if(maxSize < 0)
+        {
+            throw new IllegalArgumentException("maxSize must not be negative");
+        }
+        return new JournalPolicy(SPILL_TO_FILE, maxSize, file);
+    }
+
+    /**
+     * Returns the mode of this policy, one of {@link #UNBOUNDED},
+     * {@link #RING_BUFFER}, {@link #COUNTERS_ONLY} and {@link #SPILL_TO_FILE}.
+     * @return the mode
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the maximum number of entries kept in memory.
+     * @return the maximum number of entries
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the file of a spilling policy or <code>null</code>.
+     * @return the file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Appends an entry to the file. Does nothing, if
+     * this policy does not spill to a file.
+     * @param journalName the name of the journal
+     * @param entry the entry
+     */
+    public synchronized void write(String journalName, String entry)
+    {
+        if(null == file) return;
+        try
+        {
+            if(null == writer)
+            {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+            }
+            writer.write(journalName);
+            writer.write('\t');
+            writer.write(escape(entry));
+            writer.write('\n');
+            writer.flush();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    /**
+     * Closes the file of a spilling policy. It will be opened
+     * again, if another entry is written.
+     */
+    public synchronized void close()
+    {
+        if(null == writer) return;
+        try
+        {
+            writer.close();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            writer = null;
+        }
+    }
+
+    private String escape(String entry)
+    {
+        if(entry.indexOf('\n') < 0 && entry.indexOf('\r') < 0 && entry.indexOf('\\') < 0) return entry;
+        StringBuilder builder = new StringBuilder(entry.length() + 8);
+        for(int ii = 0; ii < entry.length(); ii++)
+        {
+            char nextChar = entry.charAt(ii);
+            switch(nextChar)
+            {
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\\': builder.append("\\\\"); break;
+                default: builder.append(nextChar); break;
+            }
+        }
+        return builder.toString();
+    }
+}
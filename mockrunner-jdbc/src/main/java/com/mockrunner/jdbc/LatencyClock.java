@@ -0,0 +1,152 @@
+package com.mockrunner.jdbc;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies the delays of a {@link LatencyModel}. A wall clock
+ * really sleeps. A virtual clock does not sleep, it just advances
+ * its time by the delay, so tests with a simulated latency run fast
+ * and deterministic. Both clocks sum up the delays, see
+ * {@link #getTotalDelay}.
+ * <br>
+ * The clock provides the random number generator for the
+ * latency models. Use a fixed seed for reproducible delays.
+ * <br>
+ * This class is thread safe.
+ */
+public class LatencyClock
+{
+    public final static int WALL_CLOCK = 0;
+    public final static int VIRTUAL = 1;
+
+    private final int mode;
+    private final Random random;
+    private final AtomicLong totalDelay = new AtomicLong();
+    private final AtomicLong numberDelays = new AtomicLong();
+
+    private LatencyClock(int mode, Random random)
+    {
+        this.mode = mode;
+        this.random = random;
+    }
+
+    /**
+     * Returns a clock that sleeps.
+     * @return the clock
+     */
+    public static LatencyClock wallClock()
+    {
+        return new LatencyClock(WALL_CLOCK, new Random());
+    }
+
+    /**
+     * Returns a clock that sleeps and uses the
+     * specified seed for the random delays.
+     * @param seed the seed
+     * @return the clock
+     */
+    public static LatencyClock wallClock(long seed)
+    {
+        return new LatencyClock(WALL_CLOCK, new Random(seed));
+    }
+
+    /**
+     * Returns a clock that does not sleep.
+     * @return the clock
+     */
+    public static LatencyClock virtual()
+    {
+        return new LatencyClock(VIRTUAL, new Random());
+    }
+
+    /**
+     * Returns a clock that does not sleep and uses the
+     * specified seed for the random delays.
+     * @param seed the seed
+     * @return the clock
+     */
+    public static LatencyClock virtual(long seed)
+    {
+        return new LatencyClock(VIRTUAL, new Random(seed));
+    }
+
+    /**
+     * Returns the mode of this clock, {@link #WALL_CLOCK} or {@link #VIRTUAL}.
+     * @return the mode
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the random number generator for the latency models.
+     * @return the random number generator
+     */
+    public Random getRandom()
+    {
+        return random;
+    }
+
+    /**
+     * Returns the next delay of the specified model.
+     * @param model the model
+     * @return the delay in nanoseconds
+     */
+    public long nextDelay(LatencyModel model)
+    {
+        return model.nextDelay(random);
+    }
+
+    /**
+     * Waits for the specified delay. A virtual clock returns
+     * immediately. If the thread is interrupted while sleeping,
+     * the method returns early and the interrupt flag is set.
+     * @param delay the delay in nanoseconds
+     */
+    public void sleep(long delay)
+    {
+        if(delay <= 0) return;
+        totalDelay.addAndGet(delay);
+        numberDelays.incrementAndGet();
+        if(mode == VIRTUAL) return;
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the sum of all delays. For a virtual clock,
+     * this is the current virtual time.
+     * @return the sum of all delays in nanoseconds
+     */
+    public long getTotalDelay()
+    {
+        return totalDelay.get();
+    }
+
+    /**
+     * Returns the number of delays.
+     * @return the number of delays
+     */
+    public long getNumberDelays()
+    {
+        return numberDelays.get();
+    }
+
+    /**
+     * Resets the sum and the number of delays.
+     */
+    public void reset()
+    {
+        totalDelay.set(0);
+        numberDelays.set(0);
+    }
+}
@@ -0,0 +1,219 @@
+package com.mockrunner.jdbc;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines the simulated latency of executing a statement or
+ * fetching a row. See {@link AbstractResultSetHandler#prepareLatency}.
+ * The following models are supported:
+ * <ul>
+ * <li>{@link #fixed}: always the same delay</li>
+ * <li>{@link #uniform}: uniformly distributed between a minimum and a maximum</li>
+ * <li>{@link #normal}: normally distributed, negative values are cut off at 0</li>
+ * <li>{@link #histogram}: drawn from recorded delays, e.g. taken from
+ *     the statistics of a real database</li>
+ * </ul>
+ * You can implement your own model by overriding {@link #nextDelay}.
+ * The delays are specified in milliseconds, {@link #nextDelay}
+ * returns nanoseconds.
+ */
+public abstract class LatencyModel
+{
+    /**
+     * Returns the next delay.
+     * @param random the random number generator of the {@link LatencyClock}
+     * @return the delay in nanoseconds
+     */
+    public abstract long nextDelay(Random random);
+
+    /**
+     * Returns a model with a fixed delay.
+     * @param delay the delay in milliseconds
+     * @return the model
+     */
+    public static LatencyModel fixed(long delay)
+    {
+        checkNotNegative(delay, "delay");
+        return new Fixed(toNanos(delay));
+    }
+
+    /**
+     * Returns a model with delays that are uniformly distributed
+     * between <code>minDelay</code> and <code>maxDelay</code>.
+     * @param minDelay the minimum delay in milliseconds
+     * @param maxDelay the maximum delay in milliseconds
+     * @return the model
+     */
+    public static LatencyModel uniform(long minDelay, long maxDelay)
+    {
+        checkNotNegative(minDelay, "minDelay");
+        if(maxDelay < minDelay)
+        {
+            throw new IllegalArgumentException("maxDelay must not be less than minDelay");
+        }
+        return new Uniform(toNanos(minDelay), toNanos(maxDelay));
+    }
+
+    /**
+     * Returns a model with normally distributed delays. Negative
+     * delays are returned as 0.
+     * @param meanDelay the mean delay in milliseconds
+     * @param standardDeviation the standard deviation in milliseconds
+     * @return the model
+     */
+    public static LatencyModel normal(double meanDelay, double standardDeviation)
+    {
+        if(standardDeviation < 0)
+        {
+            throw new IllegalArgumentException("standardDeviation must not be negative");
+        }
+        return new Normal(meanDelay * 1000000, standardDeviation * 1000000);
+    }
+
+    /**
+     * Returns a model that draws the delays from the specified
+     * recorded delays, each with the same probability.
+     * @param delays the recorded delays in milliseconds
+     * @return the model
+     */
+    public static LatencyModel histogram(long[] delays)
+    {
+        long[] counts = new long[delays.length];
+        Arrays.fill(counts, 1);
+        return histogram(delays, counts);
+    }
+
+    /**
+     * Returns a model that draws the delays from a histogram. The
+     * probability of <code>delays[i]</code> is <code>counts[i]</code>
+     * divided by the sum of all counts.
+     * @param delays the delays of the buckets in milliseconds
+     * @param counts the number of recorded delays of the buckets
+     * @return the model
+     */
+    public static LatencyModel histogram(long[] delays, long[] counts)
+    {
+        if(delays.length == 0 || delays.length != counts.length)
+        {
+            throw new IllegalArgumentException("delays and counts must have the same length greater than 0");
+        }
+        long[] nanos = new long[delays.length];
+        long[] cumulativeCounts = new long[counts.length];
+        long total = 0;
+        for(int ii = 0; ii < delays.length; ii++)
+        {
+            checkNotNegative(delays[ii], "delay");
+            checkNotNegative(counts[ii], "count");
+            nanos[ii] = toNanos(delays[ii]);
+            total += counts[ii];
+            cumulativeCounts[ii] = total;
+        }
+        if(total == 0)
+        {
+            throw new IllegalArgumentException("the sum of the counts must be greater than 0");
+        }
+        return new Histogram(nanos, cumulativeCounts);
+    }
+
+    private static long toNanos(long millis)
+    {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static void checkNotNegative(long value, String name)
+    {
+        if(value < 0)
+        {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
+    }
+
+    private static class Fixed extends LatencyModel
+    {
+        private final long delay;
+
+        public Fixed(long delay)
+        {
+            this.delay = delay;
+        }
+
+        @Override
+        public long nextDelay(Random random)
+        {
+            return delay;
+        }
+    }
+
+    private static class Uniform extends LatencyModel
+    {
+        private final long minDelay;
+        private final long range;
+
+        public Uniform(long minDelay, long maxDelay)
+        {
+            this.minDelay = minDelay;
+            this.range = maxDelay - minDelay;
+        }
+
+        @Override
+        public long nextDelay(Random random)
+        {
+            if(range == 0) return minDelay;
+            return minDelay + (long)(random.nextDouble() * (range + 1));
+        }
+    }
+
+    private static class Normal extends LatencyModel
+    {
+        private final double meanDelay;
+        private final double standardDeviation;
+
+        public Normal(double meanDelay, double standardDeviation)
+        {
+            this.meanDelay = meanDelay;
+            this.standardDeviation = standardDeviation;
+        }
+
+        @Override
+        public long nextDelay(Random random)
+        {
+            return Math.max(0, Math.round(meanDelay + random.nextGaussian() * standardDeviation));
+        }
+    }
+
+    private static class Histogram extends LatencyModel
+    {
+        private final long[] delays;
+        private final long[] cumulativeCounts;
+
+        public Histogram(long[] delays, long[] cumulativeCounts)
+        {
+            this.delays = delays;
+            this.cumulativeCounts = cumulativeCounts;
+        }
+
+        @Override
+        public long nextDelay(Random random)
+        {
+            long total = cumulativeCounts[cumulativeCounts.length - 1];
+            long value = (long)(random.nextDouble() * total);
+            int low = 0;
+            int high = cumulativeCounts.length - 1;
+            while(low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if(cumulativeCounts[middle] > value)
+                {
+                    high = middle;
+                }
+                else
+                {
+                    low = middle + 1;
+                }
+            }
+            return delays[low];
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.mockrunner.jdbc;
 
-import com.mockrunner.mock.jdbc.MockParameterMap;
-import java.util.ArrayList;
 import java.util.List;
 
+import com.mockrunner.mock.jdbc.MockParameterMap;
+
 /**
  * Encapsulates the parameter sets for an executed
  * {@link com.mockrunner.mock.jdbc.MockPreparedStatement} or
@@ -13,18 +13,41 @@ import java.util.List;
  * Each <code>execute</code> call creates a parameter set.
  * A parameter set is a map, the index or the name of the 
  * parameter maps to the value.
+ * The number of parameter sets that are kept is defined by
+ * the {@link JournalPolicy}.
  */
 public class ParameterSets
 {
-	private final List<MockParameterMap> parameterSets;
+	private final Journal<MockParameterMap> parameterSets;
 	private final String sql;
 	
 	public ParameterSets(String sql)
 	{
-		parameterSets = new ArrayList<MockParameterMap>();
+		this(sql, JournalPolicy.unbounded());
+	}
+	
+	public ParameterSets(final String sql, JournalPolicy policy)
+	{
+		parameterSets = new Journal<MockParameterMap>("parameters", policy)
+		{
+			@Override
+			protected String format(MockParameterMap parameterSet)
+			{
+				return sql + "\t" + parameterSet;
+			}
+		};
 		this.sql = sql;
 	}
 	
+	/**
+	 * Sets the {@link JournalPolicy}.
+	 * @param policy the policy
+	 */
+	public void setJournalPolicy(JournalPolicy policy)
+	{
+		parameterSets.setPolicy(policy);
+	}
+	
 	/**
 	 * Get the SQL string.
 	 * @return the SQL string
@@ -43,6 +66,15 @@ public class ParameterSets
 		parameterSets.add(parameterSet);
 	}
 	
+	/**
+	 * Adds the parameter sets of a batch.
+	 * @param parameterSetList the parameter sets
+	 */
+	public void addParameterSets(List<MockParameterMap> parameterSetList)
+	{
+		parameterSets.addAll(parameterSetList);
+	}
+	
 	/**
 	 * Get the current number of parameter sets.
 	 * @return the number of parameter sets
@@ -52,6 +84,16 @@ public class ParameterSets
 		return parameterSets.size();
 	}
 	
+	/**
+	 * Get the number of parameter sets that were added, including
+	 * the ones that were not kept because of the {@link JournalPolicy}.
+	 * @return the total number of parameter sets
+	 */
+	public long getTotalNumberParameterSets()
+	{
+		return parameterSets.getTotalCount();
+	}
+	
 	/**
 	 * Gets a parameter set for a specified index.
 	 * @param indexOfParameterSet the index
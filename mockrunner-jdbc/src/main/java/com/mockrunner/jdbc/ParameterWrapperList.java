@@ -0,0 +1,416 @@
+package com.mockrunner.jdbc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.ParameterReference;
+
+/**
+ * List of the {@link ParameterWrapper} objects prepared for one SQL
+ * string. Used by the result set handlers to find the first wrapper
+ * whose parameters match the actual parameters without comparing
+ * all wrappers.
+ * <br>
+ * The wrappers are grouped by their parameter references, e.g. all
+ * wrappers with the parameters 1 and 2. Every group is a hash table
+ * of the parameter values. A lookup projects the actual parameters
+ * onto the references of each group and looks up the values, so it
+ * takes one hash lookup per group instead of one comparison per
+ * wrapper. In exact match mode, only the group with the references
+ * of the actual parameters is used.
+ * <br>
+ * Only values whose <code>equals</code> and <code>hashCode</code>
+ * methods are consistent with {@link ParameterUtil#compareParameter}
+ * are hashed, i.e. strings, numbers, booleans, characters and dates
+ * except <code>Timestamp</code>. Wrappers with other parameter values,
+ * e.g. streams, arrays or <code>null</code>, are compared one by one.
+ * If the actual parameters contain such values, all wrappers are
+ * compared one by one. The result is the same as comparing the
+ * wrappers in the order of the list.
+ * <br>
+ * The index is built when the list is searched the first time after
+ * it was modified or deserialized. This class is thread safe.
+ */
+class ParameterWrapperList<T> extends CopyOnWriteArrayList<ParameterWrapper<T>>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final static Set<Class<?>> hashableTypes = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class,
+            BigDecimal.class, BigInteger.class, Boolean.class, Character.class,
+            java.util.Date.class, java.sql.Date.class, java.sql.Time.class));
+
+    private final AtomicInteger version = new AtomicInteger();
+    private transient volatile Index<T> index;
+
+    /**
+     * Returns the first wrapper whose parameters match the specified
+     * parameters. See {@link MockParameterMap#doParameterMatch}.
+     * @param parameters the actual parameters
+     * @param exactMatchParameter exact match mode
+     * @return the matching wrapper or <code>null</code>
+     */
+    public ParameterWrapper<T> getMatchingWrapper(MockParameterMap parameters, boolean exactMatchParameter)
+    {
+        Index<T> currentIndex = getIndex();
+        if(!isHashable(parameters.values()))
+        {
+            return currentIndex.findAll(parameters, exactMatchParameter);
+        }
+        int position = currentIndex.wrappers.length;
+        if(exactMatchParameter)
+        {
+            position = currentIndex.findHashed(parameters.keySet(), parameters, position);
+        }
+        else
+        {
+            for(Set<ParameterReference> nextReferences : currentIndex.groups.keySet())
+            {
+                position = currentIndex.findHashed(nextReferences, parameters, position);
+            }
+        }
+        ParameterWrapper<T> wrapper = currentIndex.findUnhashed(parameters, exactMatchParameter, position);
+        if(null != wrapper) return wrapper;
+        if(position < currentIndex.wrappers.length) return currentIndex.wrappers[position];
+        return null;
+    }
+
+    private Index<T> getIndex()
+    {
+        Index<T> currentIndex = index;
+        int currentVersion = version.get();
+        if(null != currentIndex && currentIndex.version == currentVersion)
+        {
+            return currentIndex;
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ParameterWrapper<T>[] wrappers = toArray(new ParameterWrapper[0]);
+        currentIndex = new Index<T>(currentVersion, wrappers);
+        index = currentIndex;
+        return currentIndex;
+    }
+
+    private static boolean isHashable(Collection<Object> values)
+    {
+        for(Object nextValue : values)
+        {
+            if(null == nextValue || !hashableTypes.contains(nextValue.getClass()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void modified()
+    {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public boolean add(ParameterWrapper<T> wrapper)
+    {
+        try
+        {
+            return super.add(wrapper);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public void add(int position, ParameterWrapper<T> wrapper)
+    {
+        try
+        {
+            super.add(position, wrapper);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(ParameterWrapper<T> wrapper)
+    {
+        try
+        {
+            return super.addIfAbsent(wrapper);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends ParameterWrapper<T>> wrappers)
+    {
+        try
+        {
+            return super.addAll(wrappers);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean addAll(int position, Collection<? extends ParameterWrapper<T>> wrappers)
+    {
+        try
+        {
+            return super.addAll(position, wrappers);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public int addAllAbsent(Collection<? extends ParameterWrapper<T>> wrappers)
+    {
+        try
+        {
+            return super.addAllAbsent(wrappers);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public ParameterWrapper<T> set(int position, ParameterWrapper<T> wrapper)
+    {
+        try
+        {
+            return super.set(position, wrapper);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public ParameterWrapper<T> remove(int position)
+    {
+        try
+        {
+            return super.remove(position);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean remove(Object wrapper)
+    {
+        try
+        {
+            return super.remove(wrapper);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> wrappers)
+    {
+        try
+        {
+            return super.removeAll(wrappers);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> wrappers)
+    {
+        try
+        {
+            return super.retainAll(wrappers);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super ParameterWrapper<T>> filter)
+    {
+        try
+        {
+            return super.removeIf(filter);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<ParameterWrapper<T>> operator)
+    {
+        try
+        {
+            super.replaceAll(operator);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public void sort(Comparator<? super ParameterWrapper<T>> comparator)
+    {
+        try
+        {
+            super.sort(comparator);
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        try
+        {
+            super.clear();
+        }
+        finally
+        {
+            modified();
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view, because modifications of
+     * the view would not update the index.
+     * @param fromIndex the index of the first element
+     * @param toIndex the index after the last element
+     * @return the view
+     */
+    @Override
+    public List<ParameterWrapper<T>> subList(int fromIndex, int toIndex)
+    {
+        return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+    }
+
+    private static class Index<T>
+    {
+        private final int version;
+        private final ParameterWrapper<T>[] wrappers;
+        private final Map<Set<ParameterReference>, Map<Map<ParameterReference, Object>, Integer>> groups;
+        private final int[] unhashedPositions;
+
+        public Index(int version, ParameterWrapper<T>[] wrappers)
+        {
+            this.version = version;
+            this.wrappers = wrappers;
+            groups = new LinkedHashMap<Set<ParameterReference>, Map<Map<ParameterReference, Object>, Integer>>();
+            List<Integer> unhashed = new ArrayList<Integer>();
+            for(int ii = 0; ii < wrappers.length; ii++)
+            {
+                MockParameterMap parameters = wrappers[ii].getParameters();
+                if(!isHashable(parameters.values()))
+                {
+                    unhashed.add(ii);
+                    continue;
+                }
+                Set<ParameterReference> references = new HashSet<ParameterReference>(parameters.keySet());
+                Map<Map<ParameterReference, Object>, Integer> group = groups.get(references);
+                if(null == group)
+                {
+                    group = new HashMap<Map<ParameterReference, Object>, Integer>();
+                    groups.put(references, group);
+                }
+                Map<ParameterReference, Object> values = new HashMap<ParameterReference, Object>(parameters);
+                if(!group.containsKey(values))
+                {
+                    group.put(values, ii);
+                }
+            }
+            unhashedPositions = new int[unhashed.size()];
+            for(int ii = 0; ii < unhashedPositions.length; ii++)
+            {
+                unhashedPositions[ii] = unhashed.get(ii);
+            }
+        }
+
+        public int findHashed(Set<ParameterReference> references, MockParameterMap parameters, int position)
+        {
+            Map<Map<ParameterReference, Object>, Integer> group = groups.get(references);
+            if(null == group) return position;
+            Map<ParameterReference, Object> values = new HashMap<ParameterReference, Object>();
+            for(ParameterReference nextReference : references)
+            {
+                Object nextValue = parameters.get(nextReference);
+                if(null == nextValue) return position;
+                values.put(nextReference, nextValue);
+            }
+            Integer matchingPosition = group.get(values);
+            if(null == matchingPosition) return position;
+            return Math.min(position, matchingPosition);
+        }
+
+        public ParameterWrapper<T> findUnhashed(MockParameterMap parameters, boolean exactMatchParameter, int position)
+        {
+            for(int nextPosition : unhashedPositions)
+            {
+                if(nextPosition >= position) return null;
+                if(wrappers[nextPosition].getParameters().doParameterMatch(parameters, exactMatchParameter))
+                {
+                    return wrappers[nextPosition];
+                }
+            }
+            return null;
+        }
+
+        public ParameterWrapper<T> findAll(MockParameterMap parameters, boolean exactMatchParameter)
+        {
+            for(ParameterWrapper<T> nextWrapper : wrappers)
+            {
+                if(nextWrapper.getParameters().doParameterMatch(parameters, exactMatchParameter))
+                {
+                    return nextWrapper;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.mockrunner.jdbc;
+
+import com.mockrunner.util.common.LRUCache;
+import com.mockrunner.util.regexp.PatternMatcher;
+
+/**
+ * Bounded cache for compiled {@link PatternMatcher} objects.
+ * Compiling a regular expression is expensive compared to matching
+ * it, so the result set handlers and the {@link SQLStatementMatcher}
+ * objects of {@link JDBCTestModule} use this cache instead of
+ * compiling the same SQL strings for every comparison.
+ * A {@link com.mockrunner.mock.jdbc.JDBCMockObjectFactory} creates one
+ * cache that is shared by all handlers of its connection.
+ * <br>
+ * The cache is keyed by the pattern and the {@link PatternMatcher.Factory}
+ * that created the matcher, i.e. the factory must implement <code>equals</code>
+ * and <code>hashCode</code> if matchers of different factory instances
+ * should be shared. The default factories do so.
+ * If the cache is full, the least recently used matcher is evicted.
+ * This class is thread safe. Lookups of cached matchers do not lock,
+ * only adding a matcher and evicting matchers take a lock, see
+ * {@link LRUCache}.
+ */
+public class PatternMatcherCache
+{
+    /**
+     * The default maximum number of cached matchers.
+     */
+    public final static int DEFAULT_MAX_SIZE = 1000;
+
+    private final LRUCache<Key, PatternMatcher> cache;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_SIZE}.
+     */
+    public PatternMatcherCache()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache with the specified maximum size.
+     * @param maxSize the maximum number of cached matchers
+     */
+    public PatternMatcherCache(int maxSize)
+    {
+        cache = new LRUCache<Key, PatternMatcher>(maxSize);
+    }
+
+    /**
+     * Returns the matcher for the specified pattern. If there's no
+     * cached matcher, a new one is created with the specified factory
+     * and added to the cache.
+     * @param factory the factory for the matcher
+     * @param pattern the pattern
+     * @return the matcher
+     */
+    public PatternMatcher getPatternMatcher(PatternMatcher.Factory factory, String pattern)
+    {
+        Key key = new Key(factory, pattern);
+        PatternMatcher matcher = cache.get(key);
+        if(null != matcher) return matcher;
+        return cache.putIfAbsent(key, factory.create(pattern));
+    }
+
+    /**
+     * Returns a factory that creates its matchers using the
+     * specified factory and this cache.
+     * @param factory the factory that compiles the patterns
+     * @return the caching factory
+     */
+    public PatternMatcher.Factory getCachingFactory(PatternMatcher.Factory factory)
+    {
+        if(factory instanceof CachingFactory && ((CachingFactory)factory).getCache() == this)
+        {
+            return factory;
+        }
+        return new CachingFactory(this, factory);
+    }
+
+    /**
+     * Sets the maximum number of cached matchers. If the cache
+     * contains more matchers, the least recently used ones are
+     * evicted.
+     * @param maxSize the maximum number of cached matchers
+     */
+    public void setMaxSize(int maxSize)
+    {
+        cache.setMaxSize(maxSize);
+    }
+
+    /**
+     * Returns the maximum number of cached matchers.
+     * @return the maximum number of cached matchers
+     */
+    public int getMaxSize()
+    {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * Returns the current number of cached matchers.
+     * @return the current number of cached matchers
+     */
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Returns how often a cached matcher was found.
+     * @return the number of cache hits
+     */
+    public long getHits()
+    {
+        return cache.getHits();
+    }
+
+    /**
+     * Returns how often a matcher had to be created.
+     * @return the number of cache misses
+     */
+    public long getMisses()
+    {
+        return cache.getMisses();
+    }
+
+    /**
+     * Returns how many matchers were evicted because the
+     * cache was full.
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return cache.getEvictions();
+    }
+
+    /**
+     * Returns the ratio of cache hits to all lookups. Returns
+     * 0 if there were no lookups so far.
+     * @return the hit ratio
+     */
+    public double getHitRatio()
+    {
+        long currentHits = cache.getHits();
+        long lookups = currentHits + cache.getMisses();
+        return (lookups == 0) ? 0 : (double)currentHits / lookups;
+    }
+
+    /**
+     * Removes all cached matchers. The statistics are not reset.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics()
+    {
+        cache.resetStatistics();
+    }
+
+    private static class CachingFactory implements PatternMatcher.Factory
+    {
+        private final PatternMatcherCache cache;
+        private final PatternMatcher.Factory factory;
+
+        public CachingFactory(PatternMatcherCache cache, PatternMatcher.Factory factory)
+        {
+            this.cache = cache;
+            this.factory = factory;
+        }
+
+        public PatternMatcherCache getCache()
+        {
+            return cache;
+        }
+
+        public PatternMatcher create(String pattern)
+        {
+            return cache.getPatternMatcher(factory, pattern);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return factory.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof CachingFactory)) return false;
+            CachingFactory other = (CachingFactory)obj;
+            return cache == other.cache && factory.equals(other.factory);
+        }
+    }
+
+    private static class Key
+    {
+        private final PatternMatcher.Factory factory;
+        private final String pattern;
+
+        public Key(PatternMatcher.Factory factory, String pattern)
+        {
+            this.factory = factory;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * factory.hashCode() + pattern.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return pattern.equals(other.pattern) && factory.equals(other.factory);
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package com.mockrunner.jdbc;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.mockrunner.util.regexp.Jsr51PatternMatcher;
+import com.mockrunner.util.regexp.PatternMatcher;
+import com.mockrunner.util.regexp.Perl5PatternMatcher;
+import com.mockrunner.util.regexp.SimplePatternMatcher;
+
+/**
+ * A <code>Map</code> of {@link PatternMatcher} keys that can
+ * quickly find all entries matching a given string, without
+ * calling {@link PatternMatcher#matches} for every entry.
+ * Used by {@link AbstractResultSetHandler} to look up the
+ * prepared data for an executed SQL string.
+ * <br>
+ * The matchers created by the default factories are indexed
+ * as follows:
+ * <br>
+ * exact matching: hash lookup of the (case folded) SQL string
+ * <br>
+ * substring matching: one pass of an Aho-Corasick automaton
+ * over the SQL string
+ * <br>
+ * regular expressions: prefix trie over the literal prefixes of
+ * the expressions, only the candidates found in the trie are matched
+ * <br>
+ * All other matchers, e.g. the ones created by a custom
+ * {@link PatternMatcher.Factory} or subclasses of the default
+ * matchers, are matched one by one.
+ * The matching entries are always returned in the order they
+ * were added to the map.
+ * <br>
+ * This class is thread safe. Lookups share a read lock, modifications
+ * and the lazy rebuild of the tries take the write lock. Iterators
+ * work on a snapshot of the entries.
+ */
+public class PatternMatcherIndex<V> extends AbstractMap<PatternMatcher, V>
+{
+    private final Map<PatternMatcher, Node<V>> nodes = new LinkedHashMap<PatternMatcher, Node<V>>();
+    private final Map<String, List<Node<V>>> exactIndex = new HashMap<String, List<Node<V>>>();
+    private final Map<String, List<Node<V>>> exactIgnoreCaseIndex = new HashMap<String, List<Node<V>>>();
+    private final TrieIndex<V> substringIndex = new TrieIndex<V>();
+    private final TrieIndex<V> substringIgnoreCaseIndex = new TrieIndex<V>();
+    private final TrieIndex<V> regexIndex = new TrieIndex<V>();
+    private final TrieIndex<V> regexIgnoreCaseIndex = new TrieIndex<V>();
+    private final List<Node<V>> unindexed = new ArrayList<Node<V>>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long nextSequence = 0;
+
+    /**
+     * Returns the values of all entries whose key matches
+     * the specified string, in the order the entries were added.
+     * @param query the string to match
+     * @return the <code>List</code> of matching values
+     */
+    public List<V> getMatchingValues(String query)
+    {
+        if(null == query) query = "";
+        lock.readLock().lock();
+        try
+        {
+            if(isBuilt()) return findMatchingValues(query);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try
+        {
+            build();
+            return findMatchingValues(query);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<V> findMatchingValues(String query)
+    {
+        if(nodes.isEmpty()) return Collections.emptyList();
+        List<Node<V>> candidates = new ArrayList<Node<V>>();
+        if(!exactIndex.isEmpty())
+        {
+            addAll(candidates, exactIndex.get(query));
+        }
+        if(!exactIgnoreCaseIndex.isEmpty())
+        {
+            addAll(candidates, exactIgnoreCaseIndex.get(foldCase(query)));
+        }
+        substringIndex.findOccurrences(query, candidates);
+        if(!substringIgnoreCaseIndex.isEmpty())
+        {
+            substringIgnoreCaseIndex.findOccurrences(query.toUpperCase(), candidates);
+        }
+        regexIndex.findPrefixes(query, false, candidates);
+        regexIgnoreCaseIndex.findPrefixes(query, true, candidates);
+        candidates.addAll(unindexed);
+        if(candidates.size() > 1)
+        {
+            Collections.sort(candidates, SEQUENCE_ORDER);
+        }
+        List<V> resultList = new ArrayList<V>(candidates.size());
+        Node<V> previous = null;
+        for(Node<V> node : candidates)
+        {
+            if(node != previous && (node.verifiedByIndex || node.matcher.matches(query)))
+            {
+                resultList.add(node.value);
+            }
+            previous = node;
+        }
+        return resultList;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Node<V> node = nodes.get(key);
+            return (null == node) ? null : node.value;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return nodes.containsKey(key);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return nodes.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public V put(PatternMatcher matcher, V value)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Node<V> node = nodes.get(matcher);
+            if(null != node)
+            {
+                return node.setValue(value);
+            }
+            node = new Node<V>(matcher, value, nextSequence++);
+            nodes.put(matcher, node);
+            addToIndex(node);
+            return null;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Node<V> node = nodes.remove(key);
+            if(null == node) return null;
+            removeFromIndex(node);
+            return node.value;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            nodes.clear();
+            exactIndex.clear();
+            exactIgnoreCaseIndex.clear();
+            substringIndex.clear();
+            substringIgnoreCaseIndex.clear();
+            regexIndex.clear();
+            regexIgnoreCaseIndex.clear();
+            unindexed.clear();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<PatternMatcher, V>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<PatternMatcher, V>>()
+        {
+            @Override
+            public Iterator<Map.Entry<PatternMatcher, V>> iterator()
+            {
+                final Iterator<Node<V>> iterator = snapshot().iterator();
+                return new Iterator<Map.Entry<PatternMatcher, V>>()
+                {
+                    private Node<V> current;
+
+                    public boolean hasNext()
+                    {
+                        return iterator.hasNext();
+                    }
+
+                    public Map.Entry<PatternMatcher, V> next()
+                    {
+                        current = iterator.next();
+                        return current;
+                    }
+
+                    public void remove()
+                    {
+                        if(null == current) throw new IllegalStateException();
+                        PatternMatcherIndex.this.remove(current.matcher);
+                        current = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return PatternMatcherIndex.this.size();
+            }
+        };
+    }
+
+    private List<Node<V>> snapshot()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return new ArrayList<Node<V>>(nodes.values());
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isBuilt()
+    {
+        return substringIndex.isBuilt() && substringIgnoreCaseIndex.isBuilt() &&
+               regexIndex.isBuilt() && regexIgnoreCaseIndex.isBuilt();
+    }
+
+    private void build()
+    {
+        substringIndex.build();
+        substringIgnoreCaseIndex.build();
+        regexIndex.build();
+        regexIgnoreCaseIndex.build();
+    }
+
+    private void addToIndex(Node<V> node)
+    {
+        PatternMatcher matcher = node.matcher;
+        String pattern = matcher.pattern();
+        if(matcher.getClass() == SimplePatternMatcher.class)
+        {
+            SimplePatternMatcher simpleMatcher = (SimplePatternMatcher)matcher;
+            if(simpleMatcher.isExactMatch())
+            {
+                if(simpleMatcher.isCaseSensitive())
+                {
+                    node.verifiedByIndex = true;
+                    addToExactIndex(exactIndex, pattern, node);
+                }
+                else
+                {
+                    addToExactIndex(exactIgnoreCaseIndex, foldCase(pattern), node);
+                }
+            }
+            else if(simpleMatcher.isCaseSensitive())
+            {
+                node.verifiedByIndex = true;
+                substringIndex.add(pattern, node);
+            }
+            else
+            {
+                node.verifiedByIndex = true;
+                substringIgnoreCaseIndex.add(pattern.toUpperCase(), node);
+            }
+        }
+        else if(matcher.getClass() == Perl5PatternMatcher.class)
+        {
+            addToRegexIndex(node, ((Perl5PatternMatcher)matcher).isCaseSensitive());
+        }
+        else if(matcher.getClass() == Jsr51PatternMatcher.class)
+        {
+            addToRegexIndex(node, ((Jsr51PatternMatcher)matcher).isCaseSensitive());
+        }
+        else
+        {
+            unindexed.add(node);
+        }
+    }
+
+    private void addToRegexIndex(Node<V> node, boolean caseSensitive)
+    {
+        String prefix = getLiteralPrefix(node.matcher.pattern(), caseSensitive);
+        if(caseSensitive)
+        {
+            regexIndex.add(prefix, node);
+        }
+        else
+        {
+            regexIgnoreCaseIndex.add(foldCase(prefix), node);
+        }
+    }
+
+    private void removeFromIndex(Node<V> node)
+    {
+        if(!removeFromExactIndex(exactIndex, node) && !removeFromExactIndex(exactIgnoreCaseIndex, node) &&
+           !substringIndex.remove(node) && !substringIgnoreCaseIndex.remove(node) &&
+           !regexIndex.remove(node) && !regexIgnoreCaseIndex.remove(node))
+        {
+            unindexed.remove(node);
+        }
+    }
+
+    private void addToExactIndex(Map<String, List<Node<V>>> index, String key, Node<V> node)
+    {
+        List<Node<V>> list = index.get(key);
+        if(null == list)
+        {
+            list = new ArrayList<Node<V>>(1);
+            index.put(key, list);
+        }
+        list.add(node);
+        node.indexKey = key;
+    }
+
+    private boolean removeFromExactIndex(Map<String, List<Node<V>>> index, Node<V> node)
+    {
+        if(null == node.indexKey) return false;
+        List<Node<V>> list = index.get(node.indexKey);
+        if(null == list || !list.remove(node)) return false;
+        if(list.isEmpty())
+        {
+            index.remove(node.indexKey);
+        }
+        return true;
+    }
+
+    private static <V> void addAll(List<Node<V>> candidates, List<Node<V>> nodes)
+    {
+        if(null != nodes) candidates.addAll(nodes);
+    }
+
+    /**
+     * Folds the case of the specified string in a way that two
+     * strings are <code>equalsIgnoreCase</code> if and only if
+     * their folded versions are <code>equals</code>.
+     */
+    static String foldCase(String string)
+    {
+        char[] chars = null;
+        for(int ii = 0; ii < string.length(); ii++)
+        {
+            char current = string.charAt(ii);
+            char folded = foldCase(current);
+            if(current != folded)
+            {
+                if(null == chars) chars = string.toCharArray();
+                chars[ii] = folded;
+            }
+        }
+        return (null == chars) ? string : new String(chars);
+    }
+
+    static char foldCase(char character)
+    {
+        return Character.toLowerCase(Character.toUpperCase(character));
+    }
+
+    /**
+     * Returns the literal characters every string matching the specified
+     * regular expression must start with. Returns an empty string if
+     * there is no such prefix or it cannot be determined safely.
+     */
+    static String getLiteralPrefix(String pattern, boolean caseSensitive)
+    {
+        if(pattern.indexOf('|') >= 0) return "";
+        int start = pattern.startsWith("^") ? 1 : 0;
+        StringBuilder prefix = new StringBuilder();
+        for(int ii = start; ii < pattern.length(); ii++)
+        {
+            char current = pattern.charAt(ii);
+            if(isRegexMetaCharacter(current))
+            {
+                if((current == '?' || current == '*' || current == '{') && prefix.length() > 0)
+                {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            if(!caseSensitive && current > 127)
+            {
+                break;
+            }
+            prefix.append(current);
+        }
+        return prefix.toString();
+    }
+
+    private static boolean isRegexMetaCharacter(char character)
+    {
+        switch(character)
+        {
+            case '\\':
+            case '^':
+            case '$':
+            case '.':
+            case '|':
+            case '?':
+            case '*':
+            case '+':
+            case '(':
+            case ')':
+            case '[':
+            case ']':
+            case '{':
+            case '}':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static final Comparator<Node<?>> SEQUENCE_ORDER = new Comparator<Node<?>>()
+    {
+        public int compare(Node<?> node1, Node<?> node2)
+        {
+            return (node1.sequence < node2.sequence) ? -1 : ((node1.sequence == node2.sequence) ? 0 : 1);
+        }
+    };
+
+    private static class Node<V> implements Map.Entry<PatternMatcher, V>
+    {
+        private final PatternMatcher matcher;
+        private final long sequence;
+        private volatile V value;
+        private String indexKey;
+        private boolean verifiedByIndex;
+
+        public Node(PatternMatcher matcher, V value, long sequence)
+        {
+            this.matcher = matcher;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        public PatternMatcher getKey()
+        {
+            return matcher;
+        }
+
+        public V getValue()
+        {
+            return value;
+        }
+
+        public V setValue(V value)
+        {
+            V oldValue = this.value;
+            this.value = value;
+            return oldValue;
+        }
+    }
+
+    /**
+     * A character trie over the keys of some nodes. Can be used to find all
+     * keys that are prefixes of a string or, with failure links, as
+     * Aho-Corasick automaton to find all keys that occur in a string.
+     * The trie is rebuilt lazily after keys have been removed.
+     * The lookup methods must only be called after {@link #build}.
+     */
+    private static class TrieIndex<V>
+    {
+        private final Map<Node<V>, String> keys = new LinkedHashMap<Node<V>, String>();
+        private TrieState<V> root;
+        private boolean failureLinksBuilt;
+
+        public boolean isEmpty()
+        {
+            return keys.isEmpty();
+        }
+
+        public boolean isBuilt()
+        {
+            return keys.isEmpty() || (null != root && failureLinksBuilt);
+        }
+
+        public void build()
+        {
+            if(isBuilt()) return;
+            getRoot().buildFailureLinks();
+            failureLinksBuilt = true;
+        }
+
+        public void add(String key, Node<V> node)
+        {
+            keys.put(node, key);
+            if(null != root)
+            {
+                root.insert(key, node);
+                failureLinksBuilt = false;
+            }
+        }
+
+        public boolean remove(Node<V> node)
+        {
+            if(null == keys.remove(node)) return false;
+            root = null;
+            return true;
+        }
+
+        public void clear()
+        {
+            keys.clear();
+            root = null;
+        }
+
+        public void findPrefixes(String text, boolean foldCase, List<Node<V>> result)
+        {
+            if(keys.isEmpty()) return;
+            TrieState<V> state = root;
+            state.addMatches(result);
+            for(int ii = 0; ii < text.length(); ii++)
+            {
+                char current = text.charAt(ii);
+                state = state.getChild(foldCase ? foldCase(current) : current);
+                if(null == state) return;
+                state.addMatches(result);
+            }
+        }
+
+        public void findOccurrences(String text, List<Node<V>> result)
+        {
+            if(keys.isEmpty()) return;
+            TrieState<V> root = this.root;
+            root.addMatches(result);
+            TrieState<V> state = root;
+            for(int ii = 0; ii < text.length(); ii++)
+            {
+                char current = text.charAt(ii);
+                TrieState<V> next = state.getChild(current);
+                while(null == next && state != root)
+                {
+                    state = state.failure;
+                    next = state.getChild(current);
+                }
+                state = (null == next) ? root : next;
+                for(TrieState<V> output = state; null != output && output != root; output = output.output)
+                {
+                    output.addMatches(result);
+                }
+            }
+        }
+
+        private TrieState<V> getRoot()
+        {
+            if(null == root)
+            {
+                root = new TrieState<V>();
+                for(Map.Entry<Node<V>, String> entry : keys.entrySet())
+                {
+                    root.insert(entry.getValue(), entry.getKey());
+                }
+                failureLinksBuilt = false;
+            }
+            return root;
+        }
+    }
+
+    private static class TrieState<V>
+    {
+        private char[] labels = new char[0];
+        private TrieState<V>[] children = newStateArray(0);
+        private List<Node<V>> matches;
+        private TrieState<V> failure;
+        private TrieState<V> output;
+
+        public void insert(String key, Node<V> node)
+        {
+            TrieState<V> state = this;
+            for(int ii = 0; ii < key.length(); ii++)
+            {
+                char current = key.charAt(ii);
+                TrieState<V> next = state.getChild(current);
+                if(null == next)
+                {
+                    next = state.addChild(current);
+                }
+                state = next;
+            }
+            if(null == state.matches)
+            {
+                state.matches = new ArrayList<Node<V>>(1);
+            }
+            state.matches.add(node);
+        }
+
+        public TrieState<V> getChild(char label)
+        {
+            int index = Arrays.binarySearch(labels, label);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        private TrieState<V> addChild(char label)
+        {
+            int index = -(Arrays.binarySearch(labels, label) + 1);
+            char[] newLabels = new char[labels.length + 1];
+            TrieState<V>[] newChildren = newStateArray(children.length + 1);
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            TrieState<V> child = new TrieState<V>();
+            newLabels[index] = label;
+            newChildren[index] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        public void addMatches(List<Node<V>> result)
+        {
+            if(null != matches) result.addAll(matches);
+        }
+
+        /**
+         * Computes the failure and output links of the
+         * Aho-Corasick automaton, this state is the root.
+         */
+        public void buildFailureLinks()
+        {
+            List<TrieState<V>> queue = new ArrayList<TrieState<V>>();
+            failure = this;
+            output = null;
+            for(TrieState<V> child : children)
+            {
+                child.failure = this;
+                child.output = null;
+                queue.add(child);
+            }
+            for(int ii = 0; ii < queue.size(); ii++)
+            {
+                TrieState<V> state = queue.get(ii);
+                for(int kk = 0; kk < state.labels.length; kk++)
+                {
+                    char label = state.labels[kk];
+                    TrieState<V> child = state.children[kk];
+                    TrieState<V> fallback = state.failure;
+                    TrieState<V> next = fallback.getChild(label);
+                    while(null == next && fallback != this)
+                    {
+                        fallback = fallback.failure;
+                        next = fallback.getChild(label);
+                    }
+                    child.failure = (null == next) ? this : next;
+                    child.output = (null != child.failure.matches) ? child.failure : child.failure.output;
+                    queue.add(child);
+                }
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static <V> TrieState<V>[] newStateArray(int size)
+        {
+            return new TrieState[size];
+        }
+    }
+}
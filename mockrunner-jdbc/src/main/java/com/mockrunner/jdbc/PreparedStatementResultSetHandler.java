@@ -1,10 +1,9 @@
 package com.mockrunner.jdbc;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import com.mockrunner.mock.jdbc.MockPreparedStatement;
 
@@ -13,13 +12,13 @@ import com.mockrunner.mock.jdbc.MockPreparedStatement;
  */
 public class PreparedStatementResultSetHandler extends AbstractParameterResultSetHandler
 { 
-    private final List<MockPreparedStatement> preparedStatements;
+    private final Journal<MockPreparedStatement> preparedStatements;
     private final Map<String, List<MockPreparedStatement>> preparedStatementMap;
     
     public PreparedStatementResultSetHandler()
     {
-        preparedStatements = new ArrayList<MockPreparedStatement>();
-        preparedStatementMap = new TreeMap<String, List<MockPreparedStatement>>();
+        preparedStatements = new Journal<MockPreparedStatement>();
+        preparedStatementMap = new ConcurrentSkipListMap<String, List<MockPreparedStatement>>();
     }
     
     /**
@@ -33,13 +32,25 @@ public class PreparedStatementResultSetHandler extends AbstractParameterResultSe
         List<MockPreparedStatement> list = preparedStatementMap.get(statement.getSQL());
         if(null == list)
         {
-            list = new ArrayList<MockPreparedStatement>();
-            preparedStatementMap.put(statement.getSQL(), list);
+            list = new Journal<MockPreparedStatement>(null, getJournalPolicy());
+            List<MockPreparedStatement> existingList = preparedStatementMap.putIfAbsent(statement.getSQL(), list);
+            if(null != existingList) list = existingList;
         }
         list.add(statement);
         preparedStatements.add(statement);
     }
     
+    @Override
+    public void setJournalPolicy(JournalPolicy journalPolicy)
+    {
+        super.setJournalPolicy(journalPolicy);
+        preparedStatements.setPolicy(journalPolicy);
+        for(List<MockPreparedStatement> list : preparedStatementMap.values())
+        {
+            ((Journal<MockPreparedStatement>)list).setPolicy(journalPolicy);
+        }
+    }
+    
     /**
      * Returns a <code>List</code> of all prepared statements.
      * @return the <code>List</code> of {@link MockPreparedStatement} objects
@@ -0,0 +1,399 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.ParameterIndex;
+import com.mockrunner.mock.jdbc.ParameterReference;
+
+/**
+ * Finds N+1 query patterns and chatty access in the journal of
+ * executed statements. The SQL strings are normalized with
+ * {@link SQLFingerprint}, i.e. literals are replaced by <code>?</code>,
+ * <code>IN</code> lists are collapsed, whitespace and case are ignored.
+ * Executions of queries with the same normalized SQL string are grouped.
+ * <br>
+ * A group is reported as {@link QueryPattern#N_PLUS_ONE}, if the query
+ * is executed more than <i>threshold</i> times with different literals
+ * or parameters, e.g. once for every row of a previous query. It's
+ * reported as {@link QueryPattern#CHATTY}, if the same query with the
+ * same parameters is executed more than <i>threshold</i> times. Only
+ * queries are analyzed, because repeated updates are usually batches.
+ * <br>
+ * The parameters are taken from the journal of the prepared and callable
+ * statements, see {@link AbstractParameterResultSetHandler#getExecutedStatementParameterMap}.
+ * The call sites are taken from {@link AbstractResultSetHandler#getCallSiteMap},
+ * if they are recorded.
+ * <br>
+ * By default the whole journal, i.e. usually one test, is analyzed as one unit.
+ * With {@link #setWindowSize} only executions within a window of
+ * consecutive statements are counted, e.g. the statements of one request
+ * or transaction in a longer journal. The distinct parameters are then
+ * counted in the window with the most executions, too.
+ * <br>
+ * The executions of an SQL string are matched with the parameter sets
+ * recorded for this SQL string, starting with the most recent ones. So they
+ * still line up, if a bounded {@link JournalPolicy} dropped old entries from
+ * the journal of executed statements or from the {@link ParameterSets}.
+ * Executions whose parameter set was dropped are not counted as distinct
+ * parameters. The executed statements must contain the statements of all
+ * types in the order of execution, as returned by {@link Journal#merge}.
+ */
+public class QueryPatternAnalyzer
+{
+    private final int threshold;
+    private int windowSize = 0;
+
+    /**
+     * Creates an analyzer, that reports queries executed
+     * more than <i>threshold</i> times.
+     * @param threshold the threshold
+     */
+    public QueryPatternAnalyzer(int threshold)
+    {
+        if(threshold < 1)
+        {
+            throw new IllegalArgumentException("threshold must be at least 1");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the number of consecutive statements in which the executions
+     * of a query are counted. <code>0</code>, which is the default,
+     * counts the executions in the whole journal.
+     * @param windowSize the number of statements
+     */
+    public void setWindowSize(int windowSize)
+    {
+        if(windowSize < 0)
+        {
+            throw new IllegalArgumentException("windowSize must not be negative");
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns the number of consecutive statements in which the
+     * executions of a query are counted.
+     * @return the number of statements
+     */
+    public int getWindowSize()
+    {
+        return windowSize;
+    }
+
+    /**
+     * Analyzes the specified executed statements.
+     * @param executedStatements the executed SQL strings in the order of execution
+     * @return the found {@link QueryPattern} objects, most executions first
+     */
+    public List<QueryPattern> analyze(List<String> executedStatements)
+    {
+        return analyze(executedStatements, Collections.<String, ParameterSets>emptyMap(), Collections.<String, Collection<String>>emptyMap());
+    }
+
+    /**
+     * Analyzes the specified executed statements.
+     * @param executedStatements the executed SQL strings in the order of execution
+     * @param parameterMap the {@link ParameterSets} by SQL string
+     * @param callSiteMap the call sites by SQL string
+     * @return the found {@link QueryPattern} objects, most executions first
+     */
+    public List<QueryPattern> analyze(List<String> executedStatements, Map<String, ParameterSets> parameterMap, Map<String, ? extends Collection<String>> callSiteMap)
+    {
+        Map<String, Group> groups = new LinkedHashMap<String, Group>();
+        Map<String, Group> groupsBySQL = new LinkedHashMap<String, Group>();
+        int position = 0;
+        for(String nextSQL : executedStatements)
+        {
+            Group group = groupsBySQL.get(nextSQL);
+            if(null == group)
+            {
+                SQLFingerprint fingerprint = SQLFingerprint.of(nextSQL);
+                String normalizedSQL = fingerprint.getNormalizedSQL();
+                group = groups.get(normalizedSQL);
+                if(null == group)
+                {
+                    group = new Group(normalizedSQL);
+                    groups.put(normalizedSQL, group);
+                }
+                group.addSQL(nextSQL, fingerprint.getLiterals());
+                groupsBySQL.put(nextSQL, group);
+            }
+            group.addExecution(position++, nextSQL);
+        }
+        List<QueryPattern> patterns = new ArrayList<QueryPattern>();
+        for(Group nextGroup : groups.values())
+        {
+            if(!SQLUtil.isSelect(nextGroup.normalizedSQL)) continue;
+            int[] window = nextGroup.getMaxWindow(windowSize);
+            int executions = window[1] - window[0];
+            if(executions <= threshold) continue;
+            Set<List<String>> variants = nextGroup.getVariants(window[0], window[1], parameterMap);
+            int type = (variants.size() > 1) ? QueryPattern.N_PLUS_ONE : QueryPattern.CHATTY;
+            Set<String> callSites = new LinkedHashSet<String>();
+            for(String nextSQL : nextGroup.sqlStrings.keySet())
+            {
+                Collection<String> nextCallSites = callSiteMap.get(nextSQL);
+                if(null != nextCallSites) callSites.addAll(nextCallSites);
+            }
+            patterns.add(new QueryPattern(type, nextGroup.normalizedSQL, executions, variants.size(), nextGroup.sqlStrings.keySet(), callSites));
+        }
+        Collections.sort(patterns, new Comparator<QueryPattern>()
+        {
+            public int compare(QueryPattern pattern1, QueryPattern pattern2)
+            {
+                return pattern2.getNumberExecutions() - pattern1.getNumberExecutions();
+            }
+        });
+        return patterns;
+    }
+
+    private static List<String> getParameterValues(MockParameterMap parameters)
+    {
+        List<String> values = new ArrayList<String>();
+        List<ParameterReference> names = new ArrayList<ParameterReference>();
+        int numberIndexes = 0;
+        for(ParameterReference nextReference : parameters.keySet())
+        {
+            if(nextReference instanceof ParameterIndex)
+            {
+                numberIndexes++;
+            }
+            else
+            {
+                names.add(nextReference);
+            }
+        }
+        for(int ii = 1; values.size() < numberIndexes; ii++)
+        {
+            ParameterIndex index = new ParameterIndex(ii);
+            if(parameters.containsKey(index)) values.add(getValue(parameters.get(index)));
+        }
+        Collections.sort(names, new Comparator<ParameterReference>()
+        {
+            public int compare(ParameterReference reference1, ParameterReference reference2)
+            {
+                return reference1.toString().compareTo(reference2.toString());
+            }
+        });
+        for(ParameterReference nextName : names)
+        {
+            values.add(getValue(parameters.get(nextName)));
+        }
+        return values;
+    }
+
+    private static String getValue(Object value)
+    {
+        if(value instanceof byte[]) return Arrays.toString((byte[])value);
+        return String.valueOf(value);
+    }
+
+    private static class Group
+    {
+        private final String normalizedSQL;
+        private final Map<String, List<String>> sqlStrings = new LinkedHashMap<String, List<String>>();
+        private final Map<String, Integer> occurrences = new HashMap<String, Integer>();
+        private final List<Execution> executions = new ArrayList<Execution>();
+
+        public Group(String normalizedSQL)
+        {
+            this.normalizedSQL = normalizedSQL;
+        }
+
+        public void addSQL(String sql, List<String> literals)
+        {
+            sqlStrings.put(sql, literals);
+        }
+
+        public void addExecution(int position, String sql)
+        {
+            Integer occurrence = occurrences.get(sql);
+            if(null == occurrence) occurrence = 0;
+            executions.add(new Execution(position, sql, occurrence));
+            occurrences.put(sql, occurrence + 1);
+        }
+
+        /**
+         * Returns the start (inclusive) and end (exclusive) index of
+         * the executions in the window with the most executions.
+         */
+        public int[] getMaxWindow(int windowSize)
+        {
+            if(windowSize <= 0) return new int[] {0, executions.size()};
+            int[] maxWindow = new int[] {0, 0};
+            int start = 0;
+            for(int end = 0; end < executions.size(); end++)
+            {
+                while(executions.get(end).position - executions.get(start).position >= windowSize) start++;
+                if(end + 1 - start > maxWindow[1] - maxWindow[0])
+                {
+                    maxWindow[0] = start;
+                    maxWindow[1] = end + 1;
+                }
+            }
+            return maxWindow;
+        }
+
+        /**
+         * Returns the distinct literal and parameter lists of the executions
+         * between <code>start</code> (inclusive) and <code>end</code> (exclusive).
+         * The last execution of an SQL string uses the last parameter set
+         * that was recorded for the SQL string, the one before the last
+         * execution the one before the last parameter set and so on.
+         * Executions without a recorded parameter set are skipped.
+         */
+        public Set<List<String>> getVariants(int start, int end, Map<String, ParameterSets> parameterMap)
+        {
+            Set<List<String>> variants = new HashSet<List<String>>();
+            for(Execution nextExecution : executions.subList(start, end))
+            {
+                List<String> variant = new ArrayList<String>(sqlStrings.get(nextExecution.sql));
+                ParameterSets parameterSets = parameterMap.get(nextExecution.sql);
+                if(null != parameterSets)
+                {
+                    int numberParameterSets = parameterSets.getNumberParameterSets();
+                    int index = numberParameterSets - occurrences.get(nextExecution.sql) + nextExecution.occurrence;
+                    if(index < 0 || index >= numberParameterSets) continue;
+                    MockParameterMap parameters = parameterSets.getParameterSet(index);
+                    if(null != parameters) variant.addAll(getParameterValues(parameters));
+                }
+                variants.add(variant);
+            }
+            return variants;
+        }
+    }
+
+    private static class Execution
+    {
+        private final int position;
+        private final String sql;
+        private final int occurrence;
+
+        public Execution(int position, String sql, int occurrence)
+        {
+            this.position = position;
+            this.sql = sql;
+            this.occurrence = occurrence;
+        }
+    }
+
+    /**
+     * A query pattern found by the {@link QueryPatternAnalyzer}.
+     */
+    public static class QueryPattern
+    {
+        /**
+         * The query is executed repeatedly with different parameters.
+         */
+        public final static int N_PLUS_ONE = 0;
+
+        /**
+         * The query is executed repeatedly with the same parameters.
+         */
+        public final static int CHATTY = 1;
+
+        private final int type;
+        private final String normalizedSQL;
+        private final int numberExecutions;
+        private final int numberDistinctParameters;
+        private final List<String> sqlStrings;
+        private final List<String> callSites;
+
+        public QueryPattern(int type, String normalizedSQL, int numberExecutions, int numberDistinctParameters, Collection<String> sqlStrings, Collection<String> callSites)
+        {
+            this.type = type;
+            this.normalizedSQL = normalizedSQL;
+            this.numberExecutions = numberExecutions;
+            this.numberDistinctParameters = numberDistinctParameters;
+            this.sqlStrings = Collections.unmodifiableList(new ArrayList<String>(sqlStrings));
+            this.callSites = Collections.unmodifiableList(new ArrayList<String>(callSites));
+        }
+
+        /**
+         * Returns the type, i.e. {@link #N_PLUS_ONE} or {@link #CHATTY}.
+         * @return the type
+         */
+        public int getType()
+        {
+            return type;
+        }
+
+        /**
+         * Returns the normalized SQL string.
+         * @return the normalized SQL string
+         */
+        public String getNormalizedSQL()
+        {
+            return normalizedSQL;
+        }
+
+        /**
+         * Returns the number of executions. If a window size is set,
+         * this is the maximum number of executions within one window.
+         * @return the number of executions
+         */
+        public int getNumberExecutions()
+        {
+            return numberExecutions;
+        }
+
+        /**
+         * Returns the number of distinct literal lists and parameter sets.
+         * Executions whose parameter set was dropped by a bounded
+         * {@link JournalPolicy} are not counted.
+         * @return the number of distinct parameters
+         */
+        public int getNumberDistinctParameters()
+        {
+            return numberDistinctParameters;
+        }
+
+        /**
+         * Returns the executed SQL strings that match the normalized SQL string.
+         * @return the SQL strings
+         */
+        public List<String> getSQLStatements()
+        {
+            return sqlStrings;
+        }
+
+        /**
+         * Returns the recorded call sites. Empty, if call sites
+         * are not recorded, see {@link AbstractResultSetHandler#setRecordCallSites}.
+         * @return the call sites
+         */
+        public List<String> getCallSites()
+        {
+            return callSites;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+            builder.append((type == N_PLUS_ONE) ? "N+1 query" : "Chatty query");
+            builder.append(" \"").append(normalizedSQL).append("\": ");
+            builder.append(numberExecutions).append(" executions, ");
+            builder.append(numberDistinctParameters).append(" distinct parameters");
+            if(!callSites.isEmpty())
+            {
+                builder.append(", call sites: ").append(callSites);
+            }
+            return builder.toString();
+        }
+    }
+}
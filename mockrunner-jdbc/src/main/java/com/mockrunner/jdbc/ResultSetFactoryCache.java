@@ -0,0 +1,316 @@
+package com.mockrunner.jdbc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.common.LRUCache;
+
+/**
+ * Bounded cache for <code>ResultSet</code> objects read from files,
+ * e.g. by {@link FileResultSetFactory} or {@link XMLResultSetFactory}.
+ * Reading and parsing a file is expensive compared to copying the
+ * data, so the factories can use this cache instead of reading the
+ * same file for every <code>ResultSet</code>. Use
+ * {@link FileResultSetFactory#setCache} or {@link XMLResultSetFactory#setCache}
+ * to enable it. {@link #getSharedCache} returns a cache that can be shared
+ * by all factories of a test suite.
+ * <br>
+ * The cache is keyed by the absolute path, the modification time and the
+ * length of the file and the settings of the factory, e.g. the delimiter
+ * or the dialect. If the file is modified, it's read again. The cached
+ * <code>ResultSet</code> objects are never handed out. Every lookup returns
+ * a copy that shares the data with the cached <code>ResultSet</code> until
+ * it's modified, see {@link MockResultSet#copyWithId}. If the cache is full,
+ * the least recently used <code>ResultSet</code> is evicted.
+ * <br>
+ * Each file is read only once, even if several threads request it
+ * at the same time. The first thread reads the file, the other threads
+ * wait for the result.
+ * This class is thread safe. Lookups of cached <code>ResultSet</code>
+ * objects do not lock, see {@link LRUCache}.
+ */
+public class ResultSetFactoryCache
+{
+    /**
+     * The default maximum number of cached <code>ResultSet</code> objects.
+     */
+    public final static int DEFAULT_MAX_SIZE = 100;
+
+    private final static ResultSetFactoryCache sharedCache = new ResultSetFactoryCache();
+
+    private final LRUCache<CacheKey, FutureTask<MockResultSet>> cache;
+    private long invalidations;
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_SIZE}.
+     */
+    public ResultSetFactoryCache()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache with the specified maximum size.
+     * @param maxSize the maximum number of cached <code>ResultSet</code> objects
+     */
+    public ResultSetFactoryCache(int maxSize)
+    {
+        cache = new LRUCache<CacheKey, FutureTask<MockResultSet>>(maxSize);
+    }
+
+    /**
+     * Returns the cache that is shared by all factories
+     * that are set up with it.
+     * @return the shared cache
+     */
+    public static ResultSetFactoryCache getSharedCache()
+    {
+        return sharedCache;
+    }
+
+    /**
+     * Returns a copy of the <code>ResultSet</code> read from the specified
+     * file with the specified settings. If there's no cached <code>ResultSet</code>,
+     * it's created with the specified factory and added to the cache.
+     * Cached <code>ResultSet</code> objects of older versions of the file are removed.
+     * @param file the file
+     * @param settings the settings of the factory that affect the
+     *        <code>ResultSet</code>, must implement <code>equals</code>
+     *        and <code>hashCode</code>
+     * @param id the id of the returned <code>ResultSet</code>
+     * @param factory the factory that reads the file
+     * @return the <code>ResultSet</code>
+     */
+    public MockResultSet getResultSet(File file, List<?> settings, final String id, final ResultSetFactory factory)
+    {
+        CacheKey key = new CacheKey(file, settings);
+        FutureTask<MockResultSet> task = cache.get(key);
+        if(null == task)
+        {
+            FutureTask<MockResultSet> newTask = new FutureTask<MockResultSet>(new Callable<MockResultSet>()
+            {
+                public MockResultSet call()
+                {
+                    return factory.create(id);
+                }
+            });
+            synchronized(this)
+            {
+                task = cache.putIfAbsent(key, newTask);
+                if(task == newTask)
+                {
+                    removeOtherVersions(key);
+                }
+            }
+            if(task == newTask)
+            {
+                task.run();
+            }
+        }
+        return waitForResultSet(key, task).copyWithId(id);
+    }
+
+    /**
+     * Removes all cached <code>ResultSet</code> objects of the specified file.
+     * @param file the file
+     */
+    public synchronized void invalidate(File file)
+    {
+        String path = file.getAbsolutePath();
+        for(CacheKey nextKey : cache.getKeys())
+        {
+            if(nextKey.path.equals(path) && null != cache.remove(nextKey))
+            {
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of cached <code>ResultSet</code> objects.
+     * If the cache contains more <code>ResultSet</code> objects, the least
+     * recently used ones are evicted.
+     * @param maxSize the maximum number of cached <code>ResultSet</code> objects
+     */
+    public void setMaxSize(int maxSize)
+    {
+        cache.setMaxSize(maxSize);
+    }
+
+    /**
+     * Returns the maximum number of cached <code>ResultSet</code> objects.
+     * @return the maximum number of cached <code>ResultSet</code> objects
+     */
+    public int getMaxSize()
+    {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * Returns the current number of cached <code>ResultSet</code> objects.
+     * @return the current number of cached <code>ResultSet</code> objects
+     */
+    public int getSize()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Returns the files of the cached <code>ResultSet</code> objects.
+     * @return the <code>List</code> of files
+     */
+    public List<File> getCachedFiles()
+    {
+        List<CacheKey> keys = cache.getKeys();
+        List<File> files = new ArrayList<File>(keys.size());
+        for(CacheKey nextKey : keys)
+        {
+            files.add(new File(nextKey.path));
+        }
+        return files;
+    }
+
+    /**
+     * Returns how often a cached <code>ResultSet</code> was found.
+     * @return the number of cache hits
+     */
+    public long getHits()
+    {
+        return cache.getHits();
+    }
+
+    /**
+     * Returns how often a file had to be read.
+     * @return the number of cache misses
+     */
+    public long getMisses()
+    {
+        return cache.getMisses();
+    }
+
+    /**
+     * Returns how many <code>ResultSet</code> objects were evicted
+     * because the cache was full.
+     * @return the number of evictions
+     */
+    public long getEvictions()
+    {
+        return cache.getEvictions();
+    }
+
+    /**
+     * Returns how many <code>ResultSet</code> objects were removed by
+     * {@link #invalidate} or because the file was modified.
+     * @return the number of invalidations
+     */
+    public synchronized long getInvalidations()
+    {
+        return invalidations;
+    }
+
+    /**
+     * Returns the ratio of cache hits to all lookups. Returns
+     * 0 if there were no lookups so far.
+     * @return the hit ratio
+     */
+    public double getHitRatio()
+    {
+        long hits = cache.getHits();
+        long lookups = hits + cache.getMisses();
+        return (lookups == 0) ? 0 : (double)hits / lookups;
+    }
+
+    /**
+     * Removes all cached <code>ResultSet</code> objects.
+     * The statistics are not reset.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Resets the hit, miss, eviction and invalidation counters.
+     */
+    public synchronized void resetStatistics()
+    {
+        cache.resetStatistics();
+        invalidations = 0;
+    }
+
+    private MockResultSet waitForResultSet(CacheKey key, FutureTask<MockResultSet> task)
+    {
+        try
+        {
+            return task.get();
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+            throw new NestedApplicationException(exc);
+        }
+        catch(ExecutionException exc)
+        {
+            cache.remove(key, task);
+            Throwable cause = exc.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if(cause instanceof Error) throw (Error)cause;
+            throw new NestedApplicationException(cause);
+        }
+    }
+
+    private void removeOtherVersions(CacheKey key)
+    {
+        for(CacheKey nextKey : cache.getKeys())
+        {
+            if(nextKey.path.equals(key.path) && !nextKey.isSameVersion(key) && null != cache.remove(nextKey))
+            {
+                invalidations++;
+            }
+        }
+    }
+
+    private static class CacheKey
+    {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final List<?> settings;
+
+        public CacheKey(File file, List<?> settings)
+        {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.settings = settings;
+        }
+
+        public boolean isSameVersion(CacheKey other)
+        {
+            return lastModified == other.lastModified && length == other.length;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hashCode = path.hashCode();
+            hashCode = 31 * hashCode + (int)(lastModified ^ (lastModified >>> 32));
+            hashCode = 31 * hashCode + (int)(length ^ (length >>> 32));
+            return 31 * hashCode + settings.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey)obj;
+            return path.equals(other.path) && isSameVersion(other) && settings.equals(other.settings);
+        }
+    }
+}
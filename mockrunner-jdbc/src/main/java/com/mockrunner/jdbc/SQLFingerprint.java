@@ -0,0 +1,342 @@
+package com.mockrunner.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.mockrunner.util.common.LRUCache;
+
+/**
+ * The normalized form of an SQL string. SQL strings that differ only
+ * in whitespace, comments, the case of unquoted words, literal values
+ * and the number of elements of <code>IN</code> lists have the same
+ * normalized SQL string, e.g.
+ * <code>SELECT * FROM x WHERE id IN (1, 2, 3)</code> and
+ * <code>select * from x where id in (4,5)</code> are both normalized
+ * to <code>select * from x where id in (?)</code>.
+ * <br>
+ * The SQL string is split into tokens. Comments are dropped, unquoted
+ * words are converted to lower case, quoted identifiers are kept as they are,
+ * string and number literals are replaced by <code>?</code> and
+ * <code>IN</code> lists of <code>?</code> are collapsed to one <code>?</code>.
+ * The tokens are joined with single spaces, except before <code>,</code>,
+ * <code>)</code> and around <code>.</code>, and after <code>(</code>.
+ * Trailing semicolons are dropped. A sign is part of the number literal,
+ * if it can't be a binary operator, i.e. <code>x = -1</code> and
+ * <code>x = 1</code> are both normalized to <code>x = ?</code>, but
+ * <code>x - 1</code> is normalized to <code>x - ?</code>.
+ * <br>
+ * Fingerprints of the 10000 most recently used SQL strings are cached,
+ * so an SQL string is parsed only once, even if it is executed many times.
+ * Looking up a cached fingerprint does not lock, see {@link LRUCache}.
+ * This class is immutable and thread safe.
+ */
+public class SQLFingerprint
+{
+    private final static int MAX_CACHED_FINGERPRINTS = 10000;
+    private final static LRUCache<String, SQLFingerprint> fingerprints = new LRUCache<String, SQLFingerprint>(MAX_CACHED_FINGERPRINTS);
+    private final static Set<String> KEYWORDS_BEFORE_OPERAND = new HashSet<String>(Arrays.asList(
+        "select", "where", "and", "or", "not", "on", "having", "set", "values", "in", "like",
+        "between", "case", "when", "then", "else", "by", "return", "limit", "offset"));
+
+    private final String sql;
+    private final String normalizedSQL;
+    private final List<String> literals;
+
+    private SQLFingerprint(String sql, String normalizedSQL, List<String> literals)
+    {
+        this.sql = sql;
+        this.normalizedSQL = normalizedSQL;
+        this.literals = Collections.unmodifiableList(literals);
+    }
+
+    /**
+     * Returns the fingerprint of the specified SQL string.
+     * @param sql the SQL string
+     * @return the fingerprint
+     */
+    public static SQLFingerprint of(String sql)
+    {
+        if(null == sql) sql = "";
+        SQLFingerprint fingerprint = fingerprints.get(sql);
+        if(null == fingerprint)
+        {
+            List<String> literals = new ArrayList<String>();
+            fingerprint = fingerprints.putIfAbsent(sql, new SQLFingerprint(sql, normalize(sql, literals), literals));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the normalized form of the specified SQL string.
+     * Shortcut for <code>SQLFingerprint.of(sql).getNormalizedSQL()</code>.
+     * @param sql the SQL string
+     * @return the normalized SQL string
+     */
+    public static String normalize(String sql)
+    {
+        return of(sql).getNormalizedSQL();
+    }
+
+    /**
+     * Returns the original SQL string.
+     * @return the original SQL string
+     */
+    public String getSQL()
+    {
+        return sql;
+    }
+
+    /**
+     * Returns the normalized SQL string.
+     * @return the normalized SQL string
+     */
+    public String getNormalizedSQL()
+    {
+        return normalizedSQL;
+    }
+
+    /**
+     * Returns the values of the string and number literals that were
+     * replaced by <code>?</code>, in the order of their occurrence.
+     * The quotes of string literals are removed and escaped quotes
+     * are unescaped.
+     * @return the literal values
+     */
+    public List<String> getLiterals()
+    {
+        return literals;
+    }
+
+    /**
+     * Returns if the specified object is a fingerprint with the
+     * same normalized SQL string.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(null == obj || obj.getClass() != getClass()) return false;
+        return normalizedSQL.equals(((SQLFingerprint)obj).normalizedSQL);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return normalizedSQL.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return normalizedSQL;
+    }
+
+    private static String normalize(String sql, List<String> literals)
+    {
+        List<String> tokens = new ArrayList<String>();
+        int length = sql.length();
+        int ii = 0;
+        while(ii < length)
+        {
+            char nextChar = sql.charAt(ii);
+            int start = ii;
+            if(Character.isWhitespace(nextChar))
+            {
+                ii++;
+            }
+            else if(sql.startsWith("--", ii))
+            {
+                while(ii < length && '\n' != sql.charAt(ii)) ii++;
+            }
+            else if(sql.startsWith("/*", ii))
+            {
+                int end = sql.indexOf("*/", ii + 2);
+                ii = (end < 0) ? length : end + 2;
+            }
+            else if('\'' == nextChar)
+            {
+                ii = skipQuoted(sql, ii, '\'');
+                literals.add(sql.substring(start + 1, Math.max(start + 1, ii - 1)).replace("''", "'"));
+                tokens.add("?");
+            }
+            else if('"' == nextChar || '`' == nextChar)
+            {
+                ii = skipQuoted(sql, ii, nextChar);
+                tokens.add(sql.substring(start, ii));
+            }
+            else if('[' == nextChar)
+            {
+                int end = sql.indexOf(']', ii);
+                ii = (end < 0) ? length : end + 1;
+                tokens.add(sql.substring(start, ii));
+            }
+            else if(Character.isDigit(nextChar) || (isSign(sql, ii) && isOperandExpected(tokens)))
+            {
+                ii = skipNumber(sql, Character.isDigit(nextChar) ? ii : ii + 1);
+                literals.add(sql.substring(start, ii));
+                tokens.add("?");
+            }
+            else if(isIdentifierPart(nextChar) || isParameterName(sql, ii))
+            {
+                ii++;
+                while(ii < length && isIdentifierPart(sql.charAt(ii))) ii++;
+                tokens.add(sql.substring(start, ii).toLowerCase(Locale.ROOT));
+            }
+            else if(isOperator(nextChar))
+            {
+                ii++;
+                while(ii < length && isOperator(sql.charAt(ii)) && !sql.startsWith("--", ii) && !sql.startsWith("/*", ii) && !isParameterName(sql, ii) && !isSign(sql, ii)) ii++;
+                tokens.add(sql.substring(start, ii));
+            }
+            else
+            {
+                ii++;
+                if(')' == nextChar) collapseInList(tokens);
+                tokens.add(String.valueOf(nextChar));
+            }
+        }
+        while(!tokens.isEmpty() && ";".equals(tokens.get(tokens.size() - 1)))
+        {
+            tokens.remove(tokens.size() - 1);
+        }
+        return join(tokens);
+    }
+
+    private static int skipQuoted(String sql, int start, char quote)
+    {
+        int length = sql.length();
+        int ii = start + 1;
+        while(ii < length)
+        {
+            if(quote == sql.charAt(ii))
+            {
+                if(ii + 1 < length && quote == sql.charAt(ii + 1))
+                {
+                    ii += 2;
+                    continue;
+                }
+                return ii + 1;
+            }
+            ii++;
+        }
+        return length;
+    }
+
+    private static int skipNumber(String sql, int start)
+    {
+        int length = sql.length();
+        int ii = start;
+        while(ii < length && (Character.isDigit(sql.charAt(ii)) || '.' == sql.charAt(ii))) ii++;
+        if(ii + 1 < length && ('e' == sql.charAt(ii) || 'E' == sql.charAt(ii)))
+        {
+            int exponent = ii + 1;
+            if('+' == sql.charAt(exponent) || '-' == sql.charAt(exponent)) exponent++;
+            if(exponent < length && Character.isDigit(sql.charAt(exponent)))
+            {
+                ii = exponent;
+                while(ii < length && Character.isDigit(sql.charAt(ii))) ii++;
+            }
+        }
+        return ii;
+    }
+
+    /**
+     * Replaces the tokens <code>in ( ? , ? , ... ?</code> at the
+     * end of the specified list by <code>in ( ?</code>.
+     */
+    private static void collapseInList(List<String> tokens)
+    {
+        int ii = tokens.size() - 1;
+        if(ii < 0 || !"?".equals(tokens.get(ii))) return;
+        while(ii >= 2 && ",".equals(tokens.get(ii - 1)) && "?".equals(tokens.get(ii - 2))) ii -= 2;
+        if(ii < 2 || !"(".equals(tokens.get(ii - 1)) || !"in".equals(tokens.get(ii - 2))) return;
+        tokens.subList(ii + 1, tokens.size()).clear();
+    }
+
+    private static String join(List<String> tokens)
+    {
+        StringBuilder builder = new StringBuilder();
+        String previous = null;
+        for(String nextToken : tokens)
+        {
+            if(null != previous && !"(".equals(previous) && !".".equals(previous) &&
+               !",".equals(nextToken) && !")".equals(nextToken) && !".".equals(nextToken))
+            {
+                builder.append(' ');
+            }
+            builder.append(nextToken);
+            previous = nextToken;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns if a <code>+</code> or <code>-</code> followed by
+     * a digit starts at the specified position.
+     */
+    private static boolean isSign(String sql, int index)
+    {
+        char character = sql.charAt(index);
+        if('+' != character && '-' != character) return false;
+        return index + 1 < sql.length() && Character.isDigit(sql.charAt(index + 1));
+    }
+
+    /**
+     * Returns if the next token must be an operand, i.e. a sign
+     * can't be a binary operator. That's the case at the start,
+     * after an operator, an opening parenthesis, a comma or a
+     * keyword like <code>where</code>.
+     */
+    private static boolean isOperandExpected(List<String> tokens)
+    {
+        if(tokens.isEmpty()) return true;
+        String previous = tokens.get(tokens.size() - 1);
+        if("(".equals(previous) || ",".equals(previous)) return true;
+        if(isOperator(previous.charAt(0)) && !isParameterName(previous, 0)) return true;
+        return KEYWORDS_BEFORE_OPERAND.contains(previous);
+    }
+
+    /**
+     * Returns if a named or numbered parameter, e.g. <code>:name</code>
+     * or <code>?1</code>, starts at the specified position.
+     */
+    private static boolean isParameterName(String sql, int index)
+    {
+        char character = sql.charAt(index);
+        if('?' != character && ':' != character && '@' != character) return false;
+        return index + 1 < sql.length() && isIdentifierPart(sql.charAt(index + 1));
+    }
+
+    private static boolean isIdentifierPart(char character)
+    {
+        return Character.isLetterOrDigit(character) || '_' == character || '$' == character || '#' == character;
+    }
+
+    private static boolean isOperator(char character)
+    {
+        switch(character)
+        {
+            case '<':
+            case '>':
+            case '=':
+            case '!':
+            case '|':
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '%':
+            case '&':
+            case '^':
+            case '~':
+            case ':':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
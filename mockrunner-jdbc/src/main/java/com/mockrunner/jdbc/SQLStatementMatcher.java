@@ -22,10 +22,14 @@ import java.util.Map.Entry;
  * <code>useRegularExpression</code> use regular expressions for matching, if this parameter is
  *                                   <code>false</code>, strings match, if one string starts with the other
  *                                   (default is <code>false</code>)
+ * <br>
+ * <code>normalizeSQL</code> compare the normalized SQL strings, see {@link SQLFingerprint}, irrelevant
+ *                           if regular expressions are used (default is <code>false</code>)
  */
 public class SQLStatementMatcher
 {
     private final PatternMatcher.Factory patternMatcherFactory;
+    private final boolean normalizeSQL;
 
     public SQLStatementMatcher(boolean caseSensitive, boolean exactMatch)
     {
@@ -37,8 +41,45 @@ public class SQLStatementMatcher
         this(PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions));
     }
 
+    /**
+     * Creates a matcher that takes the compiled patterns from the
+     * specified cache instead of compiling them for each comparison.
+     * @param caseSensitive do a case sensitive match
+     * @param exactMatch the strings must match exactly
+     * @param useRegularExpressions use regular expressions for matching
+     * @param cache the cache for the compiled patterns, may be <code>null</code>
+     */
+    public SQLStatementMatcher(boolean caseSensitive, boolean exactMatch, boolean useRegularExpressions, PatternMatcherCache cache)
+    {
+        this(caseSensitive, exactMatch, useRegularExpressions, false, cache);
+    }
+
+    /**
+     * Creates a matcher that takes the compiled patterns from the
+     * specified cache and optionally compares the normalized SQL strings.
+     * If <i>normalizeSQL</i> is <code>true</code> and regular expressions
+     * are not used, both strings are normalized with {@link SQLFingerprint}
+     * before they are compared.
+     * @param caseSensitive do a case sensitive match
+     * @param exactMatch the strings must match exactly
+     * @param useRegularExpressions use regular expressions for matching
+     * @param normalizeSQL compare the normalized SQL strings
+     * @param cache the cache for the compiled patterns, may be <code>null</code>
+     */
+    public SQLStatementMatcher(boolean caseSensitive, boolean exactMatch, boolean useRegularExpressions, boolean normalizeSQL, PatternMatcherCache cache)
+    {
+        this(null == cache ? PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions) :
+                             cache.getCachingFactory(PatternMatcher.Factories.from(caseSensitive, exactMatch, useRegularExpressions)),
+             normalizeSQL && (exactMatch || !useRegularExpressions));
+    }
+
     public SQLStatementMatcher(PatternMatcher.Factory patternMatcherFactory) {
+        this(patternMatcherFactory, false);
+    }
+
+    private SQLStatementMatcher(PatternMatcher.Factory patternMatcherFactory, boolean normalizeSQL) {
         this.patternMatcherFactory = patternMatcherFactory;
+        this.normalizeSQL = normalizeSQL;
     }
     
     /**
@@ -55,22 +96,12 @@ public class SQLStatementMatcher
      */
     public <T> List<T> getMatchingObjects(Map<String, ? extends T> dataMap, String query, boolean queryContainsMapData)
 	{
-		if(null == query) query = "";
+		String normalizedQuery = normalize(query);
+		PatternMatcher queryMatcher = queryContainsMapData ? null : patternMatcherFactory.create(normalizedQuery);
 		List<T> resultList = new ArrayList<T>();
         
         for(Entry<String, ? extends T> entry : dataMap.entrySet()){
-			String source, currentQuery;
-			if(queryContainsMapData)
-			{
-				source = query;
-				currentQuery = entry.getKey();
-			}
-			else
-			{
-				source = entry.getKey();
-				currentQuery = query;
-			}
-			if(doStringsMatch(source, currentQuery)){
+			if(doStringsMatch(normalizedQuery, queryMatcher, entry.getKey())){
                 T matchingObject = entry.getValue();
     			resultList.add(matchingObject);
             }
@@ -92,22 +123,12 @@ public class SQLStatementMatcher
      */
     public <T> List<T> getMatchingObjectsFromCollections(Map<String, ? extends Collection<? extends T>> dataMap, String query, boolean queryContainsMapData)
 	{
-		if(null == query) query = "";
+		String normalizedQuery = normalize(query);
+		PatternMatcher queryMatcher = queryContainsMapData ? null : patternMatcherFactory.create(normalizedQuery);
 		List<T> resultList = new ArrayList<T>();
         
         for(Entry<String, ? extends Collection<? extends T>> entry : dataMap.entrySet()){
-			String source, currentQuery;
-			if(queryContainsMapData)
-			{
-				source = query;
-				currentQuery = entry.getKey();
-			}
-			else
-			{
-				source = entry.getKey();
-				currentQuery = query;
-			}
-			if(doStringsMatch(source, currentQuery)){
+			if(doStringsMatch(normalizedQuery, queryMatcher, entry.getKey())){
                 Collection<? extends T> matchingObject = entry.getValue();
                 resultList.addAll(matchingObject);
             }
@@ -127,19 +148,10 @@ public class SQLStatementMatcher
      */
     public boolean contains(Collection<String> col, String query, boolean queryContainsData)
     {
+        String normalizedQuery = normalize(query);
+        PatternMatcher queryMatcher = queryContainsData ? null : patternMatcherFactory.create(normalizedQuery);
         for(String element : col){
-			String source, currentQuery;
-			if(queryContainsData)
-			{
-				source = query;
-				currentQuery = element;
-			}
-			else
-			{
-				source = element;
-				currentQuery = query;
-			}
-			if(doStringsMatch(source, currentQuery)) return true;
+			if(doStringsMatch(normalizedQuery, queryMatcher, element)) return true;
         }
         return false;
     }
@@ -152,9 +164,26 @@ public class SQLStatementMatcher
      */
     public boolean doStringsMatch(String source, String query)
     {
-        if(null == source) source = "";
-        if(null == query) query = "";
-        PatternMatcher patternMatcher = patternMatcherFactory.create(query);
-        return patternMatcher.matches(source);
+        PatternMatcher patternMatcher = patternMatcherFactory.create(normalize(query));
+        return patternMatcher.matches(normalize(source));
+    }
+    
+    /**
+     * Matches the specified data string with the query, that is normalized
+     * only once for all data strings. If <i>queryMatcher</i> is not
+     * <code>null</code>, the data string must match the query, otherwise
+     * the query must match the data string.
+     */
+    private boolean doStringsMatch(String normalizedQuery, PatternMatcher queryMatcher, String data)
+    {
+        if(null != queryMatcher) return queryMatcher.matches(normalize(data));
+        return patternMatcherFactory.create(normalize(data)).matches(normalizedQuery);
+    }
+    
+    private String normalize(String sql)
+    {
+        if(null == sql) return "";
+        if(!normalizeSQL) return sql;
+        return SQLFingerprint.normalize(sql);
     }
 }
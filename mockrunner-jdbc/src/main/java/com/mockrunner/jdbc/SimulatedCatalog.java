@@ -0,0 +1,825 @@
+package com.mockrunner.jdbc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.DatabaseMetaData;
+import java.sql.JDBCType;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.util.common.FileUtil;
+import com.mockrunner.util.common.StringUtil;
+
+/**
+ * An in-memory model of the tables, columns, primary keys and indexes
+ * of a database. It answers the <code>DatabaseMetaData</code> queries
+ * of {@link com.mockrunner.mock.jdbc.MockDatabaseMetaData}, if it's set
+ * with {@link com.mockrunner.mock.jdbc.MockDatabaseMetaData#setSimulatedCatalog},
+ * so tools that inspect the schema don't need a prepared result set
+ * for every query.
+ * <br>
+ * The names are kept in sorted maps, catalog, schema, table and column.
+ * A name without wildcards is looked up directly. A <code>LIKE</code>
+ * pattern only visits the names that start with the characters before
+ * the first wildcard, e.g. <code>ORDER%</code> visits the tables starting
+ * with <code>ORDER</code>. A <code>%</code> at the start visits all names
+ * of the level. Wildcards may be escaped with <code>\</code>.
+ * A catalog or schema name of <code>""</code> selects tables without
+ * catalog or schema, <code>null</code> doesn't restrict the query.
+ * <br>
+ * The model can be loaded from a schema file with {@link #load}.
+ * The file contains one record per line, the fields are separated
+ * by <code>;</code>. Empty lines and lines starting with <code>#</code>
+ * are ignored. The following records are supported, the fields in
+ * brackets are optional:
+ * <pre>
+ * TABLE;catalog;schema;table[;type]
+ * COLUMN;catalog;schema;table;column;typeName[;size[;decimalDigits[;nullable]]]
+ * PRIMARY_KEY;catalog;schema;table;keyName;column1,column2
+ * INDEX;catalog;schema;table;indexName;unique;column1,column2
+ * </pre>
+ * e.g.
+ * <pre>
+ * TABLE;;PUBLIC;PERSON
+ * COLUMN;;PUBLIC;PERSON;ID;INTEGER;10;0;false
+ * COLUMN;;PUBLIC;PERSON;NAME;VARCHAR;100
+ * PRIMARY_KEY;;PUBLIC;PERSON;PK_PERSON;ID
+ * INDEX;;PUBLIC;PERSON;IDX_PERSON_NAME;false;NAME
+ * </pre>
+ * The default table type is <code>TABLE</code>, columns are nullable
+ * by default. The column type is determined by the type name, e.g.
+ * <code>VARCHAR</code> is <code>Types.VARCHAR</code>, unknown type
+ * names are <code>Types.OTHER</code>.
+ * <br>
+ * This class is thread safe.
+ */
+public class SimulatedCatalog
+{
+    private final static String[] TABLE_COLUMNS = {"TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "TABLE_TYPE", "REMARKS", "TYPE_CAT", "TYPE_SCHEM", "TYPE_NAME", "SELF_REFERENCING_COL_NAME", "REF_GENERATION"};
+    private final static String[] COLUMN_COLUMNS = {"TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "COLUMN_NAME", "DATA_TYPE", "TYPE_NAME", "COLUMN_SIZE", "BUFFER_LENGTH", "DECIMAL_DIGITS", "NUM_PREC_RADIX", "NULLABLE", "REMARKS", "COLUMN_DEF", "SQL_DATA_TYPE", "SQL_DATETIME_SUB", "CHAR_OCTET_LENGTH", "ORDINAL_POSITION", "IS_NULLABLE", "SCOPE_CATALOG", "SCOPE_SCHEMA", "SCOPE_TABLE", "SOURCE_DATA_TYPE", "IS_AUTOINCREMENT", "IS_GENERATEDCOLUMN"};
+    private final static String[] PRIMARY_KEY_COLUMNS = {"TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "COLUMN_NAME", "KEY_SEQ", "PK_NAME"};
+    private final static String[] INDEX_COLUMNS = {"TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "NON_UNIQUE", "INDEX_QUALIFIER", "INDEX_NAME", "TYPE", "ORDINAL_POSITION", "COLUMN_NAME", "ASC_OR_DESC", "CARDINALITY", "PAGES", "FILTER_CONDITION"};
+
+    private final boolean caseSensitive;
+    private final NavigableMap<String, NavigableMap<String, NavigableMap<String, Table>>> catalogs;
+    private final ReadWriteLock lock;
+
+    /**
+     * Creates a catalog with names that are not case sensitive.
+     */
+    public SimulatedCatalog()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a catalog.
+     * @param caseSensitive are the names case sensitive
+     */
+    public SimulatedCatalog(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+        catalogs = createMap();
+        lock = new ReentrantReadWriteLock();
+    }
+
+    public boolean isCaseSensitive()
+    {
+        return caseSensitive;
+    }
+
+    /**
+     * Adds a table.
+     * @param catalog the catalog, <code>null</code> or <code>""</code> for none
+     * @param schema the schema, <code>null</code> or <code>""</code> for none
+     * @param table the name of the table
+     * @param tableType the type of the table, e.g. <code>TABLE</code> or <code>VIEW</code>
+     * @throws IllegalArgumentException if the table already exists
+     */
+    public void addTable(String catalog, String schema, String table, String tableType)
+    {
+        if(null == table || table.length() == 0)
+        {
+            throw new IllegalArgumentException("table must not be empty");
+        }
+        if(null == tableType || tableType.length() == 0)
+        {
+            throw new IllegalArgumentException("tableType must not be empty");
+        }
+        lock.writeLock().lock();
+        try
+        {
+            NavigableMap<String, NavigableMap<String, Table>> schemas = catalogs.get(toKey(catalog));
+            if(null == schemas)
+            {
+                schemas = createMap();
+                catalogs.put(toKey(catalog), schemas);
+            }
+            NavigableMap<String, Table> tables = schemas.get(toKey(schema));
+            if(null == tables)
+            {
+                tables = createMap();
+                schemas.put(toKey(schema), tables);
+            }
+            if(tables.containsKey(table))
+            {
+                throw new IllegalArgumentException("Table " + table + " already exists");
+            }
+            tables.put(table, new Table(toKey(catalog), toKey(schema), table, tableType, createMap()));
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a column to a table. The columns are numbered in the order
+     * they are added.
+     * @param catalog the catalog of the table
+     * @param schema the schema of the table
+     * @param table the name of the table
+     * @param column the name of the column
+     * @param typeName the SQL type name, e.g. <code>VARCHAR</code>
+     * @param columnSize the size of the column
+     * @param decimalDigits the number of fractional digits
+     * @param nullable is the column nullable
+     * @throws IllegalArgumentException if the table doesn't exist
+     *         or the column already exists
+     */
+    public void addColumn(String catalog, String schema, String table, String column, String typeName, int columnSize, int decimalDigits, boolean nullable)
+    {
+        if(null == column || column.length() == 0)
+        {
+            throw new IllegalArgumentException("column must not be empty");
+        }
+        lock.writeLock().lock();
+        try
+        {
+            Table nextTable = getTable(catalog, schema, table);
+            if(nextTable.columnMap.containsKey(column))
+            {
+                throw new IllegalArgumentException("Table " + table + " already has a column " + column);
+            }
+            Column nextColumn = new Column(column, getType(typeName), typeName, columnSize, decimalDigits, nullable, nextTable.columns.size() + 1);
+            nextTable.columnMap.put(column, nextColumn);
+            nextTable.columns.add(nextColumn);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the primary key of a table.
+     * @param catalog the catalog of the table
+     * @param schema the schema of the table
+     * @param table the name of the table
+     * @param keyName the name of the primary key, may be <code>null</code>
+     * @param columns the columns of the key in key order
+     * @throws IllegalArgumentException if the table or a column doesn't exist
+     */
+    public void setPrimaryKey(String catalog, String schema, String table, String keyName, String... columns)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Table nextTable = getTable(catalog, schema, table);
+            nextTable.primaryKey = new Index(keyName, true, getColumns(nextTable, columns));
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an index to a table.
+     * @param catalog the catalog of the table
+     * @param schema the schema of the table
+     * @param table the name of the table
+     * @param indexName the name of the index
+     * @param unique is the index unique
+     * @param columns the columns of the index in index order
+     * @throws IllegalArgumentException if the table or a column doesn't exist
+     */
+    public void addIndex(String catalog, String schema, String table, String indexName, boolean unique, String... columns)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Table nextTable = getTable(catalog, schema, table);
+            nextTable.indexes.add(new Index(indexName, unique, getColumns(nextTable, columns)));
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all tables.
+     */
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            catalogs.clear();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the tables of a schema file. See the class comment
+     * for the format. The file is searched like the files of
+     * {@link FileResultSetFactory}.
+     * @param file the schema file
+     * @throws IllegalArgumentException if a record is invalid
+     */
+    public void load(File file)
+    {
+        Reader reader = null;
+        try
+        {
+            if(!file.isFile())
+            {
+                file = FileUtil.findFile(file.getPath());
+            }
+            reader = new FileReader(file);
+            load(reader);
+        }
+        catch(FileNotFoundException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            if(null != reader)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch(IOException ignored)
+                {
+
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the tables of a schema description. See the class comment
+     * for the format. The <code>Reader</code> is not closed.
+     * @param reader the schema description
+     * @throws IllegalArgumentException if a record is invalid
+     */
+    public void load(Reader reader)
+    {
+        BufferedReader lineReader = new BufferedReader(reader);
+        int lineNumber = 0;
+        try
+        {
+            String line;
+            while(null != (line = lineReader.readLine()))
+            {
+                lineNumber++;
+                line = line.trim();
+                if(line.length() == 0 || line.startsWith("#")) continue;
+                loadRecord(StringUtil.split(line, ";", true));
+            }
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        catch(RuntimeException exc)
+        {
+            throw new IllegalArgumentException("Invalid record in line " + lineNumber + ": " + exc.getMessage(), exc);
+        }
+    }
+
+    private void loadRecord(String[] fields)
+    {
+        String type = getField(fields, 0, "").toUpperCase();
+        if("TABLE".equals(type))
+        {
+            checkFields(fields, 4, 5);
+            addTable(fields[1], fields[2], fields[3], getField(fields, 4, "TABLE"));
+        }
+        else if("COLUMN".equals(type))
+        {
+            checkFields(fields, 6, 9);
+            int columnSize = Integer.parseInt(getField(fields, 6, "0"));
+            int decimalDigits = Integer.parseInt(getField(fields, 7, "0"));
+            boolean nullable = Boolean.valueOf(getField(fields, 8, "true"));
+            addColumn(fields[1], fields[2], fields[3], fields[4], fields[5], columnSize, decimalDigits, nullable);
+        }
+        else if("PRIMARY_KEY".equals(type))
+        {
+            checkFields(fields, 6, 6);
+            setPrimaryKey(fields[1], fields[2], fields[3], fields[4], getColumnNames(fields[5]));
+        }
+        else if("INDEX".equals(type))
+        {
+            checkFields(fields, 7, 7);
+            addIndex(fields[1], fields[2], fields[3], fields[4], Boolean.valueOf(fields[5]), getColumnNames(fields[6]));
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown record type " + fields[0]);
+        }
+    }
+
+    private void checkFields(String[] fields, int minLength, int maxLength)
+    {
+        if(fields.length < minLength || fields.length > maxLength)
+        {
+            throw new IllegalArgumentException(fields[0] + " requires " + (minLength - 1) + " to " + (maxLength - 1) + " fields");
+        }
+    }
+
+    private String getField(String[] fields, int index, String defaultValue)
+    {
+        if(index >= fields.length || null == fields[index]) return defaultValue;
+        return fields[index];
+    }
+
+    private String[] getColumnNames(String columns)
+    {
+        if(null == columns) return null;
+        return StringUtil.split(columns, ",", true);
+    }
+
+    /**
+     * Returns the catalogs like <code>DatabaseMetaData.getCatalogs</code>.
+     * @return the catalogs
+     */
+    public MockResultSet getCatalogs()
+    {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        lock.readLock().lock();
+        try
+        {
+            for(String nextCatalog : catalogs.keySet())
+            {
+                if(nextCatalog.length() > 0) rows.add(new Object[] {nextCatalog});
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return createResultSet("catalogs", new String[] {"TABLE_CAT"}, rows);
+    }
+
+    /**
+     * Returns the table types like <code>DatabaseMetaData.getTableTypes</code>.
+     * @return the table types
+     */
+    public MockResultSet getTableTypes()
+    {
+        TreeSet<String> tableTypes = new TreeSet<String>();
+        for(Table nextTable : findTables(null, null, null))
+        {
+            tableTypes.add(nextTable.type);
+        }
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for(String nextType : tableTypes)
+        {
+            rows.add(new Object[] {nextType});
+        }
+        return createResultSet("tableTypes", new String[] {"TABLE_TYPE"}, rows);
+    }
+
+    /**
+     * Returns the schemas like <code>DatabaseMetaData.getSchemas</code>.
+     * @param catalog the catalog
+     * @param schemaPattern the schema pattern
+     * @return the schemas
+     */
+    public MockResultSet getSchemas(String catalog, String schemaPattern)
+    {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        lock.readLock().lock();
+        try
+        {
+            for(Map.Entry<String, NavigableMap<String, NavigableMap<String, Table>>> nextCatalog : findCatalogs(catalog))
+            {
+                for(Map.Entry<String, NavigableMap<String, Table>> nextSchema : findMatching(nextCatalog.getValue(), schemaPattern))
+                {
+                    if(nextSchema.getKey().length() == 0) continue;
+                    rows.add(new Object[] {nextSchema.getKey(), fromKey(nextCatalog.getKey())});
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return createResultSet("schemas", new String[] {"TABLE_SCHEM", "TABLE_CATALOG"}, rows);
+    }
+
+    /**
+     * Returns the tables like <code>DatabaseMetaData.getTables</code>.
+     * @param catalog the catalog
+     * @param schemaPattern the schema pattern
+     * @param tableNamePattern the table name pattern
+     * @param types the table types, <code>null</code> for all types
+     * @return the tables
+     */
+    public MockResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types)
+    {
+        List<Table> tables = findTables(catalog, schemaPattern, tableNamePattern);
+        List<Object[]> rows = new ArrayList<Object[]>(tables.size());
+        for(Table nextTable : tables)
+        {
+            if(null != types && !containsType(types, nextTable.type)) continue;
+            rows.add(new Object[] {fromKey(nextTable.catalog), fromKey(nextTable.schema), nextTable.name, nextTable.type, null, null, null, null, null, null});
+        }
+        Collections.sort(rows, new Comparator<Object[]>()
+        {
+            public int compare(Object[] row1, Object[] row2)
+            {
+                return ((String)row1[3]).compareTo((String)row2[3]);
+            }
+        });
+        return createResultSet("tables", TABLE_COLUMNS, rows);
+    }
+
+    /**
+     * Returns the columns like <code>DatabaseMetaData.getColumns</code>.
+     * @param catalog the catalog
+     * @param schemaPattern the schema pattern
+     * @param tableNamePattern the table name pattern
+     * @param columnNamePattern the column name pattern
+     * @return the columns
+     */
+    public MockResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern)
+    {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        lock.readLock().lock();
+        try
+        {
+            for(Table nextTable : findTables(catalog, schemaPattern, tableNamePattern))
+            {
+                List<Column> columns;
+                if(null == columnNamePattern || "%".equals(columnNamePattern))
+                {
+                    columns = nextTable.columns;
+                }
+                else
+                {
+                    columns = new ArrayList<Column>();
+                    for(Map.Entry<String, Column> nextEntry : findMatching(nextTable.columnMap, columnNamePattern))
+                    {
+                        columns.add(nextEntry.getValue());
+                    }
+                    Collections.sort(columns);
+                }
+                for(Column nextColumn : columns)
+                {
+                    rows.add(new Object[] {fromKey(nextTable.catalog), fromKey(nextTable.schema), nextTable.name, nextColumn.name,
+                                           nextColumn.dataType, nextColumn.typeName, nextColumn.columnSize, null, nextColumn.decimalDigits, 10,
+                                           nextColumn.nullable ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNoNulls,
+                                           null, null, null, null, null, nextColumn.position, nextColumn.nullable ? "YES" : "NO",
+                                           null, null, null, null, "NO", "NO"});
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return createResultSet("columns", COLUMN_COLUMNS, rows);
+    }
+
+    /**
+     * Returns the primary key columns like <code>DatabaseMetaData.getPrimaryKeys</code>.
+     * @param catalog the catalog
+     * @param schema the schema
+     * @param table the table name
+     * @return the primary key columns
+     */
+    public MockResultSet getPrimaryKeys(String catalog, String schema, String table)
+    {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        lock.readLock().lock();
+        try
+        {
+            for(Table nextTable : findTables(catalog, escape(schema), escape(table)))
+            {
+                Index key = nextTable.primaryKey;
+                if(null == key) continue;
+                for(int ii = 0; ii < key.columns.size(); ii++)
+                {
+                    rows.add(new Object[] {fromKey(nextTable.catalog), fromKey(nextTable.schema), nextTable.name, key.columns.get(ii).name, (short)(ii + 1), key.name});
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return createResultSet("primaryKeys", PRIMARY_KEY_COLUMNS, rows);
+    }
+
+    /**
+     * Returns the index columns like <code>DatabaseMetaData.getIndexInfo</code>.
+     * @param catalog the catalog
+     * @param schema the schema
+     * @param table the table name
+     * @param unique return only unique indexes
+     * @param approximate ignored
+     * @return the index columns
+     */
+    public MockResultSet getIndexInfo(String catalog, String schema, String table, boolean unique, boolean approximate)
+    {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        lock.readLock().lock();
+        try
+        {
+            for(Table nextTable : findTables(catalog, escape(schema), escape(table)))
+            {
+                List<Index> indexes = new ArrayList<Index>(nextTable.indexes);
+                Collections.sort(indexes);
+                for(Index nextIndex : indexes)
+                {
+                    if(unique && !nextIndex.unique) continue;
+                    for(int ii = 0; ii < nextIndex.columns.size(); ii++)
+                    {
+                        rows.add(new Object[] {fromKey(nextTable.catalog), fromKey(nextTable.schema), nextTable.name, !nextIndex.unique, null, nextIndex.name,
+                                               DatabaseMetaData.tableIndexOther, (short)(ii + 1), nextIndex.columns.get(ii).name, "A", 0L, 0L, null});
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return createResultSet("indexInfo", INDEX_COLUMNS, rows);
+    }
+
+    private List<Table> findTables(String catalog, String schemaPattern, String tableNamePattern)
+    {
+        List<Table> tables = new ArrayList<Table>();
+        lock.readLock().lock();
+        try
+        {
+            for(Map.Entry<String, NavigableMap<String, NavigableMap<String, Table>>> nextCatalog : findCatalogs(catalog))
+            {
+                for(Map.Entry<String, NavigableMap<String, Table>> nextSchema : findMatching(nextCatalog.getValue(), schemaPattern))
+                {
+                    for(Map.Entry<String, Table> nextTable : findMatching(nextSchema.getValue(), tableNamePattern))
+                    {
+                        tables.add(nextTable.getValue());
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return tables;
+    }
+
+    private List<Map.Entry<String, NavigableMap<String, NavigableMap<String, Table>>>> findCatalogs(String catalog)
+    {
+        if(null == catalog) return new ArrayList<Map.Entry<String, NavigableMap<String, NavigableMap<String, Table>>>>(catalogs.entrySet());
+        return findMatching(catalogs, escape(catalog));
+    }
+
+    /**
+     * Returns the entries matching the pattern. A pattern without
+     * wildcards is looked up directly, otherwise only the entries
+     * starting with the literal prefix of the pattern are compared.
+     */
+    private <T> List<Map.Entry<String, T>> findMatching(NavigableMap<String, T> map, String pattern)
+    {
+        if(null == pattern || "%".equals(pattern)) return new ArrayList<Map.Entry<String, T>>(map.entrySet());
+        StringBuilder prefix = new StringBuilder();
+        int index = 0;
+        while(index < pattern.length())
+        {
+            char next = pattern.charAt(index);
+            if(next == '%' || next == '_') break;
+            if(next == '\\' && index + 1 < pattern.length())
+            {
+                index++;
+                next = pattern.charAt(index);
+            }
+            prefix.append(next);
+            index++;
+        }
+        List<Map.Entry<String, T>> entries = new ArrayList<Map.Entry<String, T>>();
+        if(index == pattern.length())
+        {
+            if(map.containsKey(prefix.toString()))
+            {
+                entries.add(map.ceilingEntry(prefix.toString()));
+            }
+            return entries;
+        }
+        for(Map.Entry<String, T> nextEntry : map.tailMap(prefix.toString(), true).entrySet())
+        {
+            if(!nextEntry.getKey().regionMatches(!caseSensitive, 0, prefix.toString(), 0, prefix.length())) break;
+            if(StringUtil.matchesLike(nextEntry.getKey(), pattern, caseSensitive))
+            {
+                entries.add(nextEntry);
+            }
+        }
+        return entries;
+    }
+
+    private Table getTable(String catalog, String schema, String table)
+    {
+        NavigableMap<String, NavigableMap<String, Table>> schemas = catalogs.get(toKey(catalog));
+        NavigableMap<String, Table> tables = (null == schemas) ? null : schemas.get(toKey(schema));
+        Table nextTable = (null == tables || null == table) ? null : tables.get(table);
+        if(null == nextTable)
+        {
+            throw new IllegalArgumentException("Unknown table " + table);
+        }
+        return nextTable;
+    }
+
+    private List<Column> getColumns(Table table, String[] columnNames)
+    {
+        if(null == columnNames || columnNames.length == 0)
+        {
+            throw new IllegalArgumentException("at least one column is required");
+        }
+        List<Column> columns = new ArrayList<Column>(columnNames.length);
+        for(String nextName : columnNames)
+        {
+            Column nextColumn = table.columnMap.get(nextName);
+            if(null == nextColumn)
+            {
+                throw new IllegalArgumentException("Table " + table.name + " has no column " + nextName);
+            }
+            columns.add(nextColumn);
+        }
+        return columns;
+    }
+
+    private boolean containsType(String[] types, String type)
+    {
+        for(String nextType : types)
+        {
+            if(type.equalsIgnoreCase(nextType)) return true;
+        }
+        return false;
+    }
+
+    private int getType(String typeName)
+    {
+        if(null == typeName || typeName.length() == 0)
+        {
+            throw new IllegalArgumentException("typeName must not be empty");
+        }
+        try
+        {
+            return JDBCType.valueOf(typeName.toUpperCase()).getVendorTypeNumber();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            return Types.OTHER;
+        }
+    }
+
+    private MockResultSet createResultSet(String id, String[] columnNames, List<Object[]> rows)
+    {
+        MockResultSet resultSet = new MockResultSet(id);
+        for(int ii = 0; ii < columnNames.length; ii++)
+        {
+            List<Object> column = new ArrayList<Object>(rows.size());
+            for(Object[] nextRow : rows)
+            {
+                column.add(nextRow[ii]);
+            }
+            resultSet.addColumn(columnNames[ii], column);
+        }
+        return resultSet;
+    }
+
+    private <T> NavigableMap<String, T> createMap()
+    {
+        if(caseSensitive) return new TreeMap<String, T>();
+        return new TreeMap<String, T>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    private static String escape(String name)
+    {
+        if(null == name) return null;
+        StringBuilder escaped = new StringBuilder(name.length());
+        for(int ii = 0; ii < name.length(); ii++)
+        {
+            char next = name.charAt(ii);
+            if(next == '%' || next == '_' || next == '\\') escaped.append('\\');
+            escaped.append(next);
+        }
+        return escaped.toString();
+    }
+
+    private static String toKey(String name)
+    {
+        return (null == name) ? "" : name;
+    }
+
+    private static String fromKey(String key)
+    {
+        return (key.length() == 0) ? null : key;
+    }
+
+    private static class Table
+    {
+        private final String catalog;
+        private final String schema;
+        private final String name;
+        private final String type;
+        private final NavigableMap<String, Column> columnMap;
+        private final List<Column> columns;
+        private final List<Index> indexes;
+        private Index primaryKey;
+
+        public Table(String catalog, String schema, String name, String type, NavigableMap<String, Column> columnMap)
+        {
+            this.catalog = catalog;
+            this.schema = schema;
+            this.name = name;
+            this.type = type;
+            this.columnMap = columnMap;
+            this.columns = new ArrayList<Column>();
+            this.indexes = new ArrayList<Index>();
+        }
+    }
+
+    private static class Column implements Comparable<Column>
+    {
+        private final String name;
+        private final int dataType;
+        private final String typeName;
+        private final int columnSize;
+        private final int decimalDigits;
+        private final boolean nullable;
+        private final int position;
+
+        public Column(String name, int dataType, String typeName, int columnSize, int decimalDigits, boolean nullable, int position)
+        {
+            this.name = name;
+            this.dataType = dataType;
+            this.typeName = typeName;
+            this.columnSize = columnSize;
+            this.decimalDigits = decimalDigits;
+            this.nullable = nullable;
+            this.position = position;
+        }
+
+        public int compareTo(Column other)
+        {
+            return position - other.position;
+        }
+    }
+
+    private static class Index implements Comparable<Index>
+    {
+        private final String name;
+        private final boolean unique;
+        private final List<Column> columns;
+
+        public Index(String name, boolean unique, List<Column> columns)
+        {
+            this.name = name;
+            this.unique = unique;
+            this.columns = columns;
+        }
+
+        public int compareTo(Index other)
+        {
+            if(unique != other.unique) return unique ? -1 : 1;
+            return String.valueOf(name).compareTo(String.valueOf(other.name));
+        }
+    }
+}
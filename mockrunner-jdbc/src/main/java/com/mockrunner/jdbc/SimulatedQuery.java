@@ -0,0 +1,368 @@
+package com.mockrunner.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mockrunner.jdbc.SimulatedTable.Condition;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * A parsed <code>SELECT</code> statement that can be executed
+ * against a {@link SimulatedTable}. Only a simple subset of SQL
+ * is supported:
+ * <pre>
+ * SELECT * | column [, column]* FROM table [alias]
+ * [WHERE condition [AND condition]*]
+ * </pre>
+ * A condition compares a column with a value using <code>=</code>,
+ * <code>&lt;&gt;</code>, <code>!=</code>, <code>&lt;</code>,
+ * <code>&lt;=</code>, <code>&gt;</code> or <code>&gt;=</code>, or is
+ * <code>column BETWEEN value AND value</code>,
+ * <code>column IS NULL</code> or <code>column IS NOT NULL</code>.
+ * A value is a <code>?</code> parameter, a number, a string in single
+ * quotes, <code>TRUE</code>, <code>FALSE</code> or <code>NULL</code>.
+ * Column names may be qualified with the table name or alias.
+ * Keywords are not case sensitive.
+ */
+public class SimulatedQuery
+{
+    private final String tableName;
+    private final List<String> columnNames;
+    private final List<ParsedCondition> conditions;
+
+    private SimulatedQuery(String tableName, List<String> columnNames, List<ParsedCondition> conditions)
+    {
+        this.tableName = tableName;
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.conditions = conditions;
+    }
+
+    /**
+     * Parses the specified SQL statement.
+     * @param sql the SQL statement
+     * @return the parsed query
+     * @throws IllegalArgumentException if the statement is not supported
+     */
+    public static SimulatedQuery parse(String sql)
+    {
+        return new Parser(sql).parse();
+    }
+
+    public String getTableName()
+    {
+        return tableName;
+    }
+
+    /**
+     * Returns the selected columns. The list is empty
+     * for <code>SELECT *</code>.
+     * @return the selected columns
+     */
+    public List<String> getColumnNames()
+    {
+        return columnNames;
+    }
+
+    /**
+     * Returns the number of <code>?</code> parameters.
+     * @return the number of parameters
+     */
+    public int getParameterCount()
+    {
+        int count = 0;
+        for(ParsedCondition nextCondition : conditions)
+        {
+            if(nextCondition.parameterIndex > 0) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the conditions with the values of the specified
+     * parameters.
+     * @param parameters the parameters of the statement
+     * @return the conditions
+     */
+    public List<Condition> getConditions(MockParameterMap parameters)
+    {
+        List<Condition> result = new ArrayList<Condition>(conditions.size());
+        for(ParsedCondition nextCondition : conditions)
+        {
+            Object value = nextCondition.value;
+            if(nextCondition.parameterIndex > 0)
+            {
+                value = (null == parameters) ? null : parameters.get(nextCondition.parameterIndex);
+            }
+            result.add(new Condition(nextCondition.columnName, nextCondition.operator, value));
+        }
+        return result;
+    }
+
+    /**
+     * Executes the query against the specified table.
+     * @param id the id of the returned result set
+     * @param table the table
+     * @param parameters the parameters of the statement
+     * @return the selected rows
+     */
+    public MockResultSet execute(String id, SimulatedTable table, MockParameterMap parameters)
+    {
+        return table.select(id, columnNames, getConditions(parameters));
+    }
+
+    private static class ParsedCondition
+    {
+        private final String columnName;
+        private final int operator;
+        private final Object value;
+        private final int parameterIndex;
+
+        public ParsedCondition(String columnName, int operator, Object value, int parameterIndex)
+        {
+            this.columnName = columnName;
+            this.operator = operator;
+            this.value = value;
+            this.parameterIndex = parameterIndex;
+        }
+    }
+
+    private static class Parser
+    {
+        private final String sql;
+        private final List<String> tokens;
+        private int position;
+        private int parameterCount;
+        private String alias;
+        private String tableName;
+
+        public Parser(String sql)
+        {
+            this.sql = sql;
+            this.tokens = tokenize(sql);
+        }
+
+        public SimulatedQuery parse()
+        {
+            expect("SELECT");
+            List<String> columnNames = new ArrayList<String>();
+            List<String> qualifiedColumnNames = new ArrayList<String>();
+            if(accept("*"))
+            {
+                qualifiedColumnNames = null;
+            }
+            else
+            {
+                do
+                {
+                    qualifiedColumnNames.add(nextIdentifier());
+                }
+                while(accept(","));
+            }
+            expect("FROM");
+            tableName = nextIdentifier();
+            if(hasNext() && !isKeyword(peek(), "WHERE") && !peek().equals(";"))
+            {
+                accept("AS");
+                alias = nextIdentifier();
+            }
+            if(null != qualifiedColumnNames)
+            {
+                for(String nextName : qualifiedColumnNames)
+                {
+                    columnNames.add(unqualify(nextName));
+                }
+            }
+            List<ParsedCondition> conditions = new ArrayList<ParsedCondition>();
+            if(accept("WHERE"))
+            {
+                do
+                {
+                    parseCondition(conditions);
+                }
+                while(accept("AND"));
+            }
+            accept(";");
+            if(hasNext())
+            {
+                throw unsupported("unexpected " + peek());
+            }
+            return new SimulatedQuery(tableName, columnNames, conditions);
+        }
+
+        private void parseCondition(List<ParsedCondition> conditions)
+        {
+            String columnName = unqualify(nextIdentifier());
+            if(accept("IS"))
+            {
+                int operator = accept("NOT") ? Condition.IS_NOT_NULL : Condition.IS_NULL;
+                expect("NULL");
+                conditions.add(new ParsedCondition(columnName, operator, null, 0));
+                return;
+            }
+            if(accept("BETWEEN"))
+            {
+                conditions.add(parseValue(columnName, Condition.GREATER_OR_EQUAL));
+                expect("AND");
+                conditions.add(parseValue(columnName, Condition.LESS_OR_EQUAL));
+                return;
+            }
+            String operator = next();
+            if(operator.equals("=")) conditions.add(parseValue(columnName, Condition.EQUAL));
+            else if(operator.equals("<>") || operator.equals("!=")) conditions.add(parseValue(columnName, Condition.NOT_EQUAL));
+            else if(operator.equals("<")) conditions.add(parseValue(columnName, Condition.LESS));
+            else if(operator.equals("<=")) conditions.add(parseValue(columnName, Condition.LESS_OR_EQUAL));
+            else if(operator.equals(">")) conditions.add(parseValue(columnName, Condition.GREATER));
+            else if(operator.equals(">=")) conditions.add(parseValue(columnName, Condition.GREATER_OR_EQUAL));
+            else throw unsupported("unknown operator " + operator);
+        }
+
+        private ParsedCondition parseValue(String columnName, int operator)
+        {
+            String token = next();
+            if(token.equals("?"))
+            {
+                return new ParsedCondition(columnName, operator, null, ++parameterCount);
+            }
+            if(token.startsWith("'"))
+            {
+                return new ParsedCondition(columnName, operator, token.substring(1, token.length() - 1).replace("''", "'"), 0);
+            }
+            if(isKeyword(token, "NULL")) return new ParsedCondition(columnName, operator, null, 0);
+            if(isKeyword(token, "TRUE")) return new ParsedCondition(columnName, operator, Boolean.TRUE, 0);
+            if(isKeyword(token, "FALSE")) return new ParsedCondition(columnName, operator, Boolean.FALSE, 0);
+            String number = token;
+            if(token.equals("-") && hasNext()) number = "-" + next();
+            try
+            {
+                return new ParsedCondition(columnName, operator, new BigDecimal(number), 0);
+            }
+            catch(NumberFormatException exc)
+            {
+                throw unsupported("invalid value " + number);
+            }
+        }
+
+        private String unqualify(String columnName)
+        {
+            int index = columnName.lastIndexOf('.');
+            if(index < 0) return columnName;
+            String qualifier = columnName.substring(0, index);
+            if(!qualifier.equalsIgnoreCase(tableName) && !qualifier.equalsIgnoreCase(alias))
+            {
+                throw unsupported("unknown table " + qualifier);
+            }
+            return columnName.substring(index + 1);
+        }
+
+        private String nextIdentifier()
+        {
+            String token = next();
+            if(!Character.isJavaIdentifierStart(token.charAt(0)))
+            {
+                throw unsupported("expected identifier, found " + token);
+            }
+            return token;
+        }
+
+        private boolean hasNext()
+        {
+            return position < tokens.size();
+        }
+
+        private String peek()
+        {
+            return tokens.get(position);
+        }
+
+        private String next()
+        {
+            if(!hasNext())
+            {
+                throw unsupported("unexpected end");
+            }
+            return tokens.get(position++);
+        }
+
+        private boolean accept(String keyword)
+        {
+            if(hasNext() && isKeyword(peek(), keyword))
+            {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String keyword)
+        {
+            if(!accept(keyword))
+            {
+                throw unsupported("expected " + keyword);
+            }
+        }
+
+        private boolean isKeyword(String token, String keyword)
+        {
+            return token.equalsIgnoreCase(keyword);
+        }
+
+        private IllegalArgumentException unsupported(String message)
+        {
+            return new IllegalArgumentException("Unsupported SQL (" + message + "): " + sql);
+        }
+
+        private List<String> tokenize(String sql)
+        {
+            List<String> result = new ArrayList<String>();
+            int index = 0;
+            while(index < sql.length())
+            {
+                char next = sql.charAt(index);
+                if(Character.isWhitespace(next))
+                {
+                    index++;
+                }
+                else if(next == '\'')
+                {
+                    int end = index + 1;
+                    while(true)
+                    {
+                        if(end >= sql.length()) throw unsupported("unterminated string");
+                        if(sql.charAt(end) == '\'')
+                        {
+                            if(end + 1 < sql.length() && sql.charAt(end + 1) == '\'') end += 2;
+                            else break;
+                        }
+                        else end++;
+                    }
+                    result.add(sql.substring(index, end + 1));
+                    index = end + 1;
+                }
+                else if(Character.isJavaIdentifierStart(next) || Character.isDigit(next) || next == '.')
+                {
+                    int end = index + 1;
+                    while(end < sql.length() && (Character.isJavaIdentifierPart(sql.charAt(end)) || sql.charAt(end) == '.'))
+                    {
+                        end++;
+                    }
+                    result.add(sql.substring(index, end));
+                    index = end;
+                }
+                else if((next == '<' || next == '>' || next == '!') && index + 1 < sql.length() && (sql.charAt(index + 1) == '=' || (next == '<' && sql.charAt(index + 1) == '>')))
+                {
+                    result.add(sql.substring(index, index + 2));
+                    index += 2;
+                }
+                else
+                {
+                    result.add(String.valueOf(next));
+                    index++;
+                }
+            }
+            return result;
+        }
+    }
+}
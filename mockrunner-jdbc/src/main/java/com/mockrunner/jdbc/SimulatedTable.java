@@ -0,0 +1,706 @@
+package com.mockrunner.jdbc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * An in-memory table used to simulate queries against a larger
+ * amount of data without preparing a result set for every
+ * parameter combination. The rows are added with {@link #addRow}
+ * and selected with {@link #select}. Usually you don't call
+ * {@link #select} directly but prepare a
+ * {@link com.mockrunner.mock.jdbc.TableResultSet}, which parses
+ * simple <code>SELECT</code> statements and selects the rows
+ * with the parameters of the executing statement.
+ * <br>
+ * Columns can be indexed with {@link #createIndex}. A
+ * {@link #HASH_INDEX} is used for <code>=</code> conditions,
+ * a {@link #SORTED_INDEX} for <code>=</code> and range conditions.
+ * Without a usable index, all rows are compared. The values are
+ * converted for the comparison once, when the row is added, so
+ * comparing a row doesn't create any objects.
+ * <br>
+ * Values are compared like the database would do it, e.g.
+ * an <code>Integer</code> is equal to a <code>Long</code> or
+ * <code>BigDecimal</code> with the same value and a
+ * <code>java.sql.Date</code> is equal to a <code>Timestamp</code>
+ * with the same time. Values of different types, e.g. numbers
+ * and strings, are never equal. Conditions are <code>false</code>
+ * for <code>null</code> values, except <code>IS NULL</code>.
+ * Values of other classes are compared with <code>compareTo</code>,
+ * if they are <code>Comparable</code>, otherwise only <code>=</code>
+ * and <code>&lt;&gt;</code> are supported, using <code>equals</code>.
+ * These values can't be used in range conditions or in a column with a
+ * {@link #SORTED_INDEX}, an <code>IllegalArgumentException</code> is thrown.
+ * <br>
+ * This class is thread safe.
+ */
+public class SimulatedTable
+{
+    public final static int HASH_INDEX = 0;
+    public final static int SORTED_INDEX = 1;
+
+    private final static Comparator<Object> VALUE_COMPARATOR = new ValueComparator();
+
+    private final String name;
+    private final String[] columnNames;
+    private final Map<String, Integer> columnIndices;
+    private final List<Object[]> rows;
+    private final List<Object[]> normalizedRows;
+    private final Map<Integer, Index> indexes;
+    private final ReadWriteLock lock;
+
+    /**
+     * Creates a table with the specified columns.
+     * @param name the name of the table
+     * @param columnNames the names of the columns
+     */
+    public SimulatedTable(String name, String... columnNames)
+    {
+        if(null == name || name.trim().length() == 0)
+        {
+            throw new IllegalArgumentException("name must not be empty");
+        }
+        if(null == columnNames || columnNames.length == 0)
+        {
+            throw new IllegalArgumentException("at least one column is required");
+        }
+        this.name = name;
+        this.columnNames = columnNames.clone();
+        columnIndices = new HashMap<String, Integer>();
+        for(int ii = 0; ii < columnNames.length; ii++)
+        {
+            if(null != columnIndices.put(columnNames[ii].toUpperCase(), ii))
+            {
+                throw new IllegalArgumentException("Duplicate column " + columnNames[ii]);
+            }
+        }
+        rows = new ArrayList<Object[]>();
+        normalizedRows = new ArrayList<Object[]>();
+        indexes = new HashMap<Integer, Index>();
+        lock = new ReentrantReadWriteLock();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String[] getColumnNames()
+    {
+        return columnNames.clone();
+    }
+
+    /**
+     * Returns the position of the specified column, starting with 0.
+     * Column names are not case sensitive.
+     * @param columnName the name of the column
+     * @return the position of the column
+     * @throws IllegalArgumentException if the table has no such column
+     */
+    public int getColumnIndex(String columnName)
+    {
+        Integer index = columnIndices.get(columnName.toUpperCase());
+        if(null == index)
+        {
+            throw new IllegalArgumentException("Table " + name + " has no column " + columnName);
+        }
+        return index;
+    }
+
+    /**
+     * Adds a row. The number of values must be equal to the
+     * number of columns.
+     * @param values the values of the row
+     */
+    public void addRow(Object... values)
+    {
+        if(values.length != columnNames.length)
+        {
+            throw new IllegalArgumentException("Row has " + values.length + " values, table " + name + " has " + columnNames.length + " columns");
+        }
+        Object[] row = values.clone();
+        Object[] normalizedRow = normalizeRow(row);
+        lock.writeLock().lock();
+        try
+        {
+            for(Index nextIndex : indexes.values())
+            {
+                nextIndex.checkValue(normalizedRow[nextIndex.column]);
+            }
+            int position = rows.size();
+            rows.add(row);
+            normalizedRows.add(normalizedRow);
+            for(Index nextIndex : indexes.values())
+            {
+                nextIndex.add(normalizedRow[nextIndex.column], position);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a row. The number of values must be equal to the
+     * number of columns.
+     * @param values the values of the row
+     */
+    public void addRow(List<?> values)
+    {
+        addRow(values.toArray());
+    }
+
+    public int getRowCount()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return rows.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all rows. The indexes are kept.
+     */
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            rows.clear();
+            normalizedRows.clear();
+            for(Index nextIndex : indexes.values())
+            {
+                nextIndex.entries.clear();
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates an index for the specified column. An existing
+     * index for the column is replaced.
+     * @param columnName the name of the column
+     * @param type {@link #HASH_INDEX} or {@link #SORTED_INDEX}
+     */
+    public void createIndex(String columnName, int type)
+    {
+        if(type != HASH_INDEX && type != SORTED_INDEX)
+        {
+            throw new IllegalArgumentException("Unknown index type " + type);
+        }
+        int column = getColumnIndex(columnName);
+        lock.writeLock().lock();
+        try
+        {
+            Index index = new Index(column, type == SORTED_INDEX);
+            for(int ii = 0; ii < rows.size(); ii++)
+            {
+                index.add(normalizedRows.get(ii)[column], ii);
+            }
+            indexes.put(column, index);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void dropIndex(String columnName)
+    {
+        int column = getColumnIndex(columnName);
+        lock.writeLock().lock();
+        try
+        {
+            indexes.remove(column);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasIndex(String columnName)
+    {
+        int column = getColumnIndex(columnName);
+        lock.readLock().lock();
+        try
+        {
+            return indexes.containsKey(column);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the rows that match all conditions. The rows are
+     * returned in the order they were added.
+     * @param id the id of the returned result set
+     * @param selectedColumns the names of the returned columns,
+     *        <code>null</code> or an empty list for all columns
+     * @param conditions the conditions
+     * @return the selected rows
+     */
+    public MockResultSet select(String id, List<String> selectedColumns, List<Condition> conditions)
+    {
+        int[] columns = getColumns(selectedColumns);
+        int[] conditionColumns = new int[conditions.size()];
+        Object[] conditionValues = new Object[conditions.size()];
+        for(int ii = 0; ii < conditions.size(); ii++)
+        {
+            conditionColumns[ii] = getColumnIndex(conditions.get(ii).getColumnName());
+            conditionValues[ii] = normalize(conditions.get(ii).getValue());
+            if(isRangeOperator(conditions.get(ii).getOperator()) && null != conditionValues[ii] && !isOrdered(conditionValues[ii]))
+            {
+                throw new IllegalArgumentException("Range condition for column " + conditions.get(ii).getColumnName() + " needs a Comparable value, " + conditionValues[ii].getClass().getName() + " is not Comparable");
+            }
+        }
+        List<List<Object>> columnData = new ArrayList<List<Object>>(columns.length);
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            columnData.add(new ArrayList<Object>());
+        }
+        lock.readLock().lock();
+        try
+        {
+            int[] candidates = findCandidates(conditions, conditionColumns, conditionValues);
+            int size = (null == candidates) ? rows.size() : candidates.length;
+            for(int ii = 0; ii < size; ii++)
+            {
+                int position = (null == candidates) ? ii : candidates[ii];
+                if(matches(normalizedRows.get(position), conditions, conditionColumns, conditionValues))
+                {
+                    Object[] row = rows.get(position);
+                    for(int kk = 0; kk < columns.length; kk++)
+                    {
+                        columnData.get(kk).add(row[columns[kk]]);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        MockResultSet resultSet = new MockResultSet(id);
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            resultSet.addColumn(columnNames[columns[ii]], columnData.get(ii));
+        }
+        return resultSet;
+    }
+
+    private int[] getColumns(List<String> selectedColumns)
+    {
+        if(null == selectedColumns || selectedColumns.isEmpty())
+        {
+            int[] columns = new int[columnNames.length];
+            for(int ii = 0; ii < columns.length; ii++)
+            {
+                columns[ii] = ii;
+            }
+            return columns;
+        }
+        int[] columns = new int[selectedColumns.size()];
+        for(int ii = 0; ii < columns.length; ii++)
+        {
+            columns[ii] = getColumnIndex(selectedColumns.get(ii));
+        }
+        return columns;
+    }
+
+    /**
+     * Returns the positions of the rows that may match, sorted
+     * in ascending order, or <code>null</code> if no index can be
+     * used and all rows have to be compared. Equality conditions
+     * are preferred, because the number of matching rows is known.
+     */
+    private int[] findCandidates(List<Condition> conditions, int[] conditionColumns, Object[] conditionValues)
+    {
+        Collection<List<Integer>> bestCandidates = null;
+        int bestSize = Integer.MAX_VALUE;
+        for(int ii = 0; ii < conditions.size(); ii++)
+        {
+            Index index = indexes.get(conditionColumns[ii]);
+            if(null == index || conditions.get(ii).getOperator() != Condition.EQUAL) continue;
+            if(null == conditionValues[ii]) return new int[0];
+            List<Integer> positions = index.entries.get(conditionValues[ii]);
+            if(null == positions) return new int[0];
+            if(positions.size() < bestSize)
+            {
+                bestCandidates = Collections.singletonList(positions);
+                bestSize = positions.size();
+            }
+        }
+        if(null == bestCandidates)
+        {
+            for(int ii = 0; ii < conditions.size() && null == bestCandidates; ii++)
+            {
+                Index index = indexes.get(conditionColumns[ii]);
+                if(null != index && index.sorted && isRangeOperator(conditions.get(ii).getOperator()))
+                {
+                    NavigableMap<Object, List<Integer>> range = index.getRange(conditions, conditionColumns, conditionValues);
+                    if(null == range) return new int[0];
+                    bestCandidates = range.values();
+                }
+            }
+        }
+        if(null == bestCandidates) return null;
+        BitSet positions = new BitSet(rows.size());
+        for(List<Integer> nextPositions : bestCandidates)
+        {
+            for(Integer nextPosition : nextPositions)
+            {
+                positions.set(nextPosition);
+            }
+        }
+        int[] candidates = new int[positions.cardinality()];
+        int next = positions.nextSetBit(0);
+        for(int ii = 0; ii < candidates.length; ii++)
+        {
+            candidates[ii] = next;
+            next = positions.nextSetBit(next + 1);
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns if the specified row matches all conditions. The row and
+     * the condition values must be normalized, so no values have to be
+     * converted per row.
+     */
+    private boolean matches(Object[] normalizedRow, List<Condition> conditions, int[] conditionColumns, Object[] conditionValues)
+    {
+        for(int ii = 0; ii < conditionColumns.length; ii++)
+        {
+            Object value = normalizedRow[conditionColumns[ii]];
+            int operator = conditions.get(ii).getOperator();
+            if(operator == Condition.IS_NULL)
+            {
+                if(null != value) return false;
+                continue;
+            }
+            if(operator == Condition.IS_NOT_NULL)
+            {
+                if(null == value) return false;
+                continue;
+            }
+            if(null == value || null == conditionValues[ii]) return false;
+            if(getTypeRank(value) != getTypeRank(conditionValues[ii])) return false;
+            int result;
+            if(isOrdered(value))
+            {
+                result = VALUE_COMPARATOR.compare(value, conditionValues[ii]);
+            }
+            else
+            {
+                result = value.equals(conditionValues[ii]) ? 0 : 1;
+            }
+            if(!isTrue(operator, result)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isTrue(int operator, int result)
+    {
+        switch(operator)
+        {
+            case Condition.EQUAL: return result == 0;
+            case Condition.NOT_EQUAL: return result != 0;
+            case Condition.LESS: return result < 0;
+            case Condition.LESS_OR_EQUAL: return result <= 0;
+            case Condition.GREATER: return result > 0;
+            case Condition.GREATER_OR_EQUAL: return result >= 0;
+            default: return false;
+        }
+    }
+
+    private static boolean isRangeOperator(int operator)
+    {
+        return operator == Condition.LESS || operator == Condition.LESS_OR_EQUAL || operator == Condition.GREATER || operator == Condition.GREATER_OR_EQUAL;
+    }
+
+    /**
+     * Returns the normalized values of the specified row. Returns
+     * the row itself, if no value is changed by {@link #normalize},
+     * e.g. if it contains only strings.
+     */
+    private static Object[] normalizeRow(Object[] row)
+    {
+        Object[] normalizedRow = row;
+        for(int ii = 0; ii < row.length; ii++)
+        {
+            Object value = normalize(row[ii]);
+            if(value != row[ii])
+            {
+                if(normalizedRow == row) normalizedRow = row.clone();
+                normalizedRow[ii] = value;
+            }
+        }
+        return normalizedRow;
+    }
+
+    /**
+     * Converts numbers to <code>BigDecimal</code> without trailing
+     * zeros and dates to <code>Timestamp</code>, so equal values
+     * of different classes are equal and have the same hash code.
+     */
+    static Object normalize(Object value)
+    {
+        if(null == value) return null;
+        if(value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long)
+        {
+            return normalizeDecimal(BigDecimal.valueOf(((Number)value).longValue()));
+        }
+        if(value instanceof BigInteger)
+        {
+            return normalizeDecimal(new BigDecimal((BigInteger)value));
+        }
+        if(value instanceof BigDecimal)
+        {
+            return normalizeDecimal((BigDecimal)value);
+        }
+        if(value instanceof Double || value instanceof Float)
+        {
+            double doubleValue = ((Number)value).doubleValue();
+            if(Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) return value;
+            return normalizeDecimal(new BigDecimal(value.toString()));
+        }
+        if(value instanceof Timestamp) return value;
+        if(value instanceof java.util.Date)
+        {
+            return new Timestamp(((java.util.Date)value).getTime());
+        }
+        if(value instanceof Character) return value.toString();
+        return value;
+    }
+
+    private static BigDecimal normalizeDecimal(BigDecimal value)
+    {
+        if(value.signum() == 0) return BigDecimal.ZERO;
+        return value.stripTrailingZeros();
+    }
+
+    private static int getTypeRank(Object value)
+    {
+        if(value instanceof BigDecimal) return 0;
+        if(value instanceof String) return 1;
+        if(value instanceof Timestamp) return 2;
+        if(value instanceof Boolean) return 3;
+        return 4;
+    }
+
+    /**
+     * Returns if the specified normalized value can be
+     * ordered by the {@link ValueComparator}.
+     */
+    private static boolean isOrdered(Object value)
+    {
+        return getTypeRank(value) < 4 || value instanceof Comparable;
+    }
+
+    /**
+     * Orders normalized values by type and value. Values of other
+     * classes than the normalized ones are ordered by class name
+     * and, if they have the same class, with <code>compareTo</code>.
+     * Values that are not <code>Comparable</code> can't be ordered.
+     * They are rejected by sorted indexes and range conditions
+     * and compared with <code>equals</code> otherwise.
+     */
+    private static class ValueComparator implements Comparator<Object>
+    {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public int compare(Object value1, Object value2)
+        {
+            int rank1 = getTypeRank(value1);
+            int rank2 = getTypeRank(value2);
+            if(rank1 != rank2) return rank1 < rank2 ? -1 : 1;
+            if(rank1 < 4 || value1.getClass() == value2.getClass())
+            {
+                if(!(value1 instanceof Comparable))
+                {
+                    throw new IllegalArgumentException(value1.getClass().getName() + " is not Comparable");
+                }
+                return ((Comparable)value1).compareTo(value2);
+            }
+            return value1.getClass().getName().compareTo(value2.getClass().getName());
+        }
+    }
+
+    private static class Index
+    {
+        private final int column;
+        private final boolean sorted;
+        private final NavigableMap<Object, List<Integer>> sortedEntries;
+        private final Map<Object, List<Integer>> entries;
+
+        public Index(int column, boolean sorted)
+        {
+            this.column = column;
+            this.sorted = sorted;
+            if(sorted)
+            {
+                sortedEntries = new TreeMap<Object, List<Integer>>(VALUE_COMPARATOR);
+                entries = sortedEntries;
+            }
+            else
+            {
+                sortedEntries = null;
+                entries = new HashMap<Object, List<Integer>>();
+            }
+        }
+
+        /**
+         * Throws an <code>IllegalArgumentException</code>, if the
+         * specified normalized value can't be added to a sorted index.
+         */
+        public void checkValue(Object key)
+        {
+            if(!sorted || null == key) return;
+            if(!isOrdered(key))
+            {
+                throw new IllegalArgumentException("Column with a sorted index needs Comparable values, " + key.getClass().getName() + " is not Comparable");
+            }
+        }
+
+        public void add(Object key, int position)
+        {
+            if(null == key) return;
+            checkValue(key);
+            List<Integer> positions = entries.get(key);
+            if(null == positions)
+            {
+                positions = new ArrayList<Integer>(1);
+                entries.put(key, positions);
+            }
+            positions.add(position);
+        }
+
+        /**
+         * Returns the entries between the tightest bounds of the
+         * range conditions for the column of this index or
+         * <code>null</code>, if the range is empty.
+         */
+        public NavigableMap<Object, List<Integer>> getRange(List<Condition> conditions, int[] conditionColumns, Object[] conditionValues)
+        {
+            Object lower = null;
+            boolean lowerInclusive = false;
+            Object upper = null;
+            boolean upperInclusive = false;
+            for(int ii = 0; ii < conditions.size(); ii++)
+            {
+                int operator = conditions.get(ii).getOperator();
+                if(conditionColumns[ii] != column || !isRangeOperator(operator)) continue;
+                Object value = conditionValues[ii];
+                if(null == value) return null;
+                boolean inclusive = operator == Condition.GREATER_OR_EQUAL || operator == Condition.LESS_OR_EQUAL;
+                if(operator == Condition.GREATER || operator == Condition.GREATER_OR_EQUAL)
+                {
+                    int result = (null == lower) ? 1 : VALUE_COMPARATOR.compare(value, lower);
+                    if(result > 0 || (result == 0 && !inclusive))
+                    {
+                        lower = value;
+                        lowerInclusive = inclusive;
+                    }
+                }
+                else
+                {
+                    int result = (null == upper) ? -1 : VALUE_COMPARATOR.compare(value, upper);
+                    if(result < 0 || (result == 0 && !inclusive))
+                    {
+                        upper = value;
+                        upperInclusive = inclusive;
+                    }
+                }
+            }
+            if(null != lower && null != upper)
+            {
+                int result = VALUE_COMPARATOR.compare(lower, upper);
+                if(result > 0 || (result == 0 && !(lowerInclusive && upperInclusive))) return null;
+                return sortedEntries.subMap(lower, lowerInclusive, upper, upperInclusive);
+            }
+            if(null != lower) return sortedEntries.tailMap(lower, lowerInclusive);
+            return sortedEntries.headMap(upper, upperInclusive);
+        }
+    }
+
+    /**
+     * A condition of a query, i.e. a column, an operator and
+     * the value the column is compared with. The value is
+     * ignored for {@link #IS_NULL} and {@link #IS_NOT_NULL}.
+     */
+    public static class Condition
+    {
+        public final static int EQUAL = 0;
+        public final static int NOT_EQUAL = 1;
+        public final static int LESS = 2;
+        public final static int LESS_OR_EQUAL = 3;
+        public final static int GREATER = 4;
+        public final static int GREATER_OR_EQUAL = 5;
+        public final static int IS_NULL = 6;
+        public final static int IS_NOT_NULL = 7;
+
+        private final String columnName;
+        private final int operator;
+        private final Object value;
+
+        public Condition(String columnName, int operator, Object value)
+        {
+            if(operator < EQUAL || operator > IS_NOT_NULL)
+            {
+                throw new IllegalArgumentException("Unknown operator " + operator);
+            }
+            this.columnName = columnName;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public String getColumnName()
+        {
+            return columnName;
+        }
+
+        public int getOperator()
+        {
+            return operator;
+        }
+
+        public Object getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return columnName + " " + Arrays.asList("=", "<>", "<", "<=", ">", ">=", "IS NULL", "IS NOT NULL").get(operator) + (operator < IS_NULL ? " " + value : "");
+        }
+    }
+}
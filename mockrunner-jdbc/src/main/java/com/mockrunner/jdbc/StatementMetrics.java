@@ -0,0 +1,543 @@
+package com.mockrunner.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.mockrunner.base.NestedApplicationException;
+
+/**
+ * Collects metrics of the statements executed through a
+ * {@link com.mockrunner.mock.jdbc.MockConnection}, i.e. per SQL string
+ * the number of executions, the number of rows fetched, the number of
+ * opened, closed and leaked <code>ResultSet</code> objects and the time
+ * between the execution and <code>ResultSet.close</code>, which is the
+ * time the application spends processing the result. Furthermore, it
+ * counts commits and rollbacks.
+ * <br>
+ * The metrics are disabled by default. Enable them with
+ * {@link com.mockrunner.mock.jdbc.MockConnection#setStatementMetrics}.
+ * One <code>StatementMetrics</code> object may be shared by many connections.
+ * Unlike the journals of the {@link AbstractResultSetHandler} the metrics
+ * only consist of counters, so they can be collected continuously,
+ * e.g. during a load test. Use {@link #getSnapshot} to read them or
+ * register them as MBean with {@link #registerMBean}.
+ * <br>
+ * A <code>ResultSet</code> is considered as leaked, if it's still open
+ * when its connection is closed.
+ * The metrics are kept for at most <i>maxStatements</i> different SQL strings
+ * (default 10000). Further SQL strings are counted as {@link #OTHER_STATEMENTS}.
+ * If the application inlines literals instead of using parameters, every
+ * value results in a different SQL string. Use {@link #setNormalizeSQL}
+ * to collect the metrics per {@link SQLFingerprint} instead.
+ * <br>
+ * This class is thread safe.
+ */
+public class StatementMetrics implements StatementMetricsMBean
+{
+    public final static String OTHER_STATEMENTS = "<other>";
+    public final static int DEFAULT_MAX_STATEMENTS = 10000;
+
+    private final int maxStatements;
+    private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<String, Counters>();
+    private final AtomicLong numberCommits = new AtomicLong();
+    private final AtomicLong numberRollbacks = new AtomicLong();
+    private volatile ObjectName objectName;
+    private volatile boolean normalizeSQL = false;
+
+    public StatementMetrics()
+    {
+        this(DEFAULT_MAX_STATEMENTS);
+    }
+
+    public StatementMetrics(int maxStatements)
+    {
+        if(maxStatements < 1)
+        {
+            throw new IllegalArgumentException("maxStatements must be at least 1");
+        }
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * Set if the metrics are collected per normalized SQL string,
+     * see {@link SQLFingerprint#normalize}, e.g. the executions of
+     * <code>select * from x where id = 1</code> and
+     * <code>select * from x where id = 2</code> are both counted for
+     * <code>select * from x where id = ?</code>. Default is <code>false</code>.
+     * Set it before the metrics are collected, the existing metrics
+     * are not merged.
+     * @param normalizeSQL collect the metrics per normalized SQL string
+     */
+    public void setNormalizeSQL(boolean normalizeSQL)
+    {
+        this.normalizeSQL = normalizeSQL;
+    }
+
+    /**
+     * Returns if the metrics are collected per normalized SQL string.
+     * @return <code>true</code> if the SQL strings are normalized
+     */
+    public boolean isNormalizeSQL()
+    {
+        return normalizeSQL;
+    }
+
+    private Counters getCounters(String sql)
+    {
+        if(normalizeSQL) sql = SQLFingerprint.normalize(sql);
+        Counters sqlCounters = counters.get(sql);
+        if(null != sqlCounters) return sqlCounters;
+        if(counters.size() >= maxStatements)
+        {
+            sql = OTHER_STATEMENTS;
+        }
+        sqlCounters = new Counters();
+        Counters existingCounters = counters.putIfAbsent(sql, sqlCounters);
+        return (null == existingCounters) ? sqlCounters : existingCounters;
+    }
+
+    /**
+     * Counts an execution of the specified SQL string.
+     * @param sql the SQL string
+     */
+    public void addExecution(String sql)
+    {
+        getCounters(sql).executions.incrementAndGet();
+    }
+
+    /**
+     * Counts the executions of a batch.
+     * @param sqlList the SQL strings
+     */
+    public void addExecutions(List<String> sqlList)
+    {
+        for(String nextSQL : sqlList)
+        {
+            addExecution(nextSQL);
+        }
+    }
+
+    /**
+     * Counts a <code>ResultSet</code> returned by the specified SQL string.
+     * The <code>ResultSet</code> reports the fetched rows and its closing
+     * to the returned {@link ResultSetMetrics}.
+     * @param sql the SQL string
+     * @return the {@link ResultSetMetrics} of the <code>ResultSet</code>
+     */
+    public ResultSetMetrics openResultSet(String sql)
+    {
+        Counters sqlCounters = getCounters(sql);
+        sqlCounters.openedResultSets.incrementAndGet();
+        return new ResultSetMetrics(sqlCounters);
+    }
+
+    /**
+     * Counts a commit.
+     */
+    public void addCommit()
+    {
+        numberCommits.incrementAndGet();
+    }
+
+    /**
+     * Counts a rollback.
+     */
+    public void addRollback()
+    {
+        numberRollbacks.incrementAndGet();
+    }
+
+    /**
+     * Returns a copy of the current metrics.
+     * @return the {@link Snapshot}
+     */
+    public Snapshot getSnapshot()
+    {
+        List<Statistics> statistics = new ArrayList<Statistics>(counters.size());
+        for(Map.Entry<String, Counters> nextEntry : counters.entrySet())
+        {
+            statistics.add(new Statistics(nextEntry.getKey(), nextEntry.getValue()));
+        }
+        Collections.sort(statistics, new Comparator<Statistics>()
+        {
+            public int compare(Statistics statistics1, Statistics statistics2)
+            {
+                if(statistics1.getNumberExecutions() != statistics2.getNumberExecutions())
+                {
+                    return statistics1.getNumberExecutions() > statistics2.getNumberExecutions() ? -1 : 1;
+                }
+                return statistics1.getSQL().compareTo(statistics2.getSQL());
+            }
+        });
+        return new Snapshot(statistics, numberCommits.get(), numberRollbacks.get());
+    }
+
+    public int getNumberStatements()
+    {
+        return counters.size();
+    }
+
+    public long getNumberExecutions()
+    {
+        return getSnapshot().getNumberExecutions();
+    }
+
+    public long getNumberRowsFetched()
+    {
+        return getSnapshot().getNumberRowsFetched();
+    }
+
+    public long getNumberOpenResultSets()
+    {
+        return getSnapshot().getNumberOpenResultSets();
+    }
+
+    public long getNumberLeakedResultSets()
+    {
+        return getSnapshot().getNumberLeakedResultSets();
+    }
+
+    public long getNumberCommits()
+    {
+        return numberCommits.get();
+    }
+
+    public long getNumberRollbacks()
+    {
+        return numberRollbacks.get();
+    }
+
+    public String[] getStatementReport()
+    {
+        List<Statistics> statistics = new ArrayList<Statistics>(getSnapshot().getStatistics().values());
+        String[] report = new String[statistics.size()];
+        for(int ii = 0; ii < report.length; ii++)
+        {
+            report[ii] = statistics.get(ii).toString();
+        }
+        return report;
+    }
+
+    /**
+     * Resets all metrics. <code>ResultSet</code> objects that are
+     * open at this time are not counted anymore.
+     */
+    public void reset()
+    {
+        counters.clear();
+        numberCommits.set(0);
+        numberRollbacks.set(0);
+    }
+
+    /**
+     * Registers this object as MBean at the platform <code>MBeanServer</code>
+     * with the name <code>com.mockrunner:type=StatementMetrics,name=&lt;name&gt;</code>.
+     * @param name the name, must be a valid <code>ObjectName</code> value
+     */
+    public void registerMBean(String name)
+    {
+        try
+        {
+            ObjectName newObjectName = new ObjectName("com.mockrunner:type=StatementMetrics,name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, newObjectName);
+            objectName = newObjectName;
+        }
+        catch(Exception exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    /**
+     * Unregisters this object from the platform <code>MBeanServer</code>.
+     * Does nothing, if it's not registered.
+     */
+    public void unregisterMBean()
+    {
+        ObjectName currentObjectName = objectName;
+        if(null == currentObjectName) return;
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(currentObjectName))
+            {
+                server.unregisterMBean(currentObjectName);
+            }
+            objectName = null;
+        }
+        catch(Exception exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private static class Counters
+    {
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong rowsFetched = new AtomicLong();
+        private final AtomicLong openedResultSets = new AtomicLong();
+        private final AtomicLong closedResultSets = new AtomicLong();
+        private final AtomicLong leakedResultSets = new AtomicLong();
+        private final AtomicLong totalOpenTime = new AtomicLong();
+        private final AtomicLong maxOpenTime = new AtomicLong();
+    }
+
+    /**
+     * The metrics of one returned <code>ResultSet</code>. Set by the
+     * statement with {@link com.mockrunner.mock.jdbc.MockResultSet#setResultSetMetrics}.
+     */
+    public static class ResultSetMetrics
+    {
+        private final Counters counters;
+        private final long openTime;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean leaked = new AtomicBoolean();
+
+        private ResultSetMetrics(Counters counters)
+        {
+            this.counters = counters;
+            this.openTime = System.nanoTime();
+        }
+
+        /**
+         * Counts a row fetched with <code>next</code>.
+         */
+        public void rowFetched()
+        {
+            counters.rowsFetched.incrementAndGet();
+        }
+
+        /**
+         * Counts the closing of the <code>ResultSet</code> and
+         * the time since it was returned. Only the first call counts.
+         */
+        public void close()
+        {
+            if(!closed.compareAndSet(false, true)) return;
+            counters.closedResultSets.incrementAndGet();
+            long openTime = System.nanoTime() - this.openTime;
+            counters.totalOpenTime.addAndGet(openTime);
+            long maxOpenTime = counters.maxOpenTime.get();
+            while(openTime > maxOpenTime && !counters.maxOpenTime.compareAndSet(maxOpenTime, openTime))
+            {
+                maxOpenTime = counters.maxOpenTime.get();
+            }
+        }
+
+        /**
+         * Counts the <code>ResultSet</code> as leaked, if it's not closed.
+         * Only the first call counts.
+         */
+        public void leak()
+        {
+            if(closed.get()) return;
+            if(leaked.compareAndSet(false, true))
+            {
+                counters.leakedResultSets.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The metrics of one SQL string at the time of the {@link Snapshot}.
+     */
+    public static class Statistics
+    {
+        private final String sql;
+        private final long numberExecutions;
+        private final long numberRowsFetched;
+        private final long numberOpenedResultSets;
+        private final long numberClosedResultSets;
+        private final long numberLeakedResultSets;
+        private final long totalOpenTime;
+        private final long maxOpenTime;
+
+        private Statistics(String sql, Counters counters)
+        {
+            this.sql = sql;
+            this.numberExecutions = counters.executions.get();
+            this.numberRowsFetched = counters.rowsFetched.get();
+            this.numberClosedResultSets = counters.closedResultSets.get();
+            this.numberOpenedResultSets = Math.max(counters.openedResultSets.get(), numberClosedResultSets);
+            this.numberLeakedResultSets = counters.leakedResultSets.get();
+            this.totalOpenTime = counters.totalOpenTime.get();
+            this.maxOpenTime = counters.maxOpenTime.get();
+        }
+
+        public String getSQL()
+        {
+            return sql;
+        }
+
+        public long getNumberExecutions()
+        {
+            return numberExecutions;
+        }
+
+        public long getNumberRowsFetched()
+        {
+            return numberRowsFetched;
+        }
+
+        public long getNumberOpenedResultSets()
+        {
+            return numberOpenedResultSets;
+        }
+
+        public long getNumberClosedResultSets()
+        {
+            return numberClosedResultSets;
+        }
+
+        /**
+         * Returns the number of <code>ResultSet</code> objects
+         * that are not closed yet, including the leaked ones.
+         * @return the number of open <code>ResultSet</code> objects
+         */
+        public long getNumberOpenResultSets()
+        {
+            return numberOpenedResultSets - numberClosedResultSets;
+        }
+
+        public long getNumberLeakedResultSets()
+        {
+            return numberLeakedResultSets;
+        }
+
+        /**
+         * Returns the sum of the times between execution and
+         * <code>ResultSet.close</code> of all closed <code>ResultSet</code>
+         * objects.
+         * @param unit the <code>TimeUnit</code> of the result
+         * @return the total time
+         */
+        public long getTotalOpenTime(TimeUnit unit)
+        {
+            return unit.convert(totalOpenTime, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the maximum time between execution and
+         * <code>ResultSet.close</code>.
+         * @param unit the <code>TimeUnit</code> of the result
+         * @return the maximum time
+         */
+        public long getMaxOpenTime(TimeUnit unit)
+        {
+            return unit.convert(maxOpenTime, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString()
+        {
+            return sql + ": executions=" + numberExecutions + ", rows=" + numberRowsFetched +
+                   ", resultSets=" + numberOpenedResultSets + ", open=" + getNumberOpenResultSets() +
+                   ", leaked=" + numberLeakedResultSets + ", totalOpenTime=" + getTotalOpenTime(TimeUnit.MICROSECONDS) +
+                   "us, maxOpenTime=" + getMaxOpenTime(TimeUnit.MICROSECONDS) + "us";
+        }
+    }
+
+    /**
+     * A copy of the metrics at a point of time.
+     */
+    public static class Snapshot
+    {
+        private final Map<String, Statistics> statistics;
+        private final long numberCommits;
+        private final long numberRollbacks;
+
+        private Snapshot(List<Statistics> statistics, long numberCommits, long numberRollbacks)
+        {
+            this.statistics = new LinkedHashMap<String, Statistics>();
+            for(Statistics nextStatistics : statistics)
+            {
+                this.statistics.put(nextStatistics.getSQL(), nextStatistics);
+            }
+            this.numberCommits = numberCommits;
+            this.numberRollbacks = numberRollbacks;
+        }
+
+        /**
+         * Returns the {@link Statistics} by SQL string,
+         * the most frequently executed SQL strings first.
+         * @return the {@link Statistics}
+         */
+        public Map<String, Statistics> getStatistics()
+        {
+            return Collections.unmodifiableMap(statistics);
+        }
+
+        /**
+         * Returns the {@link Statistics} of the specified SQL string.
+         * @param sql the SQL string
+         * @return the {@link Statistics} or <code>null</code>, if the
+         *         SQL string was not executed
+         */
+        public Statistics getStatistics(String sql)
+        {
+            return statistics.get(sql);
+        }
+
+        public long getNumberExecutions()
+        {
+            long sum = 0;
+            for(Statistics nextStatistics : statistics.values())
+            {
+                sum += nextStatistics.getNumberExecutions();
+            }
+            return sum;
+        }
+
+        public long getNumberRowsFetched()
+        {
+            long sum = 0;
+            for(Statistics nextStatistics : statistics.values())
+            {
+                sum += nextStatistics.getNumberRowsFetched();
+            }
+            return sum;
+        }
+
+        public long getNumberOpenResultSets()
+        {
+            long sum = 0;
+            for(Statistics nextStatistics : statistics.values())
+            {
+                sum += nextStatistics.getNumberOpenResultSets();
+            }
+            return sum;
+        }
+
+        public long getNumberLeakedResultSets()
+        {
+            long sum = 0;
+            for(Statistics nextStatistics : statistics.values())
+            {
+                sum += nextStatistics.getNumberLeakedResultSets();
+            }
+            return sum;
+        }
+
+        public long getNumberCommits()
+        {
+            return numberCommits;
+        }
+
+        public long getNumberRollbacks()
+        {
+            return numberRollbacks;
+        }
+    }
+}
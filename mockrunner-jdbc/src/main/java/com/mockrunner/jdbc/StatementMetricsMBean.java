@@ -0,0 +1,64 @@
+package com.mockrunner.jdbc;
+
+/**
+ * JMX interface of {@link StatementMetrics}.
+ * See {@link StatementMetrics#registerMBean}.
+ */
+public interface StatementMetricsMBean
+{
+    /**
+     * Returns the number of different SQL strings.
+     * @return the number of different SQL strings
+     */
+    int getNumberStatements();
+
+    /**
+     * Returns the total number of executed statements.
+     * @return the number of executed statements
+     */
+    long getNumberExecutions();
+
+    /**
+     * Returns the total number of rows fetched with <code>ResultSet.next</code>.
+     * @return the number of fetched rows
+     */
+    long getNumberRowsFetched();
+
+    /**
+     * Returns the number of returned <code>ResultSet</code> objects
+     * that are not closed yet.
+     * @return the number of open <code>ResultSet</code> objects
+     */
+    long getNumberOpenResultSets();
+
+    /**
+     * Returns the number of <code>ResultSet</code> objects that were
+     * still open, when their connection was closed.
+     * @return the number of leaked <code>ResultSet</code> objects
+     */
+    long getNumberLeakedResultSets();
+
+    /**
+     * Returns the number of commits.
+     * @return the number of commits
+     */
+    long getNumberCommits();
+
+    /**
+     * Returns the number of rollbacks.
+     * @return the number of rollbacks
+     */
+    long getNumberRollbacks();
+
+    /**
+     * Returns one line per SQL string with its statistics,
+     * the most frequently executed SQL strings first.
+     * @return the statistics
+     */
+    String[] getStatementReport();
+
+    /**
+     * Resets all metrics.
+     */
+    void reset();
+}
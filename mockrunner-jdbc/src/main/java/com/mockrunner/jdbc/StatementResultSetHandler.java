@@ -1,6 +1,5 @@
 package com.mockrunner.jdbc;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -11,11 +10,11 @@ import com.mockrunner.mock.jdbc.MockStatement;
  */
 public class StatementResultSetHandler extends AbstractResultSetHandler
 {
-    private final List<MockStatement> statements;
+    private final Journal<MockStatement> statements;
 
     public StatementResultSetHandler()
     {
-        statements = new ArrayList<MockStatement>();
+        statements = new Journal<MockStatement>();
     }  
     
     /**
@@ -29,6 +28,13 @@ public class StatementResultSetHandler extends AbstractResultSetHandler
         statements.add(statement);
     }
     
+    @Override
+    public void setJournalPolicy(JournalPolicy journalPolicy)
+    {
+        super.setJournalPolicy(journalPolicy);
+        statements.setPolicy(journalPolicy);
+    }
+    
     /**
      * Returns a <code>List</code> of all statements.
      * @return the <code>List</code> of {@link MockStatement} objects
@@ -2,6 +2,7 @@ package com.mockrunner.jdbc;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -37,6 +38,7 @@ public class XMLResultSetFactory implements ResultSetFactory
     private String fileName = null;
     private boolean trim = true;
     private int dialect = SYBASE_DIALECT;
+    private ResultSetFactoryCache cache = null;
     
     public XMLResultSetFactory(String fileName)
     {
@@ -53,10 +55,36 @@ public class XMLResultSetFactory implements ResultSetFactory
     /**
      * Makes and returns a MockResultSet created from 
      * an existing and valid XML <code>Document</code>.
+     * If a cache is set, the <code>Document</code> is parsed only
+     * once, see {@link #setCache}.
      * 
      * @return a new MockResultSet
      */
     public MockResultSet create(String id) 
+    {
+        if(null != cache)
+        {
+            List<Object> settings = Arrays.<Object>asList(getClass().getName(), dialect, trim);
+            return cache.getResultSet(getXMLFile(), settings, id, new ResultSetFactory()
+            {
+                public MockResultSet create(String id)
+                {
+                    return createResultSet(id);
+                }
+            });
+        }
+        return createResultSet(id);
+    }
+
+    /**
+     * Reads the XML <code>Document</code> and returns a new
+     * MockResultSet. Called by {@link #create}, if the
+     * <code>ResultSet</code> is not cached. Subclasses
+     * can override this method to support other dialects.
+     * @param id the id of the <code>ResultSet</code>
+     * @return a new MockResultSet
+     */
+    protected MockResultSet createResultSet(String id)
     {
         MockResultSet resultSet;
         
@@ -135,6 +163,29 @@ public class XMLResultSetFactory implements ResultSetFactory
         this.dialect = dialect;
     }
     
+    /**
+     * Sets the cache for the parsed files. If a cache is set,
+     * the file is parsed only once, as long as it's not modified.
+     * {@link #create} returns copies of the cached <code>ResultSet</code>.
+     * Use {@link ResultSetFactoryCache#getSharedCache} to share the parsed
+     * files with all factories. Default is <code>null</code>, i.e. the file
+     * is parsed for every <code>ResultSet</code>.
+     * @param cache the cache, <code>null</code> disables caching
+     */
+    public void setCache(ResultSetFactoryCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache for the parsed files. See {@link #setCache}.
+     * @return the cache or <code>null</code>, if caching is disabled
+     */
+    public ResultSetFactoryCache getCache()
+    {
+        return cache;
+    }
+
     /**
      * Get the dialect of the XML <code>Document</code.
      * 
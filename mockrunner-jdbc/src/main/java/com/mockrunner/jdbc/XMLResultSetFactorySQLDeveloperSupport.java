@@ -75,14 +75,14 @@ public class XMLResultSetFactorySQLDeveloperSupport extends XMLResultSetFactory
 	}
 
 	/**
-	 * Compared to {@link XMLResultSetFactory#create(String)} this adds support for 
+	 * Compared to {@link XMLResultSetFactory#createResultSet(String)} this adds support for 
 	 * {@link #ORACLE_SQLDEVELOPER_DIALECT} and dispatches to <code>super</code> when 
 	 * that {@link #getDialect()} is not matched. 
 	 * 
 	 * @see #setDialect(int)
 	 */
 	@Override
-	public MockResultSet create(String id)
+	protected MockResultSet createResultSet(String id)
 	{
 		MockResultSet mockResultSet;
 		switch(this.getDialect())
@@ -93,7 +93,7 @@ public class XMLResultSetFactorySQLDeveloperSupport extends XMLResultSetFactory
 			}
 			default :
 			{
-				mockResultSet = super.create(id);
+				mockResultSet = super.createResultSet(id);
 			}
 		}
 		return mockResultSet;
@@ -0,0 +1,136 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.ResultSetFactory;
+
+/**
+ * <code>ResultSet</code> with a columnar storage for large amounts
+ * of numeric data. Columns containing only <code>Integer</code>,
+ * <code>Long</code> or <code>Double</code> values are stored in
+ * primitive arrays instead of <code>List</code> objects with boxed
+ * values. The <code>getInt</code>, <code>getLong</code> and
+ * <code>getDouble</code> methods read these arrays directly.
+ * Columns with other values are stored as objects, so this class
+ * can be used like {@link MockResultSet}.
+ * <br>
+ * Use {@link ColumnarResultSet.Factory} to create instances of this
+ * class with the <code>ResultSetFactory</code> based methods of the
+ * result set handlers.
+ */
+public class ColumnarResultSet extends MockResultSet
+{
+    public ColumnarResultSet(String id)
+    {
+        super(id);
+    }
+
+    public ColumnarResultSet(String id, String cursorName)
+    {
+        super(id, cursorName);
+    }
+
+    /**
+     * Adds a column with the specified <code>int</code> values.
+     * The values are not boxed.
+     * @param columnName the column name
+     * @param values the column data
+     */
+    public void addColumn(String columnName, int[] values)
+    {
+        addColumnData(columnName, new PrimitiveColumn(values));
+    }
+
+    /**
+     * Adds a column with the specified <code>long</code> values.
+     * The values are not boxed.
+     * @param columnName the column name
+     * @param values the column data
+     */
+    public void addColumn(String columnName, long[] values)
+    {
+        addColumnData(columnName, new PrimitiveColumn(values));
+    }
+
+    /**
+     * Adds a column with the specified <code>double</code> values.
+     * The values are not boxed.
+     * @param columnName the column name
+     * @param values the column data
+     */
+    public void addColumn(String columnName, double[] values)
+    {
+        addColumnData(columnName, new PrimitiveColumn(values));
+    }
+
+    @Override
+    List<Object> createColumn(List<Object> values)
+    {
+        return new PrimitiveColumn(values);
+    }
+
+    @Override
+    boolean hasPrimitiveColumns()
+    {
+        return true;
+    }
+
+    /**
+     * Factory for {@link ColumnarResultSet} objects. If a source factory
+     * is specified, the <code>ResultSet</code> objects of the source
+     * factory are copied into a {@link ColumnarResultSet}, e.g.
+     * <code>new ColumnarResultSet.Factory(new FileResultSetFactory(file))</code>
+     * loads the file into the columnar storage.
+     */
+    public static class Factory implements ResultSetFactory
+    {
+        protected final boolean columnsCaseSensitive;
+        private final ResultSetFactory sourceFactory;
+
+        public Factory(boolean columnsCaseSensitive)
+        {
+            this(null, columnsCaseSensitive);
+        }
+
+        public Factory(ResultSetFactory sourceFactory)
+        {
+            this(sourceFactory, false);
+        }
+
+        public Factory(ResultSetFactory sourceFactory, boolean columnsCaseSensitive)
+        {
+            this.sourceFactory = sourceFactory;
+            this.columnsCaseSensitive = columnsCaseSensitive;
+        }
+
+        public ColumnarResultSet create(String id)
+        {
+            ColumnarResultSet resultSet = new ColumnarResultSet(id);
+            if(columnsCaseSensitive)
+            {
+                resultSet.setColumnsCaseSensitive(true);
+            }
+            if(null == sourceFactory)
+            {
+                return resultSet;
+            }
+            MockResultSet source = sourceFactory.create(id);
+            try
+            {
+                ResultSetMetaData metaData = source.getMetaData();
+                for(int ii = 1; ii <= source.getColumnCount(); ii++)
+                {
+                    resultSet.addColumn(metaData.getColumnName(ii), source.getColumn(ii));
+                }
+            }
+            catch(SQLException exc)
+            {
+                throw new NestedApplicationException(exc);
+            }
+            return resultSet;
+        }
+    }
+}
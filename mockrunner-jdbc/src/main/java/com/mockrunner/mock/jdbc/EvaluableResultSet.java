@@ -1,44 +1,94 @@
 package com.mockrunner.mock.jdbc;
 
 import com.mockrunner.jdbc.ResultSetFactory;
+import com.mockrunner.util.common.LRUCache;
 
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
+ * Result set with {@link Evaluable} values, that are evaluated
+ * using the SQL string and the parameters of the executed statement.
+ * The evaluated result set shares the columns without {@link Evaluable}
+ * values with this result set. The {@link Evaluable} values are evaluated
+ * lazily, when a row is accessed the first time, and the results are kept.
+ * If {@link #setMemoizeEvaluations} is <code>true</code>, the evaluated
+ * values are kept across executions with the same SQL string and parameters.
+ *
  * @author Radim Vansa &lt;rvansa@redhat.com&gt;
  */
 public class EvaluableResultSet extends MockResultSet {
+   private final static int MAX_CACHED_EVALUATIONS = 1000;
+
+   private volatile ColumnScan columnScan;
+   private volatile boolean memoizeEvaluations;
+   private final LRUCache<List<Object>, CachedEvaluation> evaluations;
 
    public EvaluableResultSet(String id) {
       super(id);
+      evaluations = new LRUCache<List<Object>, CachedEvaluation>(MAX_CACHED_EVALUATIONS);
    }
 
    public EvaluableResultSet(String id, String cursorName) {
       super(id, cursorName);
+      evaluations = new LRUCache<List<Object>, CachedEvaluation>(MAX_CACHED_EVALUATIONS);
+   }
+
+   /**
+    * Set if the evaluated values should be kept across executions.
+    * Default is <code>false</code>, i.e. the {@link Evaluable} values are
+    * evaluated again for every execution. If this attribute is <code>true</code>,
+    * the {@link Evaluable} values are evaluated once for every combination of
+    * SQL string and parameters. The values of the 1000 most recently used
+    * combinations are kept. Only use this option,
+    * if the {@link Evaluable} objects return the same value for the same SQL
+    * string and parameters. Please note, that the evaluated objects are shared
+    * by all executions with the same SQL string and parameters. Modifying this
+    * result set discards the kept values.
+    * @param memoizeEvaluations should the evaluated values be kept
+    */
+   public void setMemoizeEvaluations(boolean memoizeEvaluations) {
+      this.memoizeEvaluations = memoizeEvaluations;
+      if (!memoizeEvaluations) {
+         evaluations.clear();
+      }
+   }
+
+   /**
+    * Returns if the evaluated values are kept across executions.
+    * @return <code>true</code> if the evaluated values are kept
+    */
+   public boolean getMemoizeEvaluations() {
+      return memoizeEvaluations;
    }
 
    @Override
    public MockResultSet evaluate(String sql, MockParameterMap parameters) {
+      List<List<Object>> columns = getColumnsForRead();
+      MockParameterMap parameterCopy = null == parameters ? new MockParameterMap() : new MockParameterMap(parameters);
+      if (!memoizeEvaluations) {
+         return evaluate(columns, sql, parameterCopy);
+      }
+      List<Object> key = Arrays.<Object>asList(sql, parameterCopy);
+      CachedEvaluation evaluation = evaluations.get(key);
+      if (null == evaluation || evaluation.columns != columns) {
+         evaluation = new CachedEvaluation(columns, evaluate(columns, sql, parameterCopy));
+         evaluations.put(key, evaluation);
+      }
+      return evaluation.resultSet.copyWithId(getId());
+   }
+
+   private MockResultSet evaluate(List<List<Object>> columns, String sql, MockParameterMap parameters) {
       try {
-         MockResultSet newResultSet = new MockResultSet(getId(), getCursorName());
+         BitSet evaluableColumns = getEvaluableColumns(columns);
+         MockResultSet newResultSet = copyWithId(getId());
          ResultSetMetaData metaData = getMetaData();
-         for (int i = 1; i <= getColumnCount(); ++i) {
-            String columnName = metaData.getColumnName(i);
-            List<Object> values = getColumn(columnName);
-            List<Object> newValues = new ArrayList<Object>(values.size());
-            int row = 0;
-            for (Object value : values) {
-               if (value instanceof Evaluable) {
-                  newValues.add(((Evaluable) value).evaluate(sql, parameters, columnName, row));
-               } else {
-                  newValues.add(value);
-               }
-               ++row;
-            }
-            newResultSet.addColumn(columnName, newValues);
+         for (int i = evaluableColumns.nextSetBit(0); i >= 0; i = evaluableColumns.nextSetBit(i + 1)) {
+            String columnName = metaData.getColumnName(i + 1);
+            newResultSet.replaceColumnData(i + 1, new EvaluatedColumn(columns.get(i), sql, parameters, columnName));
          }
          return newResultSet;
       } catch (SQLException e) {
@@ -46,6 +96,44 @@ public class EvaluableResultSet extends MockResultSet {
       }
    }
 
+   private BitSet getEvaluableColumns(List<List<Object>> columns) {
+      ColumnScan scan = columnScan;
+      if (null != scan && scan.columns == columns) {
+         return scan.evaluableColumns;
+      }
+      BitSet evaluableColumns = new BitSet(columns.size());
+      for (int i = 0; i < columns.size(); ++i) {
+         for (Object value : columns.get(i)) {
+            if (value instanceof Evaluable) {
+               evaluableColumns.set(i);
+               break;
+            }
+         }
+      }
+      columnScan = new ColumnScan(columns, evaluableColumns);
+      return evaluableColumns;
+   }
+
+   private static class ColumnScan {
+      private final List<List<Object>> columns;
+      private final BitSet evaluableColumns;
+
+      public ColumnScan(List<List<Object>> columns, BitSet evaluableColumns) {
+         this.columns = columns;
+         this.evaluableColumns = evaluableColumns;
+      }
+   }
+
+   private static class CachedEvaluation {
+      private final List<List<Object>> columns;
+      private final MockResultSet resultSet;
+
+      public CachedEvaluation(List<List<Object>> columns, MockResultSet resultSet) {
+         this.columns = columns;
+         this.resultSet = resultSet;
+      }
+   }
+
    /**
     * Implementation of this interface will be stored in the result set.
     */
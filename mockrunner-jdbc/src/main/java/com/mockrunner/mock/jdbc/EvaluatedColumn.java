@@ -0,0 +1,62 @@
+package com.mockrunner.mock.jdbc;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only <code>List</code> used by {@link EvaluableResultSet} for
+ * columns with {@link EvaluableResultSet.Evaluable} values. Such a value
+ * is evaluated when it's requested the first time and the result is
+ * kept, the other values are returned from the source column.
+ * The source column is shared with the {@link EvaluableResultSet}
+ * and must not be modified. {@link MockResultSet} copies the column
+ * into an <code>ArrayList</code> before it's modified.
+ * The column can be read by different threads. If two threads
+ * request the same value at the same time, it may be evaluated twice,
+ * but both get the same result.
+ */
+class EvaluatedColumn extends AbstractList<Object> implements RandomAccess
+{
+    private final static Object NULL = new Object();
+
+    private final List<Object> source;
+    private final String sql;
+    private final MockParameterMap parameters;
+    private final String columnName;
+    private final AtomicReferenceArray<Object> values;
+
+    public EvaluatedColumn(List<Object> source, String sql, MockParameterMap parameters, String columnName)
+    {
+        this.source = source;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.columnName = columnName;
+        this.values = new AtomicReferenceArray<Object>(source.size());
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        Object value = source.get(index);
+        if(!(value instanceof EvaluableResultSet.Evaluable)) return value;
+        Object evaluated = values.get(index);
+        if(null == evaluated)
+        {
+            evaluated = ((EvaluableResultSet.Evaluable)value).evaluate(sql, parameters, columnName, index);
+            if(null == evaluated) evaluated = NULL;
+            if(!values.compareAndSet(index, null, evaluated))
+            {
+                evaluated = values.get(index);
+            }
+        }
+        return NULL == evaluated ? null : evaluated;
+    }
+
+    @Override
+    public int size()
+    {
+        return source.size();
+    }
+}
@@ -9,6 +9,8 @@ import java.util.Iterator;
 import java.util.Set;
 
 import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.JournalPolicy;
+import com.mockrunner.jdbc.PatternMatcherCache;
 
 /**
  * Used to create all types of JDBC mock objects. 
@@ -27,6 +29,7 @@ public class JDBCMockObjectFactory
     private final MockDriver driver;
     private final MockConnection connection;
     private final Set<Driver> preservedDrivers;
+    private final PatternMatcherCache patternMatcherCache;
     
     /**
      * Creates a new set of mock objects.
@@ -37,6 +40,7 @@ public class JDBCMockObjectFactory
         driver = createMockDriver();
         connection = createMockConnection();
         preservedDrivers = new HashSet<Driver>();
+        patternMatcherCache = new PatternMatcherCache();
         setUpDependencies();
     }
 
@@ -44,6 +48,9 @@ public class JDBCMockObjectFactory
     {
         dataSource.setupConnection(connection);
         driver.setupConnection(connection);
+        connection.getStatementResultSetHandler().setPatternMatcherCache(patternMatcherCache);
+        connection.getPreparedStatementResultSetHandler().setPatternMatcherCache(patternMatcherCache);
+        connection.getCallableStatementResultSetHandler().setPatternMatcherCache(patternMatcherCache);
         registerMockDriver();
     }
 
@@ -186,6 +193,58 @@ public class JDBCMockObjectFactory
         return driver;
     }
 
+    /**
+     * Returns the {@link com.mockrunner.jdbc.PatternMatcherCache} that is
+     * shared by the result set handlers of the connection and the
+     * {@link com.mockrunner.jdbc.JDBCTestModule} verification methods.
+     * @return the {@link com.mockrunner.jdbc.PatternMatcherCache}
+     */
+    public PatternMatcherCache getPatternMatcherCache()
+    {
+        return patternMatcherCache;
+    }
+
+    /**
+     * Sets the {@link com.mockrunner.jdbc.JournalPolicy} of all result set
+     * handlers of the connection. Use a bounded policy, if the
+     * mock objects are used in long running tests, otherwise the
+     * executed statements are collected until memory runs out.
+     * @param journalPolicy the {@link com.mockrunner.jdbc.JournalPolicy}
+     */
+    public void setJournalPolicy(JournalPolicy journalPolicy)
+    {
+        connection.getStatementResultSetHandler().setJournalPolicy(journalPolicy);
+        connection.getPreparedStatementResultSetHandler().setJournalPolicy(journalPolicy);
+        connection.getCallableStatementResultSetHandler().setJournalPolicy(journalPolicy);
+    }
+
+    /**
+     * Sets up a {@link com.mockrunner.mock.jdbc.MockConnectionPool} with the
+     * specified maximum number of connections. The
+     * {@link com.mockrunner.mock.jdbc.MockDataSource} hands out the connections
+     * of the pool afterwards. The pooled connections use the result set handlers
+     * of the connection returned by {@link #getMockConnection}, so the prepared
+     * data and the verification methods work as usual. The <code>MockDriver</code>
+     * still returns the connection of this factory.
+     * @param maxSize the maximum number of connections
+     * @return the {@link com.mockrunner.mock.jdbc.MockConnectionPool}
+     */
+    public MockConnectionPool enableConnectionPool(int maxSize)
+    {
+        MockConnectionPool pool = new MockConnectionPool(connection, maxSize);
+        dataSource.setupConnectionPool(pool);
+        return pool;
+    }
+
+    /**
+     * Removes the connection pool from the
+     * {@link com.mockrunner.mock.jdbc.MockDataSource}.
+     */
+    public void disableConnectionPool()
+    {
+        dataSource.setupConnectionPool(null);
+    }
+
     /**
      * Returns the {@link com.mockrunner.mock.jdbc.MockConnection}.
      * @return the {@link com.mockrunner.mock.jdbc.MockConnection}
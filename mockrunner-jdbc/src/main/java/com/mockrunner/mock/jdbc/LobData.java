@@ -0,0 +1,541 @@
+package com.mockrunner.mock.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.mockrunner.base.NestedApplicationException;
+
+/**
+ * The data of a {@link MockBlob} or {@link MockClob}. The data is
+ * stored in segments of {@link #SEGMENT_SIZE} bytes according to a
+ * {@link LobStorage} policy. Characters are stored with two bytes.
+ * <br>
+ * Copies share the segments until one of them modifies a segment
+ * (copy on write). Segments in a temporary file are never reused,
+ * because a copy may still map them. The streams returned by {@link #getInputStream}
+ * and {@link #getReader} read the segments directly, i.e. they don't
+ * copy the data and they see subsequent modifications.
+ * <br>
+ * This class is not thread safe.
+ */
+final class LobData
+{
+    final static int SEGMENT_SIZE = 64 * 1024;
+    private final static int SEGMENT_SHIFT = 16;
+    private final static int MIN_CAPACITY = 16;
+
+    private final LobStorage storage;
+    private ByteBuffer[] segments = new ByteBuffer[1];
+    private boolean[] shared = new boolean[1];
+    private int numberSegments;
+    private long length;
+    private long numberHeapBytes;
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private long nextFilePosition;
+
+    public LobData(LobStorage storage)
+    {
+        this.storage = (null == storage) ? LobStorage.getDefault() : storage;
+    }
+
+    public LobStorage getStorage()
+    {
+        return storage;
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    public long charLength()
+    {
+        return length >>> 1;
+    }
+
+    public byte get(long pos)
+    {
+        return segments[segmentIndex(pos)].get(segmentOffset(pos));
+    }
+
+    public char getChar(long charPos)
+    {
+        long pos = charPos << 1;
+        return segments[segmentIndex(pos)].getChar(segmentOffset(pos));
+    }
+
+    public void read(long pos, byte[] bytes, int offset, int len)
+    {
+        while(len > 0)
+        {
+            int segmentOffset = segmentOffset(pos);
+            int number = Math.min(len, SEGMENT_SIZE - segmentOffset);
+            ByteBuffer segment = segments[segmentIndex(pos)].duplicate();
+            ((Buffer)segment).position(segmentOffset);
+            segment.get(bytes, offset, number);
+            pos += number;
+            offset += number;
+            len -= number;
+        }
+    }
+
+    public void readChars(long charPos, char[] chars, int offset, int len)
+    {
+        long pos = charPos << 1;
+        for(int ii = 0; ii < len; ii++)
+        {
+            chars[offset + ii] = segments[segmentIndex(pos)].getChar(segmentOffset(pos));
+            pos += 2;
+        }
+    }
+
+    public void write(long pos, byte[] bytes, int offset, int len)
+    {
+        ensureLength(pos + len);
+        while(len > 0)
+        {
+            int index = segmentIndex(pos);
+            int segmentOffset = segmentOffset(pos);
+            int number = Math.min(len, SEGMENT_SIZE - segmentOffset);
+            ByteBuffer segment = getWritableSegment(index).duplicate();
+            ((Buffer)segment).position(segmentOffset);
+            segment.put(bytes, offset, number);
+            pos += number;
+            offset += number;
+            len -= number;
+        }
+    }
+
+    public void writeChars(long charPos, char[] chars, int offset, int len)
+    {
+        long pos = charPos << 1;
+        ensureLength(pos + ((long)len << 1));
+        for(int ii = 0; ii < len; ii++)
+        {
+            getWritableSegment(segmentIndex(pos)).putChar(segmentOffset(pos), chars[offset + ii]);
+            pos += 2;
+        }
+    }
+
+    public void write(long pos, InputStream stream, long len) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        int read;
+        while(len != 0 && 0 <= (read = stream.read(buffer, 0, (len < 0) ? buffer.length : (int)Math.min(len, buffer.length))))
+        {
+            write(pos, buffer, 0, read);
+            pos += read;
+            if(len > 0) len -= read;
+        }
+    }
+
+    public void writeChars(long charPos, Reader reader, long len) throws IOException
+    {
+        char[] buffer = new char[4096];
+        int read;
+        while(len != 0 && 0 <= (read = reader.read(buffer, 0, (len < 0) ? buffer.length : (int)Math.min(len, buffer.length))))
+        {
+            writeChars(charPos, buffer, 0, read);
+            charPos += read;
+            if(len > 0) len -= read;
+        }
+    }
+
+    public void truncate(long newLength)
+    {
+        if(newLength >= length) return;
+        int newNumberSegments = (newLength == 0) ? 0 : segmentIndex(newLength - 1) + 1;
+        for(int ii = newNumberSegments; ii < numberSegments; ii++)
+        {
+            if(segments[ii].hasArray()) numberHeapBytes -= segments[ii].capacity();
+            segments[ii] = null;
+            shared[ii] = false;
+        }
+        numberSegments = newNumberSegments;
+        int segmentOffset = segmentOffset(newLength);
+        if(segmentOffset != 0)
+        {
+            ByteBuffer segment = getWritableSegment(numberSegments - 1);
+            for(int ii = segmentOffset; ii < segment.capacity(); ii++)
+            {
+                segment.put(ii, (byte)0);
+            }
+        }
+        length = newLength;
+    }
+
+    /**
+     * Returns the position of the first occurrence of the specified
+     * bytes at or after <i>start</i> using the Knuth-Morris-Pratt algorithm.
+     * @param pattern the bytes
+     * @param start the start position
+     * @return the position or <code>-1</code>
+     */
+    public long indexOf(byte[] pattern, long start)
+    {
+        if(pattern.length == 0) return (start <= length) ? start : -1;
+        int[] failure = new int[pattern.length];
+        for(int ii = 1, kk = 0; ii < pattern.length; ii++)
+        {
+            while(kk > 0 && pattern[ii] != pattern[kk]) kk = failure[kk - 1];
+            if(pattern[ii] == pattern[kk]) kk++;
+            failure[ii] = kk;
+        }
+        int kk = 0;
+        for(long pos = start; pos < length; pos++)
+        {
+            byte nextByte = get(pos);
+            while(kk > 0 && nextByte != pattern[kk]) kk = failure[kk - 1];
+            if(nextByte == pattern[kk]) kk++;
+            if(kk == pattern.length) return pos - pattern.length + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of the first occurrence of the specified
+     * characters at or after <i>start</i> using the Knuth-Morris-Pratt algorithm.
+     * @param pattern the characters
+     * @param start the start position
+     * @return the position or <code>-1</code>
+     */
+    public long indexOf(char[] pattern, long start)
+    {
+        long charLength = charLength();
+        if(pattern.length == 0) return (start <= charLength) ? start : -1;
+        int[] failure = new int[pattern.length];
+        for(int ii = 1, kk = 0; ii < pattern.length; ii++)
+        {
+            while(kk > 0 && pattern[ii] != pattern[kk]) kk = failure[kk - 1];
+            if(pattern[ii] == pattern[kk]) kk++;
+            failure[ii] = kk;
+        }
+        int kk = 0;
+        for(long pos = start; pos < charLength; pos++)
+        {
+            char nextChar = getChar(pos);
+            while(kk > 0 && nextChar != pattern[kk]) kk = failure[kk - 1];
+            if(nextChar == pattern[kk]) kk++;
+            if(kk == pattern.length) return pos - pattern.length + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns an <code>InputStream</code> that reads the bytes
+     * directly from the segments.
+     * @param pos the start position
+     * @param len the number of bytes
+     * @return the <code>InputStream</code>
+     */
+    public InputStream getInputStream(long pos, long len)
+    {
+        return new LobInputStream(pos, pos + len);
+    }
+
+    /**
+     * Returns a <code>Reader</code> that reads the characters
+     * directly from the segments.
+     * @param charPos the start position
+     * @param len the number of characters
+     * @return the <code>Reader</code>
+     */
+    public Reader getReader(long charPos, long len)
+    {
+        return new LobReader(charPos, charPos + len);
+    }
+
+    /**
+     * Returns a copy that shares the segments until
+     * one of the copies modifies them.
+     * @return the copy
+     */
+    public LobData copy()
+    {
+        LobData copy = new LobData(storage);
+        copy.segments = Arrays.copyOf(segments, segments.length);
+        copy.shared = new boolean[shared.length];
+        Arrays.fill(shared, 0, numberSegments, true);
+        Arrays.fill(copy.shared, 0, numberSegments, true);
+        copy.numberSegments = numberSegments;
+        copy.length = length;
+        copy.numberHeapBytes = numberHeapBytes;
+        return copy;
+    }
+
+    /**
+     * Releases the segments and deletes the temporary file.
+     */
+    public void release()
+    {
+        segments = new ByteBuffer[1];
+        shared = new boolean[1];
+        numberSegments = 0;
+        length = 0;
+        numberHeapBytes = 0;
+        if(null == randomAccessFile) return;
+        try
+        {
+            randomAccessFile.close();
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            randomAccessFile = null;
+            file.delete();
+        }
+    }
+
+    public boolean contentEquals(LobData other)
+    {
+        if(length != other.length) return false;
+        for(long pos = 0; pos < length; pos++)
+        {
+            if(get(pos) != other.get(pos)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code of the bytes, which is the
+     * hash code of a <code>List</code> of the bytes.
+     * @return the hash code
+     */
+    public int bytesHashCode()
+    {
+        int hashCode = 1;
+        for(long pos = 0; pos < length; pos++)
+        {
+            hashCode = 31 * hashCode + get(pos);
+        }
+        return hashCode;
+    }
+
+    /**
+     * Returns the hash code of the characters, which is the
+     * hash code of a <code>String</code> of the characters.
+     * @return the hash code
+     */
+    public int charsHashCode()
+    {
+        int hashCode = 0;
+        long charLength = charLength();
+        for(long pos = 0; pos < charLength; pos++)
+        {
+            hashCode = 31 * hashCode + getChar(pos);
+        }
+        return hashCode;
+    }
+
+    private static int segmentIndex(long pos)
+    {
+        return (int)(pos >>> SEGMENT_SHIFT);
+    }
+
+    private static int segmentOffset(long pos)
+    {
+        return (int)(pos & (SEGMENT_SIZE - 1));
+    }
+
+    private void ensureLength(long newLength)
+    {
+        if(newLength <= length) return;
+        int lastIndex = segmentIndex(newLength - 1);
+        if(lastIndex >= segments.length)
+        {
+            int newSize = Math.max(lastIndex + 1, segments.length * 2);
+            segments = Arrays.copyOf(segments, newSize);
+            shared = Arrays.copyOf(shared, newSize);
+        }
+        for(int ii = Math.max(0, numberSegments - 1); ii <= lastIndex; ii++)
+        {
+            int capacity = (ii < lastIndex) ? SEGMENT_SIZE : segmentOffset(newLength - 1) + 1;
+            if(ii >= numberSegments)
+            {
+                segments[ii] = allocateSegment(capacity);
+                numberSegments++;
+            }
+            else if(segments[ii].capacity() < capacity)
+            {
+                replaceSegment(ii, Math.max(capacity, Math.min(SEGMENT_SIZE, segments[ii].capacity() * 2)));
+            }
+        }
+        length = newLength;
+    }
+
+    private ByteBuffer getWritableSegment(int index)
+    {
+        if(shared[index])
+        {
+            replaceSegment(index, segments[index].capacity());
+        }
+        return segments[index];
+    }
+
+    private void replaceSegment(int index, int capacity)
+    {
+        ByteBuffer oldSegment = segments[index].duplicate();
+        if(oldSegment.hasArray()) numberHeapBytes -= oldSegment.capacity();
+        ((Buffer)oldSegment).clear();
+        ByteBuffer newSegment = allocateSegment(capacity);
+        ByteBuffer target = newSegment.duplicate();
+        target.put(oldSegment);
+        segments[index] = newSegment;
+        shared[index] = false;
+    }
+
+    private ByteBuffer allocateSegment(int capacity)
+    {
+        if(storage.getMode() == LobStorage.DIRECT)
+        {
+            return ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        }
+        int heapCapacity = (capacity >= SEGMENT_SIZE) ? SEGMENT_SIZE : Math.max(MIN_CAPACITY, Integer.highestOneBit(capacity - 1) << 1);
+        if(storage.getMode() == LobStorage.SPILL_TO_FILE && numberHeapBytes + heapCapacity > storage.getSpillThreshold())
+        {
+            return mapSegment();
+        }
+        numberHeapBytes += heapCapacity;
+        return ByteBuffer.allocate(heapCapacity);
+    }
+
+    private ByteBuffer mapSegment()
+    {
+        try
+        {
+            if(null == randomAccessFile)
+            {
+                file = File.createTempFile("mockrunner", ".lob", storage.getDirectory());
+                file.deleteOnExit();
+                randomAccessFile = new RandomAccessFile(file, "rw");
+                nextFilePosition = 0;
+            }
+            ByteBuffer segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, nextFilePosition, SEGMENT_SIZE);
+            nextFilePosition += SEGMENT_SIZE;
+            return segment;
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private class LobInputStream extends InputStream
+    {
+        private long pos;
+        private final long end;
+        private long mark;
+
+        public LobInputStream(long pos, long end)
+        {
+            this.pos = pos;
+            this.end = end;
+            this.mark = pos;
+        }
+
+        private long getEnd()
+        {
+            return Math.min(end, length);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if(pos >= getEnd()) return -1;
+            return get(pos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int len) throws IOException
+        {
+            if(len == 0) return 0;
+            long available = getEnd() - pos;
+            if(available <= 0) return -1;
+            int number = (int)Math.min(len, available);
+            LobData.this.read(pos, bytes, offset, number);
+            pos += number;
+            return number;
+        }
+
+        @Override
+        public long skip(long number) throws IOException
+        {
+            long skipped = Math.max(0, Math.min(number, getEnd() - pos));
+            pos += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return (int)Math.max(0, Math.min(Integer.MAX_VALUE, getEnd() - pos));
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit)
+        {
+            mark = pos;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException
+        {
+            pos = mark;
+        }
+    }
+
+    private class LobReader extends Reader
+    {
+        private long pos;
+        private final long end;
+
+        public LobReader(long pos, long end)
+        {
+            this.pos = pos;
+            this.end = end;
+        }
+
+        @Override
+        public int read(char[] chars, int offset, int len) throws IOException
+        {
+            if(len == 0) return 0;
+            long available = Math.min(end, charLength()) - pos;
+            if(available <= 0) return -1;
+            int number = (int)Math.min(len, available);
+            readChars(pos, chars, offset, number);
+            pos += number;
+            return number;
+        }
+
+        @Override
+        public long skip(long number) throws IOException
+        {
+            long skipped = Math.max(0, Math.min(number, Math.min(end, charLength()) - pos));
+            pos += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+
+        }
+    }
+}
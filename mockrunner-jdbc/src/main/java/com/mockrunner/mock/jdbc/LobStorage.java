@@ -0,0 +1,146 @@
+package com.mockrunner.mock.jdbc;
+
+import java.io.File;
+
+/**
+ * Defines where {@link MockBlob} and {@link MockClob} keep their data.
+ * The data is stored in segments of 64 KB, so large LOBs don't need
+ * one contiguous array and modifying them doesn't copy the whole data.
+ * The following policies are supported:
+ * <ul>
+ * <li>{@link #heap}: the segments are byte arrays on the heap (the default)</li>
+ * <li>{@link #direct}: the segments are direct <code>ByteBuffer</code> objects
+ *     outside of the heap</li>
+ * <li>{@link #spillToFile}: the segments are kept on the heap up to a
+ *     threshold, further segments are mapped from a temporary file</li>
+ * </ul>
+ * The temporary file of a spilling LOB is created when the threshold is
+ * exceeded the first time and deleted when the LOB is freed or the VM exits.
+ * A policy may be shared by any number of LOBs.
+ */
+public class LobStorage
+{
+    public final static int HEAP = 0;
+    public final static int DIRECT = 1;
+    public final static int SPILL_TO_FILE = 2;
+
+    private final static LobStorage HEAP_STORAGE = new LobStorage(HEAP, Long.MAX_VALUE, null);
+    private final static LobStorage DIRECT_STORAGE = new LobStorage(DIRECT, 0, null);
+
+    private static volatile LobStorage defaultStorage = HEAP_STORAGE;
+
+    private final int mode;
+    private final long spillThreshold;
+    private final File directory;
+
+    private LobStorage(int mode, long spillThreshold, File directory)
+    {
+        this.mode = mode;
+        this.spillThreshold = spillThreshold;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a policy that keeps the data on the heap.
+     * @return the policy
+     */
+    public static LobStorage heap()
+    {
+        return HEAP_STORAGE;
+    }
+
+    /**
+     * Returns a policy that keeps the data in direct
+     * <code>ByteBuffer</code> objects outside of the heap.
+     * Please note that the size of direct memory is limited by the
+     * <code>-XX:MaxDirectMemorySize</code> option of the VM.
+     * @return the policy
+     */
+    public static LobStorage direct()
+    {
+        return DIRECT_STORAGE;
+    }
+
+    /**
+     * Returns a policy that keeps up to <i>spillThreshold</i> bytes
+     * of a LOB on the heap and the remaining data in a temporary file
+     * in the default temporary directory.
+     * @param spillThreshold the number of bytes kept on the heap, may be 0
+     * @return the policy
+     */
+    public static LobStorage spillToFile(long spillThreshold)
+    {
+        return spillToFile(null, spillThreshold);
+    }
+
+    /**
+     * Returns a policy that keeps up to <i>spillThreshold</i> bytes
+     * of a LOB on the heap and the remaining data in a temporary file
+     * in the specified directory.
+     * @param directory the directory of the temporary files,
+     *        <code>null</code> for the default temporary directory
+     * @param spillThreshold the number of bytes kept on the heap, may be 0
+     * @return the policy
+     */
+    public static LobStorage spillToFile(File directory, long spillThreshold)
+    {
+        if(spillThreshold < 0)
+        {
+            throw new IllegalArgumentException("spillThreshold must not be negative");
+        }
+        return new LobStorage(SPILL_TO_FILE, spillThreshold, directory);
+    }
+
+    /**
+     * Returns the policy used by LOBs that are created without
+     * a policy, e.g. by <code>PreparedStatement.setBlob</code>.
+     * @return the default policy
+     */
+    public static LobStorage getDefault()
+    {
+        return defaultStorage;
+    }
+
+    /**
+     * Sets the policy used by LOBs that are created without
+     * a policy. Default is {@link #heap}.
+     * @param storage the default policy
+     */
+    public static void setDefault(LobStorage storage)
+    {
+        if(null == storage)
+        {
+            throw new IllegalArgumentException("storage must not be null");
+        }
+        defaultStorage = storage;
+    }
+
+    /**
+     * Returns the mode of this policy, one of {@link #HEAP},
+     * {@link #DIRECT} and {@link #SPILL_TO_FILE}.
+     * @return the mode
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the number of bytes of a LOB kept on the heap.
+     * @return the spill threshold
+     */
+    public long getSpillThreshold()
+    {
+        return spillThreshold;
+    }
+
+    /**
+     * Returns the directory of the temporary files.
+     * @return the directory or <code>null</code> for the
+     *         default temporary directory
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+}
@@ -1,29 +1,65 @@
 package com.mockrunner.mock.jdbc;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Blob;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 import com.mockrunner.base.NestedApplicationException;
-import com.mockrunner.util.common.ArrayUtil;
-import com.mockrunner.util.common.CollectionUtil;
 
 /**
  * Mock implementation of <code>Blob</code>.
+ * The data is stored in segments according to a {@link LobStorage}
+ * policy, so large <code>Blob</code> objects can be kept off the heap
+ * or in a temporary file. Copies share the data until one of them is
+ * modified. The streams returned by {@link #getBinaryStream} read the
+ * data without copying it.
  */
 public class MockBlob implements Blob, Cloneable
 {
-    private List<Byte> blobData;
+    private final static int MAX_TO_STRING_LENGTH = 1024;
+    
+    private LobData blobData;
     private boolean wasFreeCalled;
     
     public MockBlob(byte[] data)
     {
-        blobData = ArrayUtil.getListFromByteArray(data);
+        this(data, LobStorage.getDefault());
+    }
+    
+    /**
+     * Creates a <code>Blob</code> that stores the specified data
+     * according to the specified {@link LobStorage} policy.
+     * @param data the data
+     * @param storage the {@link LobStorage} policy
+     */
+    public MockBlob(byte[] data, LobStorage storage)
+    {
+        blobData = new LobData(storage);
+        blobData.write(0, data, 0, data.length);
+        wasFreeCalled = false;
+    }
+    
+    /**
+     * Creates a <code>Blob</code> that stores the data read from the
+     * specified stream. The stream is not closed.
+     * @param stream the stream
+     * @param length the number of bytes to read, <code>-1</code> reads
+     *        the whole stream
+     * @param storage the {@link LobStorage} policy
+     */
+    public MockBlob(InputStream stream, long length, LobStorage storage)
+    {
+        blobData = new LobData(storage);
+        try
+        {
+            blobData.write(0, stream, length);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
         wasFreeCalled = false;
     }
     
@@ -33,7 +69,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return blobData.size();
+        return blobData.length();
     }
 
     public byte[] getBytes(long pos, int length) throws SQLException
@@ -42,8 +78,10 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        length = verifyAndFixLength(pos, length);
-        return ArrayUtil.getByteArrayFromList(blobData, (int)(pos - 1), length);
+        length = (int)verifyAndFixLength(pos, length);
+        byte[] data = new byte[length];
+        blobData.read(pos - 1, data, 0, length);
+        return data;
     }
 
     public InputStream getBinaryStream() throws SQLException
@@ -52,7 +90,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new ByteArrayInputStream(ArrayUtil.getByteArrayFromList(blobData));
+        return blobData.getInputStream(0, Long.MAX_VALUE);
     }
 
     public InputStream getBinaryStream(long pos, long length) throws SQLException
@@ -61,8 +99,8 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        length = verifyAndFixLength(pos, (int)length);
-        return new ByteArrayInputStream(ArrayUtil.getByteArrayFromList(blobData, (int)(pos - 1), (int)length));
+        length = verifyAndFixLength(pos, length);
+        return blobData.getInputStream(pos - 1, length);
     }
 
     public long position(byte[] pattern, long start) throws SQLException
@@ -71,8 +109,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        byte[] data = ArrayUtil.getByteArrayFromList(blobData);
-        int index = ArrayUtil.indexOf(data, pattern, (int)(start - 1));
+        long index = blobData.indexOf(pattern, Math.max(0, start - 1));
         if(-1 != index) index += 1;
         return index;
     }
@@ -88,7 +125,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        ArrayUtil.addBytesToList(bytes, blobData, (int)(pos - 1));
+        blobData.write(pos - 1, bytes, 0, bytes.length);
         return bytes.length;
     }
 
@@ -98,7 +135,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        ArrayUtil.addBytesToList(bytes, offset, len, blobData, (int)(pos - 1));
+        blobData.write(pos - 1, bytes, offset, len);
         return len;
     }
 
@@ -108,7 +145,7 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new BlobOutputStream((int)(pos - 1));
+        return new BlobOutputStream(pos - 1);
     }
 
     public void truncate(long len) throws SQLException
@@ -117,12 +154,13 @@ public class MockBlob implements Blob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        blobData = CollectionUtil.truncateList(blobData, (int)len);
+        blobData.truncate(len);
     }
     
     public void free() throws SQLException
     {
         wasFreeCalled = true;
+        blobData.release();
     }
 
     /**
@@ -142,13 +180,13 @@ public class MockBlob implements Blob, Cloneable
         if(!obj.getClass().equals(this.getClass())) return false;
         MockBlob other = (MockBlob)obj;
         if(wasFreeCalled != other.wasFreeCalled()) return false;
-        return blobData.equals(other.blobData);
+        return blobData.contentEquals(other.blobData);
     }
 
     @Override
     public int hashCode()
     {
-        int hashCode = blobData.hashCode();
+        int hashCode = blobData.bytesHashCode();
         hashCode = (31 * hashCode) + (wasFreeCalled ? 31 : 62);
         return hashCode;
     }
@@ -156,7 +194,15 @@ public class MockBlob implements Blob, Cloneable
     @Override
     public String toString()
     {
-        return "Blob data: " + blobData.toString();     
+        StringBuilder builder = new StringBuilder("Blob data: [");
+        long length = Math.min(blobData.length(), MAX_TO_STRING_LENGTH);
+        for(long ii = 0; ii < length; ii++)
+        {
+            if(ii > 0) builder.append(", ");
+            builder.append(blobData.get(ii));
+        }
+        if(length < blobData.length()) builder.append(", ...");
+        return builder.append(']').toString();
     }
     
     @Override
@@ -165,7 +211,7 @@ public class MockBlob implements Blob, Cloneable
         try
         {
             MockBlob blob = (MockBlob)super.clone();
-            blob.blobData = new ArrayList<Byte>(blobData);
+            blob.blobData = blobData.copy();
             return blob;
         }
         catch(CloneNotSupportedException exc)
@@ -174,33 +220,39 @@ public class MockBlob implements Blob, Cloneable
         }
     }
     
-    private int verifyAndFixLength(long pos, int length)
+    private long verifyAndFixLength(long pos, long length)
     {
         if(length < 0)
         {
             throw new IllegalArgumentException("length must be greater or equals 0");
         }
-        if((length + (pos - 1)) > blobData.size())
+        if((length + (pos - 1)) > blobData.length())
         {
-            return blobData.size() - (int)(pos - 1);
+            return blobData.length() - (pos - 1);
         }
         return length;
     }
     
     private class BlobOutputStream extends OutputStream
     {  
-        private int index;
+        private long index;
         
-        public BlobOutputStream(int index)
+        public BlobOutputStream(long index)
         {
             this.index = index;
         }
         
         public void write(int byteValue) throws IOException
         {
-            byte[] bytes = new byte[] {(byte)byteValue};
-            ArrayUtil.addBytesToList(bytes, blobData, index);
+            blobData.write(index, new byte[] {(byte)byteValue}, 0, 1);
             index++;
         }
+        
+        @Override
+        public void write(byte[] bytes, int offset, int len) throws IOException
+        {
+            blobData.write(index, bytes, offset, len);
+            index += len;
+        }
     }
 }
@@ -916,14 +916,12 @@ public class MockCallableStatement extends MockPreparedStatement implements Call
     
     public void setBlob(String parameterName, InputStream inputStream) throws SQLException
     {
-        byte[] data = StreamUtil.getStreamAsByteArray(inputStream);
-        setBlob(parameterName, new MockBlob(data));
+        setBlob(parameterName, new MockBlob(inputStream, -1, LobStorage.getDefault()));
     }
     
     public void setBlob(String parameterName, InputStream inputStream, long length) throws SQLException
     {
-        byte[] data = StreamUtil.getStreamAsByteArray(inputStream, (int)length);
-        setBlob(parameterName, new MockBlob(data));
+        setBlob(parameterName, new MockBlob(inputStream, length, LobStorage.getDefault()));
     }
 
     public void setClob(String parameterName, Clob clob) throws SQLException
@@ -933,14 +931,12 @@ public class MockCallableStatement extends MockPreparedStatement implements Call
     
     public void setClob(String parameterName, Reader reader) throws SQLException
     {
-        String data = StreamUtil.getReaderAsString(reader);
-        setClob(parameterName, new MockClob(data));
+        setClob(parameterName, new MockClob(reader, -1, LobStorage.getDefault()));
     }
     
     public void setClob(String parameterName, Reader reader, long length) throws SQLException
     {
-        String data = StreamUtil.getReaderAsString(reader, (int)length);
-        setClob(parameterName, new MockClob(data));
+        setClob(parameterName, new MockClob(reader, length, LobStorage.getDefault()));
     }
 
     public void setNClob(String parameterName, NClob nClob) throws SQLException
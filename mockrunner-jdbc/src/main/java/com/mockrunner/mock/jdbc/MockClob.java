@@ -1,12 +1,9 @@
 package com.mockrunner.mock.jdbc;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.sql.Clob;
 import java.sql.SQLException;
@@ -15,21 +12,62 @@ import com.mockrunner.base.NestedApplicationException;
 
 /**
  * Mock implementation of <code>Clob</code>.
+ * The characters are stored in segments according to a {@link LobStorage}
+ * policy, so large <code>Clob</code> objects can be kept off the heap
+ * or in a temporary file. Copies share the data until one of them is
+ * modified. The streams returned by {@link #getCharacterStream} and
+ * {@link #getAsciiStream} read the data without copying it.
  */
 public class MockClob implements Clob, Cloneable
 {
-    private StringBuffer clobData;
+    private final static int MAX_TO_STRING_LENGTH = 1024;
+    
+    private LobData clobData;
     private boolean wasFreeCalled;
     
     public MockClob(String data)
     {
-        clobData = new StringBuffer(data);
+        this(data, LobStorage.getDefault());
+    }
+    
+    /**
+     * Creates a <code>Clob</code> that stores the specified data
+     * according to the specified {@link LobStorage} policy.
+     * @param data the data
+     * @param storage the {@link LobStorage} policy
+     */
+    public MockClob(String data, LobStorage storage)
+    {
+        clobData = new LobData(storage);
+        clobData.writeChars(0, data.toCharArray(), 0, data.length());
+        wasFreeCalled = false;
+    }
+    
+    /**
+     * Creates a <code>Clob</code> that stores the characters read from
+     * the specified <code>Reader</code>. The <code>Reader</code> is not closed.
+     * @param reader the <code>Reader</code>
+     * @param length the number of characters to read, <code>-1</code> reads
+     *        all characters
+     * @param storage the {@link LobStorage} policy
+     */
+    public MockClob(Reader reader, long length, LobStorage storage)
+    {
+        clobData = new LobData(storage);
+        try
+        {
+            clobData.writeChars(0, reader, length);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
         wasFreeCalled = false;
     }
 
     public long length() throws SQLException
     {
-        return clobData.length();
+        return clobData.charLength();
     }
 
     public void truncate(long len) throws SQLException
@@ -38,7 +76,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        clobData.setLength((int)len);
+        clobData.truncate(len << 1);
     }
 
     public InputStream getAsciiStream() throws SQLException
@@ -47,14 +85,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        try
-        {
-            return new ByteArrayInputStream(clobData.toString().getBytes("ISO-8859-1"));
-        } 
-        catch(UnsupportedEncodingException exc)
-        {
-            throw new NestedApplicationException(exc);
-        }
+        return new ClobInputStream(clobData.getReader(0, Long.MAX_VALUE));
     }
 
     public OutputStream setAsciiStream(long pos) throws SQLException
@@ -63,7 +94,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new ClobOutputStream((int)(pos - 1));
+        return new ClobOutputStream(pos - 1);
     }
 
     public Reader getCharacterStream() throws SQLException
@@ -72,7 +103,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new StringReader(clobData.toString());
+        return clobData.getReader(0, Long.MAX_VALUE);
     }
 
     public Reader getCharacterStream(long pos, long length) throws SQLException
@@ -81,8 +112,8 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        length = verifyAndFixLength(pos, (int)length);
-        return new StringReader(getSubString(pos, (int)length));
+        length = verifyAndFixLength(pos, length);
+        return clobData.getReader(pos - 1, length);
     }
 
     public Writer setCharacterStream(long pos) throws SQLException
@@ -91,7 +122,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        return new ClobWriter((int)(pos - 1));
+        return new ClobWriter(pos - 1);
     }
 
     public String getSubString(long pos, int length) throws SQLException
@@ -100,8 +131,10 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        length = verifyAndFixLength(pos, length);
-        return clobData.substring((int)(pos - 1), (int)(pos - 1) + length);
+        length = (int)verifyAndFixLength(pos, length);
+        char[] chars = new char[length];
+        clobData.readChars(pos - 1, chars, 0, length);
+        return new String(chars);
     }
 
     public int setString(long pos, String str) throws SQLException
@@ -115,8 +148,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        str = str.substring(offset, offset + len);
-        clobData.replace((int)(pos - 1), (int)(pos - 1) + str.length(), str);
+        clobData.writeChars(pos - 1, str.toCharArray(), offset, len);
         return len;
     }
 
@@ -126,7 +158,7 @@ public class MockClob implements Clob, Cloneable
         {
             throw new SQLException("free() was called");
         }
-        int index = clobData.toString().indexOf(searchstr, (int)(start - 1));
+        long index = clobData.indexOf(searchstr.toCharArray(), Math.max(0, start - 1));
         if(-1 != index) index += 1;
         return index;
     }
@@ -139,6 +171,7 @@ public class MockClob implements Clob, Cloneable
     public void free() throws SQLException
     {
         wasFreeCalled = true;
+        clobData.release();
     }
 
     /**
@@ -157,19 +190,23 @@ public class MockClob implements Clob, Cloneable
         if(!obj.getClass().equals(this.getClass())) return false;
         MockClob other = (MockClob)obj;
         if(wasFreeCalled != other.wasFreeCalled()) return false;
-        return clobData.toString().equals(other.clobData.toString());
+        return clobData.contentEquals(other.clobData);
     }
 
     public int hashCode()
     {
-        int hashCode = clobData.toString().hashCode();
+        int hashCode = clobData.charsHashCode();
         hashCode = (31 * hashCode) + (wasFreeCalled ? 31 : 62);
         return hashCode;
     }
 
     public String toString()
     {
-        return "Clob data: " + clobData.toString();
+        long length = Math.min(clobData.charLength(), MAX_TO_STRING_LENGTH);
+        char[] chars = new char[(int)length];
+        clobData.readChars(0, chars, 0, chars.length);
+        String suffix = (length < clobData.charLength()) ? "..." : "";
+        return "Clob data: " + new String(chars) + suffix;
     }
     
     public Object clone()
@@ -177,7 +214,7 @@ public class MockClob implements Clob, Cloneable
         try
         {
             MockClob clone = (MockClob)super.clone();
-            clone.clobData = new StringBuffer(clobData.toString());
+            clone.clobData = clobData.copy();
             return clone;
         }
         catch(CloneNotSupportedException exc)
@@ -186,24 +223,24 @@ public class MockClob implements Clob, Cloneable
         }
     }
     
-    private int verifyAndFixLength(long pos, int length)
+    private long verifyAndFixLength(long pos, long length)
     {
         if(length < 0)
         {
             throw new IllegalArgumentException("length must be greater or equals 0");
         }
-        if((length + (pos - 1)) > clobData.length())
+        if((length + (pos - 1)) > clobData.charLength())
         {
-            return clobData.length() - (int)(pos - 1);
+            return clobData.charLength() - (pos - 1);
         }
         return length;
     }
     
     private class ClobWriter extends Writer
     {  
-        private int index;
+        private long index;
         
-        public ClobWriter(int index)
+        public ClobWriter(long index)
         {
             this.index = index;
         }
@@ -220,39 +257,41 @@ public class MockClob implements Clob, Cloneable
 
         public void write(char[] cbuf, int off, int len) throws IOException
         {
-            try
-            {
-                setString(index + 1, new String(cbuf, off, len));
-            }
-            catch(SQLException exc)
-            {
-                throw new IOException(exc.getMessage());
-            }
-            index++;
+            clobData.writeChars(index, cbuf, off, len);
+            index += len;
         }
     }
     
     private class ClobOutputStream extends OutputStream
     {  
-        private int index;
+        private long index;
     
-        public ClobOutputStream(int index)
+        public ClobOutputStream(long index)
         {
             this.index = index;
         }
     
         public void write(int byteValue) throws IOException
         {
-            byte[] bytes = new byte[] {(byte)byteValue};
-            try
-            {
-                setString(index + 1, new String(bytes));
-            }
-            catch(SQLException exc)
-            {
-                throw new IOException(exc.getMessage());
-            }
+            clobData.writeChars(index, new char[] {(char)(byteValue & 0xFF)}, 0, 1);
             index++;
         }
     }
+    
+    private static class ClobInputStream extends InputStream
+    {
+        private final Reader reader;
+        
+        public ClobInputStream(Reader reader)
+        {
+            this.reader = reader;
+        }
+        
+        public int read() throws IOException
+        {
+            int nextChar = reader.read();
+            if(nextChar < 0) return -1;
+            return (nextChar > 0xFF) ? '?' : nextChar;
+        }
+    }
 }
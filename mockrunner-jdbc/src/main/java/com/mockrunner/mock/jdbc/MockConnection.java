@@ -15,15 +15,21 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.CallableStatementResultSetHandler;
 import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementMetrics;
 import com.mockrunner.jdbc.StatementResultSetHandler;
 
 /**
@@ -45,8 +51,9 @@ public class MockConnection implements Connection
     private Map<String,Class<?>> typeMap = Collections.EMPTY_MAP;
     private String catalog;
     private String schema;
-    private int numberCommits;
-    private int numberRollbacks;
+    private final AtomicInteger numberCommits = new AtomicInteger();
+    private final AtomicInteger numberRollbacks = new AtomicInteger();
+    private final Set<MockStatement> openStatements = Collections.newSetFromMap(new ConcurrentHashMap<MockStatement, Boolean>());
     private Properties clientInfo;
     private int networkTimeout;
 
@@ -79,8 +86,8 @@ public class MockConnection implements Connection
         }
         savepointCount = 0;
         catalog = null;
-        numberCommits = 0;
-        numberRollbacks = 0;
+        numberCommits.set(0);
+        numberRollbacks.set(0);
         clientInfo = new Properties();
     }
     
@@ -110,12 +117,12 @@ public class MockConnection implements Connection
     
     public int getNumberCommits()
     {
-        return numberCommits;
+        return numberCommits.get();
     }
     
     public int getNumberRollbacks()
     {
-        return numberRollbacks;
+        return numberRollbacks.get();
     }
     
     public Map<Integer, MockSavepoint> getSavepointMap()
@@ -128,12 +135,12 @@ public class MockConnection implements Connection
     
     public void resetNumberCommits()
     {
-        numberCommits = 0;
+        numberCommits.set(0);
     }
     
     public void resetNumberRollbacks()
     {
-        numberRollbacks = 0;
+        numberRollbacks.set(0);
     }
     
     public void resetSavepointMap()
@@ -144,6 +151,69 @@ public class MockConnection implements Connection
         }
     }
     
+    /**
+     * Enables the {@link StatementMetrics} for this connection. The metrics
+     * are set for the statement, prepared statement and callable statement
+     * handler and count the commits and rollbacks of this connection.
+     * <code>ResultSet</code> objects of the open statements of this connection,
+     * that are still open when the connection is closed, are counted as leaked.
+     * Connections that share the handlers, e.g. the connections of a
+     * {@link MockConnectionPool}, share the metrics, too.
+     * @param statementMetrics the {@link StatementMetrics}, <code>null</code>
+     *        disables the metrics
+     */
+    public void setStatementMetrics(StatementMetrics statementMetrics)
+    {
+        statementHandler.setStatementMetrics(statementMetrics);
+        preparedStatementHandler.setStatementMetrics(statementMetrics);
+        callableStatementHandler.setStatementMetrics(statementMetrics);
+    }
+    
+    /**
+     * Returns the {@link StatementMetrics} of this connection, i.e.
+     * the metrics of the statement handler.
+     * @return the {@link StatementMetrics} or <code>null</code>
+     */
+    public StatementMetrics getStatementMetrics()
+    {
+        return statementHandler.getStatementMetrics();
+    }
+    
+    /**
+     * Returns the statements, prepared statements and callable statements
+     * created by this connection, that are not closed yet. Unlike the
+     * statements of the result set handlers, which may be shared by
+     * several connections, these are only the statements of this connection.
+     * @return the <code>List</code> of open statements
+     */
+    public List<MockStatement> getOpenStatements()
+    {
+        return new ArrayList<MockStatement>(openStatements);
+    }
+    
+    /**
+     * Called by the statements of this connection, when they are closed.
+     * @param statement the closed statement
+     */
+    void statementClosed(MockStatement statement)
+    {
+        openStatements.remove(statement);
+    }
+    
+    /**
+     * Closes the open statements of this connection. If the
+     * {@link StatementMetrics} are enabled, the <code>ResultSet</code>
+     * objects of these statements that are still open are counted as leaked.
+     */
+    void closeOpenStatements() throws SQLException
+    {
+        leakResultSets();
+        for(MockStatement nextStatement : getOpenStatements())
+        {
+            nextStatement.close();
+        }
+    }
+    
     public StatementResultSetHandler getStatementResultSetHandler()
     {
         return statementHandler;
@@ -163,6 +233,7 @@ public class MockConnection implements Connection
     {
         MockStatement statement = new MockStatement(this);
         getStatementResultSetHandler().addStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -170,6 +241,7 @@ public class MockConnection implements Connection
     {
         MockStatement statement = new MockStatement(this, resultSetType, resultSetConcurrency);
         getStatementResultSetHandler().addStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -177,6 +249,7 @@ public class MockConnection implements Connection
     {
         MockStatement statement = new MockStatement(this, resultSetType, resultSetConcurrency, resultSetHoldability);
         getStatementResultSetHandler().addStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -184,6 +257,7 @@ public class MockConnection implements Connection
     {
         MockCallableStatement statement = new MockCallableStatement(this, sql);
         getCallableStatementResultSetHandler().addCallableStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -191,6 +265,7 @@ public class MockConnection implements Connection
     {
         MockCallableStatement statement = new MockCallableStatement(this, sql, resultSetType, resultSetConcurrency);
         getCallableStatementResultSetHandler().addCallableStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -198,6 +273,7 @@ public class MockConnection implements Connection
     {
         MockCallableStatement statement = new MockCallableStatement(this, sql, resultSetType, resultSetConcurrency, resultSetHoldability);
         getCallableStatementResultSetHandler().addCallableStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -205,6 +281,7 @@ public class MockConnection implements Connection
     {
         MockPreparedStatement statement = new MockPreparedStatement(this, sql);
         getPreparedStatementResultSetHandler().addPreparedStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -212,6 +289,7 @@ public class MockConnection implements Connection
     {
         MockPreparedStatement statement = new MockPreparedStatement(this, sql, resultSetType, resultSetConcurrency);
         getPreparedStatementResultSetHandler().addPreparedStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -219,6 +297,7 @@ public class MockConnection implements Connection
     {
         MockPreparedStatement statement = new MockPreparedStatement(this, sql, resultSetType, resultSetConcurrency, resultSetHoldability);
         getPreparedStatementResultSetHandler().addPreparedStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -227,6 +306,7 @@ public class MockConnection implements Connection
         verifyAutoGeneratedKeysParameter(autoGeneratedKeys);
         MockPreparedStatement statement = new MockPreparedStatement(this, sql, autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS);
         getPreparedStatementResultSetHandler().addPreparedStatement(statement);
+        openStatements.add(statement);
         return statement;
     }
     
@@ -283,6 +363,22 @@ public class MockConnection implements Connection
     public void close() throws SQLException
     {
         closed = true;
+        leakResultSets();
+    }
+    
+    /**
+     * Counts the open <code>ResultSet</code> objects of the open
+     * statements of this connection as leaked, if the
+     * {@link StatementMetrics} are enabled. The statements of
+     * other connections that share the handlers are not affected.
+     */
+    private void leakResultSets()
+    {
+        if(null == getStatementMetrics()) return;
+        for(MockStatement nextStatement : openStatements)
+        {
+            nextStatement.leakResultSets();
+        }
     }
     
     public boolean getAutoCommit() throws SQLException
@@ -436,12 +532,16 @@ public class MockConnection implements Connection
     
     public void commit() throws SQLException
     {
-        numberCommits++;
+        numberCommits.incrementAndGet();
+        StatementMetrics statementMetrics = getStatementMetrics();
+        if(null != statementMetrics) statementMetrics.addCommit();
     }
     
     public void rollback() throws SQLException
     {
-        numberRollbacks++;
+        numberRollbacks.incrementAndGet();
+        StatementMetrics statementMetrics = getStatementMetrics();
+        if(null != statementMetrics) statementMetrics.addRollback();
     }
     
     public void rollback(Savepoint savepoint) throws SQLException
@@ -456,7 +556,9 @@ public class MockConnection implements Connection
             throw new SQLException("Savepoint with id " + currentSavepoint.getSavepointId() + " and name " + currentSavepoint.getSavepointName() + " is released");
         }
         currentSavepoint.setRolledBack(true);
-        numberRollbacks++;
+        numberRollbacks.incrementAndGet();
+        StatementMetrics statementMetrics = getStatementMetrics();
+        if(null != statementMetrics) statementMetrics.addRollback();
     }
     
     public void clearWarnings() throws SQLException
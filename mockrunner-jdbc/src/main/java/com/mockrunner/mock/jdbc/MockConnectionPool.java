@@ -0,0 +1,407 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
+
+/**
+ * Simulates a connection pool. Can be set up with
+ * {@link MockDataSource#setupConnectionPool}, the data source
+ * then hands out the connections of the pool.
+ * <br>
+ * The pool creates at most <i>maxSize</i> {@link MockPooledConnection}
+ * objects. They share the result set handlers of the template connection,
+ * so the data prepared with the template connection is used by all
+ * pooled connections and the executed statements can be verified as usual.
+ * Every pooled connection has its own journal of executed statements,
+ * see {@link MockPooledConnection#getExecutedStatements}.
+ * <br>
+ * If all connections are borrowed, {@link #borrowConnection} waits
+ * until a connection is returned or the borrow timeout elapses. In the
+ * latter case an <code>SQLException</code> is thrown. Waiting threads
+ * are served in order. Every borrow can be delayed with a simulated
+ * acquire latency. The latency is applied by the {@link LatencyClock}
+ * of the template connection's statement handler, i.e. the clock that
+ * also applies the statement latencies. With a virtual clock, the
+ * borrow does not sleep, but the simulated delay is still added to
+ * the wait time.
+ * <br>
+ * The pool keeps the number of borrows and timeouts and the time the
+ * threads had to wait for a connection. Connections that are borrowed
+ * longer than the leak detection threshold are reported by
+ * {@link #getLeakedConnections}.
+ * <br>
+ * This class is thread safe.
+ */
+public class MockConnectionPool
+{
+    public final static long DEFAULT_BORROW_TIMEOUT = 30000;
+
+    private final MockConnection template;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Deque<MockPooledConnection> idleConnections = new ConcurrentLinkedDeque<MockPooledConnection>();
+    private final List<MockPooledConnection> connections = new CopyOnWriteArrayList<MockPooledConnection>();
+    private final AtomicInteger numberActiveConnections = new AtomicInteger();
+    private final AtomicInteger peakActiveConnections = new AtomicInteger();
+    private final AtomicLong numberBorrows = new AtomicLong();
+    private final AtomicLong numberTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private volatile long borrowTimeout = DEFAULT_BORROW_TIMEOUT;
+    private volatile LatencyModel acquireLatency;
+    private volatile long leakDetectionThreshold = 0;
+
+    /**
+     * Creates a pool with the specified maximum number of connections.
+     * @param template the connection whose result set handlers are
+     *        used by the pooled connections
+     * @param maxSize the maximum number of connections
+     * @throws IllegalArgumentException if <code>maxSize</code> is less than 1
+     */
+    public MockConnectionPool(MockConnection template, int maxSize)
+    {
+        if(null == template)
+        {
+            throw new IllegalArgumentException("template must not be null");
+        }
+        if(maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        this.template = template;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Returns the template connection.
+     * @return the template connection
+     */
+    public MockConnection getTemplateConnection()
+    {
+        return template;
+    }
+
+    /**
+     * Returns the maximum number of connections.
+     * @return the maximum number of connections
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Sets how long {@link #borrowConnection} waits for a connection, if all
+     * connections are borrowed. Default is {@link #DEFAULT_BORROW_TIMEOUT}.
+     * @param borrowTimeout the timeout in milliseconds, 0 fails immediately
+     */
+    public void setBorrowTimeout(long borrowTimeout)
+    {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Returns the borrow timeout in milliseconds.
+     * @return the borrow timeout
+     */
+    public long getBorrowTimeout()
+    {
+        return borrowTimeout;
+    }
+
+    /**
+     * Sets a fixed simulated latency of acquiring a connection.
+     * Shortcut for <code>setAcquireLatency(LatencyModel.fixed(acquireLatency))</code>.
+     * Default is 0.
+     * @param acquireLatency the latency in milliseconds
+     */
+    public void setAcquireLatency(long acquireLatency)
+    {
+        setAcquireLatency((acquireLatency > 0) ? LatencyModel.fixed(acquireLatency) : null);
+    }
+
+    /**
+     * Sets the simulated latency of acquiring a connection. Every
+     * successful borrow is delayed by the {@link #getLatencyClock}.
+     * Default is <code>null</code>, i.e. no latency.
+     * @param acquireLatency the {@link LatencyModel}, may be <code>null</code>
+     */
+    public void setAcquireLatency(LatencyModel acquireLatency)
+    {
+        this.acquireLatency = acquireLatency;
+    }
+
+    /**
+     * Returns the simulated acquire latency.
+     * @return the {@link LatencyModel} or <code>null</code>
+     */
+    public LatencyModel getAcquireLatency()
+    {
+        return acquireLatency;
+    }
+
+    /**
+     * Returns the {@link LatencyClock} that applies the acquire latency.
+     * This is the clock of the template connection's statement handler,
+     * see {@link com.mockrunner.jdbc.AbstractResultSetHandler#setLatencyClock}.
+     * @return the {@link LatencyClock}
+     */
+    public LatencyClock getLatencyClock()
+    {
+        return template.getStatementResultSetHandler().getLatencyClock();
+    }
+
+    /**
+     * Sets the time a connection may be borrowed before it's reported
+     * by {@link #getLeakedConnections}. Default is 0, i.e. all
+     * borrowed connections are reported, which is usually what you want
+     * to verify at the end of a test.
+     * @param leakDetectionThreshold the threshold in milliseconds
+     */
+    public void setLeakDetectionThreshold(long leakDetectionThreshold)
+    {
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    /**
+     * Returns the leak detection threshold in milliseconds.
+     * @return the leak detection threshold
+     */
+    public long getLeakDetectionThreshold()
+    {
+        return leakDetectionThreshold;
+    }
+
+    /**
+     * Borrows a connection from the pool. Waits for a connection to be
+     * returned, if all connections are borrowed.
+     * @return the connection
+     * @throws SQLException if no connection was returned within
+     *         the borrow timeout or the thread was interrupted
+     */
+    public MockPooledConnection borrowConnection() throws SQLException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            if(!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS))
+            {
+                numberTimeouts.incrementAndGet();
+                addWaitTime(System.nanoTime() - start);
+                throw new SQLException("Timeout after " + borrowTimeout + " ms, all " + maxSize + " connections are borrowed");
+            }
+        }
+        catch(InterruptedException exc)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", exc);
+        }
+        long waitTime = System.nanoTime() - start;
+        LatencyModel latency = acquireLatency;
+        if(null != latency)
+        {
+            LatencyClock clock = getLatencyClock();
+            long delay = clock.nextDelay(latency);
+            clock.sleep(delay);
+            if(Thread.currentThread().isInterrupted())
+            {
+                permits.release();
+                throw new SQLException("Interrupted while acquiring a connection");
+            }
+            waitTime += delay;
+        }
+        MockPooledConnection connection = idleConnections.pollFirst();
+        if(null == connection)
+        {
+            connection = createPooledConnection();
+            connections.add(connection);
+        }
+        connection.borrow();
+        int active = numberActiveConnections.incrementAndGet();
+        updateMax(peakActiveConnections, active);
+        numberBorrows.incrementAndGet();
+        addWaitTime(waitTime);
+        return connection;
+    }
+
+    /**
+     * Returns a connection to the pool. Called by
+     * {@link MockPooledConnection#close}. Does nothing, if
+     * the connection is not borrowed.
+     * @param connection the connection
+     */
+    public void returnConnection(MockPooledConnection connection)
+    {
+        if(connection.getPool() != this || !connection.release()) return;
+        numberActiveConnections.decrementAndGet();
+        idleConnections.addFirst(connection);
+        permits.release();
+    }
+
+    /**
+     * Creates a new pooled connection. This method can be
+     * overridden to return a subclass of {@link MockPooledConnection}.
+     * @return the new connection
+     */
+    protected MockPooledConnection createPooledConnection()
+    {
+        return new MockPooledConnection(this, template);
+    }
+
+    /**
+     * Returns all connections the pool has created.
+     * @return the <code>List</code> of connections
+     */
+    public List<MockPooledConnection> getConnections()
+    {
+        return Collections.unmodifiableList(connections);
+    }
+
+    /**
+     * Returns the borrowed connections that were borrowed
+     * longer than the leak detection threshold.
+     * @return the <code>List</code> of leaked connections
+     */
+    public List<MockPooledConnection> getLeakedConnections()
+    {
+        long now = System.currentTimeMillis();
+        List<MockPooledConnection> leakedConnections = new ArrayList<MockPooledConnection>();
+        for(MockPooledConnection connection : connections)
+        {
+            if(connection.isBorrowed() && now - connection.getBorrowTime() >= leakDetectionThreshold)
+            {
+                leakedConnections.add(connection);
+            }
+        }
+        return leakedConnections;
+    }
+
+    /**
+     * Returns the number of borrowed connections.
+     * @return the number of borrowed connections
+     */
+    public int getNumberActiveConnections()
+    {
+        return numberActiveConnections.get();
+    }
+
+    /**
+     * Returns the number of connections that are created but not borrowed.
+     * @return the number of idle connections
+     */
+    public int getNumberIdleConnections()
+    {
+        return idleConnections.size();
+    }
+
+    /**
+     * Returns the maximum number of connections that were
+     * borrowed at the same time.
+     * @return the peak number of borrowed connections
+     */
+    public int getPeakActiveConnections()
+    {
+        return peakActiveConnections.get();
+    }
+
+    /**
+     * Returns the number of successful borrows.
+     * @return the number of borrows
+     */
+    public long getNumberBorrows()
+    {
+        return numberBorrows.get();
+    }
+
+    /**
+     * Returns the number of borrows that failed because of
+     * the borrow timeout.
+     * @return the number of timeouts
+     */
+    public long getNumberTimeouts()
+    {
+        return numberTimeouts.get();
+    }
+
+    /**
+     * Returns the time all borrows, including the failed
+     * ones, spent waiting for a connection. This includes
+     * the simulated acquire latency, even if it's applied
+     * by a virtual {@link LatencyClock}.
+     * @return the total wait time in nanoseconds
+     */
+    public long getTotalWaitTimeNanos()
+    {
+        return totalWaitTime.get();
+    }
+
+    /**
+     * Returns the longest time a borrow spent waiting for a connection.
+     * @return the maximum wait time in nanoseconds
+     */
+    public long getMaxWaitTimeNanos()
+    {
+        return maxWaitTime.get();
+    }
+
+    /**
+     * Returns the average time a borrow spent waiting for a connection.
+     * @return the average wait time in nanoseconds
+     */
+    public double getAverageWaitTimeNanos()
+    {
+        long count = numberBorrows.get() + numberTimeouts.get();
+        if(count == 0) return 0;
+        return (double)totalWaitTime.get() / count;
+    }
+
+    /**
+     * Resets the number of borrows and timeouts, the wait times
+     * and the peak number of borrowed connections.
+     */
+    public void resetStatistics()
+    {
+        numberBorrows.set(0);
+        numberTimeouts.set(0);
+        totalWaitTime.set(0);
+        maxWaitTime.set(0);
+        peakActiveConnections.set(numberActiveConnections.get());
+    }
+
+    private void addWaitTime(long waitTime)
+    {
+        totalWaitTime.addAndGet(waitTime);
+        updateMax(maxWaitTime, waitTime);
+    }
+
+    private static void updateMax(AtomicInteger max, int value)
+    {
+        int current = max.get();
+        while(value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value)
+    {
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+}
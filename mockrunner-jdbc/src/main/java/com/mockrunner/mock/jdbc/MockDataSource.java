@@ -14,6 +14,7 @@ import javax.sql.DataSource;
 public class MockDataSource implements DataSource
 {
     private Connection connection = null;
+    private MockConnectionPool connectionPool = null;
     private int loginTimeout = 0;
     private PrintWriter logWriter = null;
     private Logger parentLogger = null;
@@ -27,6 +28,27 @@ public class MockDataSource implements DataSource
         this.connection = connection;
     }
     
+    /**
+     * Set up a connection pool. If a pool is set up, {@link #getConnection}
+     * borrows the connections from the pool instead of returning the
+     * connection set with {@link #setupConnection}.
+     * @param connectionPool the pool, <code>null</code> disables pooling
+     */
+    public void setupConnectionPool(MockConnectionPool connectionPool)
+    {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Returns the {@link MockConnectionPool} or <code>null</code>,
+     * if no pool is set up.
+     * @return the {@link MockConnectionPool}
+     */
+    public MockConnectionPool getConnectionPool()
+    {
+        return connectionPool;
+    }
+    
     /**
      * Returns the {@link com.mockrunner.mock.jdbc.MockConnection}. 
      * If the underlying connection is not an instance of 
@@ -65,12 +87,14 @@ public class MockDataSource implements DataSource
 
     public Connection getConnection() throws SQLException
     {
+        MockConnectionPool pool = connectionPool;
+        if(null != pool) return pool.borrowConnection();
         return connection;
     }
 
     public Connection getConnection(String username, String password) throws SQLException
     {
-        return connection;
+        return getConnection();
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException
@@ -8,9 +8,12 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.mockrunner.jdbc.SimulatedCatalog;
 import com.mockrunner.util.common.StringUtil;
 
 /**
@@ -170,27 +173,28 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     private ResultSet tableTypes;
     private ResultSet typeInfo;
     private ResultSet clientInfoProperties;
-    private Map<DatabaseIdentifier, ResultSet> schemasMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> exportedKeysMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> importedKeysMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> primaryKeysMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> proceduresMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> functionsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> superTablesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> superTypesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> tablePrivilegesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> versionColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> bestRowIdentifierMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> indexInfoMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> udtsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> attributesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> columnPrivilegesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> columnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> procedureColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> functionColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> tablesMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> crossReferenceMap = new HashMap<DatabaseIdentifier, ResultSet>();
-    private Map<DatabaseIdentifier, ResultSet> pseudoColumnsMap = new HashMap<DatabaseIdentifier, ResultSet>();
+    private SimulatedCatalog simulatedCatalog;
+    private DatabaseIdentifierMap schemasMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap exportedKeysMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap importedKeysMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap primaryKeysMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap proceduresMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap functionsMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap superTablesMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap superTypesMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap tablePrivilegesMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap versionColumnsMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap bestRowIdentifierMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap indexInfoMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap udtsMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap attributesMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap columnPrivilegesMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap columnsMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap procedureColumnsMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap functionColumnsMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap tablesMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap crossReferenceMap = new DatabaseIdentifierMap();
+    private DatabaseIdentifierMap pseudoColumnsMap = new DatabaseIdentifierMap();
     
     /**
      * Set if matching of catalogs, schemas, tables and columns
@@ -202,6 +206,25 @@ public class MockDatabaseMetaData implements DatabaseMetaData
         this.caseSensitive = caseSensitive;
     }
 
+    /**
+     * Sets a {@link SimulatedCatalog} that answers {@link #getCatalogs},
+     * {@link #getSchemas}, {@link #getTableTypes}, {@link #getTables},
+     * {@link #getColumns}, {@link #getPrimaryKeys} and {@link #getIndexInfo},
+     * if no <code>ResultSet</code> matching the query was set.
+     * The matching of names is case sensitive, if the
+     * {@link SimulatedCatalog} is case sensitive.
+     * @param simulatedCatalog the catalog, <code>null</code> to remove it
+     */
+    public void setSimulatedCatalog(SimulatedCatalog simulatedCatalog)
+    {
+        this.simulatedCatalog = simulatedCatalog;
+    }
+
+    public SimulatedCatalog getSimulatedCatalog()
+    {
+        return simulatedCatalog;
+    }
+
     public int getDatabaseMajorVersion() throws SQLException
     {
         return databaseMajorVersion;
@@ -1679,6 +1702,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     
     public ResultSet getCatalogs() throws SQLException
     {
+        if(null == catalogs && null != simulatedCatalog) return simulatedCatalog.getCatalogs();
         return catalogs;
     }
     
@@ -1689,13 +1713,17 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     
     public ResultSet getSchemas() throws SQLException
     {
-        return getAll(schemasMap);
+        ResultSet schemas = getAll(schemasMap);
+        if(null == schemas && null != simulatedCatalog) return simulatedCatalog.getSchemas(null, null);
+        return schemas;
     }
     
     public ResultSet getSchemas(String catalog, String schemaPattern) throws SQLException
     {
         DatabaseIdentifier expected = new DatabaseIdentifierImpl(catalog, schemaPattern, "", true, false);
-        return findMatchingDatabaseIdentifier(expected, schemasMap);
+        ResultSet schemas = findMatchingDatabaseIdentifier(expected, schemasMap);
+        if(null == schemas && null != simulatedCatalog) return simulatedCatalog.getSchemas(catalog, schemaPattern);
+        return schemas;
     }
     
     public void setSchemas(ResultSet schemas)
@@ -1715,6 +1743,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     
     public ResultSet getTableTypes() throws SQLException
     {
+        if(null == tableTypes && null != simulatedCatalog) return simulatedCatalog.getTableTypes();
         return tableTypes;
     }
     
@@ -1788,7 +1817,9 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     public ResultSet getPrimaryKeys(String catalog, String schema, String table) throws SQLException
     {
         DatabaseIdentifier expected = new DatabaseIdentifierImpl(catalog, schema, table);
-        return findMatchingDatabaseIdentifier(expected, primaryKeysMap);
+        ResultSet primaryKeys = findMatchingDatabaseIdentifier(expected, primaryKeysMap);
+        if(null == primaryKeys && null != simulatedCatalog) return simulatedCatalog.getPrimaryKeys(catalog, schema, table);
+        return primaryKeys;
     }
     
     public void setPrimaryKeys(ResultSet primaryKeys)
@@ -1956,7 +1987,9 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     public ResultSet getIndexInfo(String catalog, String schema, String table, boolean unique, boolean approximate) throws SQLException
     {
         DatabaseIdentifier expected = new IndexInfoDatabaseIdentifierImpl(catalog, schema, table, unique, approximate);
-        return findMatchingDatabaseIdentifier(expected, indexInfoMap);
+        ResultSet indexInfo = findMatchingDatabaseIdentifier(expected, indexInfoMap);
+        if(null == indexInfo && null != simulatedCatalog) return simulatedCatalog.getIndexInfo(catalog, schema, table, unique, approximate);
+        return indexInfo;
     }
     
     public void setIndexInfo(ResultSet indexInfo)
@@ -2056,7 +2089,9 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     public ResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern) throws SQLException
     {
         DatabaseIdentifier expected = new ColumnDatabaseIdentifierImpl(catalog, schemaPattern, tableNamePattern, true, true, columnNamePattern);
-        return findMatchingDatabaseIdentifier(expected, columnsMap);
+        ResultSet columns = findMatchingDatabaseIdentifier(expected, columnsMap);
+        if(null == columns && null != simulatedCatalog) return simulatedCatalog.getColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern);
+        return columns;
     }
     
     public void setColumns(ResultSet columns)
@@ -2119,7 +2154,9 @@ public class MockDatabaseMetaData implements DatabaseMetaData
     public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types) throws SQLException
     {
         DatabaseIdentifier expected = new TableDatabaseIdentifierImpl(catalog, schemaPattern, true, true, tableNamePattern, types);
-        return findMatchingDatabaseIdentifier(expected, tablesMap);
+        ResultSet tables = findMatchingDatabaseIdentifier(expected, tablesMap);
+        if(null == tables && null != simulatedCatalog) return simulatedCatalog.getTables(catalog, schemaPattern, tableNamePattern, types);
+        return tables;
     }
     
     public void setTables(ResultSet tables)
@@ -2179,14 +2216,13 @@ public class MockDatabaseMetaData implements DatabaseMetaData
      * ResultSet otherwise return a PolyResultSet with the ResultSet of each
      * matching DatabaseIdentifier.
      */
-    private ResultSet findMatchingDatabaseIdentifier(DatabaseIdentifier expected, Map<DatabaseIdentifier, ResultSet> theMap)
+    private ResultSet findMatchingDatabaseIdentifier(DatabaseIdentifier expected, DatabaseIdentifierMap theMap)
     {
         List<ResultSet> list = new ArrayList<ResultSet>();
-        for (Map.Entry<DatabaseIdentifier, ResultSet> entry : theMap.entrySet()) {
-            DatabaseIdentifier next = entry.getKey();
+        for (DatabaseIdentifier next : theMap.getCandidates(expected)) {
             if(next.isGlobal() || expected.matches(next)) 
             {
-                list.add(entry.getValue());
+                list.add(theMap.get(next));
             }
         }
         if(list.isEmpty()) return null;
@@ -2194,7 +2230,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
         return new PolyResultSet(list);
     }
     
-    private ResultSet getAll(Map<DatabaseIdentifier, ResultSet> theMap)
+    private ResultSet getAll(DatabaseIdentifierMap theMap)
     {
         List<ResultSet> list = new ArrayList<ResultSet>();
         list.addAll(theMap.values());
@@ -2203,11 +2239,91 @@ public class MockDatabaseMetaData implements DatabaseMetaData
         return new PolyResultSet(list);
     }
     
+    /*
+     * Map of the prepared ResultSet objects, that indexes the
+     * DatabaseIdentifier objects by the lower case table name. A lookup
+     * with a table name, that's not a pattern, only checks the
+     * DatabaseIdentifier objects of this table and the ones without a
+     * table name instead of all DatabaseIdentifier objects. Lookups with
+     * a table name pattern check all DatabaseIdentifier objects.
+     */
+    private static class DatabaseIdentifierMap
+    {
+        private final Map<DatabaseIdentifier, ResultSet> resultSets = new HashMap<DatabaseIdentifier, ResultSet>();
+        private final Map<String, Set<DatabaseIdentifier>> tableIndex = new HashMap<String, Set<DatabaseIdentifier>>();
+        private final Set<DatabaseIdentifier> notIndexed = new LinkedHashSet<DatabaseIdentifier>();
+        
+        public void put(DatabaseIdentifier identifier, ResultSet resultSet)
+        {
+            resultSets.put(identifier, resultSet);
+            String key = identifier.getIndexKey();
+            if(null == key)
+            {
+                notIndexed.add(identifier);
+                return;
+            }
+            Set<DatabaseIdentifier> identifiers = tableIndex.get(key);
+            if(null == identifiers)
+            {
+                identifiers = new LinkedHashSet<DatabaseIdentifier>();
+                tableIndex.put(key, identifiers);
+            }
+            identifiers.add(identifier);
+        }
+        
+        public ResultSet get(DatabaseIdentifier identifier)
+        {
+            return resultSets.get(identifier);
+        }
+        
+        public List<ResultSet> values()
+        {
+            return new ArrayList<ResultSet>(resultSets.values());
+        }
+        
+        public void clear()
+        {
+            resultSets.clear();
+            tableIndex.clear();
+            notIndexed.clear();
+        }
+        
+        /*
+         * Returns the DatabaseIdentifier objects that may match
+         * the expected DatabaseIdentifier.
+         */
+        public Set<DatabaseIdentifier> getCandidates(DatabaseIdentifier expected)
+        {
+            String key = expected.getLookupKey();
+            if(null == key) return resultSets.keySet();
+            Set<DatabaseIdentifier> identifiers = tableIndex.get(key);
+            if(null == identifiers) return notIndexed;
+            Set<DatabaseIdentifier> candidates = new LinkedHashSet<DatabaseIdentifier>(notIndexed);
+            candidates.addAll(identifiers);
+            return candidates;
+        }
+    }
+    
     private interface DatabaseIdentifier
     {
         boolean isGlobal();
         
         boolean matches(DatabaseIdentifier other);
+        
+        /*
+         * Returns the key of this DatabaseIdentifier in the index of the
+         * DatabaseIdentifierMap or null, if it's not indexed. Only the 
+         * DatabaseIdentifier objects with this key can match the
+         * DatabaseIdentifier objects with the same lookup key.
+         */
+        String getIndexKey();
+        
+        /*
+         * Returns the key to look up the matching DatabaseIdentifier objects
+         * in the index of the DatabaseIdentifierMap or null, if the index
+         * can't be used, e.g. for table name patterns.
+         */
+        String getLookupKey();
     }
     
     private class DatabaseIdentifierImpl implements DatabaseIdentifier
@@ -2259,17 +2375,16 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             return table;
         }
         
-        protected String convert(String name) 
+        public String getIndexKey()
         {
-            if(name.indexOf('%') != -1) 
-            {
-                name = StringUtil.replaceAll(name, "%", ".*");
-            }
-            if(name.indexOf('_') != -1) 
-            {
-                name = StringUtil.replaceAll(name, "_", ".");
-            }
-            return name;
+            if(isGlobal || null == table) return null;
+            return table.toLowerCase();
+        }
+        
+        public String getLookupKey()
+        {
+            if(useTablePattern) return null;
+            return getIndexKey();
         }
         
         public boolean matches(DatabaseIdentifier object) 
@@ -2313,7 +2428,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
                 }
                 else
                 {
-                    return StringUtil.matchesPerl5(other.getSchema(), convert(schema), caseSensitive);
+                    return StringUtil.matchesLike(other.getSchema(), schema, caseSensitive);
                 }
             }
         }
@@ -2328,7 +2443,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             }
             else
             {
-                return StringUtil.matchesPerl5(other.getTable(), convert(table), caseSensitive);
+                return StringUtil.matchesLike(other.getTable(), table, caseSensitive);
             }
         }
         
@@ -2391,7 +2506,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             AttributesDatabaseIdentifierImpl other = (AttributesDatabaseIdentifierImpl)object;
             if(null == attributeNamePattern) return false;
             if(null == other.getAttributeNamePattern()) return false;
-            return StringUtil.matchesPerl5(other.getAttributeNamePattern(), convert(attributeNamePattern), caseSensitive);
+            return StringUtil.matchesLike(other.getAttributeNamePattern(), attributeNamePattern, caseSensitive);
         }
         
         @Override
@@ -2448,7 +2563,7 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             if(null == columnNamePattern && null == other.getColumnNamePattern()) return true;
             if(null == columnNamePattern) return false;
             if(null == other.getColumnNamePattern()) return false;
-            return StringUtil.matchesPerl5(other.getColumnNamePattern(), convert(columnNamePattern), caseSensitive);
+            return StringUtil.matchesLike(other.getColumnNamePattern(), columnNamePattern, caseSensitive);
         }
         
         @Override
@@ -2760,6 +2875,18 @@ public class MockDatabaseMetaData implements DatabaseMetaData
             return (identifier1.isGlobal() && identifier1.isGlobal());
         }
         
+        public String getIndexKey()
+        {
+            if(null == identifier1) return null;
+            return identifier1.getIndexKey();
+        }
+        
+        public String getLookupKey()
+        {
+            if(null == identifier1) return null;
+            return identifier1.getLookupKey();
+        }
+        
         public boolean matches(DatabaseIdentifier object)
         {
             if(null == object) return false;
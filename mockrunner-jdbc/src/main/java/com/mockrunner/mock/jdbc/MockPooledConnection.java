@@ -0,0 +1,191 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.Journal;
+
+/**
+ * A {@link MockConnection} that belongs to a {@link MockConnectionPool}.
+ * It uses the result set handlers of the pool's template connection, i.e.
+ * the prepared data is shared by all connections of the pool and the
+ * executed statements are recorded by the shared handlers.
+ * Additionally every pooled connection has its own journal of
+ * the SQL strings that were executed with it.
+ * <br>
+ * A pooled connection starts with the auto commit mode, transaction
+ * isolation, read only flag and catalog of the template connection.
+ * {@link #close} does not close the connection but returns it
+ * to the pool. The open statements of the connection are closed and
+ * the connection is reset to the state of the template connection, like
+ * a real pool does, so the next borrower doesn't see the settings of
+ * the previous one. The connection appears closed until it's borrowed again.
+ */
+public class MockPooledConnection extends MockConnection
+{
+    private final MockConnectionPool pool;
+    private final Journal<String> executedStatements;
+    private final boolean initialAutoCommit;
+    private final int initialTransactionIsolation;
+    private final boolean initialReadOnly;
+    private final String initialCatalog;
+    private volatile boolean borrowed;
+    private volatile long borrowTime;
+    private volatile Thread borrowingThread;
+    private volatile int numberBorrows;
+
+    public MockPooledConnection(MockConnectionPool pool, MockConnection template)
+    {
+        super(template.getStatementResultSetHandler(), template.getPreparedStatementResultSetHandler(), template.getCallableStatementResultSetHandler());
+        this.pool = pool;
+        this.executedStatements = new Journal<String>(null, template.getStatementResultSetHandler().getJournalPolicy());
+        try
+        {
+            initialAutoCommit = template.getAutoCommit();
+            initialTransactionIsolation = template.getTransactionIsolation();
+            initialReadOnly = template.isReadOnly();
+            initialCatalog = template.getCatalog();
+            resetState();
+        }
+        catch(SQLException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    /**
+     * Returns the pool of this connection.
+     * @return the pool
+     */
+    public MockConnectionPool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Collects the SQL strings that were executed with this connection.
+     * Called by the statements of this connection.
+     * @param sql the SQL string
+     */
+    public void addExecutedStatement(String sql)
+    {
+        executedStatements.add(sql);
+    }
+
+    /**
+     * Adds the SQL strings executed by a batch to the journal.
+     * @param sqlList the SQL strings
+     */
+    public void addExecutedStatements(List<String> sqlList)
+    {
+        executedStatements.addAll(sqlList);
+    }
+
+    /**
+     * Returns the SQL strings that were executed with this connection,
+     * since it was created, according to the journal policy
+     * of the template connection's handlers.
+     * @return the <code>List</code> of executed SQL strings
+     */
+    public List<String> getExecutedStatements()
+    {
+        return Collections.unmodifiableList(executedStatements);
+    }
+
+    /**
+     * Returns the number of SQL strings that were executed with
+     * this connection, including the ones that were not kept.
+     * @return the number of executed SQL strings
+     */
+    public long getNumberExecutedStatements()
+    {
+        return executedStatements.getTotalCount();
+    }
+
+    /**
+     * Returns if the connection is currently borrowed from the pool.
+     * @return <code>true</code> if the connection is borrowed
+     */
+    public boolean isBorrowed()
+    {
+        return borrowed;
+    }
+
+    /**
+     * Returns the time in milliseconds (as returned by
+     * <code>System.currentTimeMillis</code>) when the connection was
+     * borrowed the last time.
+     * @return the time of the last borrow
+     */
+    public long getBorrowTime()
+    {
+        return borrowTime;
+    }
+
+    /**
+     * Returns the thread that borrowed the connection the last time.
+     * @return the borrowing thread
+     */
+    public Thread getBorrowingThread()
+    {
+        return borrowingThread;
+    }
+
+    /**
+     * Returns how often this connection was borrowed from the pool.
+     * @return the number of borrows
+     */
+    public int getNumberBorrows()
+    {
+        return numberBorrows;
+    }
+
+    /**
+     * Closes the open statements of this connection, resets the
+     * connection to the state of the template connection and returns it
+     * to the pool. If the {@link com.mockrunner.jdbc.StatementMetrics}
+     * are enabled, the <code>ResultSet</code> objects that are still
+     * open are counted as leaked. Does nothing, if the connection
+     * is not borrowed.
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        if(!borrowed) return;
+        closeOpenStatements();
+        resetState();
+        pool.returnConnection(this);
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException
+    {
+        return !borrowed || super.isClosed();
+    }
+
+    private void resetState() throws SQLException
+    {
+        setAutoCommit(initialAutoCommit);
+        setTransactionIsolation(initialTransactionIsolation);
+        setReadOnly(initialReadOnly);
+        setCatalog(initialCatalog);
+    }
+
+    synchronized void borrow()
+    {
+        borrowTime = System.currentTimeMillis();
+        borrowingThread = Thread.currentThread();
+        numberBorrows++;
+        borrowed = true;
+    }
+
+    synchronized boolean release()
+    {
+        if(!borrowed) return false;
+        borrowed = false;
+        borrowingThread = null;
+        return true;
+    }
+}
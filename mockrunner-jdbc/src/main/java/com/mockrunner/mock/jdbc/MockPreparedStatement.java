@@ -28,7 +28,9 @@ import java.util.Calendar;
 import java.util.Iterator;
 import java.util.List;
 
+import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.AbstractParameterResultSetHandler;
+import com.mockrunner.jdbc.LatencyModel;
 import com.mockrunner.jdbc.ParameterUtil;
 import com.mockrunner.util.common.StreamUtil;
 import com.mockrunner.util.common.StringUtil;
@@ -174,11 +176,21 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
         {
             throw exception;
         }
+        MockResultSet[] results;
+        try
+        {
+            results = resultSetHandler.getResultSets(getSQL(), params);
+        }
+        catch(NestedApplicationException exc)
+        {
+            throw getNestedSQLException(exc);
+        }
         resultSetHandler.addParameterMapForExecutedStatement(getSQL(), getParameterMapCopy(params));
-        MockResultSet[] results = resultSetHandler.getResultSets(getSQL(), params);
         if (results != null && results.length != 0)
         {
+            simulateLatency(getSQL());
             resultSetHandler.addExecutedStatement(getSQL());
+            addExecutedStatementToConnection(getSQL());
             if (results.length > 1)
             {
                 return cloneAndSetMultipleResultSets(results, params);
@@ -193,24 +205,26 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
         return superResultSet;
     }
     
-    private MockResultSet cloneAndSetSingleResultSet(MockResultSet result, MockParameterMap params)
+    private MockResultSet cloneAndSetSingleResultSet(MockResultSet result, MockParameterMap params) throws SQLException
     {
         result = cloneResultSet(result);
         if(null != result)
         {
             resultSetHandler.addReturnedResultSet(result);
+            openResultSet(getSQL(), result);
         }
         setResultSets(new MockResultSet[] {result});
         setGeneratedKeysResultSet(sql, params);
         return result;
     }
     
-    private MockResultSet cloneAndSetMultipleResultSets(MockResultSet[] results, MockParameterMap params)
+    private MockResultSet cloneAndSetMultipleResultSets(MockResultSet[] results, MockParameterMap params) throws SQLException
     {
         results = cloneResultSets(results);
         if(null != results)
         {
             resultSetHandler.addReturnedResultSets(results);
+            openResultSets(getSQL(), results);
         }
         setResultSets(results);
         setGeneratedKeysResultSet(sql, params);
@@ -242,7 +256,9 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
         Integer[] updateCounts = resultSetHandler.getUpdateCounts(getSQL(), params);
         if (updateCounts != null && updateCounts.length != 0)
         {
+            simulateLatency(getSQL());
             resultSetHandler.addExecutedStatement(getSQL());
+            addExecutedStatementToConnection(getSQL());
             if (updateCounts.length > 1) {
                 return setMultipleUpdateCounts(updateCounts.clone(), params);
             }
@@ -256,14 +272,14 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
         return superUpdateCount;
     }
     
-    private int setSingleUpdateCount(int updateCount, MockParameterMap params)
+    private int setSingleUpdateCount(int updateCount, MockParameterMap params) throws SQLException
     {
         setUpdateCounts(new Integer[] {updateCount});
         setGeneratedKeysResultSet(sql, params);
         return updateCount;
     }
     
-    private int setMultipleUpdateCounts(Integer[] updateCounts, MockParameterMap params)
+    private int setMultipleUpdateCounts(Integer[] updateCounts, MockParameterMap params) throws SQLException
     {
         setUpdateCounts(updateCounts);
         setGeneratedKeysResultSet(sql, params);
@@ -284,29 +300,69 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     {
         try
         {
+            // not reused, the caller owns the returned update counts
             int[] results = new int[batchParams.size()];
             SQLException exception = null;
-            for(int ii = 0; ii < results.length; ii++)
+            LatencyModel batchLatency = resultSetHandler.getBatchLatency();
+            if(null != batchLatency) simulateLatency(batchLatency);
+            boolean isQuery = isQuery(getSQL());
+            SQLException statementException = isQuery ? null : resultSetHandler.getSQLException(sql);
+            LatencyModel latency = (isQuery || null != batchLatency) ? null : resultSetHandler.getLatency(getSQL());
+            Integer[] statementUpdateCounts = null;
+            List<MockParameterMap> executedParameters = new ArrayList<MockParameterMap>(results.length);
+            List<String> executedStatements = new ArrayList<String>(results.length);
+            Integer[] lastUpdateCounts = null;
+            MockParameterMap lastParameters = null;
+            try
             {
-                if(isQuery(getSQL()))
+                for(int ii = 0; ii < results.length; ii++)
                 {
-                    exception = prepareFailedResult(results, ii, "SQL " + getSQL() + " in the list of batches returned a ResultSet.", null);
-                }
-                else
-                {
-                    try
+                    if(isQuery)
+                    {
+                        exception = prepareFailedResult(results, ii, "SQL " + getSQL() + " in the list of batches returned a ResultSet.", null);
+                    }
+                    else
                     {
-                        MockParameterMap currentParameters = batchParams.get(ii);
-                        results[ii] = executeUpdate(currentParameters);
-                    } 
-                    catch(SQLException exc)
+                        try
+                        {
+                            MockParameterMap currentParameters = batchParams.get(ii);
+                            SQLException failure = resultSetHandler.getBatchFailure(getSQL(), ii);
+                            if(null == failure) failure = resultSetHandler.getSQLException(sql, currentParameters);
+                            if(null == failure) failure = statementException;
+                            if(null != failure) throw failure;
+                            executedParameters.add(getParameterMapCopy(currentParameters));
+                            Integer[] updateCounts = resultSetHandler.getUpdateCounts(getSQL(), currentParameters);
+                            if(null == updateCounts || updateCounts.length == 0)
+                            {
+                                if(null == statementUpdateCounts) statementUpdateCounts = getStatementUpdateCounts();
+                                updateCounts = statementUpdateCounts;
+                            }
+                            simulateLatency(latency);
+                            executedStatements.add(getSQL());
+                            results[ii] = updateCounts[0];
+                            lastUpdateCounts = updateCounts;
+                            lastParameters = currentParameters;
+                        }
+                        catch(SQLException exc)
+                        {
+                            exception = prepareFailedResult(results, ii, null, exc);
+                        }
+                    }
+                    if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
                     {
-                        exception = prepareFailedResult(results, ii, null, exc);
+                        throw exception;
                     }
                 }
-                if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
+            }
+            finally
+            {
+                resultSetHandler.addParameterMapsForExecutedStatement(getSQL(), executedParameters);
+                resultSetHandler.addExecutedStatements(executedStatements);
+                addExecutedStatementsToConnection(executedStatements);
+                if(null != lastUpdateCounts)
                 {
-                    throw exception;
+                    setUpdateCounts(lastUpdateCounts.clone());
+                    setGeneratedKeysResultSet(sql, lastParameters);
                 }
             }
             if(null != exception)
@@ -321,24 +377,44 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
             clearBatch();
         }
     }
+    
+    /**
+     * Returns the update counts prepared for the SQL string without
+     * parameters or the global update counts. Used for batch commands
+     * without update counts for their parameters, like {@link #executeUpdate}.
+     */
+    private Integer[] getStatementUpdateCounts()
+    {
+        Integer[] updateCounts = resultSetHandler.getUpdateCounts(getSQL());
+        if(null != updateCounts && updateCounts.length != 0) return updateCounts;
+        if(resultSetHandler.hasMultipleGlobalUpdateCounts()) return resultSetHandler.getGlobalUpdateCounts();
+        return new Integer[] {resultSetHandler.getGlobalUpdateCount()};
+    }
 
-    private void setGeneratedKeysResultSet(String sql, MockParameterMap params)
+    private void setGeneratedKeysResultSet(String sql, MockParameterMap params) throws SQLException
     {
-        MockResultSet generatedKeys = resultSetHandler.getGeneratedKeys(sql, params);
-        if(returnGeneratedKeys)
+        try
         {
-            if(null != generatedKeys)
+            MockResultSet generatedKeys = resultSetHandler.getGeneratedKeys(sql, params);
+            if(returnGeneratedKeys)
             {
-                setLastGeneratedKeysResultSet(generatedKeys);
+                if(null != generatedKeys)
+                {
+                    setLastGeneratedKeysResultSet(generatedKeys);
+                }
+                else
+                {
+                    setLastGeneratedKeysResultSet(determineGeneratedKeysResultSet(sql));
+                }
             }
             else
             {
-                setLastGeneratedKeysResultSet(determineGeneratedKeysResultSet(sql));
+                setLastGeneratedKeysResultSet(null);
             }
         }
-        else
+        catch(NestedApplicationException exc)
         {
-            setLastGeneratedKeysResultSet(null);
+            throw getNestedSQLException(exc);
         }
     }
 
@@ -428,14 +504,12 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
 
     public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException
     {
-        byte[] data = StreamUtil.getStreamAsByteArray(inputStream);
-        setBlob(parameterIndex, new MockBlob(data));
+        setBlob(parameterIndex, new MockBlob(inputStream, -1, LobStorage.getDefault()));
     }
     
     public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException
     {
-        byte[] data = StreamUtil.getStreamAsByteArray(inputStream, (int)length);
-        setBlob(parameterIndex, new MockBlob(data));
+        setBlob(parameterIndex, new MockBlob(inputStream, length, LobStorage.getDefault()));
     }
 
     public void setBoolean(int parameterIndex, boolean bool) throws SQLException
@@ -460,14 +534,12 @@ public class MockPreparedStatement extends MockStatement implements PreparedStat
     
     public void setClob(int parameterIndex, Reader reader) throws SQLException
     {
-        String data = StreamUtil.getReaderAsString(reader);
-        setClob(parameterIndex, new MockClob(data));
+        setClob(parameterIndex, new MockClob(reader, -1, LobStorage.getDefault()));
     }
 
     public void setClob(int parameterIndex, Reader reader, long length) throws SQLException
     {
-        String data = StreamUtil.getReaderAsString(reader, (int)length);
-        setClob(parameterIndex, new MockClob(data));
+        setClob(parameterIndex, new MockClob(reader, length, LobStorage.getDefault()));
     }
 
     public void setNClob(int parameterIndex, NClob nClob) throws SQLException
@@ -25,17 +25,22 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
 import com.mockrunner.jdbc.ParameterUtil;
 import com.mockrunner.jdbc.SQLUtil;
+import com.mockrunner.jdbc.StatementMetrics;
 import com.mockrunner.util.common.CaseAwareMap;
 import com.mockrunner.util.common.CollectionUtil;
 import com.mockrunner.util.common.StreamUtil;
@@ -61,9 +66,12 @@ public class MockResultSet implements ResultSet, Cloneable
     private Map<String, List<Object>> columnMapCopy;
     private Map<String, List<Object>> insertRow;
     private List<String> columnNameList;
-    private List<Boolean> updatedRows;
-    private List<Boolean> deletedRows;
-    private List<Boolean> insertedRows;
+    private List<List<Object>> columnList;
+    private List<List<Object>> columnListCopy;
+    private Map<String, Integer> columnLabelIndex;
+    private BitSet updatedRows;
+    private BitSet deletedRows;
+    private BitSet insertedRows;
     private int cursor;
     private boolean isCursorInInsertRow;
     private boolean wasNull;
@@ -75,8 +83,14 @@ public class MockResultSet implements ResultSet, Cloneable
     private int resultSetHoldability = ResultSet.HOLD_CURSORS_OVER_COMMIT;
     private boolean isDatabaseView;
     private ResultSetMetaData resultSetMetaData;
+    private volatile MockResultSetMetaData derivedMetaData;
     private boolean closed;
     private boolean columnsCaseSensitive;
+    private boolean copyOnWrite;
+    private LatencyModel fetchLatency;
+    private LatencyClock latencyClock;
+    private StatementMetrics.ResultSetMetrics resultSetMetrics;
+    private Set<List<Object>> sharedColumns;
     
     public MockResultSet(String id)
     {
@@ -94,10 +108,11 @@ public class MockResultSet implements ResultSet, Cloneable
     private void init()
     {
         columnMap = createCaseAwareMap();
+        sharedColumns = createSharedColumnSet();
         columnNameList = new ArrayList<String>();
-        updatedRows = new ArrayList<Boolean>();
-        deletedRows = new ArrayList<Boolean>();
-        insertedRows = new ArrayList<Boolean>();
+        updatedRows = new BitSet();
+        deletedRows = new BitSet();
+        insertedRows = new BitSet();
         cursor = -1;
         wasNull = false;
         closed = false;
@@ -131,26 +146,135 @@ public class MockResultSet implements ResultSet, Cloneable
         init();
     }
 
+    /**
+     * Set if {@link #clone} should copy the data lazily. Default is
+     * <code>false</code>, i.e. the data is copied when the
+     * <code>ResultSet</code> is cloned. If this attribute is
+     * <code>true</code>, the clone and this <code>ResultSet</code>
+     * share the column data and a column is copied when it's modified
+     * the first time, e.g. by an <code>update</code> method,
+     * {@link #insertRow}, {@link #deleteRow} or {@link #addRow}.
+     * This makes cloning of large <code>ResultSet</code> objects cheap,
+     * because they are usually not modified. Please note that
+     * the objects in the columns are shared, too, i.e. if you modify
+     * an object returned by a <code>get</code> method (e.g. a
+     * <code>Blob</code>), the change is visible in all clones.
+     * The attribute is passed to the clones.
+     * @param copyOnWrite should cloning copy the data lazily
+     */
+    public void setCopyOnWrite(boolean copyOnWrite)
+    {
+        this.copyOnWrite = copyOnWrite;
+    }
+    
+    /**
+     * Returns if {@link #clone} copies the data lazily.
+     * See {@link #setCopyOnWrite}.
+     * @return <code>true</code> if cloning copies the data lazily
+     */
+    public boolean isCopyOnWrite()
+    {
+        return copyOnWrite;
+    }
+
+    /**
+     * Sets the simulated latency of fetching a row. Every call of
+     * {@link #next} that moves the cursor to a row is delayed
+     * according to the {@link com.mockrunner.jdbc.LatencyModel}.
+     * Usually set by the statement that returns this
+     * <code>ResultSet</code>, see
+     * {@link com.mockrunner.jdbc.AbstractResultSetHandler#prepareFetchLatency}.
+     * The latency is passed to the clones.
+     * @param fetchLatency the {@link com.mockrunner.jdbc.LatencyModel},
+     *        <code>null</code> disables the latency
+     * @param latencyClock the {@link com.mockrunner.jdbc.LatencyClock} that applies the delays
+     */
+    public void setFetchLatency(LatencyModel fetchLatency, LatencyClock latencyClock)
+    {
+        this.fetchLatency = fetchLatency;
+        this.latencyClock = latencyClock;
+    }
+
+    /**
+     * Sets the {@link com.mockrunner.jdbc.StatementMetrics.ResultSetMetrics}
+     * that count the fetched rows and the closing of this <code>ResultSet</code>.
+     * Set by the statement that returns this <code>ResultSet</code>, if
+     * the {@link com.mockrunner.jdbc.StatementMetrics} are enabled.
+     * The metrics are not passed to the clones.
+     * @param resultSetMetrics the metrics, may be <code>null</code>
+     */
+    public void setResultSetMetrics(StatementMetrics.ResultSetMetrics resultSetMetrics)
+    {
+        this.resultSetMetrics = resultSetMetrics;
+    }
+
+    /**
+     * Reports this <code>ResultSet</code> as leaked to its
+     * {@link com.mockrunner.jdbc.StatementMetrics}, if it's not closed.
+     */
+    void leak()
+    {
+        if(null != resultSetMetrics && !closed) resultSetMetrics.leak();
+    }
+
     /**
      * Copies this <code>ResultSet</code>. The data of the
      * <code>ResultSet</code> is copied using the
      * {@link com.mockrunner.jdbc.ParameterUtil#copyParameter}
-     * method.
+     * method. If <i>copyOnWrite</i> is set, the data is
+     * copied when it's modified. See {@link #setCopyOnWrite}.
      * @return a copy of this <code>ResultSet</code>
      */
     @Override
     public Object clone()
+    {
+        return copy(copyOnWrite);
+    }
+
+    /**
+     * Copies this <code>ResultSet</code> and sets the id of the copy.
+     * The copy shares the data with this <code>ResultSet</code> until
+     * it's modified, regardless of the <i>copyOnWrite</i> attribute.
+     * See {@link #setCopyOnWrite}. Used to hand out cheap copies of cached
+     * <code>ResultSet</code> objects, e.g. by
+     * {@link com.mockrunner.jdbc.ResultSetFactoryCache}.
+     * @param id the id of the copy
+     * @return a copy of this <code>ResultSet</code>
+     */
+    public MockResultSet copyWithId(String id)
+    {
+        MockResultSet copy = copy(true);
+        copy.id = id;
+        return copy;
+    }
+
+    private MockResultSet copy(boolean shareData)
     {
         try
         {       
             MockResultSet copy = (MockResultSet)super.clone();
+            copy.resultSetMetrics = null;
             copy.columnNameList = new ArrayList<String>(columnNameList);
-            copy.updatedRows = new ArrayList<Boolean>(updatedRows);
-            copy.deletedRows = new ArrayList<Boolean>(deletedRows);
-            copy.insertedRows = new ArrayList<Boolean>(insertedRows);
+            copy.updatedRows = (BitSet)updatedRows.clone();
+            copy.deletedRows = (BitSet)deletedRows.clone();
+            copy.insertedRows = (BitSet)insertedRows.clone();
             copy.insertRow = copyColumnDataMap(insertRow);
-            copy.columnMap = copyColumnDataMap(columnMap);
-            copy.columnMapCopy = copyColumnDataMap(columnMapCopy);
+            if(shareData)
+            {
+                synchronized(this)
+                {
+                    sharedColumns.addAll(columnMap.values());
+                    sharedColumns.addAll(columnMapCopy.values());
+                    copy.shareColumns(this);
+                }
+            }
+            else
+            {
+                copy.sharedColumns = createSharedColumnSet();
+                copy.columnMap = copyColumnDataMap(columnMap);
+                copy.columnMapCopy = (columnMapCopy == columnMap) ? copy.columnMap : copyColumnDataMap(columnMapCopy);
+            }
+            copy.indexColumns();
             if(null != resultSetMetaData && resultSetMetaData instanceof MockResultSetMetaData)
             {
                 copy.resultSetMetaData = (ResultSetMetaData)((MockResultSetMetaData)resultSetMetaData).clone();
@@ -163,14 +287,114 @@ public class MockResultSet implements ResultSet, Cloneable
         }
     }
 
-   public MockResultSet shallowCopy() {
-      try {
-         return (MockResultSet) super.clone();
-      } catch (CloneNotSupportedException e) {
-         throw new NestedApplicationException(e);
-      }
-   }
-    
+    /**
+     * Copies this <code>ResultSet</code> without copying the data.
+     * Used for read-only <code>ResultSet</code> objects, so that every
+     * execution of a statement gets its own cursor. The copy treats
+     * the columns as shared with this <code>ResultSet</code>, i.e. it copies
+     * a column before it's modified, e.g. by {@link #setFetchDirection}.
+     * Copies of the same <code>ResultSet</code> may be used
+     * concurrently by different threads.
+     * @return a copy of this <code>ResultSet</code>
+     */
+    public MockResultSet shallowCopy()
+    {
+        try
+        {
+            MockResultSet copy = (MockResultSet)super.clone();
+            copy.resultSetMetrics = null;
+            synchronized(this)
+            {
+                copy.shareColumns(this);
+            }
+            copy.indexColumns();
+            return copy;
+        }
+        catch(CloneNotSupportedException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+    }
+
+    private void shareColumns(MockResultSet source)
+    {
+        columnMap = createCaseAwareMap();
+        columnMap.putAll(source.columnMap);
+        if(source.columnMapCopy == source.columnMap)
+        {
+            columnMapCopy = columnMap;
+        }
+        else
+        {
+            columnMapCopy = createCaseAwareMap();
+            columnMapCopy.putAll(source.columnMapCopy);
+        }
+        sharedColumns = createSharedColumnSet();
+        sharedColumns.addAll(columnMap.values());
+        sharedColumns.addAll(columnMapCopy.values());
+    }
+
+    /**
+     * Replaces all rows with the specified rows and moves the cursor
+     * before the first row. Missing values are set to <code>null</code>,
+     * values without a column are ignored. Used by {@link StreamingResultSet},
+     * that keeps only the current window of rows in memory.
+     * @param rows the new rows
+     */
+    void replaceRows(List<List<Object>> rows)
+    {
+        derivedMetaData = null;
+        columnMap = createCaseAwareMap();
+        for(int ii = 0; ii < columnNameList.size(); ii++)
+        {
+            List<Object> column = new ArrayList<Object>(rows.size());
+            for(List<Object> nextRow : rows)
+            {
+                column.add(ii < nextRow.size() ? nextRow.get(ii) : null);
+            }
+            columnMap.put(columnNameList.get(ii), column);
+        }
+        columnMapCopy = columnMap;
+        sharedColumns = createSharedColumnSet();
+        sharedColumns.addAll(columnMap.values());
+        updatedRows = new BitSet();
+        deletedRows = new BitSet();
+        insertedRows = new BitSet();
+        cursor = -1;
+        indexColumns();
+    }
+
+    /**
+     * Returns the columns of the current view, i.e. of the database,
+     * if {@link #setDatabaseView} is <code>true</code>, otherwise
+     * of the copy. The returned <code>List</code> must not be modified.
+     * It's replaced by a new <code>List</code> whenever a column is
+     * replaced, e.g. when a shared column is copied before it's modified.
+     * Used by {@link EvaluableResultSet}.
+     * @return the columns
+     */
+    List<List<Object>> getColumnsForRead()
+    {
+        return isDatabaseView ? columnList : columnListCopy;
+    }
+
+    /**
+     * Replaces the data of the specified column in the database and
+     * in the copy with the specified read-only column. The column is
+     * copied into an <code>ArrayList</code> before it's modified.
+     * Used by {@link EvaluableResultSet}.
+     * @param columnIndex the column index
+     * @param column the read-only column
+     */
+    synchronized void replaceColumnData(int columnIndex, EvaluatedColumn column)
+    {
+        derivedMetaData = null;
+        String columnName = columnNameList.get(columnIndex - 1);
+        columnMap.put(columnName, column);
+        columnMapCopy.put(columnName, column);
+        indexColumns();
+    }
+
     /**
      * Returns the id of this <code>ResultSet</code>. Ids are used
      * to identify <code>ResultSet</code> objects in tests, because
@@ -262,7 +486,16 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public void setResultSetConcurrency(int resultSetConcurrency)
     {
+        boolean becomesUpdatable = this.resultSetConcurrency != ResultSet.CONCUR_UPDATABLE && resultSetConcurrency == ResultSet.CONCUR_UPDATABLE;
         this.resultSetConcurrency = resultSetConcurrency;
+        if(becomesUpdatable)
+        {
+            synchronized(this)
+            {
+                columnMapCopy = copyColumnDataMap(columnMapCopy);
+                indexColumns();
+            }
+        }
     }
     
     /**
@@ -344,6 +577,7 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public void addRow(List<Object> values)
     {
+        derivedMetaData = null;
         int missingColumns = values.size() - columnNameList.size();
         for(int yy = 0; yy < missingColumns; yy++)
         {
@@ -354,12 +588,11 @@ public class MockResultSet implements ResultSet, Cloneable
         {   
            Object nextValue = values.get(ii);
            String nextColumnName = columnNameList.get(ii);
-           List<Object> nextColumnList = columnMap.get(nextColumnName);
+           List<Object> nextColumnList = getWritableColumn(columnMap, nextColumnName);
            nextColumnList.add(nextValue);
         }
         adjustColumns();
-        copyColumnMap();
-        adjustFlags();
+        copyAddedRows();
     }
     
     /**
@@ -467,13 +700,28 @@ public class MockResultSet implements ResultSet, Cloneable
      */
     public void addColumn(String columnName, List<Object> values)
     {
-        List<Object> column = new ArrayList<Object>(values);
+        addColumnData(columnName, createColumn(values));
+    }
+    
+    /**
+     * Creates the <code>List</code> that stores the data of a new column.
+     * The specified values are copied into the returned <code>List</code>.
+     * @param values the column data
+     * @return the <code>List</code> storing the column data
+     */
+    List<Object> createColumn(List<Object> values)
+    {
+        return new ArrayList<Object>(values);
+    }
+    
+    void addColumnData(String columnName, List<Object> column)
+    {
+        derivedMetaData = null;
         columnMap.put(columnName, column);
         columnNameList.add(columnName);
         adjustColumns();
         adjustInsertRow();
         copyColumnMap();
-        adjustFlags();
     }
     
     /**
@@ -777,6 +1025,7 @@ public class MockResultSet implements ResultSet, Cloneable
     public void close() throws SQLException
     {
         closed = true;
+        if(null != resultSetMetrics) resultSetMetrics.close();
     }
 
     public boolean wasNull() throws SQLException
@@ -786,29 +1035,107 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public Object getObject(int columnIndex) throws SQLException
     {
+        List<Object> column = getColumnForRead(columnIndex);
+        Object value = column.get(cursor);
+        wasNull = (null == value);
+        return value;
+    }
+    
+    public Object getObject(String columnName) throws SQLException
+    {
+        List<Object> column = getColumnForRead(columnName);
+        Object value = column.get(cursor);
+        wasNull = (null == value);
+        return value;
+    }
+    
+    /**
+     * Returns the data of the column with the specified index
+     * for reading the value at the cursor position. Throws an exception, if the
+     * column does not exist or the current row is invalid or deleted.
+     */
+    List<Object> getColumnForRead(int columnIndex) throws SQLException
+    {
+        if(columnIndex < 1) throw new SQLException("Index " + columnIndex + " out of bounds");
         checkColumnBounds(columnIndex);
         checkRowBounds();
-        String columnName = columnNameList.get(columnIndex - 1);
-        return getObject(columnName);
+        if(deletedRows.get(cursor)) throw new SQLException("row was deleted");
+        if(isDatabaseView)
+        {
+            return columnList.get(columnIndex - 1);
+        }
+        return columnListCopy.get(columnIndex - 1);
     }
     
-    public Object getObject(String columnName) throws SQLException
+    /**
+     * Returns the data of the column with the specified name
+     * for reading the value at the cursor position. Throws an exception, if the
+     * column does not exist or the current row is invalid or deleted.
+     */
+    List<Object> getColumnForRead(String columnName) throws SQLException
     {
         checkRowBounds();
-        if(rowDeleted()) throw new SQLException("row was deleted");
-        List<Object> column;
+        if(deletedRows.get(cursor)) throw new SQLException("row was deleted");
+        int index = getColumnIndexForLabel(columnName);
+        if(index < 0) checkColumnNotNull(null, columnName);
         if(isDatabaseView)
         {
-            column = columnMap.get(columnName);
+            return columnList.get(index);
         }
-        else
+        return columnListCopy.get(index);
+    }
+    
+    /**
+     * Returns the index of the column with the specified name, starting
+     * with 0, or -1 if there's no such column. The first lookup of a name
+     * compares the column names according to {@link #setColumnsCaseSensitive}
+     * the same way as the column map does, i.e. with
+     * <code>String.equalsIgnoreCase</code> if the columns are case insensitive,
+     * the result is cached, so later lookups with the same name don't
+     * create any objects. The cache is cleared when the columns change.
+     */
+    private int getColumnIndexForLabel(String columnName)
+    {
+        Integer index = columnLabelIndex.get(columnName);
+        if(null != index) return index;
+        if(null == columnName) return -1;
+        for(int ii = 0; ii < columnNameList.size(); ii++)
         {
-            column = columnMapCopy.get(columnName);
+            String nextName = columnNameList.get(ii);
+            if(columnsCaseSensitive ? columnName.equals(nextName) : columnName.equalsIgnoreCase(nextName))
+            {
+                columnLabelIndex.put(columnName, ii);
+                return ii;
+            }
         }
-        checkColumnNotNull(column, columnName);
-        Object value = column.get(cursor);
-        wasNull = (null == value);
-        return value;
+        return -1;
+    }
+    
+    /**
+     * Returns if the columns of this <code>ResultSet</code> may be
+     * {@link PrimitiveValueColumn} objects. If so, <code>getInt</code>,
+     * <code>getLong</code> and <code>getDouble</code> read the values
+     * of primitive columns without boxing. Returns <code>false</code>,
+     * so the other <code>ResultSet</code> classes don't pay for the check.
+     */
+    boolean hasPrimitiveColumns()
+    {
+        return false;
+    }
+    
+    private PrimitiveValueColumn getPrimitiveColumnForRead(List<Object> column)
+    {
+        if(column instanceof PrimitiveValueColumn && ((PrimitiveValueColumn)column).isPrimitive())
+        {
+            return (PrimitiveValueColumn)column;
+        }
+        return null;
+    }
+    
+    private boolean isPrimitiveNull(PrimitiveValueColumn column)
+    {
+        wasNull = column.isNull(cursor);
+        return wasNull;
     }
     
     public <T> T getObject(int columnIndex, Class<T> type) throws SQLException
@@ -923,6 +1250,11 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public int getInt(int columnIndex) throws SQLException
     {
+        if(hasPrimitiveColumns())
+        {
+            PrimitiveValueColumn column = getPrimitiveColumnForRead(getColumnForRead(columnIndex));
+            if(null != column) return isPrimitiveNull(column) ? 0 : column.getInt(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -934,6 +1266,11 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public int getInt(String columnName) throws SQLException
     {
+        if(hasPrimitiveColumns())
+        {
+            PrimitiveValueColumn column = getPrimitiveColumnForRead(getColumnForRead(columnName));
+            if(null != column) return isPrimitiveNull(column) ? 0 : column.getInt(cursor);
+        }
         Object value = getObject(columnName);
         if(null != value)
         {
@@ -945,6 +1282,11 @@ public class MockResultSet implements ResultSet, Cloneable
 
     public long getLong(int columnIndex) throws SQLException
     {
+        if(hasPrimitiveColumns())
+        {
+            PrimitiveValueColumn column = getPrimitiveColumnForRead(getColumnForRead(columnIndex));
+            if(null != column) return isPrimitiveNull(column) ? 0 : column.getLong(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -956,6 +1298,11 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public long getLong(String columnName) throws SQLException
     {
+        if(hasPrimitiveColumns())
+        {
+            PrimitiveValueColumn column = getPrimitiveColumnForRead(getColumnForRead(columnName));
+            if(null != column) return isPrimitiveNull(column) ? 0 : column.getLong(cursor);
+        }
         Object value = getObject(columnName);
         if(null != value)
         {
@@ -989,6 +1336,11 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public double getDouble(int columnIndex) throws SQLException
     {
+        if(hasPrimitiveColumns())
+        {
+            PrimitiveValueColumn column = getPrimitiveColumnForRead(getColumnForRead(columnIndex));
+            if(null != column) return isPrimitiveNull(column) ? 0 : column.getDouble(cursor);
+        }
         Object value = getObject(columnIndex);
         if(null != value)
         {
@@ -1000,6 +1352,11 @@ public class MockResultSet implements ResultSet, Cloneable
     
     public double getDouble(String columnName) throws SQLException
     {
+        if(hasPrimitiveColumns())
+        {
+            PrimitiveValueColumn column = getPrimitiveColumnForRead(getColumnForRead(columnName));
+            if(null != column) return isPrimitiveNull(column) ? 0 : column.getDouble(cursor);
+        }
         Object value = getObject(columnName);
         if(null != value)
         {
@@ -1496,14 +1853,41 @@ public class MockResultSet implements ResultSet, Cloneable
         return cursorName;
     }
 
+    /**
+     * Returns the <code>ResultSetMetaData</code> set with
+     * {@link #setResultSetMetaData}. If no <code>ResultSetMetaData</code>
+     * was set, a <code>MockResultSetMetaData</code> is derived from the
+     * columns. The column types are inferred from the values,
+     * e.g. a column with <code>Integer</code> values is of type
+     * <code>Types.INTEGER</code>. The derived <code>ResultSetMetaData</code>
+     * is cached until columns or rows are added or modified and it's
+     * shared with copies of this <code>ResultSet</code>. If it's modified
+     * with its setters, the next call derives a new one, so the
+     * modifications don't affect the copies.
+     * Use {@link #setResultSetMetaData} to provide custom metadata.
+     * @return the <code>ResultSetMetaData</code>
+     */
     public ResultSetMetaData getMetaData() throws SQLException
     {
         if(null != resultSetMetaData) return resultSetMetaData;
-        MockResultSetMetaData metaData = new MockResultSetMetaData();
-        metaData.setColumnCount(getColumnCount());
-        for(int ii = 0; ii < columnNameList.size(); ii++)
+        MockResultSetMetaData metaData = derivedMetaData;
+        if(null != metaData && !metaData.isModified()) return metaData;
+        synchronized(this)
         {
-            metaData.setColumnName(ii + 1, columnNameList.get(ii));
+            metaData = new MockResultSetMetaData();
+            metaData.setColumnCount(getColumnCount());
+            for(int ii = 0; ii < columnNameList.size(); ii++)
+            {
+                metaData.setColumnName(ii + 1, columnNameList.get(ii));
+                List<Object> column = columnListCopy.get(ii);
+                //don't evaluate the whole column just for the type
+                if(!(column instanceof EvaluatedColumn))
+                {
+                    metaData.inferColumnType(ii + 1, column);
+                }
+            }
+            metaData.setModified(false);
+            derivedMetaData = metaData;
         }
         return metaData;
     }
@@ -1556,7 +1940,16 @@ public class MockResultSet implements ResultSet, Cloneable
         if(getRowCount() == 0) return false;
         cursor++;
         adjustCursor();
-        return isCurrentRowValid();
+        boolean isValid = isCurrentRowValid();
+        if(isValid && null != fetchLatency)
+        {
+            latencyClock.sleep(latencyClock.nextDelay(fetchLatency));
+        }
+        if(isValid && null != resultSetMetrics)
+        {
+            resultSetMetrics.rowFetched();
+        }
+        return isValid;
     }
 
 
@@ -1624,8 +2017,9 @@ public class MockResultSet implements ResultSet, Cloneable
             return;
         }
         this.fetchDirection = fetchDirection;
-        for (List<Object> column : columnMapCopy.values()) {
-            Collections.reverse(column);
+        separateCopy();
+        for (String columnName : columnNameList) {
+            Collections.reverse(getWritableColumn(columnMapCopy, columnName));
         }
         if(-1 != cursor) cursor = getRowCount() - cursor - 1;
     }
@@ -1707,8 +2101,9 @@ public class MockResultSet implements ResultSet, Cloneable
         }
         else
         {
-            List<Object> column = columnMapCopy.get(columnName);
-            checkColumnNotNull(column, columnName);
+            checkColumnNotNull(columnMapCopy.get(columnName), columnName);
+            separateCopy();
+            List<Object> column = getWritableColumn(columnMapCopy, columnName);
             column.set(cursor, value);
         }
     }
@@ -2258,23 +2653,34 @@ public class MockResultSet implements ResultSet, Cloneable
     
     private void insertRow(int index)
     {
+        separateCopy();
         for (String currentColumnName : columnMapCopy.keySet()) {
-            List<Object> copyColumn = columnMapCopy.get(currentColumnName);
-            List<Object> databaseColumn = columnMap.get(currentColumnName);
+            List<Object> copyColumn = getWritableColumn(columnMapCopy, currentColumnName);
+            List<Object> databaseColumn = getWritableColumn(columnMap, currentColumnName);
             List<Object> sourceColumn = insertRow.get(currentColumnName);
             copyColumn.add(index, ParameterUtil.copyParameter(sourceColumn.get(0)));
             databaseColumn.add(index, ParameterUtil.copyParameter(sourceColumn.get(0)));  
         }
-        updatedRows.add(index, false);
-        deletedRows.add(index, false);
-        insertedRows.add(index, true);
+        insertFlag(updatedRows, index, false);
+        insertFlag(deletedRows, index, false);
+        insertFlag(insertedRows, index, true);
+    }
+    
+    private void insertFlag(BitSet flags, int index, boolean value)
+    {
+        for(int ii = flags.length() - 1; ii >= index; ii--)
+        {
+            flags.set(ii + 1, flags.get(ii));
+        }
+        flags.set(index, value);
     }
     
     private void deleteRow(int index)
     {
+        separateCopy();
         for (String currentColumnName : columnMapCopy.keySet()) {
-            List<Object> copyColumn = columnMapCopy.get(currentColumnName);
-            List<Object> databaseColumn = columnMap.get(currentColumnName);
+            List<Object> copyColumn = getWritableColumn(columnMapCopy, currentColumnName);
+            List<Object> databaseColumn = getWritableColumn(columnMap, currentColumnName);
             copyColumn.set(index, null);
             databaseColumn.set(index, null);
         }
@@ -2282,18 +2688,19 @@ public class MockResultSet implements ResultSet, Cloneable
     
     private void updateRow(int index, boolean toDatabase)
     {
+        separateCopy();
         for (String currentColumnName : columnMapCopy.keySet()) {
             List<Object> sourceColumn;
             List<Object> targetColumn;
             if(toDatabase)
             {
                 sourceColumn = columnMapCopy.get(currentColumnName);
-                targetColumn = columnMap.get(currentColumnName);
+                targetColumn = getWritableColumn(columnMap, currentColumnName);
             }
             else
             {
                 sourceColumn = columnMap.get(currentColumnName);
-                targetColumn = columnMapCopy.get(currentColumnName);
+                targetColumn = getWritableColumn(columnMapCopy, currentColumnName);
             } 
             targetColumn.set(index, ParameterUtil.copyParameter(sourceColumn.get(index)));
         }
@@ -2317,24 +2724,10 @@ public class MockResultSet implements ResultSet, Cloneable
         for (List<Object> nextColumn : columnMap.values()) {
             rowCount = Math.max(rowCount, nextColumn.size());
         }
-        for (List<Object> nextColumn : columnMap.values()) {
-            CollectionUtil.fillList(nextColumn, rowCount);
-        }
-    }
-    
-    private void adjustFlags()
-    {
-        for(int ii = updatedRows.size(); ii < getRowCount(); ii++)
-        {
-            updatedRows.add(false);
-        }
-        for(int ii = deletedRows.size(); ii < getRowCount(); ii++)
-        {
-            deletedRows.add(false);
-        }
-        for(int ii = insertedRows.size(); ii < getRowCount(); ii++)
-        {
-            insertedRows.add(false);
+        for (String nextColumnName : columnNameList) {
+            if (columnMap.get(nextColumnName).size() < rowCount) {
+                CollectionUtil.fillList(getWritableColumn(columnMap, nextColumnName), rowCount);
+            }
         }
     }
     
@@ -2348,9 +2741,62 @@ public class MockResultSet implements ResultSet, Cloneable
         }
     }
     
+    /**
+     * Resets the copy to the data of the database. The copy of a read-only
+     * <code>ResultSet</code> is the same <code>Map</code> as the database
+     * until one of them is modified separately, see {@link #separateCopy}.
+     * The values of an updatable <code>ResultSet</code> can be modified
+     * using the returned objects, e.g. <code>Blob</code> objects, so it
+     * gets a copy of the values.
+     */
     private void copyColumnMap()
     {
-        columnMapCopy = copyColumnDataMap(columnMap);
+        derivedMetaData = null;
+        columnMapCopy = (resultSetConcurrency == ResultSet.CONCUR_UPDATABLE) ? copyColumnDataMap(columnMap) : columnMap;
+        indexColumns();
+    }
+    
+    /**
+     * Gives the copy its own <code>Map</code> before the database or
+     * the copy is modified separately. The columns are shared by
+     * both <code>Map</code> objects and copied when they are modified.
+     */
+    private synchronized void separateCopy()
+    {
+        if(columnMapCopy != columnMap) return;
+        columnMapCopy = createCaseAwareMap();
+        columnMapCopy.putAll(columnMap);
+        sharedColumns.addAll(columnMap.values());
+        indexColumns();
+    }
+    
+    private void copyAddedRows()
+    {
+        for(String nextColumnName : columnMap.keySet())
+        {
+            List<Object> databaseColumn = columnMap.get(nextColumnName);
+            List<Object> copyColumn = columnMapCopy.get(nextColumnName);
+            if(copyColumn.size() < databaseColumn.size())
+            {
+                copyColumn = getWritableColumn(columnMapCopy, nextColumnName);
+            }
+            for(int ii = copyColumn.size(); ii < databaseColumn.size(); ii++)
+            {
+                copyColumn.add(ParameterUtil.copyParameter(databaseColumn.get(ii)));
+            }
+        }
+    }
+    
+    private void indexColumns()
+    {
+        columnLabelIndex = new HashMap<String, Integer>();
+        columnList = new ArrayList<List<Object>>(columnNameList.size());
+        columnListCopy = new ArrayList<List<Object>>(columnNameList.size());
+        for(String nextColumnName : columnNameList)
+        {
+            columnList.add(columnMap.get(nextColumnName));
+            columnListCopy.add(columnMapCopy.get(nextColumnName));
+        }
     }
     
     private String determineValidColumnName()
@@ -2364,22 +2810,58 @@ public class MockResultSet implements ResultSet, Cloneable
         return name + count;
     }
     
-    private <T> Map<String, List<T>> copyColumnDataMap(Map<String, List<T>> columnMap)
+    private synchronized List<Object> getWritableColumn(Map<String, List<Object>> columnMap, String columnName)
+    {
+        derivedMetaData = null;
+        List<Object> column = columnMap.get(columnName);
+        boolean readOnly = isReadOnlyColumn(column);
+        if(!readOnly && !sharedColumns.contains(column)) return column;
+        List<Object> copy = readOnly ? new ArrayList<Object>(column) : copyColumn(column);
+        columnMap.put(columnName, copy);
+        if(this.columnMap.get(columnName) != column && columnMapCopy.get(columnName) != column)
+        {
+            sharedColumns.remove(column);
+        }
+        indexColumns();
+        return copy;
+    }
+    
+    private Map<String, List<Object>> copyColumnDataMap(Map<String, List<Object>> columnMap)
     {
-        Map<String, List<T>> copy = createCaseAwareMap();
+        Map<String, List<Object>> copy = createCaseAwareMap();
         for (String s : columnMap.keySet()) {
-            List<T> copyList = new ArrayList<T>();
-            String nextKey = s;
-            List<T> nextColumnList = columnMap.get(nextKey);
-            for (T nextColumnList1 : nextColumnList) {
-                T copyParameter = (T) ParameterUtil.copyParameter(nextColumnList1);
-                copyList.add(copyParameter);
-            }
-            copy.put(nextKey, copyList);
+            copy.put(s, copyColumn(columnMap.get(s)));
         }
         return copy;
     }
     
+    private boolean isReadOnlyColumn(List<Object> column)
+    {
+        return column instanceof SnapshotColumn || column instanceof EvaluatedColumn;
+    }
+    
+    private List<Object> copyColumn(List<Object> column)
+    {
+        if(isReadOnlyColumn(column))
+        {
+            return column;
+        }
+        if(column instanceof PrimitiveColumn)
+        {
+            return ((PrimitiveColumn)column).copy();
+        }
+        List<Object> copyList = new ArrayList<Object>(column.size());
+        for (Object nextValue : column) {
+            copyList.add(ParameterUtil.copyParameter(nextValue));
+        }
+        return copyList;
+    }
+    
+    private Set<List<Object>> createSharedColumnSet()
+    {
+        return Collections.newSetFromMap(new IdentityHashMap<List<Object>, Boolean>());
+    }
+    
     private <T> Map<String, T> createCaseAwareMap()
     {
         return (Map<String, T>)new CaseAwareMap(columnsCaseSensitive);
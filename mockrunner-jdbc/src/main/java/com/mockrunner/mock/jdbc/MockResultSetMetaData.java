@@ -1,15 +1,28 @@
 package com.mockrunner.mock.jdbc;
 
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.JDBCType;
+import java.sql.NClob;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.mockrunner.base.NestedApplicationException;
 
 /**
  * Mock implementation of <code>ResultSetMetaData</code>.
+ * <br>
+ * The <code>ResultSetMetaData</code> derived by {@link MockResultSet#getMetaData}
+ * is cached and shared with copies of the <code>ResultSet</code>. If it's
+ * modified with one of the setters, it's no longer returned by
+ * {@link MockResultSet#getMetaData}, so the copies don't see the modifications.
  */
 public class MockResultSetMetaData implements ResultSetMetaData, Cloneable
 {
@@ -34,6 +47,7 @@ public class MockResultSetMetaData implements ResultSetMetaData, Cloneable
     private Map<Integer, String> columnTypeNameMap;
     private Map<Integer, String> schemaNameMap;
     private Map<Integer, String> tableNameMap;
+    private volatile boolean isModified;
     
     public MockResultSetMetaData()
     {
@@ -62,109 +76,236 @@ public class MockResultSetMetaData implements ResultSetMetaData, Cloneable
     
     public void setColumnCount(int columnCount)
     {
+        markModified();
         this.columnCount = columnCount;
     }
     
     public void setColumnDisplaySize(int column, int displaySize)
     {
+        markModified();
         columnDisplaySizeMap.put(column, displaySize);
     }
     
     public void setColumnType(int column, int columnType)
     {
+        markModified();
         columnTypeMap.put(column, columnType);
     }
     
     public void setPrecision(int column, int precision)
     {
+        markModified();
         precisionMap.put(column, precision);
     }
     
     public void setScale(int column, int scale)
     {
+        markModified();
         scaleMap.put(column, scale);
     }
     
     public void setNullable(int column, int nullable)
     {
+        markModified();
         isNullableMap.put(column, nullable);
     }
     
     public void setAutoIncrement(int column, boolean autoIncrement)
     {
+        markModified();
         isAutoIncrementMap.put(column, autoIncrement);
     }
     
     public void setCaseSensitive(int column, boolean caseSensitive)
     {
+        markModified();
         isCaseSensitiveMap.put(column, caseSensitive);
     }
     
     public void setCurrency(int column, boolean currency)
     {
+        markModified();
         isCurrencyMap.put(column, currency);
     }
     
     public void setDefinitelyWritable(int column, boolean definitelyWritable)
     {
+        markModified();
         isDefinitelyWritableMap.put(column, definitelyWritable);
     }
     
     public void setReadOnly(int column, boolean readOnly)
     {
+        markModified();
         isReadOnlyMap.put(column, readOnly);
     }
     
     public void setSearchable(int column, boolean searchable)
     {
+        markModified();
         isSearchableMap.put(column, searchable);
     }
     
     public void setSigned(int column, boolean signed)
     {
+        markModified();
         isSignedMap.put(column, signed);
     }
     
     public void setWritable(int column, boolean writable)
     {
+        markModified();
         isWritableMap.put(column, writable);
     }
     
     public void setCatalogName(int column, String catalogName)
     {
+        markModified();
         catalogNameMap.put(column, catalogName);
     }
     
     public void setColumnClassName(int column, String columnClassName)
     {
+        markModified();
         columnClassNameMap.put(column, columnClassName);
     }
     
     public void setColumnLabel(int column, String columnLabel)
     {
+        markModified();
         columnLabelMap.put(column, columnLabel);
     }
     
     public void setColumnName(int column, String columnName)
     {
+        markModified();
         columnNameMap.put(column, columnName);
     }
     
     public void setColumnTypeName(int column, String columnTypeName)
     {
+        markModified();
         columnTypeNameMap.put(column, columnTypeName);
     }
     
     public void setSchemaName(int column, String schemaName)
     {
+        markModified();
         schemaNameMap.put(column, schemaName);
     }
     
     public void setTableName(int column, String tableName)
     {
+        markModified();
         tableNameMap.put(column, tableName);
     }
-    
+
+    /**
+     * Returns if one of the setters was called since the last
+     * call of {@link #setModified}.
+     * Used by {@link MockResultSet#getMetaData}.
+     */
+    boolean isModified()
+    {
+        return isModified;
+    }
+
+    /**
+     * Sets the flag returned by {@link #isModified}.
+     * Used by {@link MockResultSet#getMetaData}.
+     */
+    void setModified(boolean isModified)
+    {
+        this.isModified = isModified;
+    }
+
+    /**
+     * Sets the type, type name, class name, precision, scale, display size and
+     * signed attributes of the specified column according to its values.
+     * The type is derived from the class of the values, e.g.
+     * <code>String</code> values result in <code>Types.VARCHAR</code>.
+     * If the column contains values of different classes or only
+     * <code>null</code> values, the attributes are not set.
+     * Used by {@link MockResultSet#getMetaData}.
+     * @param column the column index
+     * @param values the values of the column
+     */
+    void inferColumnType(int column, List<Object> values)
+    {
+        Class<?> columnClass = null;
+        int precision = 0;
+        int scale = 0;
+        for(Object nextValue : values)
+        {
+            if(null == nextValue) continue;
+            if(null == columnClass)
+            {
+                columnClass = nextValue.getClass();
+            }
+            else if(columnClass != nextValue.getClass())
+            {
+                return;
+            }
+            if(nextValue instanceof String)
+            {
+                precision = Math.max(precision, ((String)nextValue).length());
+            }
+            else if(nextValue instanceof BigDecimal)
+            {
+                BigDecimal decimal = (BigDecimal)nextValue;
+                precision = Math.max(precision, decimal.precision() - decimal.scale());
+                scale = Math.max(scale, decimal.scale());
+            }
+            else if(nextValue instanceof byte[])
+            {
+                precision = Math.max(precision, ((byte[])nextValue).length);
+            }
+        }
+        if(null == columnClass) return;
+        int columnType = getSQLType(columnClass);
+        if(Types.OTHER == columnType) return;
+        setColumnType(column, columnType);
+        setColumnTypeName(column, JDBCType.valueOf(columnType).getName());
+        setColumnClassName(column, columnClass.getName());
+        setSigned(column, Number.class.isAssignableFrom(columnClass));
+        if(BigDecimal.class == columnClass)
+        {
+            setPrecision(column, Math.max(precision, 0) + Math.max(scale, 0));
+            setScale(column, Math.max(scale, 0));
+        }
+        else if(String.class == columnClass || byte[].class == columnClass)
+        {
+            setPrecision(column, precision);
+            setColumnDisplaySize(column, precision);
+        }
+    }
+
+    private void markModified()
+    {
+        isModified = true;
+    }
+
+    private static int getSQLType(Class<?> columnClass)
+    {
+        if(String.class == columnClass) return Types.VARCHAR;
+        if(Integer.class == columnClass) return Types.INTEGER;
+        if(Long.class == columnClass) return Types.BIGINT;
+        if(Short.class == columnClass) return Types.SMALLINT;
+        if(Byte.class == columnClass) return Types.TINYINT;
+        if(Double.class == columnClass) return Types.DOUBLE;
+        if(Float.class == columnClass) return Types.REAL;
+        if(BigDecimal.class == columnClass) return Types.DECIMAL;
+        if(Boolean.class == columnClass) return Types.BOOLEAN;
+        if(java.sql.Date.class == columnClass) return Types.DATE;
+        if(Time.class == columnClass) return Types.TIME;
+        if(Timestamp.class == columnClass) return Types.TIMESTAMP;
+        if(byte[].class == columnClass) return Types.VARBINARY;
+        if(NClob.class.isAssignableFrom(columnClass)) return Types.NCLOB;
+        if(Clob.class.isAssignableFrom(columnClass)) return Types.CLOB;
+        if(Blob.class.isAssignableFrom(columnClass)) return Types.BLOB;
+        return Types.OTHER;
+    }
+
     public int getColumnCount() throws SQLException
     {
         return columnCount;
@@ -316,6 +457,7 @@ public class MockResultSetMetaData implements ResultSetMetaData, Cloneable
         try
         {       
             MockResultSetMetaData copy = (MockResultSetMetaData)super.clone();
+            copy.isModified = false;
             copy.columnDisplaySizeMap = new HashMap<Integer, Integer>(columnDisplaySizeMap);
             copy.columnTypeMap = new HashMap<Integer, Integer>(columnTypeMap);
             copy.precisionMap = new HashMap<Integer, Integer>(precisionMap);
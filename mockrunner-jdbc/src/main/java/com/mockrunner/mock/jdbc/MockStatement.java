@@ -4,14 +4,21 @@ import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.mockrunner.base.NestedApplicationException;
 import com.mockrunner.jdbc.AbstractResultSetHandler;
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
 import com.mockrunner.jdbc.SQLUtil;
+import com.mockrunner.jdbc.StatementMetrics;
 import com.mockrunner.util.common.ArrayUtil;
 
 /**
@@ -118,48 +125,60 @@ public class MockStatement implements Statement
         {
             throw exception;
         }
+        simulateLatency(sql);
+        MockResultSet[] results;
+        try
+        {
+            results = resultSetHandler.getResultSets(sql);
+        }
+        catch(NestedApplicationException exc)
+        {
+            throw getNestedSQLException(exc);
+        }
         resultSetHandler.addExecutedStatement(sql);
-        MockResultSet[] results = resultSetHandler.getResultSets(sql);
+        addExecutedStatementToConnection(sql);
         if (results != null && results.length != 0)
         {
             if (results.length > 1)
             {
-                return cloneAndSetMultipleResultSets(results);
+                return cloneAndSetMultipleResultSets(sql, results);
             }
             else
             {
-                return cloneAndSetSingleResultSet(results[0]);
+                return cloneAndSetSingleResultSet(sql, results[0]);
             }
         }
         if(resultSetHandler.hasMultipleGlobalResultSets())
         {
-            return cloneAndSetMultipleResultSets(resultSetHandler.getGlobalResultSets());
+            return cloneAndSetMultipleResultSets(sql, resultSetHandler.getGlobalResultSets());
         }
         MockResultSet result = resultSetHandler.getGlobalResultSet();
         if(null != result){
-            return cloneAndSetSingleResultSet(result);
+            return cloneAndSetSingleResultSet(sql, result);
         }
         return new MockResultSet(String.valueOf(Math.random()));
     }
 
-    private MockResultSet cloneAndSetSingleResultSet(MockResultSet result)
+    private MockResultSet cloneAndSetSingleResultSet(String sql, MockResultSet result)
     {
         result = cloneResultSet(result);
         if(null != result)
         {
             resultSetHandler.addReturnedResultSet(result);
+            openResultSet(sql, result);
         }
         setResultSets(new MockResultSet[] {result});
         setLastGeneratedKeysResultSet(null);
         return result;
     }
     
-    private MockResultSet cloneAndSetMultipleResultSets(MockResultSet[] results)
+    private MockResultSet cloneAndSetMultipleResultSets(String sql, MockResultSet[] results)
     {
         results = cloneResultSets(results);
         if(null != results)
         {
             resultSetHandler.addReturnedResultSets(results);
+            openResultSets(sql, results);
         }
         setResultSets(results);
         setLastGeneratedKeysResultSet(null);
@@ -194,7 +213,9 @@ public class MockStatement implements Statement
         {
             throw exception;
         }
+        simulateLatency(sql);
         resultSetHandler.addExecutedStatement(sql);
+        addExecutedStatementToConnection(sql);
         Integer[] returnValues = resultSetHandler.getUpdateCounts(sql);
         if (returnValues != null && returnValues.length != 0)
         {
@@ -248,30 +269,60 @@ public class MockStatement implements Statement
     
     public int[] executeBatch() throws SQLException
     {
-        try{
+        try
+        {
+            // not reused, the caller owns the returned update counts
             int[] results = new int[batches.size()];
             SQLException exception = null;
-            for(int ii = 0; ii < results.length; ii++)
+            LatencyModel batchLatency = resultSetHandler.getBatchLatency();
+            if(null != batchLatency) simulateLatency(batchLatency);
+            Map<String, BatchCommand> commands = new HashMap<String, BatchCommand>();
+            List<String> executedStatements = new ArrayList<String>(results.length);
+            BatchCommand lastExecutedCommand = null;
+            try
             {
-                String nextSQL = batches.get(ii);
-                if(isQuery(nextSQL))
-                {
-                    exception = prepareFailedResult(results, ii, "SQL " + batches.get(ii) + " in the list of batches returned a ResultSet.", null);
-                }
-                else
+                for(int ii = 0; ii < results.length; ii++)
                 {
-                    try
+                    String nextSQL = batches.get(ii);
+                    BatchCommand command = commands.get(nextSQL);
+                    if(null == command)
+                    {
+                        command = new BatchCommand(nextSQL);
+                        commands.put(nextSQL, command);
+                    }
+                    if(command.isQuery)
                     {
-                        results[ii] = executeUpdate(nextSQL);
-                    } 
-                    catch(SQLException exc)
+                        exception = prepareFailedResult(results, ii, "SQL " + nextSQL + " in the list of batches returned a ResultSet.", null);
+                    }
+                    else
+                    {
+                        try
+                        {
+                            command.checkFailure(ii);
+                            if(null == batchLatency) simulateLatency(command.latency);
+                            executedStatements.add(nextSQL);
+                            results[ii] = command.getUpdateCounts()[0];
+                            lastExecutedCommand = command;
+                        }
+                        catch(SQLException exc)
+                        {
+                            exception = prepareFailedResult(results, ii, null, exc);
+                        }
+                    }
+                    if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
                     {
-                        exception = prepareFailedResult(results, ii, null, exc);
+                        throw exception;
                     }
                 }
-                if(null != exception && !resultSetHandler.getContinueProcessingOnBatchFailure())
+            }
+            finally
+            {
+                resultSetHandler.addExecutedStatements(executedStatements);
+                addExecutedStatementsToConnection(executedStatements);
+                if(null != lastExecutedCommand)
                 {
-                    throw exception;
+                    setUpdateCounts(lastExecutedCommand.getUpdateCounts());
+                    setLastGeneratedKeysResultSet(null);
                 }
             }
             if(null != exception)
@@ -350,7 +401,14 @@ public class MockStatement implements Statement
         }
         if(Statement.RETURN_GENERATED_KEYS == autoGeneratedKeys)
         {
-            setLastGeneratedKeysResultSet(determineGeneratedKeysResultSet(sql));
+            try
+            {
+                setLastGeneratedKeysResultSet(determineGeneratedKeysResultSet(sql));
+            }
+            catch(NestedApplicationException exc)
+            {
+                throw getNestedSQLException(exc);
+            }
         }
         else
         {
@@ -373,6 +431,10 @@ public class MockStatement implements Statement
     public void close() throws SQLException
     {
         closed = true;
+        if(connection instanceof MockConnection)
+        {
+            ((MockConnection)connection).statementClosed(this);
+        }
     }
 
     public int getMaxFieldSize() throws SQLException
@@ -585,17 +647,207 @@ public class MockStatement implements Statement
         return closeOnCompletition;
     }
 
+    /**
+     * Delays the execution of the specified SQL string according to the
+     * {@link com.mockrunner.jdbc.LatencyModel} of the handler. If the delay
+     * exceeds the query timeout, waits for the timeout and throws
+     * an <code>SQLTimeoutException</code>.
+     * @param sql the SQL string
+     * @throws SQLTimeoutException if the delay exceeds the query timeout
+     */
+    void simulateLatency(String sql) throws SQLException
+    {
+        simulateLatency(resultSetHandler.getLatency(sql));
+    }
+
+    /**
+     * Returns the <code>SQLException</code> nested in the specified
+     * exception, e.g. thrown by {@link TableResultSet#evaluate}, if
+     * the statement can't be executed. Rethrows the specified exception,
+     * if it doesn't contain an <code>SQLException</code>.
+     * @param exc the exception thrown while evaluating a <code>ResultSet</code>
+     * @return the nested <code>SQLException</code>
+     */
+    static SQLException getNestedSQLException(NestedApplicationException exc)
+    {
+        if(exc.getNested() instanceof SQLException)
+        {
+            return (SQLException)exc.getNested();
+        }
+        throw exc;
+    }
+
+    /**
+     * Delays the execution according to the specified
+     * {@link LatencyModel}. Does nothing, if it's <code>null</code>.
+     * @param latency the {@link LatencyModel} or <code>null</code>
+     * @throws SQLTimeoutException if the delay exceeds the query timeout
+     */
+    void simulateLatency(LatencyModel latency) throws SQLException
+    {
+        if(null == latency) return;
+        LatencyClock clock = resultSetHandler.getLatencyClock();
+        long delay = clock.nextDelay(latency);
+        long timeout = TimeUnit.SECONDS.toNanos(querySeconds);
+        if(querySeconds > 0 && delay > timeout)
+        {
+            clock.sleep(timeout);
+            throw new SQLTimeoutException("Query timeout of " + querySeconds + " seconds exceeded");
+        }
+        clock.sleep(delay);
+    }
+
+    /**
+     * Adds the executed SQL string to the journal of the
+     * {@link MockPooledConnection} that created this statement.
+     * Does nothing for other connections.
+     * @param sql the SQL string
+     */
+    void addExecutedStatementToConnection(String sql)
+    {
+        if(connection instanceof MockPooledConnection)
+        {
+            ((MockPooledConnection)connection).addExecutedStatement(sql);
+        }
+    }
+
+    /**
+     * Adds the SQL strings executed by a batch to the journal of the
+     * {@link MockPooledConnection} that created this statement.
+     * Does nothing for other connections.
+     * @param sqlList the SQL strings
+     */
+    void addExecutedStatementsToConnection(List<String> sqlList)
+    {
+        if(connection instanceof MockPooledConnection && !sqlList.isEmpty())
+        {
+            ((MockPooledConnection)connection).addExecutedStatements(sqlList);
+        }
+    }
+
+    /**
+     * Reports the returned <code>ResultSet</code> to the
+     * {@link com.mockrunner.jdbc.StatementMetrics} of the handler.
+     * Does nothing, if the metrics are disabled.
+     * @param sql the executed SQL string
+     * @param resultSet the returned <code>ResultSet</code>
+     */
+    void openResultSet(String sql, MockResultSet resultSet)
+    {
+        StatementMetrics metrics = resultSetHandler.getStatementMetrics();
+        if(null == metrics || null == resultSet) return;
+        resultSet.setResultSetMetrics(metrics.openResultSet(sql));
+    }
+
+    /**
+     * Reports the returned <code>ResultSet</code> objects to the
+     * {@link com.mockrunner.jdbc.StatementMetrics} of the handler.
+     * Does nothing, if the metrics are disabled.
+     * @param sql the executed SQL string
+     * @param resultSets the returned <code>ResultSet</code> objects
+     */
+    void openResultSets(String sql, MockResultSet[] resultSets)
+    {
+        if(null == resultSetHandler.getStatementMetrics()) return;
+        for(MockResultSet nextResultSet : resultSets)
+        {
+            openResultSet(sql, nextResultSet);
+        }
+    }
+
+    /**
+     * Reports the current <code>ResultSet</code> objects, that are not
+     * closed, as leaked. Called by the {@link MockConnection}, when
+     * it's closed.
+     */
+    void leakResultSets()
+    {
+        ResultSet[] resultSets = currentResultSets;
+        if(null == resultSets) return;
+        for(ResultSet nextResultSet : resultSets)
+        {
+            if(nextResultSet instanceof MockResultSet)
+            {
+                ((MockResultSet)nextResultSet).leak();
+            }
+        }
+    }
+
+    /**
+     * The data prepared for one SQL string of a batch. It's resolved
+     * once per batch, not for every command with the same SQL string.
+     */
+    private class BatchCommand
+    {
+        private final String sql;
+        private final boolean isQuery;
+        private final SQLException exception;
+        private final LatencyModel latency;
+        private Integer[] updateCounts;
+
+        public BatchCommand(String sql)
+        {
+            this.sql = sql;
+            this.isQuery = isQuery(sql);
+            this.exception = isQuery ? null : resultSetHandler.getSQLException(sql);
+            this.latency = isQuery ? null : resultSetHandler.getLatency(sql);
+        }
+
+        public void checkFailure(int position) throws SQLException
+        {
+            SQLException failure = resultSetHandler.getBatchFailure(sql, position);
+            if(null != failure) throw failure;
+            if(null != exception) throw exception;
+        }
+
+        public Integer[] getUpdateCounts()
+        {
+            if(null == updateCounts)
+            {
+                updateCounts = resultSetHandler.getUpdateCounts(sql);
+                if(null == updateCounts || updateCounts.length == 0)
+                {
+                    updateCounts = resultSetHandler.hasMultipleGlobalUpdateCounts() ? resultSetHandler.getGlobalUpdateCounts() : new Integer[] {resultSetHandler.getGlobalUpdateCount()};
+                }
+            }
+            return updateCounts;
+        }
+    }
+
     protected MockResultSet cloneResultSet(MockResultSet resultSet)
     {
+        if(null == resultSet) return null;
+        MockResultSet clone;
         if (resultSetConcurrency == ResultSet.CONCUR_READ_ONLY) {
             // no need to clone
-            return resultSet.shallowCopy();
+            clone = resultSet.shallowCopy();
+        } else {
+            clone = (MockResultSet)resultSet.clone();
+            clone.setStatement(this);
         }
-        if(null == resultSet) return null;
-        MockResultSet clone = (MockResultSet)resultSet.clone();
-        clone.setStatement(this);
+        setFetchProperties(clone);
         return clone;
     }
+
+    private void setFetchProperties(MockResultSet resultSet)
+    {
+        LatencyModel fetchLatency = resultSetHandler.getFetchLatency();
+        if(null != fetchLatency)
+        {
+            resultSet.setFetchLatency(fetchLatency, resultSetHandler.getLatencyClock());
+        }
+        if(fetchSize > 0)
+        {
+            try
+            {
+                resultSet.setFetchSize(fetchSize);
+            }
+            catch(SQLException exc) //never thrown
+            {
+                throw new NestedApplicationException(exc);
+            }
+        }
+    }
     
     protected MockResultSet[] cloneResultSets(MockResultSet[] resultSets)
     {
@@ -611,6 +863,7 @@ public class MockStatement implements Statement
                     clonedResultsSets[ii] = (MockResultSet) resultSets[ii].clone();
                     clonedResultsSets[ii].setStatement(this);
                 }
+                setFetchProperties(clonedResultsSets[ii]);
             }
         }
         return clonedResultsSets;
@@ -0,0 +1,369 @@
+package com.mockrunner.mock.jdbc;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.mockrunner.jdbc.ParameterUtil;
+
+/**
+ * <code>List</code> used by {@link ColumnarResultSet} to store the data
+ * of one column. As long as the column contains only <code>Integer</code>,
+ * <code>Long</code> or <code>Double</code> values (and <code>null</code>),
+ * the values are stored in a primitive array and the <code>null</code>
+ * values are tracked in a <code>BitSet</code>. The first non-null value
+ * determines the type of the column. If a value of another type is added,
+ * the column switches to an <code>Object</code> array.
+ * <br>
+ * The {@link #get} method returns boxed values, the typed getters
+ * don't box. They must only be called if {@link #isPrimitive}
+ * returns <code>true</code> and {@link #isNull} returns <code>false</code>.
+ */
+class PrimitiveColumn extends AbstractList<Object> implements RandomAccess, PrimitiveValueColumn
+{
+    private final static int EMPTY = 0;
+    private final static int INT = 1;
+    private final static int LONG = 2;
+    private final static int DOUBLE = 3;
+    private final static int OBJECT = 4;
+
+    private int type;
+    private int size;
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private BitSet nulls;
+
+    public PrimitiveColumn()
+    {
+        type = EMPTY;
+        size = 0;
+        nulls = new BitSet();
+    }
+
+    public PrimitiveColumn(List<Object> values)
+    {
+        this();
+        for(Object value : values)
+        {
+            add(value);
+        }
+    }
+
+    public PrimitiveColumn(int[] values)
+    {
+        this();
+        type = INT;
+        ints = values.clone();
+        size = values.length;
+    }
+
+    public PrimitiveColumn(long[] values)
+    {
+        this();
+        type = LONG;
+        longs = values.clone();
+        size = values.length;
+    }
+
+    public PrimitiveColumn(double[] values)
+    {
+        this();
+        type = DOUBLE;
+        doubles = values.clone();
+        size = values.length;
+    }
+
+    /**
+     * Returns if the values are stored in a primitive array, i.e.
+     * the typed getters can be used.
+     * @return <code>true</code> if the column is primitive
+     */
+    public boolean isPrimitive()
+    {
+        return type != OBJECT;
+    }
+
+    /**
+     * Returns if the value at the specified index is <code>null</code>.
+     * @param index the index
+     * @return <code>true</code> if the value is <code>null</code>
+     */
+    public boolean isNull(int index)
+    {
+        checkIndex(index);
+        if(type == OBJECT) return null == objects[index];
+        return type == EMPTY || nulls.get(index);
+    }
+
+    public int getInt(int index)
+    {
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return (int)longs[index];
+            case DOUBLE: return (int)doubles[index];
+            default: throw new IllegalStateException("Column is not primitive");
+        }
+    }
+
+    public long getLong(int index)
+    {
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return longs[index];
+            case DOUBLE: return (long)doubles[index];
+            default: throw new IllegalStateException("Column is not primitive");
+        }
+    }
+
+    public double getDouble(int index)
+    {
+        switch(type)
+        {
+            case INT: return ints[index];
+            case LONG: return longs[index];
+            case DOUBLE: return doubles[index];
+            default: throw new IllegalStateException("Column is not primitive");
+        }
+    }
+
+    /**
+     * Returns a copy of this column. The primitive arrays are copied,
+     * the values of an <code>Object</code> column are copied using
+     * {@link com.mockrunner.jdbc.ParameterUtil#copyParameter}.
+     * @return the copy
+     */
+    public PrimitiveColumn copy()
+    {
+        PrimitiveColumn copy = new PrimitiveColumn();
+        copy.type = type;
+        copy.size = size;
+        copy.nulls = (BitSet)nulls.clone();
+        switch(type)
+        {
+            case INT: copy.ints = Arrays.copyOf(ints, size); break;
+            case LONG: copy.longs = Arrays.copyOf(longs, size); break;
+            case DOUBLE: copy.doubles = Arrays.copyOf(doubles, size); break;
+            case OBJECT:
+                copy.objects = new Object[size];
+                for(int ii = 0; ii < size; ii++)
+                {
+                    copy.objects[ii] = ParameterUtil.copyParameter(objects[ii]);
+                }
+                break;
+            default: break;
+        }
+        return copy;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        checkIndex(index);
+        switch(type)
+        {
+            case INT: return nulls.get(index) ? null : Integer.valueOf(ints[index]);
+            case LONG: return nulls.get(index) ? null : Long.valueOf(longs[index]);
+            case DOUBLE: return nulls.get(index) ? null : Double.valueOf(doubles[index]);
+            case OBJECT: return objects[index];
+            default: return null;
+        }
+    }
+
+    @Override
+    public Object set(int index, Object value)
+    {
+        Object oldValue = get(index);
+        store(index, value);
+        return oldValue;
+    }
+
+    @Override
+    public void add(int index, Object value)
+    {
+        if(index < 0 || index > size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        int numberMoved = size - index;
+        if(numberMoved > 0)
+        {
+            Object array = getArray();
+            if(null != array)
+            {
+                System.arraycopy(array, index, array, index + 1, numberMoved);
+            }
+            for(int ii = size - 1; ii >= index; ii--)
+            {
+                nulls.set(ii + 1, nulls.get(ii));
+            }
+        }
+        size++;
+        modCount++;
+        store(index, value);
+    }
+
+    @Override
+    public Object remove(int index)
+    {
+        Object oldValue = get(index);
+        int numberMoved = size - index - 1;
+        if(numberMoved > 0)
+        {
+            Object array = getArray();
+            if(null != array)
+            {
+                System.arraycopy(array, index + 1, array, index, numberMoved);
+            }
+            for(int ii = index; ii < size - 1; ii++)
+            {
+                nulls.set(ii, nulls.get(ii + 1));
+            }
+        }
+        size--;
+        nulls.clear(size);
+        if(type == OBJECT) objects[size] = null;
+        modCount++;
+        return oldValue;
+    }
+
+    @Override
+    public void clear()
+    {
+        type = EMPTY;
+        size = 0;
+        ints = null;
+        longs = null;
+        doubles = null;
+        objects = null;
+        nulls.clear();
+        modCount++;
+    }
+
+    private void store(int index, Object value)
+    {
+        if(null == value)
+        {
+            if(type == OBJECT)
+            {
+                objects[index] = null;
+            }
+            else
+            {
+                nulls.set(index);
+            }
+            return;
+        }
+        adjustType(value);
+        switch(type)
+        {
+            case INT: ints[index] = (Integer)value; break;
+            case LONG: longs[index] = (Long)value; break;
+            case DOUBLE: doubles[index] = (Double)value; break;
+            default: objects[index] = value; return;
+        }
+        nulls.clear(index);
+    }
+
+    private void adjustType(Object value)
+    {
+        int valueType = getType(value);
+        if(type == valueType || type == OBJECT) return;
+        if(type == EMPTY)
+        {
+            int capacity = Math.max(size, 10);
+            switch(valueType)
+            {
+                case INT: ints = new int[capacity]; break;
+                case LONG: longs = new long[capacity]; break;
+                case DOUBLE: doubles = new double[capacity]; break;
+                default: objects = new Object[capacity]; break;
+            }
+            if(valueType != OBJECT)
+            {
+                nulls.set(0, size);
+            }
+            type = valueType;
+            return;
+        }
+        Object[] newObjects = new Object[Math.max(getCapacity(), 10)];
+        for(int ii = 0; ii < size; ii++)
+        {
+            newObjects[ii] = get(ii);
+        }
+        ints = null;
+        longs = null;
+        doubles = null;
+        nulls.clear();
+        objects = newObjects;
+        type = OBJECT;
+    }
+
+    private int getType(Object value)
+    {
+        Class<?> valueClass = value.getClass();
+        if(valueClass == Integer.class) return INT;
+        if(valueClass == Long.class) return LONG;
+        if(valueClass == Double.class) return DOUBLE;
+        return OBJECT;
+    }
+
+    private Object getArray()
+    {
+        switch(type)
+        {
+            case INT: return ints;
+            case LONG: return longs;
+            case DOUBLE: return doubles;
+            case OBJECT: return objects;
+            default: return null;
+        }
+    }
+
+    private int getCapacity()
+    {
+        switch(type)
+        {
+            case INT: return ints.length;
+            case LONG: return longs.length;
+            case DOUBLE: return doubles.length;
+            case OBJECT: return objects.length;
+            default: return Integer.MAX_VALUE;
+        }
+    }
+
+    private void ensureCapacity(int minCapacity)
+    {
+        int capacity = getCapacity();
+        if(minCapacity <= capacity) return;
+        int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+        switch(type)
+        {
+            case INT: ints = Arrays.copyOf(ints, newCapacity); break;
+            case LONG: longs = Arrays.copyOf(longs, newCapacity); break;
+            case DOUBLE: doubles = Arrays.copyOf(doubles, newCapacity); break;
+            case OBJECT: objects = Arrays.copyOf(objects, newCapacity); break;
+            default: break;
+        }
+    }
+
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
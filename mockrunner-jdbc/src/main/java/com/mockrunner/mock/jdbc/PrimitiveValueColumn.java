@@ -0,0 +1,32 @@
+package com.mockrunner.mock.jdbc;
+
+/**
+ * Implemented by the column <code>List</code> objects that can return
+ * numeric values without boxing, i.e. {@link PrimitiveColumn} and
+ * {@link SnapshotColumn}. {@link MockResultSet} uses the typed getters
+ * for <code>getInt</code>, <code>getLong</code> and <code>getDouble</code>,
+ * if {@link MockResultSet#hasPrimitiveColumns} returns <code>true</code>.
+ * The typed getters must only be called if {@link #isPrimitive}
+ * returns <code>true</code> and {@link #isNull} returns <code>false</code>.
+ */
+interface PrimitiveValueColumn
+{
+    /**
+     * Returns if the values can be read with the typed getters.
+     * @return <code>true</code> if the column is primitive
+     */
+    public boolean isPrimitive();
+
+    /**
+     * Returns if the value at the specified index is <code>null</code>.
+     * @param index the index
+     * @return <code>true</code> if the value is <code>null</code>
+     */
+    public boolean isNull(int index);
+
+    public int getInt(int index);
+
+    public long getLong(int index);
+
+    public double getDouble(int index);
+}
@@ -0,0 +1,190 @@
+package com.mockrunner.mock.jdbc;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only <code>List</code> used by {@link SnapshotResultSet} to
+ * access the data of one column of a snapshot file. The values are
+ * decoded from the <code>ByteBuffer</code> when they are requested,
+ * the buffer is usually a memory mapped section of the file.
+ * The column is shared by all <code>ResultSet</code> objects of the
+ * same snapshot. {@link MockResultSet} copies it into an
+ * <code>ArrayList</code> before it's modified.
+ * <br>
+ * A column section starts with a bitmap of the <code>null</code> values.
+ * Fixed width values follow as an array. Variable width values follow
+ * as an array of <code>rowCount + 1</code> offsets and the data.
+ * The buffer is only accessed with absolute methods, so the column
+ * can be read by different threads.
+ */
+class SnapshotColumn extends AbstractList<Object> implements RandomAccess, PrimitiveValueColumn
+{
+    public final static int NULL = 0;
+    public final static int INT = 1;
+    public final static int LONG = 2;
+    public final static int DOUBLE = 3;
+    public final static int BOOLEAN = 4;
+    public final static int STRING = 5;
+    public final static int BYTES = 6;
+    public final static int BIG_DECIMAL = 7;
+    public final static int DATE = 8;
+    public final static int TIME = 9;
+    public final static int TIMESTAMP = 10;
+
+    final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int type;
+    private final int size;
+    private final ByteBuffer buffer;
+    private final int dataStart;
+
+    public SnapshotColumn(int type, int size, ByteBuffer buffer)
+    {
+        if(type < NULL || type > TIMESTAMP)
+        {
+            throw new IllegalArgumentException("Unknown column type " + type);
+        }
+        this.type = type;
+        this.size = size;
+        this.buffer = buffer;
+        this.dataStart = getNullBitmapLength(size);
+    }
+
+    /**
+     * Returns the width of the values of the specified type
+     * or -1, if the values have a variable width.
+     * @param type the type
+     * @return the width in bytes
+     */
+    public static int getWidth(int type)
+    {
+        switch(type)
+        {
+            case NULL: return 0;
+            case BOOLEAN: return 1;
+            case INT: return 4;
+            case LONG: return 8;
+            case DOUBLE: return 8;
+            case DATE: return 8;
+            case TIME: return 8;
+            case TIMESTAMP: return 12;
+            default: return -1;
+        }
+    }
+
+    public static int getNullBitmapLength(int size)
+    {
+        return (size + 7) / 8;
+    }
+
+    public int getType()
+    {
+        return type;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns if the values can be read with the typed getters.
+     * @return <code>true</code> if the column is primitive
+     */
+    public boolean isPrimitive()
+    {
+        return type == INT || type == LONG || type == DOUBLE;
+    }
+
+    public boolean isNull(int index)
+    {
+        checkIndex(index);
+        if(type == NULL) return true;
+        return (buffer.get(index >>> 3) & (1 << (index & 7))) != 0;
+    }
+
+    public int getInt(int index)
+    {
+        switch(type)
+        {
+            case INT: return buffer.getInt(dataStart + 4 * index);
+            case LONG: return (int)buffer.getLong(dataStart + 8 * index);
+            case DOUBLE: return (int)buffer.getDouble(dataStart + 8 * index);
+            default: throw new IllegalStateException("Column is not primitive");
+        }
+    }
+
+    public long getLong(int index)
+    {
+        switch(type)
+        {
+            case INT: return buffer.getInt(dataStart + 4 * index);
+            case LONG: return buffer.getLong(dataStart + 8 * index);
+            case DOUBLE: return (long)buffer.getDouble(dataStart + 8 * index);
+            default: throw new IllegalStateException("Column is not primitive");
+        }
+    }
+
+    public double getDouble(int index)
+    {
+        switch(type)
+        {
+            case INT: return buffer.getInt(dataStart + 4 * index);
+            case LONG: return buffer.getLong(dataStart + 8 * index);
+            case DOUBLE: return buffer.getDouble(dataStart + 8 * index);
+            default: throw new IllegalStateException("Column is not primitive");
+        }
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        if(isNull(index)) return null;
+        int position = dataStart + index * getWidth(type);
+        switch(type)
+        {
+            case INT: return buffer.getInt(position);
+            case LONG: return buffer.getLong(position);
+            case DOUBLE: return buffer.getDouble(position);
+            case BOOLEAN: return buffer.get(position) != 0;
+            case DATE: return new Date(buffer.getLong(position));
+            case TIME: return new Time(buffer.getLong(position));
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(buffer.getLong(position));
+                timestamp.setNanos(buffer.getInt(position + 8));
+                return timestamp;
+            case STRING: return new String(getBytes(index), UTF_8);
+            case BYTES: return getBytes(index);
+            case BIG_DECIMAL: return new BigDecimal(new String(getBytes(index), UTF_8));
+            default: return null;
+        }
+    }
+
+    private byte[] getBytes(int index)
+    {
+        int start = buffer.getInt(dataStart + 4 * index);
+        int end = buffer.getInt(dataStart + 4 * (index + 1));
+        int bytesStart = dataStart + 4 * (size + 1);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer data = buffer.duplicate();
+        data.position(bytesStart + start);
+        data.get(bytes);
+        return bytes;
+    }
+
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.mockrunner.mock.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.ResultSetFactory;
+
+/**
+ * <code>ResultSet</code> based on a binary snapshot file. Parsing
+ * large XML or CSV files is expensive, so you can convert them
+ * once into a snapshot with {@link #write(ResultSetFactory, File)}
+ * and use {@link SnapshotResultSet.Factory} to create the
+ * <code>ResultSet</code> objects in the tests.
+ * <br>
+ * The snapshot stores the data column by column. The factory maps the
+ * columns into memory and the values are decoded when they are read, so
+ * loading a snapshot does not depend on the number of rows and different
+ * JVMs share the cached pages of the file. The <code>getInt</code>,
+ * <code>getLong</code> and <code>getDouble</code> methods read numeric
+ * columns without boxing. A column is copied into memory before it's modified.
+ * <br>
+ * The supported types are <code>Integer</code>, <code>Long</code>,
+ * <code>Double</code>, <code>Boolean</code>, <code>String</code>,
+ * <code>byte[]</code>, <code>BigDecimal</code>, <code>java.sql.Date</code>,
+ * <code>java.sql.Time</code> and <code>java.sql.Timestamp</code>.
+ * All values of a column must have the same type.
+ */
+public class SnapshotResultSet extends MockResultSet
+{
+    private final static int MAGIC = 0x4D525353;
+    private final static int VERSION = 1;
+
+    public SnapshotResultSet(String id)
+    {
+        super(id);
+    }
+
+    public SnapshotResultSet(String id, String cursorName)
+    {
+        super(id, cursorName);
+    }
+
+    @Override
+    boolean hasPrimitiveColumns()
+    {
+        return true;
+    }
+
+    /**
+     * Writes the <code>ResultSet</code> created by the specified
+     * factory into a snapshot file, e.g.
+     * <code>SnapshotResultSet.write(new XMLResultSetFactory("data.xml"), new File("data.snapshot"))</code>.
+     * @param factory the factory, e.g. a {@link com.mockrunner.jdbc.FileResultSetFactory}
+     *        or a {@link com.mockrunner.jdbc.XMLResultSetFactory}
+     * @param file the snapshot file
+     * @throws IllegalArgumentException if a column contains values
+     *         of an unsupported type or of different types
+     */
+    public static void write(ResultSetFactory factory, File file)
+    {
+        write(factory.create("snapshot"), file);
+    }
+
+    /**
+     * Writes the specified <code>ResultSet</code> into a snapshot file.
+     * The current data of the <code>ResultSet</code> is written, i.e.
+     * the data including the modifications, unless the
+     * <code>ResultSet</code> is a database view.
+     * @param resultSet the <code>ResultSet</code>
+     * @param file the snapshot file
+     * @throws IllegalArgumentException if a column contains values
+     *         of an unsupported type or of different types
+     */
+    public static void write(MockResultSet resultSet, File file)
+    {
+        int columnCount = resultSet.getColumnCount();
+        int rowCount = resultSet.getRowCount();
+        List<byte[]> names = new ArrayList<byte[]>(columnCount);
+        int[] types = new int[columnCount];
+        List<byte[]> sections = new ArrayList<byte[]>(columnCount);
+        long headerLength = 16;
+        try
+        {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            for(int ii = 0; ii < columnCount; ii++)
+            {
+                String name = metaData.getColumnName(ii + 1);
+                List<Object> column = resultSet.getColumn(ii + 1);
+                types[ii] = determineType(name, column);
+                names.add(name.getBytes(SnapshotColumn.UTF_8));
+                sections.add(encodeColumn(name, types[ii], column));
+                headerLength += 4 + names.get(ii).length + 4 + 8 + 8;
+            }
+        }
+        catch(SQLException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        DataOutputStream output = null;
+        try
+        {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(columnCount);
+            output.writeInt(rowCount);
+            long offset = headerLength;
+            for(int ii = 0; ii < columnCount; ii++)
+            {
+                output.writeInt(names.get(ii).length);
+                output.write(names.get(ii));
+                output.writeInt(types[ii]);
+                output.writeLong(offset);
+                output.writeLong(sections.get(ii).length);
+                offset += sections.get(ii).length;
+            }
+            for(byte[] nextSection : sections)
+            {
+                output.write(nextSection);
+            }
+        }
+        catch(IOException exc)
+        {
+            throw new NestedApplicationException(exc);
+        }
+        finally
+        {
+            if(null != output)
+            {
+                try
+                {
+                    output.close();
+                }
+                catch(IOException exc)
+                {
+                    //noinspection ThrowFromFinallyBlock
+                    throw new NestedApplicationException(exc);
+                }
+            }
+        }
+    }
+
+    private static int determineType(String name, List<Object> column)
+    {
+        int type = SnapshotColumn.NULL;
+        for(Object nextValue : column)
+        {
+            if(null == nextValue) continue;
+            int valueType = getType(nextValue);
+            if(valueType == SnapshotColumn.NULL)
+            {
+                throw new IllegalArgumentException("Column " + name + " contains a value of the unsupported type " + nextValue.getClass().getName());
+            }
+            if(type != SnapshotColumn.NULL && type != valueType)
+            {
+                throw new IllegalArgumentException("Column " + name + " contains values of different types");
+            }
+            type = valueType;
+        }
+        return type;
+    }
+
+    private static int getType(Object value)
+    {
+        if(value instanceof Integer) return SnapshotColumn.INT;
+        if(value instanceof Long) return SnapshotColumn.LONG;
+        if(value instanceof Double) return SnapshotColumn.DOUBLE;
+        if(value instanceof Boolean) return SnapshotColumn.BOOLEAN;
+        if(value instanceof String) return SnapshotColumn.STRING;
+        if(value instanceof byte[]) return SnapshotColumn.BYTES;
+        if(value instanceof BigDecimal) return SnapshotColumn.BIG_DECIMAL;
+        if(value instanceof Timestamp) return SnapshotColumn.TIMESTAMP;
+        if(value instanceof Time) return SnapshotColumn.TIME;
+        if(value instanceof Date) return SnapshotColumn.DATE;
+        return SnapshotColumn.NULL;
+    }
+
+    private static byte[] encodeColumn(String name, int type, List<Object> column) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        byte[] nullBitmap = new byte[SnapshotColumn.getNullBitmapLength(column.size())];
+        for(int ii = 0; ii < column.size(); ii++)
+        {
+            if(null == column.get(ii))
+            {
+                nullBitmap[ii >>> 3] |= 1 << (ii & 7);
+            }
+        }
+        output.write(nullBitmap);
+        if(SnapshotColumn.getWidth(type) >= 0)
+        {
+            for(Object nextValue : column)
+            {
+                writeFixedWidthValue(output, type, nextValue);
+            }
+        }
+        else
+        {
+            List<byte[]> values = new ArrayList<byte[]>(column.size());
+            long offset = 0;
+            for(Object nextValue : column)
+            {
+                byte[] value = encodeVariableWidthValue(type, nextValue);
+                values.add(value);
+                output.writeInt((int)offset);
+                offset += value.length;
+                if(offset > Integer.MAX_VALUE)
+                {
+                    throw new IllegalArgumentException("Column " + name + " is too large");
+                }
+            }
+            output.writeInt((int)offset);
+            for(byte[] nextValue : values)
+            {
+                output.write(nextValue);
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeFixedWidthValue(DataOutputStream output, int type, Object value) throws IOException
+    {
+        boolean isNull = (null == value);
+        switch(type)
+        {
+            case SnapshotColumn.INT: output.writeInt(isNull ? 0 : (Integer)value); break;
+            case SnapshotColumn.LONG: output.writeLong(isNull ? 0 : (Long)value); break;
+            case SnapshotColumn.DOUBLE: output.writeDouble(isNull ? 0 : (Double)value); break;
+            case SnapshotColumn.BOOLEAN: output.writeBoolean(!isNull && (Boolean)value); break;
+            case SnapshotColumn.DATE:
+            case SnapshotColumn.TIME: output.writeLong(isNull ? 0 : ((java.util.Date)value).getTime()); break;
+            case SnapshotColumn.TIMESTAMP:
+                output.writeLong(isNull ? 0 : ((Timestamp)value).getTime());
+                output.writeInt(isNull ? 0 : ((Timestamp)value).getNanos());
+                break;
+            default: break;
+        }
+    }
+
+    private static byte[] encodeVariableWidthValue(int type, Object value)
+    {
+        if(null == value) return new byte[0];
+        switch(type)
+        {
+            case SnapshotColumn.BYTES: return (byte[])value;
+            case SnapshotColumn.BIG_DECIMAL: return ((BigDecimal)value).toString().getBytes(SnapshotColumn.UTF_8);
+            default: return ((String)value).getBytes(SnapshotColumn.UTF_8);
+        }
+    }
+
+    /**
+     * Factory for {@link SnapshotResultSet} objects. The snapshot file
+     * is mapped into memory when the first <code>ResultSet</code> is
+     * created. All <code>ResultSet</code> objects of the factory share
+     * the mapped columns, changes of the file after the first
+     * <code>ResultSet</code> was created are not noticed.
+     */
+    public static class Factory implements ResultSetFactory
+    {
+        private final File file;
+        private List<String> columnNames;
+        private List<SnapshotColumn> columns;
+
+        public Factory(String fileName)
+        {
+            this(new File(fileName));
+        }
+
+        public Factory(File file)
+        {
+            this.file = file;
+        }
+
+        /**
+         * Returns the snapshot file.
+         * @return the snapshot file
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        public SnapshotResultSet create(String id)
+        {
+            load();
+            SnapshotResultSet resultSet = new SnapshotResultSet(id);
+            for(int ii = 0; ii < columns.size(); ii++)
+            {
+                resultSet.addColumnData(columnNames.get(ii), columns.get(ii));
+            }
+            return resultSet;
+        }
+
+        private synchronized void load()
+        {
+            if(null != columns) return;
+            RandomAccessFile input = null;
+            try
+            {
+                input = new RandomAccessFile(file, "r");
+                if(input.readInt() != MAGIC)
+                {
+                    throw new IOException(file.getPath() + " is not a snapshot file");
+                }
+                int version = input.readInt();
+                if(version != VERSION)
+                {
+                    throw new IOException("Unsupported snapshot version " + version);
+                }
+                int columnCount = input.readInt();
+                int rowCount = input.readInt();
+                List<String> names = new ArrayList<String>(columnCount);
+                List<SnapshotColumn> mappedColumns = new ArrayList<SnapshotColumn>(columnCount);
+                FileChannel channel = input.getChannel();
+                for(int ii = 0; ii < columnCount; ii++)
+                {
+                    byte[] name = new byte[input.readInt()];
+                    input.readFully(name);
+                    int type = input.readInt();
+                    long offset = input.readLong();
+                    long length = input.readLong();
+                    names.add(new String(name, SnapshotColumn.UTF_8));
+                    mappedColumns.add(new SnapshotColumn(type, rowCount, channel.map(FileChannel.MapMode.READ_ONLY, offset, length)));
+                }
+                columnNames = names;
+                columns = mappedColumns;
+            }
+            catch(IOException exc)
+            {
+                throw new NestedApplicationException("Failure while reading snapshot file", exc);
+            }
+            finally
+            {
+                if(null != input)
+                {
+                    try
+                    {
+                        input.close();
+                    }
+                    catch(IOException ignored)
+                    {
+
+                    }
+                }
+            }
+        }
+    }
+}
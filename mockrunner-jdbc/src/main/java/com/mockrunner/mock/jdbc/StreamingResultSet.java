@@ -0,0 +1,480 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
+
+/**
+ * <code>ResultSet</code> that reads its rows lazily from a
+ * {@link RowSource} while the cursor is moved. This makes it
+ * possible to use huge amounts of data, e.g. exported tables,
+ * without keeping them in memory.
+ * <br>
+ * If the result set type is <code>TYPE_FORWARD_ONLY</code>
+ * (the default), only the current window of rows is kept in memory.
+ * The window contains as many rows as the fetch size specifies, at
+ * least one row. {@link #getRowCount} returns the number of rows
+ * in the window in this case. Updates only affect the current window.
+ * For scrollable result set types, the rows that are read are kept,
+ * so the cursor can be moved back. Methods like {@link #last} read
+ * all remaining rows.
+ * <br>
+ * The rows are read when the cursor is moved the first time, so
+ * the <code>RowSource</code> is not opened when the <code>ResultSet</code>
+ * is prepared. Every copy, i.e. every execution of a statement, opens
+ * the <code>RowSource</code> again and reads the rows from the beginning.
+ * The <code>RowReader</code> is closed when all rows are read or
+ * the <code>ResultSet</code> is closed.
+ * <br>
+ * The rows are read in round trips of fetch size rows, like a driver
+ * fetches them from the database. {@link #getNumberRoundTrips} returns
+ * the number of round trips, which allows tests to verify that the
+ * fetch size is set. A latency per round trip can be simulated with
+ * {@link #setRoundTripLatency}. The rows can be read from any
+ * {@link RowSource}, e.g. {@link #fromIterable}, {@link #fromIterator}
+ * or {@link #fromGenerator}.
+ */
+public class StreamingResultSet extends MockResultSet
+{
+    private final RowSource rowSource;
+    private RowReader rowReader;
+    private List<Object> pendingRow;
+    private boolean exhausted;
+    private int rowOffset;
+    private int numberRoundTrips;
+    private int remainingRowsInRoundTrip;
+    private LatencyModel roundTripLatency;
+    private LatencyClock latencyClock;
+
+    /**
+     * Creates a <code>ResultSet</code> with the specified columns.
+     * @param id the id
+     * @param columnNames the column names
+     * @param rowSource the source of the rows
+     */
+    public StreamingResultSet(String id, List<String> columnNames, RowSource rowSource)
+    {
+        super(id);
+        if(null == rowSource)
+        {
+            throw new IllegalArgumentException("rowSource must not be null");
+        }
+        this.rowSource = rowSource;
+        for(String nextColumnName : columnNames)
+        {
+            addColumn(nextColumnName);
+        }
+        setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    /**
+     * Returns the source of the rows.
+     * @return the source of the rows
+     */
+    public RowSource getRowSource()
+    {
+        return rowSource;
+    }
+
+    /**
+     * Returns if all rows are read.
+     * @return <code>true</code> if all rows are read,
+     *         <code>false</code> otherwise
+     */
+    public boolean isExhausted()
+    {
+        return exhausted && null == pendingRow;
+    }
+
+    /**
+     * Returns the number of round trips, i.e. the number of times
+     * up to fetch size rows were read from the {@link RowSource}.
+     * A fetch size of <code>0</code> reads one row per round trip.
+     * @return the number of round trips
+     */
+    public int getNumberRoundTrips()
+    {
+        return numberRoundTrips;
+    }
+
+    /**
+     * Sets the simulated latency of a round trip. The latency is
+     * applied once for every fetch size rows, unlike the latency of
+     * {@link #setFetchLatency}, which is applied for every row.
+     * The latency is passed to the clones.
+     * @param roundTripLatency the {@link com.mockrunner.jdbc.LatencyModel},
+     *        <code>null</code> disables the latency
+     * @param latencyClock the {@link com.mockrunner.jdbc.LatencyClock} that applies the delays
+     */
+    public void setRoundTripLatency(LatencyModel roundTripLatency, LatencyClock latencyClock)
+    {
+        if(null != roundTripLatency && null == latencyClock)
+        {
+            throw new IllegalArgumentException("latencyClock must not be null");
+        }
+        this.roundTripLatency = roundTripLatency;
+        this.latencyClock = latencyClock;
+    }
+
+    /**
+     * Copies this <code>ResultSet</code>. The copy reads the rows
+     * from the beginning.
+     * @return a copy of this <code>ResultSet</code>
+     */
+    @Override
+    public Object clone()
+    {
+        StreamingResultSet copy = (StreamingResultSet)super.clone();
+        copy.rewind();
+        return copy;
+    }
+
+    /**
+     * Copies this <code>ResultSet</code>. The copy reads the rows
+     * from the beginning.
+     * @return a copy of this <code>ResultSet</code>
+     */
+    @Override
+    public MockResultSet shallowCopy()
+    {
+        StreamingResultSet copy = (StreamingResultSet)super.shallowCopy();
+        copy.rewind();
+        return copy;
+    }
+
+    @Override
+    public void close() throws SQLException
+    {
+        super.close();
+        closeRowReader();
+    }
+
+    @Override
+    public boolean next() throws SQLException
+    {
+        if(!isForwardOnly())
+        {
+            readRows(super.getRow() + 1);
+            return super.next();
+        }
+        if(super.getRow() >= getRowCount())
+        {
+            int windowSize = Math.max(1, getFetchSize());
+            List<List<Object>> rows = new ArrayList<List<Object>>(windowSize);
+            List<Object> nextRow;
+            while(rows.size() < windowSize && null != (nextRow = readRow()))
+            {
+                rows.add(nextRow);
+            }
+            if(!rows.isEmpty())
+            {
+                rowOffset += getRowCount();
+                replaceRows(rows);
+            }
+        }
+        return super.next();
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException
+    {
+        if(rowOffset != 0 || super.getRow() != 0) return false;
+        return getRowCount() != 0 || hasMoreRows();
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException
+    {
+        return rowOffset == 0 && super.isFirst();
+    }
+
+    @Override
+    public boolean isLast() throws SQLException
+    {
+        return super.isLast() && !hasMoreRows();
+    }
+
+    @Override
+    public void afterLast() throws SQLException
+    {
+        if(!isForwardOnly()) readRows(Integer.MAX_VALUE);
+        super.afterLast();
+    }
+
+    @Override
+    public boolean last() throws SQLException
+    {
+        if(!isForwardOnly()) readRows(Integer.MAX_VALUE);
+        return super.last();
+    }
+
+    @Override
+    public boolean absolute(int row) throws SQLException
+    {
+        if(!isForwardOnly()) readRows(row < 0 ? Integer.MAX_VALUE : row);
+        return super.absolute(row);
+    }
+
+    @Override
+    public boolean relative(int rows) throws SQLException
+    {
+        if(!isForwardOnly()) readRows(super.getRow() + rows);
+        return super.relative(rows);
+    }
+
+    @Override
+    public int getRow() throws SQLException
+    {
+        return rowOffset + super.getRow();
+    }
+
+    private boolean isForwardOnly() throws SQLException
+    {
+        return getType() == ResultSet.TYPE_FORWARD_ONLY;
+    }
+
+    private void readRows(int rowCount) throws SQLException
+    {
+        List<Object> nextRow;
+        while(getRowCount() < rowCount && null != (nextRow = readRow()))
+        {
+            addRow(fillRow(nextRow));
+        }
+    }
+
+    private List<Object> fillRow(List<Object> row)
+    {
+        int columnCount = getColumnCount();
+        if(row.size() == columnCount) return row;
+        List<Object> filledRow = new ArrayList<Object>(columnCount);
+        for(int ii = 0; ii < columnCount; ii++)
+        {
+            filledRow.add(ii < row.size() ? row.get(ii) : null);
+        }
+        return filledRow;
+    }
+
+    private boolean hasMoreRows() throws SQLException
+    {
+        if(null == pendingRow)
+        {
+            pendingRow = readRow();
+        }
+        return null != pendingRow;
+    }
+
+    private List<Object> readRow() throws SQLException
+    {
+        if(null != pendingRow)
+        {
+            List<Object> row = pendingRow;
+            pendingRow = null;
+            return row;
+        }
+        if(exhausted) return null;
+        if(null == rowReader)
+        {
+            rowReader = rowSource.open();
+        }
+        if(remainingRowsInRoundTrip <= 0)
+        {
+            numberRoundTrips++;
+            remainingRowsInRoundTrip = Math.max(1, getFetchSize());
+            if(null != roundTripLatency)
+            {
+                latencyClock.sleep(latencyClock.nextDelay(roundTripLatency));
+            }
+        }
+        remainingRowsInRoundTrip--;
+        List<Object> row = rowReader.readRow();
+        if(null == row)
+        {
+            exhausted = true;
+            closeRowReader();
+        }
+        return row;
+    }
+
+    private void closeRowReader() throws SQLException
+    {
+        if(null == rowReader) return;
+        RowReader reader = rowReader;
+        rowReader = null;
+        reader.close();
+    }
+
+    private void rewind()
+    {
+        rowReader = null;
+        pendingRow = null;
+        exhausted = false;
+        rowOffset = 0;
+        numberRoundTrips = 0;
+        remainingRowsInRoundTrip = 0;
+        replaceRows(Collections.<List<Object>>emptyList());
+    }
+
+    /**
+     * Returns a {@link RowSource} that reads the rows from the specified
+     * <code>Iterable</code>. Every {@link RowSource#open} calls
+     * <code>iterator()</code>, so the rows can be read multiple times.
+     * @param rows the rows
+     * @return the {@link RowSource}
+     */
+    public static RowSource fromIterable(final Iterable<? extends List<?>> rows)
+    {
+        if(null == rows)
+        {
+            throw new IllegalArgumentException("rows must not be null");
+        }
+        return new RowSource()
+        {
+            public RowReader open() throws SQLException
+            {
+                return new IteratorRowReader(rows.iterator());
+            }
+        };
+    }
+
+    /**
+     * Returns a {@link RowSource} that reads the rows from the specified
+     * <code>Iterator</code>. The <code>Iterator</code> can only be read
+     * once, so only one copy of the <code>ResultSet</code>, i.e. one
+     * execution of a statement, can read the rows. Further executions
+     * throw an <code>SQLException</code>.
+     * @param rows the rows
+     * @return the {@link RowSource}
+     */
+    public static RowSource fromIterator(final Iterator<? extends List<?>> rows)
+    {
+        if(null == rows)
+        {
+            throw new IllegalArgumentException("rows must not be null");
+        }
+        final AtomicBoolean opened = new AtomicBoolean();
+        return new RowSource()
+        {
+            public RowReader open() throws SQLException
+            {
+                if(!opened.compareAndSet(false, true))
+                {
+                    throw new SQLException("Iterator can only be read once");
+                }
+                return new IteratorRowReader(rows);
+            }
+        };
+    }
+
+    /**
+     * Returns a {@link RowSource} that reads the rows from the specified
+     * {@link RowGenerator}.
+     * @param generator the {@link RowGenerator}
+     * @return the {@link RowSource}
+     */
+    public static RowSource fromGenerator(final RowGenerator generator)
+    {
+        if(null == generator)
+        {
+            throw new IllegalArgumentException("generator must not be null");
+        }
+        return new RowSource()
+        {
+            public RowReader open() throws SQLException
+            {
+                return new RowReader()
+                {
+                    private int rowNumber = 0;
+
+                    public List<Object> readRow() throws SQLException
+                    {
+                        return generator.generateRow(++rowNumber);
+                    }
+
+                    public void close() throws SQLException
+                    {
+
+                    }
+                };
+            }
+        };
+    }
+
+    private static class IteratorRowReader implements RowReader
+    {
+        private final Iterator<? extends List<?>> iterator;
+
+        public IteratorRowReader(Iterator<? extends List<?>> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        public List<Object> readRow() throws SQLException
+        {
+            if(!iterator.hasNext()) return null;
+            return new ArrayList<Object>(iterator.next());
+        }
+
+        public void close() throws SQLException
+        {
+
+        }
+    }
+
+    /**
+     * Generates the rows of a {@link StreamingResultSet}, see
+     * {@link StreamingResultSet#fromGenerator}.
+     */
+    public interface RowGenerator
+    {
+        /**
+         * Generates the row with the specified row number.
+         * @param rowNumber the row number, starting with <code>1</code>
+         * @return the row or <code>null</code>, if there are no more rows
+         * @throws SQLException if the row cannot be generated
+         */
+        List<Object> generateRow(int rowNumber) throws SQLException;
+    }
+
+    /**
+     * The source of the rows of a {@link StreamingResultSet}.
+     * Implementations must be thread safe, because the copies of
+     * a <code>ResultSet</code> may be used by different threads.
+     */
+    public interface RowSource
+    {
+        /**
+         * Opens a reader that reads the rows from the beginning.
+         * @return the reader
+         * @throws SQLException if the rows cannot be read
+         */
+        RowReader open() throws SQLException;
+    }
+
+    /**
+     * Reads the rows of a {@link RowSource}.
+     */
+    public interface RowReader
+    {
+        /**
+         * Reads the next row. The index in the <code>List</code>
+         * corresponds to the column index.
+         * @return the next row or <code>null</code>, if there are
+         *         no more rows
+         * @throws SQLException if the row cannot be read
+         */
+        List<Object> readRow() throws SQLException;
+
+        /**
+         * Closes the reader.
+         * @throws SQLException if the reader cannot be closed
+         */
+        void close() throws SQLException;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mockrunner.mock.jdbc;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.ResultSetFactory;
+import com.mockrunner.jdbc.SimulatedQuery;
+import com.mockrunner.jdbc.SimulatedTable;
+import com.mockrunner.util.common.LRUCache;
+
+/**
+ * Result set that selects its rows from {@link SimulatedTable}
+ * objects. When a statement is executed, the SQL string is parsed
+ * with {@link SimulatedQuery} and executed against the table in
+ * the <code>FROM</code> clause, using the parameters of the statement.
+ * So one prepared <code>TableResultSet</code> returns the matching
+ * rows for all parameter combinations, e.g.
+ * <pre>
+ * SimulatedTable table = new SimulatedTable("person", "id", "name");
+ * table.createIndex("id", SimulatedTable.HASH_INDEX);
+ * table.addRow(1, "Jim");
+ * handler.prepareResultSet("from person", new TableResultSet("person", table));
+ * </pre>
+ * Table names are not case sensitive. The parsed statements of the
+ * 1000 most recently used SQL strings are cached.
+ * If the statement is not supported or refers to an unknown table,
+ * executing it fails with an <code>SQLException</code>.
+ */
+public class TableResultSet extends MockResultSet
+{
+    private final static int MAX_CACHED_QUERIES = 1000;
+
+    private final Map<String, SimulatedTable> tables;
+    private final LRUCache<String, SimulatedQuery> queries;
+
+    public TableResultSet(String id, SimulatedTable... tables)
+    {
+        super(id);
+        this.tables = new ConcurrentHashMap<String, SimulatedTable>();
+        this.queries = new LRUCache<String, SimulatedQuery>(MAX_CACHED_QUERIES);
+        for(SimulatedTable nextTable : tables)
+        {
+            addTable(nextTable);
+        }
+    }
+
+    private TableResultSet(String id, Map<String, SimulatedTable> tables, LRUCache<String, SimulatedQuery> queries)
+    {
+        super(id);
+        this.tables = tables;
+        this.queries = queries;
+    }
+
+    public void addTable(SimulatedTable table)
+    {
+        tables.put(table.getName().toUpperCase(), table);
+    }
+
+    public SimulatedTable getTable(String name)
+    {
+        return tables.get(name.toUpperCase());
+    }
+
+    /**
+     * Executes the specified statement against the tables. If the
+     * statement is not supported or refers to an unknown table, the
+     * <code>SQLException</code> is thrown nested in a
+     * <code>NestedApplicationException</code>, because this method
+     * can't throw checked exceptions. The statements rethrow it
+     * unwrapped from <code>executeQuery</code>.
+     */
+    @Override
+    public MockResultSet evaluate(String sql, MockParameterMap parameters)
+    {
+        SimulatedQuery query = queries.get(sql);
+        if(null == query)
+        {
+            try
+            {
+                query = SimulatedQuery.parse(sql);
+            }
+            catch(IllegalArgumentException exc)
+            {
+                throw new NestedApplicationException(new SQLException(exc.getMessage(), "42000", exc));
+            }
+            queries.put(sql, query);
+        }
+        SimulatedTable table = getTable(query.getTableName());
+        if(null == table)
+        {
+            throw new NestedApplicationException(new SQLException("Unknown table " + query.getTableName() + ": " + sql, "42S02"));
+        }
+        return query.execute(getId(), table, parameters);
+    }
+
+    /**
+     * Creates <code>TableResultSet</code> objects that share
+     * the tables and the parsed statements.
+     */
+    public static class Factory implements ResultSetFactory
+    {
+        private final Map<String, SimulatedTable> tables;
+        private final LRUCache<String, SimulatedQuery> queries;
+
+        public Factory(SimulatedTable... tables)
+        {
+            this.tables = new ConcurrentHashMap<String, SimulatedTable>();
+            this.queries = new LRUCache<String, SimulatedQuery>(MAX_CACHED_QUERIES);
+            for(SimulatedTable nextTable : tables)
+            {
+                this.tables.put(nextTable.getName().toUpperCase(), nextTable);
+            }
+        }
+
+        public TableResultSet create(String id)
+        {
+            return new TableResultSet(id, tables, queries);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+
+public class BatchTest extends TestCase
+{
+    private MockConnection connection;
+    private StatementResultSetHandler statementHandler;
+    private PreparedStatementResultSetHandler preparedHandler;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        connection = new MockConnection();
+        statementHandler = connection.getStatementResultSetHandler();
+        preparedHandler = connection.getPreparedStatementResultSetHandler();
+    }
+
+    public void testStatementBatch() throws Exception
+    {
+        statementHandler.prepareUpdateCount("insert", 2);
+        statementHandler.prepareGlobalUpdateCount(5);
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 10000; ii++)
+        {
+            statement.addBatch((ii % 2 == 0) ? "insert into x" : "update x");
+        }
+        int[] results = statement.executeBatch();
+        assertEquals(10000, results.length);
+        assertEquals(2, results[0]);
+        assertEquals(5, results[9999]);
+        assertEquals(5, statement.getUpdateCount());
+        assertEquals(10000, statementHandler.getExecutedStatements().size());
+        assertEquals("update x", statementHandler.getExecutedStatements().get(9999));
+        assertEquals(0, statement.executeBatch().length);
+    }
+
+    public void testStatementBatchFailure() throws Exception
+    {
+        statementHandler.prepareBatchFailure("insert", new int[] {3, 1});
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 5; ii++)
+        {
+            statement.addBatch("insert into x");
+        }
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            assertTrue(Arrays.equals(new int[] {0}, exc.getUpdateCounts()));
+        }
+        assertEquals(1, statementHandler.getExecutedStatements().size());
+        statementHandler.setContinueProcessingOnBatchFailure(true);
+        SQLException failure = new SQLException("failed", "42000", 7);
+        statementHandler.prepareBatchFailure("insert", new int[] {3, 1}, failure);
+        for(int ii = 0; ii < 5; ii++)
+        {
+            statement.addBatch("insert into x");
+        }
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            assertTrue(Arrays.equals(new int[] {0, Statement.EXECUTE_FAILED, 0, Statement.EXECUTE_FAILED, 0}, exc.getUpdateCounts()));
+            assertEquals(7, exc.getErrorCode());
+        }
+        assertEquals(4, statementHandler.getExecutedStatements().size());
+        statementHandler.clearBatchFailures();
+        statement.addBatch("insert into x");
+        statement.addBatch("insert into x");
+        assertEquals(2, statement.executeBatch().length);
+    }
+
+    public void testPreparedStatementBatch() throws Exception
+    {
+        preparedHandler.prepareUpdateCount("insert", 3, new Object[] {1});
+        preparedHandler.prepareUpdateCount("insert", 2);
+        preparedHandler.prepareThrowsSQLException("insert", new Object[] {2});
+        preparedHandler.setContinueProcessingOnBatchFailure(true);
+        PreparedStatement statement = connection.prepareStatement("insert into x values(?)");
+        for(int ii = 0; ii < 10000; ii++)
+        {
+            statement.setInt(1, ii);
+            statement.addBatch();
+        }
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            int[] results = exc.getUpdateCounts();
+            assertEquals(10000, results.length);
+            assertEquals(2, results[0]);
+            assertEquals(3, results[1]);
+            assertEquals(Statement.EXECUTE_FAILED, results[2]);
+            assertEquals(2, results[9999]);
+        }
+        assertEquals(9999, preparedHandler.getExecutedStatements().size());
+        assertEquals(9999, preparedHandler.getParametersForExecutedStatement("insert into x values(?)").getNumberParameterSets());
+        assertEquals(new MockParameterMap(new Object[] {9999}), preparedHandler.getParametersForExecutedStatement("insert into x values(?)").getParameterSet(9998));
+        assertEquals(2, statement.getUpdateCount());
+        preparedHandler.prepareBatchFailure("insert", new int[] {0});
+        statement.addBatch();
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(BatchUpdateException exc)
+        {
+            assertTrue(Arrays.equals(new int[] {Statement.EXECUTE_FAILED}, exc.getUpdateCounts()));
+        }
+    }
+}
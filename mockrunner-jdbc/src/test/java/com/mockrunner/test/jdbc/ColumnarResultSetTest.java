@@ -0,0 +1,207 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.ArrayResultSetFactory;
+import com.mockrunner.jdbc.ResultSetFactory;
+import com.mockrunner.mock.jdbc.ColumnarResultSet;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class ColumnarResultSetTest extends TestCase
+{
+    private ColumnarResultSet resultSet;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        resultSet = new ColumnarResultSet("test");
+    }
+
+    public void testPrimitiveColumns() throws Exception
+    {
+        resultSet.addColumn("intColumn", new int[] {1, 2, 3});
+        resultSet.addColumn("longColumn", new long[] {4, 5, 6});
+        resultSet.addColumn("doubleColumn", new double[] {7.5, 8.5, 9.5});
+        assertEquals(3, resultSet.getRowCount());
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt(1));
+        assertEquals(1, resultSet.getLong("intColumn"));
+        assertEquals(1.0, resultSet.getDouble("INTCOLUMN"), 0.0);
+        assertEquals(Integer.valueOf(1), resultSet.getObject(1));
+        assertEquals(4, resultSet.getInt("longColumn"));
+        assertEquals(Long.valueOf(4), resultSet.getObject("longColumn"));
+        assertEquals(7, resultSet.getInt(3));
+        assertEquals(7.5, resultSet.getDouble(3), 0.0);
+        assertEquals("7.5", resultSet.getString(3));
+        assertFalse(resultSet.wasNull());
+        assertTrue(resultSet.last());
+        assertEquals(3, resultSet.getInt(1));
+        assertEquals(6, resultSet.getLong(2));
+        assertEquals(9.5, resultSet.getDouble("doubleColumn"), 0.0);
+        assertEquals(Arrays.asList(new Object[] {3, 6L, 9.5}), resultSet.getRow(3));
+    }
+
+    public void testAddRowAndNullValues() throws Exception
+    {
+        resultSet.addColumn("column1");
+        resultSet.addColumn("column2");
+        resultSet.addRow(new Object[] {null, "a"});
+        resultSet.addRow(new Object[] {2, "b"});
+        resultSet.addRow(new Object[] {3, null});
+        resultSet.next();
+        assertEquals(0, resultSet.getInt(1));
+        assertTrue(resultSet.wasNull());
+        assertNull(resultSet.getObject("column1"));
+        assertTrue(resultSet.wasNull());
+        resultSet.next();
+        assertEquals(2, resultSet.getInt(1));
+        assertFalse(resultSet.wasNull());
+        assertEquals("b", resultSet.getString(2));
+        resultSet.next();
+        assertEquals(3L, resultSet.getLong("column1"));
+        assertNull(resultSet.getString(2));
+        assertTrue(resultSet.wasNull());
+        assertEquals(Arrays.asList(new Object[] {null, 2, 3}), resultSet.getColumn(1));
+    }
+
+    public void testMixedValues() throws Exception
+    {
+        resultSet.addColumn("column", new Object[] {1, 2L, "3", null});
+        resultSet.next();
+        assertEquals(1, resultSet.getInt(1));
+        assertEquals(Integer.valueOf(1), resultSet.getObject(1));
+        resultSet.next();
+        assertEquals(2, resultSet.getInt(1));
+        assertEquals(Long.valueOf(2), resultSet.getObject(1));
+        resultSet.next();
+        assertEquals(3, resultSet.getInt(1));
+        assertEquals("3", resultSet.getObject(1));
+        resultSet.next();
+        assertEquals(0, resultSet.getInt(1));
+        assertTrue(resultSet.wasNull());
+    }
+
+    public void testUpdateInsertDelete() throws Exception
+    {
+        resultSet.addColumn("column", new int[] {1, 2, 3});
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.next();
+        resultSet.updateInt(1, 10);
+        assertEquals(10, resultSet.getInt(1));
+        resultSet.setDatabaseView(true);
+        assertEquals(1, resultSet.getInt(1));
+        resultSet.setDatabaseView(false);
+        resultSet.updateRow();
+        assertTrue(resultSet.rowUpdated());
+        resultSet.setDatabaseView(true);
+        assertEquals(10, resultSet.getInt(1));
+        resultSet.setDatabaseView(false);
+        resultSet.updateString(1, "x");
+        assertEquals("x", resultSet.getString(1));
+        resultSet.cancelRowUpdates();
+        assertEquals(10, resultSet.getInt(1));
+        resultSet.next();
+        resultSet.moveToInsertRow();
+        resultSet.updateInt(1, 20);
+        resultSet.insertRow();
+        resultSet.moveToCurrentRow();
+        assertEquals(4, resultSet.getRowCount());
+        assertEquals(20, resultSet.getInt(1));
+        assertTrue(resultSet.rowInserted());
+        assertFalse(resultSet.rowInserted(1));
+        assertTrue(resultSet.rowInserted(2));
+        assertFalse(resultSet.rowInserted(3));
+        assertFalse(resultSet.rowUpdated(1));
+        resultSet.next();
+        resultSet.deleteRow();
+        assertTrue(resultSet.rowDeleted(3));
+        try
+        {
+            resultSet.getInt(1);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(Arrays.asList(new Object[] {10, 20, null, 3}), resultSet.getColumn("column"));
+    }
+
+    public void testClone() throws Exception
+    {
+        resultSet.addColumn("column", new long[] {1, 2});
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        MockResultSet copy = (MockResultSet)resultSet.clone();
+        assertTrue(copy instanceof ColumnarResultSet);
+        copy.next();
+        copy.updateLong(1, 5);
+        copy.updateRow();
+        resultSet.next();
+        assertEquals(1, resultSet.getLong(1));
+        assertEquals(5, copy.getLong(1));
+        assertTrue(copy.isEqual(copy));
+        assertFalse(copy.isEqual(resultSet));
+    }
+
+    public void testFetchDirection() throws Exception
+    {
+        resultSet.addColumn("column", new int[] {1, 2, 3});
+        resultSet.setFetchDirection(ResultSet.FETCH_REVERSE);
+        resultSet.next();
+        assertEquals(3, resultSet.getInt(1));
+    }
+
+    public void testFactory() throws Exception
+    {
+        ResultSetFactory factory = new ColumnarResultSet.Factory(true);
+        MockResultSet created = factory.create("id");
+        assertTrue(created instanceof ColumnarResultSet);
+        assertEquals("id", created.getId());
+        created.addColumn("Column", new Object[] {1});
+        created.next();
+        try
+        {
+            created.getInt("column");
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        factory = new ColumnarResultSet.Factory(new ArrayResultSetFactory(new String[] {"a", "b"}, new String[][] {{"1", "2"}, {"3", "4"}}));
+        created = factory.create("id");
+        assertTrue(created instanceof ColumnarResultSet);
+        assertEquals(2, created.getRowCount());
+        assertEquals(2, created.getColumnCount());
+        created.last();
+        assertEquals(3, created.getInt("a"));
+        assertEquals("4", created.getString(2));
+    }
+
+    public void testManyRows() throws Exception
+    {
+        int numberRows = 100000;
+        int[] values = new int[numberRows];
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            values[ii] = ii;
+        }
+        resultSet.addColumn("column", values);
+        for(int ii = 0; ii < numberRows; ii++)
+        {
+            resultSet.addRow(new Object[] {(double)ii});
+        }
+        assertEquals(2 * numberRows, resultSet.getRowCount());
+        long sum = 0;
+        while(resultSet.next())
+        {
+            sum += resultSet.getLong(1);
+        }
+        assertEquals((long)numberRows * (numberRows - 1), sum);
+    }
+}
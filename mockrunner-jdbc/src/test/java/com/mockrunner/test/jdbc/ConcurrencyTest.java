@@ -0,0 +1,142 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class ConcurrencyTest extends TestCase
+{
+    private final static int NUMBER_THREADS = 64;
+    private final static int NUMBER_ITERATIONS = 200;
+
+    private JDBCMockObjectFactory factory;
+    private JDBCTestModule module;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        factory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(factory);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        factory.restoreDrivers();
+    }
+
+    public void testConcurrentExecution() throws Exception
+    {
+        MockConnection mockConnection = factory.getMockConnection();
+        StatementResultSetHandler statementHandler = mockConnection.getStatementResultSetHandler();
+        PreparedStatementResultSetHandler preparedHandler = mockConnection.getPreparedStatementResultSetHandler();
+        MockResultSet resultSet = statementHandler.createResultSet("statement");
+        resultSet.addColumn("column", new Object[] {"1", "2", "3"});
+        statementHandler.prepareResultSet("select column from table", resultSet);
+        statementHandler.prepareUpdateCount("update table", 5);
+        MockResultSet preparedResultSet = preparedHandler.createResultSet("prepared");
+        preparedResultSet.addColumn("column", new Object[] {"4", "5"});
+        preparedHandler.prepareResultSet("select column from table where id = ?", preparedResultSet);
+        final Connection connection = factory.getMockDataSource().getConnection();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final CountDownLatch firstExecution = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_THREADS + 1);
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for(int ii = 0; ii < NUMBER_THREADS; ii++)
+            {
+                final int threadNumber = ii;
+                futures.add(executor.submit(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        startSignal.await();
+                        for(int kk = 0; kk < NUMBER_ITERATIONS; kk++)
+                        {
+                            Statement statement = connection.createStatement();
+                            ResultSet currentResultSet = statement.executeQuery("select column from table");
+                            firstExecution.countDown();
+                            int rowCount = 0;
+                            while(currentResultSet.next())
+                            {
+                                rowCount++;
+                                assertEquals(String.valueOf(rowCount), currentResultSet.getString(1));
+                            }
+                            assertEquals(3, rowCount);
+                            assertEquals(5, statement.executeUpdate("update table set thread = " + threadNumber));
+                            PreparedStatement preparedStatement = connection.prepareStatement("select column from table where id = ?");
+                            preparedStatement.setInt(1, threadNumber);
+                            currentResultSet = preparedStatement.executeQuery();
+                            currentResultSet.setFetchDirection(ResultSet.FETCH_REVERSE);
+                            assertTrue(currentResultSet.next());
+                            assertEquals("5", currentResultSet.getString(1));
+                            connection.commit();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            futures.add(executor.submit(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    startSignal.await();
+                    firstExecution.await();
+                    for(int kk = 0; kk < NUMBER_ITERATIONS; kk++)
+                    {
+                        module.verifySQLStatementExecuted("select column");
+                        module.getExecutedSQLStatementParameterMap();
+                        module.getReturnedResultSets("statement");
+                    }
+                    return null;
+                }
+            }));
+            startSignal.countDown();
+            for(Future<Object> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        int numberExecutions = NUMBER_THREADS * NUMBER_ITERATIONS;
+        assertEquals(2 * numberExecutions, statementHandler.getNumberExecutedStatements());
+        assertEquals(2 * numberExecutions, statementHandler.getExecutedStatements().size());
+        assertEquals(numberExecutions, statementHandler.getNumberReturnedResultSets());
+        assertEquals(numberExecutions, statementHandler.getStatements().size());
+        assertEquals(numberExecutions, preparedHandler.getNumberExecutedStatements());
+        assertEquals(numberExecutions, preparedHandler.getPreparedStatements().size());
+        assertEquals(numberExecutions, preparedHandler.getPreparedStatementMap().get("select column from table where id = ?").size());
+        assertEquals(numberExecutions, preparedHandler.getParametersForExecutedStatement("select column from table where id = ?").getNumberParameterSets());
+        assertEquals(numberExecutions, mockConnection.getNumberCommits());
+        for(int ii = 0; ii < NUMBER_THREADS; ii++)
+        {
+            module.verifySQLStatementExecuted("update table set thread = " + ii);
+        }
+        preparedResultSet.next();
+        assertEquals("4", preparedResultSet.getString(1));
+    }
+}
@@ -0,0 +1,116 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.mock.jdbc.EvaluableResultSet;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class EvaluableResultSetTest extends TestCase
+{
+    private MockConnection connection;
+    private EvaluableResultSet resultSet;
+    private AtomicInteger numberEvaluations;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        connection = new MockConnection();
+        resultSet = new EvaluableResultSet("id");
+        numberEvaluations = new AtomicInteger();
+        EvaluableResultSet.Evaluable parameter = new EvaluableResultSet.Evaluable()
+        {
+            public Object evaluate(String sql, MockParameterMap parameters, String columnName, int row)
+            {
+                numberEvaluations.incrementAndGet();
+                return columnName + row + "=" + parameters.get(1);
+            }
+        };
+        resultSet.addColumn("static", new Object[] {"a", "b", "c"});
+        resultSet.addColumn("dynamic", new Object[] {parameter, null, parameter});
+        connection.getPreparedStatementResultSetHandler().prepareResultSet("select", resultSet);
+    }
+
+    public void testLazyEvaluation() throws Exception
+    {
+        MockResultSet evaluated = resultSet.evaluate("select", new MockParameterMap(new Object[] {"x"}));
+        assertEquals(0, numberEvaluations.get());
+        assertTrue(evaluated.absolute(3));
+        assertEquals("c", evaluated.getString("static"));
+        assertEquals("dynamic2=x", evaluated.getString("dynamic"));
+        assertEquals("dynamic2=x", evaluated.getString("dynamic"));
+        assertEquals(1, numberEvaluations.get());
+        evaluated.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        evaluated.updateString("dynamic", "y");
+        assertEquals(2, numberEvaluations.get());
+        assertEquals("y", evaluated.getString("dynamic"));
+        assertTrue(evaluated.first());
+        assertEquals("dynamic0=x", evaluated.getString("dynamic"));
+        assertEquals(2, numberEvaluations.get());
+        assertTrue(resultSet.getColumn("dynamic").get(0) instanceof EvaluableResultSet.Evaluable);
+        assertEquals("a", resultSet.getColumn("static").get(0));
+    }
+
+    public void testMemoizeEvaluations() throws Exception
+    {
+        PreparedStatement statement = connection.prepareStatement("select");
+        for(int ii = 0; ii < 3; ii++)
+        {
+            statement.setString(1, "x");
+            ResultSet current = statement.executeQuery();
+            assertTrue(current.next());
+            assertEquals("dynamic0=x", current.getString(2));
+        }
+        assertEquals(3, numberEvaluations.get());
+        resultSet.setMemoizeEvaluations(true);
+        for(int ii = 0; ii < 3; ii++)
+        {
+            statement.setString(1, "x");
+            ResultSet current = statement.executeQuery();
+            assertTrue(current.next());
+            assertEquals("dynamic0=x", current.getString(2));
+        }
+        assertEquals(4, numberEvaluations.get());
+        statement.setString(1, "z");
+        ResultSet current = statement.executeQuery();
+        assertTrue(current.next());
+        assertEquals("dynamic0=z", current.getString(2));
+        assertEquals(5, numberEvaluations.get());
+        resultSet.addRow(new Object[] {"d", "e"});
+        statement.setString(1, "x");
+        current = statement.executeQuery();
+        assertTrue(current.last());
+        assertEquals(4, current.getRow());
+        assertEquals("e", current.getString(2));
+        assertTrue(current.first());
+        assertEquals("dynamic0=x", current.getString(2));
+        assertEquals(6, numberEvaluations.get());
+    }
+
+    public void testMemoizeLeastRecentlyUsed() throws Exception
+    {
+        resultSet.setMemoizeEvaluations(true);
+        MockParameterMap parameters = new MockParameterMap(new Object[] {"x"});
+        MockResultSet evaluated = resultSet.evaluate("select", parameters);
+        assertTrue(evaluated.first());
+        assertEquals("dynamic0=x", evaluated.getString("dynamic"));
+        assertEquals(1, numberEvaluations.get());
+        for(int ii = 0; ii < 1500; ii++)
+        {
+            resultSet.evaluate("select", new MockParameterMap(new Object[] {ii}));
+            if(ii % 100 == 0)
+            {
+                evaluated = resultSet.evaluate("select", parameters);
+                assertTrue(evaluated.first());
+                assertEquals("dynamic0=x", evaluated.getString("dynamic"));
+            }
+        }
+        assertEquals(1, numberEvaluations.get());
+    }
+}
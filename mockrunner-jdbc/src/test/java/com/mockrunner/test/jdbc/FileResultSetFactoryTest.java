@@ -1,17 +1,25 @@
 package com.mockrunner.test.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
 
 import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
 import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.StreamingResultSet;
 
 public class FileResultSetFactoryTest
 {
@@ -158,6 +166,80 @@ public class FileResultSetFactoryTest
         assertEquals("template2", resultSet.getObject("TestColumn3"));
     }
     
+    @Test
+    public void testStreamingCreate() throws Exception
+    {
+        File file = File.createTempFile("streaming", ".txt");
+        file.deleteOnExit();
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        writer.println("id;name");
+        for(int ii = 1; ii <= 1000; ii++)
+        {
+            writer.println(ii + "; $defaultString" + (ii % 2 == 0 ? ";" : ";name" + ii));
+        }
+        writer.println("1001");
+        writer.close();
+        FileResultSetFactory factory = new FileResultSetFactory(file);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setStreaming(true);
+        factory.setUseTemplates(true);
+        MockResultSet resultSet = factory.create("id");
+        assertTrue(resultSet instanceof StreamingResultSet);
+        assertEquals(2, resultSet.getColumnCount());
+        assertEquals(0, resultSet.getRowCount());
+        assertTrue(resultSet.isBeforeFirst());
+        MockConnection connection = new MockConnection();
+        connection.getStatementResultSetHandler().prepareGlobalResultSet(resultSet);
+        resultSet.setFetchSize(10);
+        Statement statement = connection.createStatement();
+        for(int kk = 0; kk < 2; kk++)
+        {
+            ResultSet currentResultSet = statement.executeQuery("select");
+            int count = 0;
+            while(currentResultSet.next())
+            {
+                count++;
+                assertEquals(count, currentResultSet.getRow());
+                assertEquals(count, currentResultSet.getInt("id"));
+                assertTrue(((MockResultSet)currentResultSet).getRowCount() <= 10);
+                if(count <= 1000)
+                {
+                    assertEquals("", currentResultSet.getString(2));
+                }
+            }
+            assertEquals(1001, count);
+            assertTrue(currentResultSet.isAfterLast());
+            assertTrue(((StreamingResultSet)currentResultSet).isExhausted());
+            try
+            {
+                currentResultSet.previous();
+                fail();
+            }
+            catch(SQLException exc)
+            {
+                //should throw exception
+            }
+        }
+        resultSet.setResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE);
+        ResultSet currentResultSet = statement.executeQuery("select");
+        assertTrue(currentResultSet.absolute(5));
+        assertEquals(5, currentResultSet.getInt(1));
+        assertEquals(5, ((MockResultSet)currentResultSet).getRowCount());
+        assertTrue(currentResultSet.previous());
+        assertEquals(4, currentResultSet.getInt(1));
+        assertFalse(currentResultSet.isLast());
+        assertTrue(currentResultSet.last());
+        assertEquals(1001, currentResultSet.getRow());
+        assertTrue(currentResultSet.isLast());
+        assertEquals(null, currentResultSet.getString(2));
+        factory.setFirstLineContainsColumnNames(false);
+        resultSet = factory.create("id");
+        assertEquals("Column1", resultSet.getMetaData().getColumnName(1));
+        assertTrue(resultSet.next());
+        assertEquals("id", resultSet.getString(1));
+        resultSet.close();
+    }
+
 //    @Test
     public void testGetFile()
     {
@@ -0,0 +1,160 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.Journal;
+import com.mockrunner.jdbc.JournalPolicy;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.util.common.FileUtil;
+
+public class JournalTest extends TestCase
+{
+    public void testUnbounded()
+    {
+        Journal<String> journal = new Journal<String>();
+        for(int ii = 0; ii < 100; ii++)
+        {
+            journal.add("" + ii);
+        }
+        assertEquals(100, journal.size());
+        assertEquals(100, journal.getTotalCount());
+        assertEquals("0", journal.get(0));
+        assertEquals("99", journal.get(99));
+        journal.clear();
+        assertTrue(journal.isEmpty());
+        assertEquals(0, journal.getTotalCount());
+    }
+
+    public void testRingBuffer()
+    {
+        Journal<String> journal = new Journal<String>("test", JournalPolicy.ringBuffer(3));
+        journal.add("1");
+        journal.add("2");
+        assertEquals(Arrays.asList("1", "2"), journal);
+        journal.add("3");
+        journal.add("4");
+        journal.add("5");
+        assertEquals(Arrays.asList("3", "4", "5"), journal);
+        assertEquals(5, journal.getTotalCount());
+        journal.setPolicy(JournalPolicy.ringBuffer(2));
+        assertEquals(Arrays.asList("4", "5"), journal);
+        journal.add("6");
+        assertEquals(Arrays.asList("5", "6"), journal);
+        journal.setPolicy(JournalPolicy.unbounded());
+        journal.add("7");
+        assertEquals(Arrays.asList("5", "6", "7"), journal);
+        try
+        {
+            JournalPolicy.ringBuffer(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testCountersOnly()
+    {
+        Journal<String> journal = new Journal<String>("test", JournalPolicy.countersOnly());
+        journal.add("1");
+        journal.add("2");
+        assertTrue(journal.isEmpty());
+        assertEquals(2, journal.getTotalCount());
+    }
+
+    public void testMerge()
+    {
+        Journal<String> journal1 = new Journal<String>("1", JournalPolicy.ringBuffer(2));
+        Journal<String> journal2 = new Journal<String>("2", JournalPolicy.unbounded());
+        journal1.add("a");
+        journal2.add("b");
+        journal1.add("c");
+        journal1.add("d");
+        journal2.add("e");
+        assertEquals(Arrays.asList("b", "c", "d", "e"), Journal.merge(journal1, journal2));
+        assertEquals(Arrays.asList("b", "e"), Journal.<String>merge(journal2));
+        journal1.setPolicy(JournalPolicy.ringBuffer(1));
+        journal2.add("f");
+        assertEquals(Arrays.asList("b", "d", "e", "f"), Journal.merge(journal2, journal1));
+        assertTrue(Journal.merge().isEmpty());
+    }
+
+    public void testSpillToFile() throws Exception
+    {
+        File file = File.createTempFile("journal", ".txt");
+        try
+        {
+            JournalPolicy policy = JournalPolicy.spillToFile(file, 1);
+            Journal<String> journal = new Journal<String>("test", policy);
+            Journal<String> otherJournal = new Journal<String>(null, policy);
+            journal.add("1");
+            journal.add("2\n3");
+            otherJournal.add("4");
+            assertEquals(Arrays.asList("2\n3"), journal);
+            assertEquals(Arrays.asList("4"), otherJournal);
+            policy.close();
+            List<String> lines = FileUtil.getLinesFromFile(file);
+            assertEquals(Arrays.asList("test\t1", "test\t2\\n3"), lines);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testHandlers() throws Exception
+    {
+        File file = File.createTempFile("journal", ".txt");
+        JDBCMockObjectFactory factory = new JDBCMockObjectFactory();
+        try
+        {
+            JournalPolicy policy = JournalPolicy.spillToFile(file, 2);
+            factory.setJournalPolicy(policy);
+            Connection connection = factory.getMockConnection();
+            PreparedStatementResultSetHandler handler = factory.getMockConnection().getPreparedStatementResultSetHandler();
+            handler.prepareGlobalResultSet(handler.createResultSet("id"));
+            for(int ii = 0; ii < 5; ii++)
+            {
+                PreparedStatement statement = connection.prepareStatement("select * from x where y = ?");
+                statement.setInt(1, ii);
+                statement.executeQuery();
+                connection.createStatement().executeUpdate("update x set y = " + ii);
+            }
+            assertEquals(2, handler.getPreparedStatements().size());
+            assertEquals(2, handler.getPreparedStatementMap().get("select * from x where y = ?").size());
+            assertEquals(2, handler.getExecutedStatements().size());
+            assertEquals(5, handler.getNumberExecutedStatements());
+            assertEquals(5, handler.getNumberReturnedResultSets());
+            assertEquals(2, handler.getParametersForExecutedStatement("select * from x where y = ?").getNumberParameterSets());
+            assertEquals(5, handler.getParametersForExecutedStatement("select * from x where y = ?").getTotalNumberParameterSets());
+            JDBCTestModule module = new JDBCTestModule(factory);
+            module.verifySQLStatementExecuted("update x set y = 4");
+            module.verifySQLStatementNotExecuted("update x set y = 2");
+            module.verifySQLStatementParameter("select * from x where y = ?", 1, 1, 4);
+            module.verifyNumberStatements(2);
+            policy.close();
+            List<String> lines = FileUtil.getLinesFromFile(file);
+            assertEquals(20, lines.size());
+            assertTrue(lines.contains("resultset\tid"));
+            assertTrue(lines.contains("statement\tupdate x set y = 0"));
+            assertTrue(lines.contains("parameters\tselect * from x where y = ?\t{ParameterIndex{index=1}=0}"));
+            factory.setJournalPolicy(JournalPolicy.countersOnly());
+            module.verifySQLStatementNotExecuted("update x set y = 4");
+            assertEquals(5, handler.getNumberExecutedStatements());
+        }
+        finally
+        {
+            factory.restoreDrivers();
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class LatencyTest extends TestCase
+{
+    private MockConnection connection;
+    private StatementResultSetHandler statementHandler;
+    private PreparedStatementResultSetHandler preparedHandler;
+    private LatencyClock clock;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        connection = new MockConnection();
+        statementHandler = connection.getStatementResultSetHandler();
+        preparedHandler = connection.getPreparedStatementResultSetHandler();
+        clock = LatencyClock.virtual(0);
+        statementHandler.setLatencyClock(clock);
+        preparedHandler.setLatencyClock(clock);
+    }
+
+    private static long millis(long millis)
+    {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public void testModels()
+    {
+        Random random = new Random(0);
+        assertEquals(millis(5), LatencyModel.fixed(5).nextDelay(random));
+        LatencyModel uniform = LatencyModel.uniform(10, 20);
+        LatencyModel normal = LatencyModel.normal(1, 5);
+        LatencyModel histogram = LatencyModel.histogram(new long[] {1, 2, 3}, new long[] {1, 0, 3});
+        int numberThree = 0;
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            long delay = uniform.nextDelay(random);
+            assertTrue(delay >= millis(10) && delay <= millis(20));
+            assertTrue(normal.nextDelay(random) >= 0);
+            delay = histogram.nextDelay(random);
+            assertTrue(delay == millis(1) || delay == millis(3));
+            if(delay == millis(3)) numberThree++;
+        }
+        assertTrue(numberThree > 650 && numberThree < 850);
+        assertEquals(millis(7), LatencyModel.histogram(new long[] {7}).nextDelay(random));
+        try
+        {
+            LatencyModel.uniform(2, 1);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            LatencyModel.histogram(new long[] {1}, new long[] {0});
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testStatementLatency() throws Exception
+    {
+        statementHandler.prepareLatency("select", LatencyModel.fixed(100));
+        statementHandler.prepareGlobalLatency(LatencyModel.fixed(10));
+        assertEquals(millis(100), statementHandler.getLatency("select * from x").nextDelay(null));
+        long start = System.currentTimeMillis();
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 10; ii++)
+        {
+            statement.executeQuery("select * from x");
+        }
+        statement.executeUpdate("update x");
+        statement.addBatch("update x");
+        statement.addBatch("delete from x");
+        statement.executeBatch();
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(millis(1030), clock.getTotalDelay());
+        assertEquals(13, clock.getNumberDelays());
+        statementHandler.removeLatency("select");
+        statement.executeQuery("select * from x");
+        assertEquals(millis(1040), clock.getTotalDelay());
+        statementHandler.clearLatencies();
+        statement.executeQuery("select * from x");
+        assertEquals(millis(1040), clock.getTotalDelay());
+        clock.reset();
+        assertEquals(0, clock.getTotalDelay());
+    }
+
+    public void testPreparedStatementLatency() throws Exception
+    {
+        MockResultSet resultSet = preparedHandler.createResultSet();
+        resultSet.addColumn("column", new Object[] {"1"});
+        preparedHandler.prepareResultSet("select", resultSet);
+        preparedHandler.prepareLatency("select", LatencyModel.fixed(50));
+        preparedHandler.prepareLatency("update", LatencyModel.fixed(20));
+        PreparedStatement statement = connection.prepareStatement("select * from x where y = ?");
+        statement.setInt(1, 1);
+        statement.executeQuery();
+        assertEquals(millis(50), clock.getTotalDelay());
+        statement = connection.prepareStatement("update x set y = ?");
+        statement.setInt(1, 1);
+        statement.addBatch();
+        statement.addBatch();
+        statement.executeBatch();
+        assertEquals(millis(90), clock.getTotalDelay());
+    }
+
+    public void testBatchLatency() throws Exception
+    {
+        statementHandler.prepareGlobalLatency(LatencyModel.fixed(10));
+        statementHandler.prepareBatchLatency(LatencyModel.fixed(30));
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            statement.addBatch("update x");
+        }
+        statement.executeBatch();
+        assertEquals(millis(30), clock.getTotalDelay());
+        assertEquals(1, clock.getNumberDelays());
+        preparedHandler.prepareBatchLatency(LatencyModel.fixed(40));
+        PreparedStatement preparedStatement = connection.prepareStatement("update x set y = ?");
+        preparedStatement.setInt(1, 1);
+        preparedStatement.addBatch();
+        preparedStatement.addBatch();
+        preparedStatement.executeBatch();
+        assertEquals(millis(70), clock.getTotalDelay());
+        statementHandler.clearLatencies();
+        assertNull(statementHandler.getBatchLatency());
+        statement.setQueryTimeout(1);
+        statementHandler.prepareBatchLatency(LatencyModel.fixed(5000));
+        statement.addBatch("update x");
+        try
+        {
+            statement.executeBatch();
+            fail();
+        }
+        catch(SQLTimeoutException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testQueryTimeout() throws Exception
+    {
+        statementHandler.prepareLatency("select", LatencyModel.fixed(5000));
+        Statement statement = connection.createStatement();
+        statement.setQueryTimeout(1);
+        try
+        {
+            statement.executeQuery("select * from x");
+            fail();
+        }
+        catch(SQLTimeoutException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(millis(1000), clock.getTotalDelay());
+        assertTrue(statementHandler.getExecutedStatements().isEmpty());
+        statement.setQueryTimeout(0);
+        statement.executeQuery("select * from x");
+        assertEquals(millis(6000), clock.getTotalDelay());
+    }
+
+    public void testFetchLatency() throws Exception
+    {
+        MockResultSet resultSet = statementHandler.createResultSet();
+        resultSet.addColumn("column", new Object[] {"1", "2", "3"});
+        statementHandler.prepareGlobalResultSet(resultSet);
+        statementHandler.prepareFetchLatency(LatencyModel.fixed(5));
+        ResultSet currentResultSet = connection.createStatement().executeQuery("select * from x");
+        while(currentResultSet.next());
+        assertEquals(millis(15), clock.getTotalDelay());
+        assertEquals(3, clock.getNumberDelays());
+        currentResultSet = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE).executeQuery("select * from x");
+        currentResultSet.next();
+        assertEquals(millis(20), clock.getTotalDelay());
+        resultSet.next();
+        assertEquals(millis(20), clock.getTotalDelay());
+        statementHandler.prepareFetchLatency(null);
+        currentResultSet = connection.createStatement().executeQuery("select * from x");
+        currentResultSet.next();
+        assertEquals(millis(20), clock.getTotalDelay());
+    }
+
+    public void testWallClock() throws Exception
+    {
+        LatencyClock wallClock = LatencyClock.wallClock();
+        statementHandler.setLatencyClock(wallClock);
+        statementHandler.prepareGlobalLatency(LatencyModel.fixed(20));
+        long start = System.nanoTime();
+        connection.createStatement().executeUpdate("update x");
+        assertTrue(System.nanoTime() - start >= millis(20));
+        assertEquals(millis(20), wallClock.getTotalDelay());
+        assertEquals(LatencyClock.WALL_CLOCK, wallClock.getMode());
+        assertEquals(LatencyClock.VIRTUAL, clock.getMode());
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Arrays;
 
 import junit.framework.TestCase;
 
+import com.mockrunner.mock.jdbc.LobStorage;
 import com.mockrunner.mock.jdbc.MockBlob;
 import com.mockrunner.util.common.StreamUtil;
 
@@ -180,4 +181,68 @@ public class MockBlobTest extends TestCase
         blob = new MockBlob(new byte[] {1, 2, 3});
         assertEquals("Blob data: [1, 2, 3]", blob.toString());
     }
+    
+    private byte[] createData(int length)
+    {
+        byte[] data = new byte[length];
+        for(int ii = 0; ii < length; ii++)
+        {
+            data[ii] = (byte)(ii % 251);
+        }
+        return data;
+    }
+    
+    public void testLargeBlob() throws Exception
+    {
+        doTestLargeBlob(LobStorage.heap());
+        doTestLargeBlob(LobStorage.direct());
+        doTestLargeBlob(LobStorage.spillToFile(100000));
+        doTestLargeBlob(LobStorage.spillToFile(0));
+    }
+    
+    private void doTestLargeBlob(LobStorage storage) throws Exception
+    {
+        byte[] data = createData(300000);
+        MockBlob largeBlob = new MockBlob(new ByteArrayInputStream(data), -1, storage);
+        assertEquals(300000, largeBlob.length());
+        assertTrue(Arrays.equals(data, largeBlob.getBytes(1, 300000)));
+        assertTrue(StreamUtil.compareStreams(largeBlob.getBinaryStream(65000, 1000), new ByteArrayInputStream(data, 64999, 1000)));
+        byte[] pattern = new byte[] {(byte)(65535 % 251), (byte)(65536 % 251), (byte)(65537 % 251)};
+        assertEquals(65536 - 251 * 261, largeBlob.position(pattern, 1));
+        assertEquals(65536 + 251, largeBlob.position(pattern, 65537));
+        largeBlob.setBytes(65535, new byte[] {-1, -2, -3});
+        assertEquals(65535, largeBlob.position(new byte[] {-1, -2, -3}, 1));
+        assertEquals(-1, largeBlob.position(new byte[] {-1, -2, -3}, 65536));
+        data[65534] = -1;
+        data[65535] = -2;
+        data[65536] = -3;
+        MockBlob copy = (MockBlob)largeBlob.clone();
+        largeBlob.setBytes(65536, new byte[] {-1, -1});
+        assertEquals(-1, largeBlob.getBytes(65537, 1)[0]);
+        assertTrue(Arrays.equals(data, copy.getBytes(1, 300000)));
+        assertFalse(largeBlob.equals(copy));
+        copy.setBytes(65536, new byte[] {-1, -1});
+        assertTrue(largeBlob.equals(copy));
+        assertEquals(largeBlob.hashCode(), copy.hashCode());
+        largeBlob.truncate(70000);
+        largeBlob.setBytes(70003, new byte[] {1});
+        assertTrue(Arrays.equals(new byte[] {0, 0, 1}, largeBlob.getBytes(70001, 3)));
+        assertEquals(300000, copy.length());
+        largeBlob.free();
+        copy.free();
+    }
+    
+    public void testStreamLength() throws Exception
+    {
+        MockBlob streamBlob = new MockBlob(new ByteArrayInputStream(createData(100)), 10, LobStorage.heap());
+        assertEquals(10, streamBlob.length());
+        assertTrue(Arrays.equals(createData(10), streamBlob.getBytes(1, 10)));
+        InputStream stream = streamBlob.getBinaryStream(3, 5);
+        assertEquals(5, stream.available());
+        assertEquals(2, stream.read());
+        assertEquals(2, stream.skip(2));
+        assertEquals(5, stream.read());
+        assertEquals(6, stream.read());
+        assertEquals(-1, stream.read());
+    }
 }
@@ -1,6 +1,7 @@
 package com.mockrunner.test.jdbc;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.Writer;
@@ -8,6 +9,7 @@ import java.sql.SQLException;
 
 import junit.framework.TestCase;
 
+import com.mockrunner.mock.jdbc.LobStorage;
 import com.mockrunner.mock.jdbc.MockClob;
 import com.mockrunner.util.common.StreamUtil;
 
@@ -157,4 +159,31 @@ public class MockClobTest extends TestCase
         clob = new MockClob("test");
         assertEquals("Clob data: test", clob.toString());
     }
+    
+    public void testLargeClob() throws Exception
+    {
+        StringBuilder builder = new StringBuilder();
+        for(int ii = 0; ii < 10000; ii++)
+        {
+            builder.append("Line ").append(ii).append('\n');
+        }
+        String data = builder.toString();
+        MockClob largeClob = new MockClob(new StringReader(data), -1, LobStorage.spillToFile(50000));
+        assertEquals(data.length(), largeClob.length());
+        assertEquals(data, largeClob.getSubString(1, data.length()));
+        assertEquals(data.indexOf("Line 9999") + 1, largeClob.position("Line 9999", 1));
+        assertEquals(data.indexOf("Line 5000") + 1, largeClob.position(new MockClob("Line 5000"), 100));
+        assertTrue(StreamUtil.compareReaders(largeClob.getCharacterStream(40001, 100), new StringReader(data.substring(40000, 40100))));
+        MockClob copy = (MockClob)largeClob.clone();
+        largeClob.setString(40001, "\u20AC");
+        assertEquals("\u20AC", largeClob.getSubString(40001, 1));
+        assertEquals(data, copy.getSubString(1, data.length()));
+        assertEquals(31 * data.hashCode() + 62, copy.hashCode());
+        InputStream asciiStream = largeClob.getAsciiStream();
+        assertEquals(40000, asciiStream.skip(40000));
+        assertEquals('?', asciiStream.read());
+        largeClob.truncate(10);
+        assertEquals("Line 0\nLin", largeClob.getSubString(1, 20));
+        largeClob.free();
+    }
 }
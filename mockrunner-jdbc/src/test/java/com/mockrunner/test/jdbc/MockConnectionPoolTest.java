@@ -0,0 +1,233 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockConnectionPool;
+import com.mockrunner.mock.jdbc.MockDataSource;
+import com.mockrunner.mock.jdbc.MockPooledConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class MockConnectionPoolTest extends TestCase
+{
+    private JDBCMockObjectFactory factory;
+    private MockDataSource dataSource;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        factory = new JDBCMockObjectFactory();
+        dataSource = factory.getMockDataSource();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        factory.restoreDrivers();
+    }
+
+    public void testBorrowAndReturn() throws Exception
+    {
+        MockConnectionPool pool = factory.enableConnectionPool(2);
+        assertSame(pool, dataSource.getConnectionPool());
+        StatementResultSetHandler handler = factory.getMockConnection().getStatementResultSetHandler();
+        MockResultSet resultSet = handler.createResultSet("id");
+        resultSet.addColumn("column", new Object[] {"1"});
+        handler.prepareGlobalResultSet(resultSet);
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        assertNotSame(connection1, connection2);
+        assertNotSame(factory.getMockConnection(), connection1);
+        assertFalse(connection1.isClosed());
+        ResultSet currentResultSet = connection1.createStatement().executeQuery("select 1");
+        assertTrue(currentResultSet.next());
+        assertEquals("1", currentResultSet.getString(1));
+        connection2.createStatement().executeUpdate("update 2");
+        connection2.createStatement().executeUpdate("update 3");
+        assertEquals(Arrays.asList("select 1"), ((MockPooledConnection)connection1).getExecutedStatements());
+        assertEquals(Arrays.asList("update 2", "update 3"), ((MockPooledConnection)connection2).getExecutedStatements());
+        assertEquals(2, ((MockPooledConnection)connection2).getNumberExecutedStatements());
+        JDBCTestModule module = new JDBCTestModule(factory);
+        module.verifySQLStatementExecuted("select 1");
+        module.verifySQLStatementExecuted("update 3");
+        assertEquals(2, pool.getNumberActiveConnections());
+        assertEquals(0, pool.getNumberIdleConnections());
+        connection1.close();
+        assertTrue(connection1.isClosed());
+        connection1.close();
+        assertEquals(1, pool.getNumberActiveConnections());
+        assertEquals(1, pool.getNumberIdleConnections());
+        Connection connection3 = dataSource.getConnection();
+        assertSame(connection1, connection3);
+        assertFalse(connection3.isClosed());
+        assertEquals(2, ((MockPooledConnection)connection3).getNumberBorrows());
+        assertEquals(3, pool.getNumberBorrows());
+        assertEquals(2, pool.getConnections().size());
+        assertEquals(2, pool.getPeakActiveConnections());
+        factory.disableConnectionPool();
+        assertSame(factory.getMockConnection(), dataSource.getConnection());
+    }
+
+    public void testTimeout() throws Exception
+    {
+        MockConnectionPool pool = factory.enableConnectionPool(1);
+        pool.setBorrowTimeout(50);
+        Connection connection = dataSource.getConnection();
+        long start = System.currentTimeMillis();
+        try
+        {
+            dataSource.getConnection();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertEquals(1, pool.getNumberTimeouts());
+        assertEquals(1, pool.getNumberBorrows());
+        assertTrue(pool.getMaxWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(40));
+        connection.close();
+        assertNotNull(dataSource.getConnection());
+        pool.resetStatistics();
+        assertEquals(0, pool.getNumberTimeouts());
+        assertEquals(0, pool.getNumberBorrows());
+        assertEquals(0, pool.getTotalWaitTimeNanos());
+        assertEquals(1, pool.getPeakActiveConnections());
+    }
+
+    public void testAcquireLatency() throws Exception
+    {
+        MockConnectionPool pool = factory.enableConnectionPool(1);
+        pool.setAcquireLatency(20);
+        dataSource.getConnection().close();
+        dataSource.getConnection().close();
+        assertEquals(2, pool.getNumberBorrows());
+        assertTrue(pool.getTotalWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertTrue(pool.getAverageWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        LatencyClock clock = LatencyClock.virtual(0);
+        factory.getMockConnection().getStatementResultSetHandler().setLatencyClock(clock);
+        pool.resetStatistics();
+        pool.setAcquireLatency(LatencyModel.fixed(5000));
+        long start = System.currentTimeMillis();
+        dataSource.getConnection().close();
+        assertTrue(System.currentTimeMillis() - start < 2500);
+        assertSame(clock, pool.getLatencyClock());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5000), clock.getTotalDelay());
+        assertTrue(pool.getTotalWaitTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(5000));
+        pool.setAcquireLatency(0);
+        assertNull(pool.getAcquireLatency());
+    }
+
+    public void testCloseResetsConnection() throws Exception
+    {
+        MockConnection template = factory.getMockConnection();
+        template.setAutoCommit(true);
+        MockConnectionPool pool = factory.enableConnectionPool(1);
+        MockPooledConnection connection = (MockPooledConnection)dataSource.getConnection();
+        assertTrue(connection.getAutoCommit());
+        int isolation = connection.getTransactionIsolation();
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        connection.setCatalog("catalog");
+        connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        Statement statement1 = connection.createStatement();
+        Statement statement2 = connection.prepareStatement("select");
+        statement2.close();
+        assertEquals(Arrays.asList(statement1), connection.getOpenStatements());
+        connection.close();
+        assertTrue(statement1.isClosed());
+        assertTrue(connection.getOpenStatements().isEmpty());
+        assertSame(connection, pool.borrowConnection());
+        assertTrue(connection.getAutoCommit());
+        assertFalse(connection.isReadOnly());
+        assertNull(connection.getCatalog());
+        assertEquals(isolation, connection.getTransactionIsolation());
+    }
+
+    public void testLeaks() throws Exception
+    {
+        MockConnectionPool pool = factory.enableConnectionPool(3);
+        Connection connection1 = dataSource.getConnection();
+        Connection connection2 = dataSource.getConnection();
+        connection1.close();
+        assertEquals(Arrays.asList(connection2), pool.getLeakedConnections());
+        assertSame(Thread.currentThread(), ((MockPooledConnection)connection2).getBorrowingThread());
+        pool.setLeakDetectionThreshold(60000);
+        assertTrue(pool.getLeakedConnections().isEmpty());
+        connection2.close();
+        pool.setLeakDetectionThreshold(0);
+        assertTrue(pool.getLeakedConnections().isEmpty());
+    }
+
+    public void testContention() throws Exception
+    {
+        final int numberThreads = 16;
+        final int numberIterations = 50;
+        final MockConnectionPool pool = factory.enableConnectionPool(4);
+        ExecutorService executor = Executors.newFixedThreadPool(numberThreads);
+        try
+        {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for(int ii = 0; ii < numberThreads; ii++)
+            {
+                futures.add(executor.submit(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        for(int kk = 0; kk < numberIterations; kk++)
+                        {
+                            Connection connection = dataSource.getConnection();
+                            assertTrue(pool.getNumberActiveConnections() <= 4);
+                            connection.createStatement().executeUpdate("update table");
+                            connection.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Object> future : futures)
+            {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals(numberThreads * numberIterations, pool.getNumberBorrows());
+        assertEquals(0, pool.getNumberTimeouts());
+        assertEquals(0, pool.getNumberActiveConnections());
+        assertTrue(pool.getPeakActiveConnections() <= 4);
+        assertTrue(pool.getConnections().size() <= 4);
+        assertEquals(pool.getConnections().size(), pool.getNumberIdleConnections());
+        long numberExecutedStatements = 0;
+        for(MockPooledConnection connection : pool.getConnections())
+        {
+            numberExecutedStatements += connection.getNumberExecutedStatements();
+        }
+        assertEquals(numberThreads * numberIterations, numberExecutedStatements);
+        assertEquals(numberThreads * numberIterations, factory.getMockConnection().getStatementResultSetHandler().getNumberExecutedStatements());
+        assertTrue(pool.getLeakedConnections().isEmpty());
+    }
+}
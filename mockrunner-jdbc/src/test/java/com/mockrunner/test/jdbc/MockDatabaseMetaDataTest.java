@@ -306,6 +306,35 @@ public class MockDatabaseMetaDataTest extends TestCase
         assertEquals(2, resultSets.size());
     }
     
+    public void testPrimaryKeysManyTables() throws SQLException
+    {
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            metaData.setPrimaryKeys(null, "test", "table" + ii, new MockResultSet("id" + ii));
+        }
+        ResultSet testResult = new MockResultSet("id");
+        metaData.setPrimaryKeys(null, "test", "TABLE500", testResult);
+        PolyResultSet polyResult = (PolyResultSet)metaData.getPrimaryKeys(null, "test", "Table500");
+        List<ResultSet> resultSets = polyResult.getUnderlyingResultSetList();
+        assertEquals(2, resultSets.size());
+        assertTrue(resultSets.contains(testResult));
+        assertEquals("id499", ((MockResultSet)metaData.getPrimaryKeys("", "test", "table499")).getId());
+        metaData.setCaseSensitive(true);
+        assertSame(testResult, metaData.getPrimaryKeys(null, "test", "TABLE500"));
+        assertNull(metaData.getPrimaryKeys(null, "test", "Table500"));
+        metaData.setCaseSensitive(false);
+        assertNull(metaData.getPrimaryKeys(null, "test", "table1000"));
+        ResultSet globalResult = new MockResultSet("global");
+        metaData.setPrimaryKeys(globalResult);
+        assertSame(globalResult, metaData.getPrimaryKeys(null, "test", "table1000"));
+        polyResult = (PolyResultSet)metaData.getPrimaryKeys(null, "test", "table1");
+        resultSets = polyResult.getUnderlyingResultSetList();
+        assertEquals(2, resultSets.size());
+        assertTrue(resultSets.contains(globalResult));
+        metaData.clearPrimaryKeys();
+        assertNull(metaData.getPrimaryKeys(null, "test", "table1"));
+    }
+    
     public void testProcedures() throws SQLException
     {
         assertNull(metaData.getProcedures(null, null, null));
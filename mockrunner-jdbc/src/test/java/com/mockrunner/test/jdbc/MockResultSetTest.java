@@ -10,11 +10,14 @@ import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Ref;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 
 import com.mockrunner.mock.jdbc.MockBlob;
 import com.mockrunner.mock.jdbc.MockClob;
@@ -1107,6 +1110,46 @@ public class MockResultSetTest extends TestCase
         assertTrue(cloneResult.isRowEqual(3, list));
     }
     
+    public void testCloneCopyOnWrite() throws Exception
+    {
+        resultSet.setCopyOnWrite(true);
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.addRow(new String[] {"test1", "test2"});
+        resultSet.addRow(new String[] {"test3", "test4"});
+        MockResultSet cloneResult1 = (MockResultSet)resultSet.clone();
+        MockResultSet cloneResult2 = (MockResultSet)resultSet.clone();
+        assertTrue(cloneResult1.isCopyOnWrite());
+        assertTrue(resultSet.isEqual(cloneResult1));
+        cloneResult1.next();
+        cloneResult1.updateString(1, "test");
+        cloneResult1.updateRow();
+        assertEquals("test", cloneResult1.getString(1));
+        cloneResult1.setDatabaseView(true);
+        assertEquals("test", cloneResult1.getString(1));
+        assertTrue(resultSet.isEqual(cloneResult2));
+        resultSet.setDatabaseView(true);
+        assertTrue(resultSet.isEqual(cloneResult2));
+        cloneResult2.next();
+        cloneResult2.deleteRow();
+        cloneResult2.moveToInsertRow();
+        cloneResult2.updateString(1, "test5");
+        cloneResult2.insertRow();
+        assertEquals(3, cloneResult2.getRowCount());
+        assertEquals(2, resultSet.getRowCount());
+        resultSet.next();
+        assertEquals("test1", resultSet.getString(1));
+        resultSet.addRow(new String[] {"test6", "test7"});
+        assertEquals(3, resultSet.getRowCount());
+        assertEquals(2, cloneResult1.getRowCount());
+        assertEquals(Arrays.asList(new Object[] {"test", "test3"}), cloneResult1.getColumn(1));
+        assertEquals(Arrays.asList(new Object[] {"test5", null, "test3"}), cloneResult2.getColumn(1));
+        assertEquals(Arrays.asList(new Object[] {"test1", "test3", "test6"}), resultSet.getColumn(1));
+        cloneResult1.setDatabaseView(false);
+        cloneResult1.setFetchDirection(ResultSet.FETCH_REVERSE);
+        assertEquals(Arrays.asList(new Object[] {"test4", "test2"}), cloneResult1.getColumn(2));
+        assertEquals(Arrays.asList(new Object[] {"test2", "test4", "test7"}), resultSet.getColumn(2));
+    }
+
     public void testCloneDeepCopyMetaData() throws Exception
     {
         MockResultSetMetaData metaData1 = new MockResultSetMetaData();
@@ -1115,7 +1158,67 @@ public class MockResultSetTest extends TestCase
         assertTrue(resultSet.isEqual(cloneResult));
         assertNotSame(metaData1, cloneResult.getMetaData());
     }
-    
+
+    public void testDerivedMetaData() throws Exception
+    {
+        resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
+        resultSet.addColumn("id", new Object[] {1, 2, null});
+        resultSet.addColumn("name", new Object[] {"a", "abcd", "ab"});
+        resultSet.addColumn("amount", new Object[] {new BigDecimal("123.45"), new BigDecimal("1.5"), null});
+        resultSet.addColumn("mixed", new Object[] {1, "a", null});
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        assertSame(metaData, resultSet.getMetaData());
+        assertEquals(4, metaData.getColumnCount());
+        assertEquals(Types.INTEGER, metaData.getColumnType(1));
+        assertEquals("INTEGER", metaData.getColumnTypeName(1));
+        assertEquals(Integer.class.getName(), metaData.getColumnClassName(1));
+        assertTrue(metaData.isSigned(1));
+        assertEquals(Types.VARCHAR, metaData.getColumnType(2));
+        assertEquals(4, metaData.getPrecision(2));
+        assertEquals(4, metaData.getColumnDisplaySize(2));
+        assertFalse(metaData.isSigned(2));
+        assertEquals(Types.DECIMAL, metaData.getColumnType(3));
+        assertEquals(5, metaData.getPrecision(3));
+        assertEquals(2, metaData.getScale(3));
+        assertEquals(Types.OTHER, metaData.getColumnType(4));
+        assertEquals(Object.class.getName(), metaData.getColumnClassName(4));
+        MockResultSet copy = resultSet.shallowCopy();
+        MockResultSet clone = (MockResultSet)resultSet.clone();
+        assertSame(metaData, copy.getMetaData());
+        assertSame(metaData, clone.getMetaData());
+        copy.absolute(2);
+        copy.updateObject("mixed", 2);
+        ResultSetMetaData copyMetaData = copy.getMetaData();
+        assertNotSame(metaData, copyMetaData);
+        assertEquals(Types.INTEGER, copyMetaData.getColumnType(4));
+        assertSame(copyMetaData, copy.getMetaData());
+        assertSame(metaData, resultSet.getMetaData());
+        assertSame(metaData, clone.getMetaData());
+        MockResultSetMetaData clonedMetaData = (MockResultSetMetaData)((MockResultSetMetaData)metaData).clone();
+        clonedMetaData.setColumnType(1, Types.VARCHAR);
+        assertEquals(Types.INTEGER, metaData.getColumnType(1));
+        assertSame(metaData, resultSet.getMetaData());
+        ((MockResultSetMetaData)metaData).setColumnType(1, Types.VARCHAR);
+        assertEquals(Types.VARCHAR, metaData.getColumnType(1));
+        ResultSetMetaData newMetaData = resultSet.getMetaData();
+        assertNotSame(metaData, newMetaData);
+        assertEquals(Types.INTEGER, newMetaData.getColumnType(1));
+        assertEquals(Types.INTEGER, clone.getMetaData().getColumnType(1));
+        assertSame(newMetaData, resultSet.getMetaData());
+        metaData = newMetaData;
+        resultSet.addRow(new Object[] {3, "abcdef", null, null});
+        assertNotSame(metaData, resultSet.getMetaData());
+        assertEquals(6, resultSet.getMetaData().getPrecision(2));
+        assertEquals(4, metaData.getPrecision(2));
+        metaData = resultSet.getMetaData();
+        resultSet.addColumn("date");
+        assertEquals(5, resultSet.getMetaData().getColumnCount());
+        assertEquals(4, metaData.getColumnCount());
+        MockResultSetMetaData customMetaData = new MockResultSetMetaData();
+        resultSet.setResultSetMetaData(customMetaData);
+        assertSame(customMetaData, resultSet.getMetaData());
+    }
+
     public void testCaseInsensitiveColumns() throws Exception
     {
         resultSet.setResultSetConcurrency(ResultSet.CONCUR_UPDATABLE);
@@ -1140,6 +1243,19 @@ public class MockResultSetTest extends TestCase
         resultSet.insertRow();
         resultSet.moveToCurrentRow();
         assertEquals("x", resultSet.getString("first"));
+        Locale defaultLocale = Locale.getDefault();
+        try
+        {
+            Locale.setDefault(new Locale("tr", "TR"));
+            MockResultSet localeResultSet = new MockResultSet("");
+            localeResultSet.addColumn("title", new String[] {"a"});
+            localeResultSet.next();
+            assertEquals("a", localeResultSet.getString("TITLE"));
+        }
+        finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
     }
     
     public void testCaseSensitiveColumns() throws Exception
@@ -1158,4 +1274,42 @@ public class MockResultSetTest extends TestCase
             //expected exception
         }
     }
+    
+    public void testGetValuesByLabel() throws Exception
+    {
+        resultSet.addColumn("name", new Object[] {"a", "b"});
+        resultSet.next();
+        assertEquals("a", resultSet.getString("NAME"));
+        assertEquals("a", resultSet.getString("Name"));
+        resultSet.addColumn("value", new Object[] {"1", "2"});
+        resultSet.addColumn("NAME2", new Object[] {"x", "y"});
+        assertEquals("1", resultSet.getString("VALUE"));
+        assertEquals("x", resultSet.getString("name2"));
+        MockResultSet copy = resultSet.shallowCopy();
+        copy.next();
+        assertEquals("b", copy.getString("NAME"));
+        assertEquals("a", resultSet.getString("NAME"));
+        try
+        {
+            resultSet.getString("unknown");
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+        resultSet.setColumnsCaseSensitive(true);
+        resultSet.addColumn("name", new Object[] {"c"});
+        resultSet.next();
+        assertEquals("c", resultSet.getString("name"));
+        try
+        {
+            resultSet.getString("NAME");
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //expected exception
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class ParameterMatchingTest extends TestCase
+{
+    private PreparedStatementResultSetHandler handler;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        handler = new PreparedStatementResultSetHandler();
+    }
+
+    public void testManyVariants()
+    {
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            handler.prepareResultSet("select", new MockResultSet("" + ii), new Object[] {ii, "name" + ii});
+        }
+        assertEquals("0", handler.getResultSet("select", new MockParameterMap(new Object[] {0, "name0"})).getId());
+        assertEquals("999", handler.getResultSet("select", new MockParameterMap(new Object[] {999, "name999"})).getId());
+        assertEquals("500", handler.getResultSet("select", new MockParameterMap(new Object[] {500, "name500", "x"})).getId());
+        assertNull(handler.getResultSet("select", new MockParameterMap(new Object[] {500, "name501"})));
+        assertNull(handler.getResultSet("select", new MockParameterMap(new Object[] {500L, "name500"})));
+        assertNull(handler.getResultSet("select", new MockParameterMap(new Object[] {500})));
+        handler.setExactMatchParameter(true);
+        assertEquals("500", handler.getResultSet("select", new MockParameterMap(new Object[] {500, "name500"})).getId());
+        assertNull(handler.getResultSet("select", new MockParameterMap(new Object[] {500, "name500", "x"})));
+    }
+
+    public void testFirstMatch()
+    {
+        handler.prepareResultSet("select", new MockResultSet("1"), new Object[] {1, "a", "b"});
+        handler.prepareResultSet("select", new MockResultSet("2"), new Object[] {1, "a"});
+        handler.prepareResultSet("select", new MockResultSet("3"), new Object[] {1});
+        handler.prepareResultSet("select", new MockResultSet("4"), new Object[] {1, "a"});
+        assertEquals("2", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "a", "c"})).getId());
+        assertEquals("1", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "a", "b"})).getId());
+        assertEquals("3", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "b"})).getId());
+        handler.setExactMatchParameter(true);
+        assertEquals("2", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "a"})).getId());
+        assertEquals("3", handler.getResultSet("select", new MockParameterMap(new Object[] {1})).getId());
+        handler.removeResultSet("select", new MockParameterMap(new Object[] {1, "a"}));
+        assertEquals("3", handler.getResultSet("select", new MockParameterMap(new Object[] {1})).getId());
+        MockResultSet resultSet = handler.getResultSet("select", new MockParameterMap(new Object[] {1, "a"}));
+        assertTrue(null == resultSet || "4".equals(resultSet.getId()));
+    }
+
+    public void testUnhashableValues()
+    {
+        handler.prepareResultSet("select", new MockResultSet("1"), new Object[] {2, "a"});
+        handler.prepareResultSet("select", new MockResultSet("2"), new Object[] {1, new byte[] {1, 2}});
+        handler.prepareResultSet("select", new MockResultSet("3"), new Object[] {1, null});
+        handler.prepareResultSet("select", new MockResultSet("6"), new Object[] {1, new ByteArrayInputStream(new byte[] {3})});
+        handler.prepareResultSet("select", new MockResultSet("4"), new Object[] {1, "a"});
+        handler.prepareResultSet("select", new MockResultSet("5"), new Object[] {1});
+        assertEquals("2", handler.getResultSet("select", new MockParameterMap(new Object[] {1, new byte[] {1, 2}})).getId());
+        assertEquals("6", handler.getResultSet("select", new MockParameterMap(new Object[] {1, new ByteArrayInputStream(new byte[] {3})})).getId());
+        assertEquals("3", handler.getResultSet("select", new MockParameterMap(new Object[] {1, null})).getId());
+        assertEquals("4", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "a"})).getId());
+        assertEquals("5", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "b"})).getId());
+        handler.setExactMatchParameter(true);
+        assertEquals("4", handler.getResultSet("select", new MockParameterMap(new Object[] {1, "a"})).getId());
+        assertEquals("5", handler.getResultSet("select", new MockParameterMap(new Object[] {1})).getId());
+        assertNull(handler.getResultSet("select", new MockParameterMap(new Object[] {1, "b"})));
+    }
+}
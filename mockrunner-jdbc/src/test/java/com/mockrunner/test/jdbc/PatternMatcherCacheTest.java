@@ -0,0 +1,143 @@
+package com.mockrunner.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.PatternMatcherCache;
+import com.mockrunner.jdbc.SQLStatementMatcher;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.util.regexp.PatternMatcher;
+
+public class PatternMatcherCacheTest extends TestCase
+{
+    public void testHitsAndMisses()
+    {
+        PatternMatcherCache cache = new PatternMatcherCache();
+        PatternMatcher matcher1 = cache.getPatternMatcher(PatternMatcher.Factories.from(false, false, true), "select.*");
+        PatternMatcher matcher2 = cache.getPatternMatcher(PatternMatcher.Factories.from(false, false, true), "select.*");
+        assertSame(matcher1, matcher2);
+        PatternMatcher matcher3 = cache.getPatternMatcher(PatternMatcher.Factories.from(true, false, true), "select.*");
+        assertNotSame(matcher1, matcher3);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getSize());
+        assertEquals(1.0 / 3, cache.getHitRatio(), 0.0001);
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        assertEquals(0.0, cache.getHitRatio(), 0.0);
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testEviction()
+    {
+        PatternMatcherCache cache = new PatternMatcherCache(2);
+        PatternMatcher.Factory factory = PatternMatcher.Factories.from(false, false, true);
+        PatternMatcher matcher1 = cache.getPatternMatcher(factory, "1");
+        cache.getPatternMatcher(factory, "2");
+        assertSame(matcher1, cache.getPatternMatcher(factory, "1"));
+        cache.getPatternMatcher(factory, "3");
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertSame(matcher1, cache.getPatternMatcher(factory, "1"));
+        cache.getPatternMatcher(factory, "2");
+        assertEquals(2, cache.getEvictions());
+        cache.setMaxSize(1);
+        assertEquals(1, cache.getSize());
+        assertEquals(3, cache.getEvictions());
+        try
+        {
+            cache.setMaxSize(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testCachingFactory()
+    {
+        PatternMatcherCache cache = new PatternMatcherCache();
+        PatternMatcher.Factory factory = cache.getCachingFactory(PatternMatcher.Factories.from(false, false, true));
+        assertSame(factory, cache.getCachingFactory(factory));
+        assertSame(factory.create("select.*"), factory.create("select.*"));
+        SQLStatementMatcher matcher = new SQLStatementMatcher(false, false, true, cache);
+        for(int ii = 0; ii < 10; ii++)
+        {
+            assertTrue(matcher.doStringsMatch("select * from x", "select.*"));
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(11, cache.getHits());
+    }
+
+    public void testSharedByFactory() throws Exception
+    {
+        JDBCMockObjectFactory factory = new JDBCMockObjectFactory();
+        PatternMatcherCache cache = factory.getPatternMatcherCache();
+        MockConnection connection = factory.getMockConnection();
+        assertSame(cache, connection.getStatementResultSetHandler().getPatternMatcherCache());
+        assertSame(cache, connection.getPreparedStatementResultSetHandler().getPatternMatcherCache());
+        assertSame(cache, connection.getCallableStatementResultSetHandler().getPatternMatcherCache());
+        connection.createStatement().executeQuery("select * from x");
+        connection.createStatement().executeQuery("select * from y");
+        JDBCTestModule module = new JDBCTestModule(factory);
+        module.setUseRegularExpressions(true);
+        cache.resetStatistics();
+        for(int ii = 0; ii < 10; ii++)
+        {
+            module.verifySQLStatementExecuted("select.*from x");
+        }
+        assertEquals(1, cache.getMisses());
+        factory.restoreDrivers();
+    }
+
+    public void testThreadSafety() throws Exception
+    {
+        final PatternMatcherCache cache = new PatternMatcherCache(10);
+        final PatternMatcher.Factory factory = PatternMatcher.Factories.from(false, false, true);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[8];
+        for(int ii = 0; ii < threads.length; ii++)
+        {
+            threads[ii] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for(int kk = 0; kk < 1000; kk++)
+                        {
+                            String pattern = "select.*" + (kk % 20);
+                            if(!cache.getPatternMatcher(factory, pattern).matches("select * from " + (kk % 20)))
+                            {
+                                throw new AssertionError(pattern);
+                            }
+                        }
+                    }
+                    catch(Throwable exc)
+                    {
+                        synchronized(errors)
+                        {
+                            errors.add(exc);
+                        }
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(8000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.getSize() <= 10);
+    }
+}
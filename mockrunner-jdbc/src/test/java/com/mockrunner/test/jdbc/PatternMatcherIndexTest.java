@@ -0,0 +1,166 @@
+package com.mockrunner.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.PatternMatcherIndex;
+import com.mockrunner.util.regexp.Jsr51PatternMatcher;
+import com.mockrunner.util.regexp.PatternMatcher;
+
+public class PatternMatcherIndexTest extends TestCase
+{
+    public void testExactMatch()
+    {
+        PatternMatcherIndex<String> index = new PatternMatcherIndex<String>();
+        PatternMatcher.Factory factory = PatternMatcher.Factories.from(true, true, false);
+        index.put(factory.create("select * from x"), "1");
+        index.put(factory.create("select * from y"), "2");
+        assertEquals(Arrays.asList("1"), index.getMatchingValues("select * from x"));
+        assertTrue(index.getMatchingValues("SELECT * from x").isEmpty());
+        assertTrue(index.getMatchingValues("select * from").isEmpty());
+        factory = PatternMatcher.Factories.from(false, true, false);
+        index.put(factory.create("SELECT * FROM Y"), "3");
+        assertEquals(Arrays.asList("2", "3"), index.getMatchingValues("select * from y"));
+        assertEquals(Arrays.asList("3"), index.getMatchingValues("Select * From Y"));
+        index.remove(factory.create("SELECT * FROM Y"));
+        assertEquals(Arrays.asList("2"), index.getMatchingValues("select * from y"));
+        assertTrue(index.getMatchingValues("Select * From Y").isEmpty());
+    }
+
+    public void testSubstringMatch()
+    {
+        PatternMatcherIndex<String> index = new PatternMatcherIndex<String>();
+        PatternMatcher.Factory factory = PatternMatcher.Factories.from(false, false, false);
+        index.put(factory.create("from x"), "1");
+        index.put(factory.create("select"), "2");
+        index.put(factory.create("update"), "3");
+        index.put(factory.create("x where"), "4");
+        assertEquals(Arrays.asList("1", "2", "4"), index.getMatchingValues("SELECT * FROM X WHERE a = 1"));
+        assertEquals(Arrays.asList("2"), index.getMatchingValues("select select"));
+        assertTrue(index.getMatchingValues("delete").isEmpty());
+        index.remove(factory.create("select"));
+        assertEquals(Arrays.asList("1", "4"), index.getMatchingValues("SELECT * FROM X WHERE a = 1"));
+        index.put(factory.create(""), "5");
+        assertEquals(Arrays.asList("5"), index.getMatchingValues(""));
+        index.clear();
+        assertTrue(index.getMatchingValues("select").isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    public void testRegularExpressionMatch()
+    {
+        PatternMatcherIndex<String> index = new PatternMatcherIndex<String>();
+        PatternMatcher.Factory factory = PatternMatcher.Factories.from(false, false, true);
+        index.put(factory.create("select.*from x"), "1");
+        index.put(factory.create("update.*"), "2");
+        index.put(factory.create("(select|delete) .*"), "3");
+        index.put(factory.create("selectx?.*"), "4");
+        assertEquals(Arrays.asList("1", "3", "4"), index.getMatchingValues("SELECT * FROM X"));
+        assertEquals(Arrays.asList("2"), index.getMatchingValues("update x"));
+        assertEquals(Arrays.asList("3"), index.getMatchingValues("delete x"));
+        index.put(new Jsr51PatternMatcher("SELECT.*", true), "5");
+        assertEquals(Arrays.asList("1", "3", "4"), index.getMatchingValues("select * from x"));
+        assertEquals(Arrays.asList("1", "3", "4", "5"), index.getMatchingValues("SELECT * from x"));
+    }
+
+    public void testCustomMatcher()
+    {
+        PatternMatcherIndex<String> index = new PatternMatcherIndex<String>();
+        index.put(new PatternMatcher.Base("custom") {
+            public String type()
+            {
+                return "custom";
+            }
+
+            public boolean matches(String string)
+            {
+                return string.length() == 3;
+            }
+        }, "1");
+        index.put(PatternMatcher.Factories.from(false, false, false).create("ab"), "2");
+        assertEquals(Arrays.asList("1", "2"), index.getMatchingValues("abc"));
+        assertEquals(Arrays.asList("2"), index.getMatchingValues("abcd"));
+    }
+
+    public void testMapMethods()
+    {
+        PatternMatcherIndex<String> index = new PatternMatcherIndex<String>();
+        PatternMatcher.Factory factory = PatternMatcher.Factories.from(false, false, false);
+        assertNull(index.put(factory.create("select"), "1"));
+        assertEquals("1", index.put(factory.create("select"), "2"));
+        assertEquals("2", index.get(factory.create("select")));
+        assertTrue(index.containsKey(factory.create("select")));
+        assertEquals(1, index.size());
+        for(Map.Entry<PatternMatcher, String> entry : index.entrySet())
+        {
+            entry.setValue("3");
+        }
+        assertEquals(Arrays.asList("3"), index.getMatchingValues("select"));
+        index.entrySet().clear();
+        assertTrue(index.isEmpty());
+        assertTrue(index.getMatchingValues("select").isEmpty());
+    }
+
+    public void testSameResultAsLinearScan()
+    {
+        Random random = new Random(5);
+        String[] words = {"select", "from", "x", "Y", "where", "a", "=", "1", "insert", "into"};
+        boolean[][] modes = {{true, true, false}, {false, true, false}, {true, false, false}, {false, false, false}, {true, false, true}, {false, false, true}};
+        for(boolean[] mode : modes)
+        {
+            PatternMatcher.Factory factory = PatternMatcher.Factories.from(mode[0], mode[1], mode[2]);
+            PatternMatcherIndex<String> index = new PatternMatcherIndex<String>();
+            List<PatternMatcher> matchers = new ArrayList<PatternMatcher>();
+            for(int ii = 0; ii < 200; ii++)
+            {
+                String pattern = createStatement(random, words, 3);
+                if(mode[2] && random.nextBoolean())
+                {
+                    pattern = pattern + ".*";
+                }
+                PatternMatcher matcher = factory.create(pattern);
+                if(!index.containsKey(matcher))
+                {
+                    matchers.add(matcher);
+                }
+                index.put(matcher, pattern);
+                if(random.nextInt(10) == 0)
+                {
+                    PatternMatcher removed = matchers.remove(random.nextInt(matchers.size()));
+                    index.remove(removed);
+                }
+            }
+            for(int ii = 0; ii < 500; ii++)
+            {
+                String query = createStatement(random, words, 5);
+                List<String> expected = new ArrayList<String>();
+                for(PatternMatcher matcher : matchers)
+                {
+                    if(matcher.matches(query))
+                    {
+                        expected.add(matcher.pattern());
+                    }
+                }
+                assertEquals(expected, index.getMatchingValues(query));
+            }
+        }
+    }
+
+    private String createStatement(Random random, String[] words, int maxNumberWords)
+    {
+        StringBuilder statement = new StringBuilder();
+        int numberWords = random.nextInt(maxNumberWords) + 1;
+        for(int ii = 0; ii < numberWords; ii++)
+        {
+            if(ii > 0) statement.append(' ');
+            String word = words[random.nextInt(words.length)];
+            statement.append(random.nextBoolean() ? word : word.toUpperCase());
+        }
+        return statement.toString();
+    }
+}
@@ -0,0 +1,224 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.JournalPolicy;
+import com.mockrunner.jdbc.ParameterSets;
+import com.mockrunner.jdbc.QueryPatternAnalyzer;
+import com.mockrunner.jdbc.QueryPatternAnalyzer.QueryPattern;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+
+public class QueryPatternAnalyzerTest extends TestCase
+{
+    private JDBCMockObjectFactory mockFactory;
+    private JDBCTestModule module;
+    private MockConnection connection;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        mockFactory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(mockFactory);
+        connection = mockFactory.getMockConnection();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        mockFactory.restoreDrivers();
+    }
+
+    public void testNormalization()
+    {
+        QueryPatternAnalyzer analyzer = new QueryPatternAnalyzer(2);
+        List<String> statements = Arrays.asList("select * from x where id = 1",
+                                                "SELECT *  FROM x\n WHERE id = 2",
+                                                "select * from x where id = 'it''s'",
+                                                "select * from x where id in (1, 2, 3)",
+                                                "select * from x where id in (4,5)",
+                                                "select * from x where id in (4,5)",
+                                                "select * from table2 where id = 1",
+                                                "update x set y = 1",
+                                                "update x set y = 2",
+                                                "update x set y = 3");
+        List<QueryPattern> patterns = analyzer.analyze(statements);
+        assertEquals(2, patterns.size());
+        QueryPattern pattern = patterns.get(0);
+        assertEquals(QueryPattern.N_PLUS_ONE, pattern.getType());
+        assertEquals("select * from x where id = ?", pattern.getNormalizedSQL());
+        assertEquals(3, pattern.getNumberExecutions());
+        assertEquals(3, pattern.getNumberDistinctParameters());
+        assertEquals(3, pattern.getSQLStatements().size());
+        assertTrue(pattern.getCallSites().isEmpty());
+        assertEquals("select * from x where id in (?)", patterns.get(1).getNormalizedSQL());
+        assertEquals(2, patterns.get(1).getNumberDistinctParameters());
+        assertTrue(new QueryPatternAnalyzer(3).analyze(statements).isEmpty());
+        try
+        {
+            new QueryPatternAnalyzer(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testWindow()
+    {
+        QueryPatternAnalyzer analyzer = new QueryPatternAnalyzer(2);
+        analyzer.setWindowSize(3);
+        List<String> statements = Arrays.asList("select * from x where id = 1",
+                                                "select * from y",
+                                                "select * from z",
+                                                "select * from x where id = 2",
+                                                "select * from y",
+                                                "select * from x where id = 3");
+        assertTrue(analyzer.analyze(statements).isEmpty());
+        analyzer.setWindowSize(5);
+        assertTrue(analyzer.analyze(statements).isEmpty());
+        analyzer.setWindowSize(6);
+        List<QueryPattern> patterns = analyzer.analyze(statements);
+        assertEquals(1, patterns.size());
+        assertEquals(QueryPattern.N_PLUS_ONE, patterns.get(0).getType());
+        assertEquals(3, patterns.get(0).getNumberExecutions());
+        analyzer.setWindowSize(0);
+        assertEquals(3, analyzer.analyze(statements).get(0).getNumberExecutions());
+    }
+
+    public void testWindowVariants()
+    {
+        QueryPatternAnalyzer analyzer = new QueryPatternAnalyzer(2);
+        analyzer.setWindowSize(3);
+        List<String> statements = Arrays.asList("select * from x where id = 1",
+                                                "select * from y",
+                                                "select * from x where id = 2",
+                                                "select * from y",
+                                                "select * from x where id = 3",
+                                                "select * from x where id = 3",
+                                                "select * from x where id = 3");
+        List<QueryPattern> patterns = analyzer.analyze(statements);
+        assertEquals(1, patterns.size());
+        assertEquals(QueryPattern.CHATTY, patterns.get(0).getType());
+        assertEquals(3, patterns.get(0).getNumberExecutions());
+        assertEquals(1, patterns.get(0).getNumberDistinctParameters());
+        analyzer.setWindowSize(0);
+        assertEquals(QueryPattern.N_PLUS_ONE, analyzer.analyze(statements).get(0).getType());
+        assertEquals(3, analyzer.analyze(statements).get(0).getNumberDistinctParameters());
+    }
+
+    public void testExecutionOrder() throws Exception
+    {
+        PreparedStatement preparedStatement = connection.prepareStatement("select * from x where id = ?");
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 3; ii++)
+        {
+            preparedStatement.setInt(1, ii);
+            preparedStatement.executeQuery();
+            statement.executeQuery("select * from y where id = " + ii);
+        }
+        assertTrue(module.getQueryPatterns(2, 3).isEmpty());
+        List<QueryPattern> patterns = module.getQueryPatterns(2, 5);
+        assertEquals(2, patterns.size());
+        assertEquals(QueryPattern.N_PLUS_ONE, patterns.get(0).getType());
+        assertEquals(3, patterns.get(0).getNumberDistinctParameters());
+        assertEquals(3, patterns.get(1).getNumberDistinctParameters());
+    }
+
+    public void testBoundedJournals() throws Exception
+    {
+        mockFactory.setJournalPolicy(JournalPolicy.ringBuffer(4));
+        PreparedStatement statementX = connection.prepareStatement("select * from x where id = ?");
+        PreparedStatement statementY = connection.prepareStatement("select * from y where id = ?");
+        String[] parameters = new String[] {"a", "b", "b"};
+        for(int ii = 0; ii < parameters.length; ii++)
+        {
+            statementX.setString(1, parameters[ii]);
+            statementX.executeQuery();
+            statementY.setString(1, "c");
+            statementY.executeQuery();
+        }
+        List<QueryPattern> patterns = module.getQueryPatterns(1);
+        assertEquals(2, patterns.size());
+        assertEquals(QueryPattern.CHATTY, patterns.get(0).getType());
+        assertEquals(QueryPattern.CHATTY, patterns.get(1).getType());
+        assertEquals(1, patterns.get(0).getNumberDistinctParameters());
+        QueryPatternAnalyzer analyzer = new QueryPatternAnalyzer(2);
+        ParameterSets parameterSets = new ParameterSets("select * from x where id = ?", JournalPolicy.ringBuffer(1));
+        List<String> statements = new ArrayList<String>();
+        for(int ii = 0; ii < parameters.length; ii++)
+        {
+            parameterSets.addParameterSet(new MockParameterMap(new Object[] {parameters[ii]}));
+            statements.add("select * from x where id = ?");
+        }
+        patterns = analyzer.analyze(statements, Collections.singletonMap("select * from x where id = ?", parameterSets), Collections.<String, List<String>>emptyMap());
+        assertEquals(QueryPattern.CHATTY, patterns.get(0).getType());
+        assertEquals(3, patterns.get(0).getNumberExecutions());
+        assertEquals(1, patterns.get(0).getNumberDistinctParameters());
+    }
+
+    public void testVerifyNoNPlusOne() throws Exception
+    {
+        connection.getPreparedStatementResultSetHandler().setRecordCallSites(true);
+        module.verifyNoNPlusOne(1);
+        PreparedStatement statement = connection.prepareStatement("select * from orderitem where orderid = ?");
+        for(int ii = 0; ii < 5; ii++)
+        {
+            statement.setInt(1, ii);
+            statement.executeQuery();
+        }
+        module.verifyNoNPlusOne(5);
+        module.verifyNoChattyAccess(1);
+        try
+        {
+            module.verifyNoNPlusOne(4);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            assertTrue(exc.getMessage().contains("select * from orderitem where orderid = ?"));
+            assertTrue(exc.getMessage().contains(QueryPatternAnalyzerTest.class.getName()));
+        }
+        QueryPattern pattern = module.getQueryPatterns(4).get(0);
+        assertEquals(5, pattern.getNumberDistinctParameters());
+        assertEquals(1, pattern.getCallSites().size());
+        assertTrue(pattern.getCallSites().get(0).startsWith(QueryPatternAnalyzerTest.class.getName() + ".testVerifyNoNPlusOne"));
+    }
+
+    public void testVerifyNoChattyAccess() throws Exception
+    {
+        PreparedStatement preparedStatement = connection.prepareStatement("select * from config where name = ?");
+        preparedStatement.setString(1, "timeout");
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 3; ii++)
+        {
+            preparedStatement.executeQuery();
+            statement.executeQuery("select * from config where name = 'timeout'");
+        }
+        module.verifyNoNPlusOne(1);
+        module.verifyNoChattyAccess(6);
+        try
+        {
+            module.verifyNoChattyAccess(5);
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            assertTrue(exc.getMessage().startsWith("Chatty query"));
+        }
+        assertTrue(connection.getStatementResultSetHandler().getCallSiteMap().isEmpty());
+    }
+}
@@ -0,0 +1,238 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.jdbc.ResultSetFactory;
+import com.mockrunner.jdbc.ResultSetFactoryCache;
+import com.mockrunner.jdbc.XMLResultSetFactory;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class ResultSetFactoryCacheTest extends TestCase
+{
+    private File csvFile;
+    private File xmlFile;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        csvFile = File.createTempFile("cache", ".txt");
+        csvFile.deleteOnExit();
+        writeFile(csvFile, "id;name", "1;a", "2;b");
+        xmlFile = File.createTempFile("cache", ".xml");
+        xmlFile.deleteOnExit();
+        writeFile(xmlFile, "<results>", "<row><id>1</id><name> a </name></row>", "<row><id>2</id><name>b</name></row>", "</results>");
+    }
+
+    private void writeFile(File file, String... lines) throws Exception
+    {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        for(String nextLine : lines)
+        {
+            writer.println(nextLine);
+        }
+        writer.close();
+    }
+
+    public void testFileResultSetFactory() throws Exception
+    {
+        ResultSetFactoryCache cache = new ResultSetFactoryCache();
+        FileResultSetFactory factory = new FileResultSetFactory(csvFile);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setCache(cache);
+        MockResultSet resultSet1 = factory.create("1");
+        assertEquals(0, cache.getHits());
+        factory = new FileResultSetFactory(csvFile);
+        factory.setFirstLineContainsColumnNames(true);
+        factory.setCache(cache);
+        MockResultSet resultSet2 = factory.create("2");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+        assertNotSame(resultSet1, resultSet2);
+        assertEquals("1", resultSet1.getId());
+        assertEquals("2", resultSet2.getId());
+        assertTrue(resultSet1.isEqual(resultSet2));
+        resultSet1.setResultSetConcurrency(MockResultSet.CONCUR_UPDATABLE);
+        resultSet1.next();
+        resultSet1.updateString("name", "x");
+        resultSet1.updateRow();
+        assertTrue(resultSet1.isRowEqual(1, Arrays.<Object>asList("1", "x")));
+        assertTrue(factory.create("3").isRowEqual(1, Arrays.<Object>asList("1", "a")));
+        assertTrue(resultSet2.next());
+        assertEquals("a", resultSet2.getString("name"));
+        factory.setDelimiter(",");
+        assertEquals(1, factory.create("4").getColumnCount());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getSize());
+        factory.setDelimiter(";");
+        factory.setStreaming(true);
+        factory.create("5");
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testModifiedFile() throws Exception
+    {
+        ResultSetFactoryCache cache = new ResultSetFactoryCache();
+        FileResultSetFactory factory = new FileResultSetFactory(csvFile);
+        factory.setCache(cache);
+        assertEquals(3, factory.create("1").getRowCount());
+        writeFile(csvFile, "id;name", "1;a", "2;b", "3;c");
+        csvFile.setLastModified(csvFile.lastModified() + 2000);
+        assertEquals(4, factory.create("1").getRowCount());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(Arrays.asList(csvFile.getAbsoluteFile()), cache.getCachedFiles());
+        cache.invalidate(csvFile);
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getInvalidations());
+        factory.create("1");
+        assertEquals(3, cache.getMisses());
+    }
+
+    public void testXMLResultSetFactory() throws Exception
+    {
+        ResultSetFactoryCache cache = new ResultSetFactoryCache();
+        XMLResultSetFactory factory = new XMLResultSetFactory(xmlFile);
+        factory.setCache(cache);
+        MockResultSet resultSet = factory.create("1");
+        assertEquals(2, resultSet.getRowCount());
+        assertTrue(resultSet.next());
+        assertEquals("a", resultSet.getString("name"));
+        resultSet = factory.create("2");
+        assertEquals("2", resultSet.getId());
+        assertTrue(resultSet.isRowEqual(2, Arrays.<Object>asList("2", "b")));
+        factory.setTrim(false);
+        resultSet = factory.create("3");
+        assertTrue(resultSet.next());
+        assertEquals(" a ", resultSet.getString("name"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testEviction() throws Exception
+    {
+        ResultSetFactoryCache cache = new ResultSetFactoryCache(1);
+        FileResultSetFactory factory1 = new FileResultSetFactory(csvFile);
+        factory1.setCache(cache);
+        XMLResultSetFactory factory2 = new XMLResultSetFactory(xmlFile);
+        factory2.setCache(cache);
+        factory1.create("1");
+        factory2.create("2");
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        factory1.create("1");
+        assertEquals(3, cache.getMisses());
+        cache.setMaxSize(2);
+        factory2.create("2");
+        assertEquals(2, cache.getSize());
+        cache.setMaxSize(1);
+        assertEquals(1, cache.getSize());
+        assertEquals(3, cache.getEvictions());
+        cache.resetStatistics();
+        assertEquals(0, cache.getEvictions());
+        assertEquals(0.0, cache.getHitRatio(), 0.0);
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertSame(ResultSetFactoryCache.getSharedCache(), ResultSetFactoryCache.getSharedCache());
+        try
+        {
+            new ResultSetFactoryCache(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testConcurrentLoad() throws Exception
+    {
+        final ResultSetFactoryCache cache = new ResultSetFactoryCache();
+        final AtomicInteger numberCreates = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final ResultSetFactory factory = new ResultSetFactory()
+        {
+            public MockResultSet create(String id)
+            {
+                numberCreates.incrementAndGet();
+                try
+                {
+                    loading.await(5, TimeUnit.SECONDS);
+                }
+                catch(InterruptedException exc)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                MockResultSet resultSet = new MockResultSet(id);
+                resultSet.addColumn("id", new Object[] {"1"});
+                return resultSet;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<MockResultSet>> futures = new ArrayList<Future<MockResultSet>>();
+            for(int ii = 0; ii < 4; ii++)
+            {
+                final String id = String.valueOf(ii);
+                futures.add(executor.submit(new Callable<MockResultSet>()
+                {
+                    public MockResultSet call()
+                    {
+                        return cache.getResultSet(csvFile, Arrays.asList("x"), id, factory);
+                    }
+                }));
+            }
+            Thread.sleep(50);
+            loading.countDown();
+            for(int ii = 0; ii < 4; ii++)
+            {
+                MockResultSet resultSet = futures.get(ii).get(10, TimeUnit.SECONDS);
+                assertEquals(String.valueOf(ii), resultSet.getId());
+                assertEquals(1, resultSet.getRowCount());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals(1, numberCreates.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+        ResultSetFactory failingFactory = new ResultSetFactory()
+        {
+            public MockResultSet create(String id)
+            {
+                throw new IllegalStateException("failed");
+            }
+        };
+        try
+        {
+            cache.getResultSet(xmlFile, Arrays.asList("x"), "1", failingFactory);
+            fail();
+        }
+        catch(IllegalStateException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(1, cache.getSize());
+    }
+}
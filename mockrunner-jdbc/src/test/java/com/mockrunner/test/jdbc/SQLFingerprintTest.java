@@ -0,0 +1,159 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.base.VerifyFailedException;
+import com.mockrunner.jdbc.JDBCTestModule;
+import com.mockrunner.jdbc.PreparedStatementResultSetHandler;
+import com.mockrunner.jdbc.SQLFingerprint;
+import com.mockrunner.jdbc.SQLStatementMatcher;
+import com.mockrunner.jdbc.StatementResultSetHandler;
+import com.mockrunner.mock.jdbc.JDBCMockObjectFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class SQLFingerprintTest extends TestCase
+{
+    private JDBCMockObjectFactory mockFactory;
+    private JDBCTestModule module;
+    private MockConnection connection;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        mockFactory = new JDBCMockObjectFactory();
+        module = new JDBCTestModule(mockFactory);
+        connection = mockFactory.getMockConnection();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        mockFactory.restoreDrivers();
+    }
+
+    public void testNormalize()
+    {
+        assertEquals("select * from x where id = ?", SQLFingerprint.normalize("SELECT *  FROM x\n WHERE id=1;"));
+        assertEquals("select * from x where id = ?", SQLFingerprint.normalize("select * /* all */ from x -- comment\nwhere id = 'a'"));
+        assertEquals("select * from x where id in (?)", SQLFingerprint.normalize("select * from x where id IN (1, 2, 3)"));
+        assertEquals("select * from x where id in (?)", SQLFingerprint.normalize("select * from x where id in(?,?)"));
+        assertEquals("insert into x values (?, ?)", SQLFingerprint.normalize("insert into x values(1, 'b')"));
+        assertEquals("select count (*) from \"MyTable\" t where t.a <> :name", SQLFingerprint.normalize("select count(*) from \"MyTable\" t where t.A<>:NAME"));
+        assertEquals("select * from table2 where x = ? and y = ?", SQLFingerprint.normalize("select * from table2 where x = 1.5e-3 and y = 'it''s'"));
+        SQLFingerprint fingerprint = SQLFingerprint.of("select * from x where a = 'it''s' and b in (1, 2)");
+        assertEquals(Arrays.asList("it's", "1", "2"), fingerprint.getLiterals());
+        assertSame(fingerprint, SQLFingerprint.of("select * from x where a = 'it''s' and b in (1, 2)"));
+        assertEquals(fingerprint, SQLFingerprint.of("select * from X where a = 'x' and b in (3)"));
+        assertEquals("", SQLFingerprint.normalize(null));
+        assertEquals("select * from x where id = ?", SQLFingerprint.normalize("select * from x where id=-1"));
+        assertEquals("select * from x where id in (?)", SQLFingerprint.normalize("select * from x where id in (-1, +2, 3)"));
+        assertEquals("select ? - ?, a - ?, a * ? from x", SQLFingerprint.normalize("select -1-2, a-1, a*-1 from x"));
+        assertEquals(Arrays.asList("-1", "2", "-3"), SQLFingerprint.of("update x set a = -1 where b - 2 = -3").getLiterals());
+        Locale defaultLocale = Locale.getDefault();
+        try
+        {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals("select id from x where title = ?", SQLFingerprint.normalize("SELECT ID FROM X WHERE TITLE = 'a'"));
+        }
+        finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    public void testCacheKeepsRecentlyUsed()
+    {
+        SQLFingerprint fingerprint = SQLFingerprint.of("select * from cached where id = 1");
+        for(int ii = 0; ii < 15000; ii++)
+        {
+            SQLFingerprint.of("select * from table" + ii);
+            if(ii % 1000 == 0)
+            {
+                assertSame(fingerprint, SQLFingerprint.of("select * from cached where id = 1"));
+            }
+        }
+        assertSame(fingerprint, SQLFingerprint.of("select * from cached where id = 1"));
+    }
+
+    public void testHandlerMatching() throws Exception
+    {
+        StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        MockResultSet resultSet = new MockResultSet("id");
+        handler.setExactMatch(true);
+        handler.prepareResultSet("select * from x where id in (1, 2)", resultSet);
+        handler.prepareUpdateCount("update x set a = 'b'", 3);
+        Statement statement = connection.createStatement();
+        assertFalse("id".equals(((MockResultSet)statement.executeQuery("SELECT * FROM x WHERE id IN (3, 4, 5)")).getId()));
+        handler.setNormalizeSQL(true);
+        assertEquals("id", ((MockResultSet)statement.executeQuery("SELECT * FROM x WHERE id IN (3, 4, 5)")).getId());
+        PreparedStatementResultSetHandler preparedHandler = connection.getPreparedStatementResultSetHandler();
+        preparedHandler.setNormalizeSQL(true);
+        preparedHandler.setExactMatch(true);
+        preparedHandler.prepareResultSet("select * from x where id in (1)", resultSet);
+        PreparedStatement preparedStatement = connection.prepareStatement("select * from x where id in (?, ?, ?)");
+        assertEquals("id", ((MockResultSet)preparedStatement.executeQuery()).getId());
+        assertEquals(3, statement.executeUpdate("UPDATE x SET a = 'c'"));
+        handler.setUseRegularExpressions(true);
+        handler.setExactMatch(false);
+        handler.prepareResultSet("select .* from y", resultSet);
+        assertEquals("id", ((MockResultSet)statement.executeQuery("select a from y")).getId());
+    }
+
+    public void testHandlerCollisions() throws Exception
+    {
+        StatementResultSetHandler handler = connection.getStatementResultSetHandler();
+        handler.setExactMatch(true);
+        handler.setNormalizeSQL(true);
+        handler.prepareResultSet("select * from x where id = 2", new MockResultSet("id2"));
+        handler.prepareResultSet("select * from x where id = 1", new MockResultSet("id1"));
+        Statement statement = connection.createStatement();
+        assertEquals("id1", ((MockResultSet)statement.executeQuery("select * from x where id = 3")).getId());
+        handler.setCaseSensitive(true);
+        assertEquals("id1", ((MockResultSet)statement.executeQuery("select * from x where id = 3")).getId());
+        handler.setNormalizeSQL(false);
+        assertEquals("id2", ((MockResultSet)statement.executeQuery("select * from x where id = 2")).getId());
+        handler.setNormalizeSQL(true);
+        assertEquals("id1", ((MockResultSet)statement.executeQuery("select * from x where id = 3")).getId());
+        handler.removeAllResultSet("select * from x where id = 1");
+        assertEquals("id2", ((MockResultSet)statement.executeQuery("select * from x where id = 3")).getId());
+        handler.prepareResultSet("select * from x where id = 1", new MockResultSet("id1"));
+        handler.prepareResultSet("select * from x where id = 2", new MockResultSet("id2"));
+        handler.setCaseSensitive(false);
+        assertEquals("id2", ((MockResultSet)statement.executeQuery("select * from x where id = 3")).getId());
+    }
+
+    public void testModuleMatching() throws Exception
+    {
+        Statement statement = connection.createStatement();
+        statement.executeQuery("SELECT * FROM x WHERE id = 5");
+        module.setExactMatch(true);
+        try
+        {
+            module.verifySQLStatementExecuted("select * from x where id = ?");
+            fail();
+        }
+        catch(VerifyFailedException exc)
+        {
+            //should throw exception
+        }
+        module.setNormalizeSQL(true);
+        module.verifySQLStatementExecuted("select * from x where id = ?");
+        module.verifySQLStatementNotExecuted("select * from y where id = ?");
+        SQLStatementMatcher matcher = new SQLStatementMatcher(false, false, false, true, null);
+        assertTrue(matcher.doStringsMatch("select  *  from x where id = 5", "from X"));
+        matcher = new SQLStatementMatcher(false, false, true, true, null);
+        assertFalse(matcher.doStringsMatch("select * from x where id = 5", "select \\* from x where id = \\?"));
+        matcher = new SQLStatementMatcher(false, true, false, true, null);
+        assertTrue(matcher.contains(Arrays.asList("select * from y", "SELECT * FROM x WHERE id = 7"), "select * from x where id = 1", false));
+        assertTrue(matcher.contains(Arrays.asList("select * from y", "select * from x where id = 2"), "SELECT * FROM x WHERE id = 7", true));
+        assertFalse(matcher.contains(Arrays.asList("select * from y"), "select * from x", true));
+    }
+}
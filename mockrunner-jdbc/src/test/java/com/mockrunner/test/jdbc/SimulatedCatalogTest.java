@@ -0,0 +1,153 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.StringReader;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.SimulatedCatalog;
+import com.mockrunner.mock.jdbc.MockDatabaseMetaData;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class SimulatedCatalogTest extends TestCase
+{
+    private final static String SCHEMA = "# test schema\n" +
+                                         "TABLE;;PUBLIC;PERSON\n" +
+                                         "COLUMN;;PUBLIC;PERSON;ID;INTEGER;10;0;false\n" +
+                                         "COLUMN;;PUBLIC;PERSON;NAME;VARCHAR;100\n" +
+                                         "COLUMN;;PUBLIC;PERSON;NICK_NAME;VARCHAR;50\n" +
+                                         "PRIMARY_KEY;;PUBLIC;PERSON;PK_PERSON;ID\n" +
+                                         "INDEX;;PUBLIC;PERSON;IDX_NAME;false;NAME,NICK_NAME\n" +
+                                         "\n" +
+                                         "TABLE;;PUBLIC;ORDERS\n" +
+                                         "TABLE;;PUBLIC;ORDER_ITEM\n" +
+                                         "TABLE;;PUBLIC;ORDERXITEM;VIEW\n" +
+                                         "COLUMN;;PUBLIC;ORDER_ITEM;ORDER_ID;BIGINT\n" +
+                                         "TABLE;;AUDIT;LOG\n";
+
+    private SimulatedCatalog catalog;
+    private MockDatabaseMetaData metaData;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        catalog = new SimulatedCatalog();
+        catalog.load(new StringReader(SCHEMA));
+        metaData = new MockDatabaseMetaData();
+        metaData.setSimulatedCatalog(catalog);
+    }
+
+    public void testGetTables() throws Exception
+    {
+        MockResultSet tables = (MockResultSet)metaData.getTables(null, "public", "ORDER%", null);
+        assertEquals(3, tables.getRowCount());
+        assertTrue(tables.next());
+        assertNull(tables.getString("TABLE_CAT"));
+        assertEquals("PUBLIC", tables.getString("TABLE_SCHEM"));
+        assertEquals("ORDER_ITEM", tables.getString("TABLE_NAME"));
+        assertEquals("TABLE", tables.getString("TABLE_TYPE"));
+        assertTrue(tables.next());
+        assertEquals("ORDERS", tables.getString("TABLE_NAME"));
+        assertTrue(tables.next());
+        assertEquals("ORDERXITEM", tables.getString("TABLE_NAME"));
+        assertEquals("VIEW", tables.getString("TABLE_TYPE"));
+        assertEquals(2, ((MockResultSet)metaData.getTables(null, null, "order_item", null)).getRowCount());
+        assertEquals(1, ((MockResultSet)metaData.getTables(null, null, "ORDER\\_ITEM", null)).getRowCount());
+        assertEquals(1, ((MockResultSet)metaData.getTables(null, null, "%", new String[] {"VIEW"})).getRowCount());
+        assertEquals(5, ((MockResultSet)metaData.getTables(null, "%", "%", null)).getRowCount());
+        assertEquals(0, ((MockResultSet)metaData.getTables("cat", null, "%", null)).getRowCount());
+        assertEquals(5, ((MockResultSet)metaData.getTables("", null, null, null)).getRowCount());
+        MockResultSet types = (MockResultSet)metaData.getTableTypes();
+        assertEquals(2, types.getRowCount());
+        MockResultSet schemas = (MockResultSet)metaData.getSchemas();
+        assertEquals(2, schemas.getRowCount());
+        assertTrue(schemas.next());
+        assertEquals("AUDIT", schemas.getString("TABLE_SCHEM"));
+        assertEquals(0, ((MockResultSet)metaData.getCatalogs()).getRowCount());
+        MockResultSet prepared = new MockResultSet("prepared");
+        metaData.setTables(null, "PUBLIC", "ORDERS", null, prepared);
+        assertSame(prepared, metaData.getTables(null, "PUBLIC", "ORDERS", null));
+    }
+
+    public void testGetColumns() throws Exception
+    {
+        MockResultSet columns = (MockResultSet)metaData.getColumns(null, "PUBLIC", "PERSON", "%NAME");
+        assertEquals(2, columns.getRowCount());
+        assertTrue(columns.next());
+        assertEquals("NAME", columns.getString("COLUMN_NAME"));
+        assertEquals(Types.VARCHAR, columns.getInt("DATA_TYPE"));
+        assertEquals(100, columns.getInt("COLUMN_SIZE"));
+        assertEquals(2, columns.getInt("ORDINAL_POSITION"));
+        assertEquals("YES", columns.getString("IS_NULLABLE"));
+        assertTrue(columns.next());
+        assertEquals("NICK_NAME", columns.getString("COLUMN_NAME"));
+        columns = (MockResultSet)metaData.getColumns(null, null, "%", null);
+        assertEquals(4, columns.getRowCount());
+        assertTrue(columns.next());
+        assertEquals("ORDER_ITEM", columns.getString("TABLE_NAME"));
+        assertEquals(Types.BIGINT, columns.getInt("DATA_TYPE"));
+        assertTrue(columns.next());
+        assertEquals("ID", columns.getString("COLUMN_NAME"));
+        assertEquals(DatabaseMetaData.columnNoNulls, columns.getInt("NULLABLE"));
+        MockResultSet keys = (MockResultSet)metaData.getPrimaryKeys(null, "PUBLIC", "PERSON");
+        assertEquals(1, keys.getRowCount());
+        assertTrue(keys.next());
+        assertEquals("ID", keys.getString("COLUMN_NAME"));
+        assertEquals(1, keys.getShort("KEY_SEQ"));
+        assertEquals("PK_PERSON", keys.getString("PK_NAME"));
+        assertEquals(0, ((MockResultSet)metaData.getPrimaryKeys(null, "PUBLIC", "P%")).getRowCount());
+        ResultSet indexInfo = metaData.getIndexInfo(null, "PUBLIC", "PERSON", false, true);
+        assertTrue(indexInfo.next());
+        assertEquals("IDX_NAME", indexInfo.getString("INDEX_NAME"));
+        assertTrue(indexInfo.getBoolean("NON_UNIQUE"));
+        assertEquals("NAME", indexInfo.getString("COLUMN_NAME"));
+        assertTrue(indexInfo.next());
+        assertEquals("NICK_NAME", indexInfo.getString("COLUMN_NAME"));
+        assertEquals(2, indexInfo.getShort("ORDINAL_POSITION"));
+        assertFalse(indexInfo.next());
+        assertFalse(metaData.getIndexInfo(null, "PUBLIC", "PERSON", true, true).next());
+    }
+
+    public void testCaseSensitive() throws Exception
+    {
+        catalog = new SimulatedCatalog(true);
+        catalog.load(new StringReader(SCHEMA));
+        assertEquals(0, catalog.getTables(null, "public", "%", null).getRowCount());
+        assertEquals(4, catalog.getTables(null, "PUBLIC", "%", null).getRowCount());
+        assertEquals(0, catalog.getColumns(null, "PUBLIC", "PERSON", "n%").getRowCount());
+    }
+
+    public void testInvalidRecords() throws Exception
+    {
+        try
+        {
+            catalog.load(new StringReader("TABLE;;PUBLIC;X\nCOLUMN;;PUBLIC;Y;ID;INTEGER"));
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            assertTrue(exc.getMessage().contains("line 2"));
+        }
+        try
+        {
+            catalog.addTable(null, "public", "person", "TABLE");
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            catalog.setPrimaryKey(null, "PUBLIC", "PERSON", null, "UNKNOWN");
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.mockrunner.test.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.SimulatedQuery;
+import com.mockrunner.jdbc.SimulatedTable;
+import com.mockrunner.jdbc.SimulatedTable.Condition;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockParameterMap;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.TableResultSet;
+
+public class SimulatedTableTest extends TestCase
+{
+    private SimulatedTable table;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        table = new SimulatedTable("person", "id", "name", "age");
+        table.addRow(1, "Jim", 30);
+        table.addRow(2L, "Joe", null);
+        table.addRow(new BigDecimal("3.0"), "Jane", 25);
+        table.addRow(4, "Jim", 40);
+        table.addRow(5, null, 30);
+    }
+
+    private List<Object> select(String sql, Object... parameters)
+    {
+        SimulatedQuery query = SimulatedQuery.parse(sql);
+        MockResultSet resultSet = query.execute("id", table, new MockParameterMap(parameters));
+        return resultSet.getColumn(1);
+    }
+
+    private void assertSelect(List<?> expected, String sql, Object... parameters)
+    {
+        table.dropIndex("id");
+        table.dropIndex("name");
+        table.dropIndex("age");
+        assertEquals(expected, select(sql, parameters));
+        table.createIndex("id", SimulatedTable.HASH_INDEX);
+        table.createIndex("name", SimulatedTable.HASH_INDEX);
+        table.createIndex("age", SimulatedTable.HASH_INDEX);
+        assertEquals(expected, select(sql, parameters));
+        table.createIndex("id", SimulatedTable.SORTED_INDEX);
+        table.createIndex("name", SimulatedTable.SORTED_INDEX);
+        table.createIndex("age", SimulatedTable.SORTED_INDEX);
+        assertEquals(expected, select(sql, parameters));
+    }
+
+    public void testSelect()
+    {
+        assertSelect(Arrays.asList(1, 4), "select id from person where name = ?", "Jim");
+        assertSelect(Arrays.asList(1), "select id from person where name = 'Jim' and age = ?", 30L);
+        assertSelect(Arrays.asList(2L), "select id from person where id = 2");
+        assertSelect(Arrays.asList(new BigDecimal("3.0")), "select id from person where id = ?", 3.0);
+        assertSelect(Arrays.asList(1, 4), "SELECT p.id FROM person p WHERE p.age >= ? AND p.name = ?", 30, "Jim");
+        assertSelect(Arrays.asList(1, 5), "select id from person where age between ? and ?", 26, 35);
+        assertSelect(Arrays.asList(1, 5), "select id from person where age > 25 and age < 40");
+        assertSelect(Collections.emptyList(), "select id from person where age > 30 and age < 31");
+        assertSelect(Collections.emptyList(), "select id from person where age > ? and age < ?", 30, 20);
+        assertSelect(Arrays.asList(1, new BigDecimal("3.0"), 4, 5), "select id from person where age <> 99");
+        assertSelect(Arrays.asList(2L), "select id from person where age is null");
+        assertSelect(Arrays.asList(1, 2L, new BigDecimal("3.0"), 4), "select id from person where name is not null");
+        assertSelect(Collections.emptyList(), "select id from person where name = ?", (Object)null);
+        assertSelect(Collections.emptyList(), "select id from person where age = '30'");
+        assertSelect(Arrays.asList(1, 2L, new BigDecimal("3.0"), 4, 5), "select * from person;");
+    }
+
+    public void testSelectColumns()
+    {
+        MockResultSet resultSet = table.select("id", Arrays.asList("NAME", "id"), Arrays.asList(new Condition("age", Condition.LESS, 30)));
+        assertEquals(2, resultSet.getColumnCount());
+        assertEquals(Arrays.asList("Jane"), resultSet.getColumn("name"));
+        assertEquals(Arrays.asList(new BigDecimal("3.0")), resultSet.getColumn(2));
+        assertEquals(3, table.select("id", null, Collections.<Condition>emptyList()).getColumnCount());
+    }
+
+    public void testDates()
+    {
+        SimulatedTable events = new SimulatedTable("events", "day");
+        events.createIndex("day", SimulatedTable.SORTED_INDEX);
+        events.addRow(new Date(1000));
+        events.addRow(new Timestamp(2000));
+        events.addRow(new java.util.Date(3000));
+        List<Condition> conditions = Arrays.asList(new Condition("day", Condition.GREATER, new Timestamp(1000)));
+        assertEquals(2, events.select("id", null, conditions).getRowCount());
+        conditions = Arrays.asList(new Condition("day", Condition.EQUAL, new Date(2000)));
+        assertEquals(1, events.select("id", null, conditions).getRowCount());
+    }
+
+    public void testNotComparableValues()
+    {
+        SimulatedTable values = new SimulatedTable("values", "id", "value");
+        values.addRow(1, new StringBuffer("a"));
+        values.addRow(2, Arrays.asList("a"));
+        values.addRow(3, Arrays.asList("b"));
+        List<Condition> conditions = Arrays.asList(new Condition("value", Condition.EQUAL, Arrays.asList("b")));
+        assertEquals(Arrays.asList(3), values.select("id", Arrays.asList("id"), conditions).getColumn(1));
+        conditions = Arrays.asList(new Condition("value", Condition.NOT_EQUAL, Arrays.asList("b")));
+        assertEquals(Arrays.asList(1, 2), values.select("id", Arrays.asList("id"), conditions).getColumn(1));
+        values.createIndex("value", SimulatedTable.HASH_INDEX);
+        conditions = Arrays.asList(new Condition("value", Condition.EQUAL, Arrays.asList("a")));
+        assertEquals(Arrays.asList(2), values.select("id", Arrays.asList("id"), conditions).getColumn(1));
+        try
+        {
+            values.select("id", null, Arrays.asList(new Condition("value", Condition.LESS, Arrays.asList("b"))));
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            values.createIndex("value", SimulatedTable.SORTED_INDEX);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        SimulatedTable comparableValues = new SimulatedTable("comparable", "id", "value");
+        comparableValues.createIndex("value", SimulatedTable.SORTED_INDEX);
+        comparableValues.addRow(1, java.util.UUID.fromString("00000000-0000-0000-0000-000000000002"));
+        try
+        {
+            comparableValues.addRow(2, Arrays.asList("a"));
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(1, comparableValues.getRowCount());
+        conditions = Arrays.asList(new Condition("value", Condition.GREATER, java.util.UUID.fromString("00000000-0000-0000-0000-000000000001")));
+        assertEquals(Arrays.asList(1), comparableValues.select("id", Arrays.asList("id"), conditions).getColumn(1));
+    }
+
+    public void testPreparedStatement() throws Exception
+    {
+        SimulatedTable orders = new SimulatedTable("orders", "id", "customer", "amount");
+        orders.createIndex("id", SimulatedTable.HASH_INDEX);
+        orders.createIndex("amount", SimulatedTable.SORTED_INDEX);
+        for(int ii = 0; ii < 100000; ii++)
+        {
+            orders.addRow(ii, "customer" + (ii % 100), ii % 1000);
+        }
+        MockConnection connection = new MockConnection();
+        connection.getPreparedStatementResultSetHandler().prepareResultSet("select", new TableResultSet.Factory(orders).create("orders"));
+        PreparedStatement statement = connection.prepareStatement("select customer, amount from orders where id = ?");
+        for(int ii = 0; ii < 1000; ii++)
+        {
+            statement.setInt(1, ii * 7);
+            ResultSet resultSet = statement.executeQuery();
+            assertTrue(resultSet.next());
+            assertEquals("customer" + (ii * 7 % 100), resultSet.getString("customer"));
+            assertFalse(resultSet.next());
+        }
+        statement = connection.prepareStatement("select id from orders where amount between ? and ? and customer = ?");
+        statement.setInt(1, 10);
+        statement.setInt(2, 11);
+        statement.setString(3, "customer10");
+        ResultSet resultSet = statement.executeQuery();
+        assertEquals(100, ((MockResultSet)resultSet).getRowCount());
+        statement = connection.prepareStatement("select id from other where id = ?");
+        try
+        {
+            statement.executeQuery();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            assertEquals("42S02", exc.getSQLState());
+        }
+        statement = connection.prepareStatement("select id from orders where customer like ?");
+        try
+        {
+            statement.executeQuery();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            assertEquals("42000", exc.getSQLState());
+            assertTrue(exc.getCause() instanceof IllegalArgumentException);
+        }
+        List<String> executed = connection.getPreparedStatementResultSetHandler().getExecutedStatements();
+        assertFalse(executed.contains("select id from other where id = ?"));
+        assertFalse(executed.contains("select id from orders where customer like ?"));
+        assertNull(connection.getPreparedStatementResultSetHandler().getParametersForExecutedStatement("select id from other where id = ?"));
+        connection.getPreparedStatementResultSetHandler().prepareGeneratedKeys("update other", new TableResultSet.Factory(orders).create("keys"));
+        connection.getStatementResultSetHandler().prepareGeneratedKeys("update other", new TableResultSet.Factory(orders).create("keys"));
+        statement = connection.prepareStatement("update other set amount = 0", Statement.RETURN_GENERATED_KEYS);
+        try
+        {
+            statement.executeUpdate();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            connection.createStatement().executeUpdate("update other set amount = 0", Statement.RETURN_GENERATED_KEYS);
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testInvalid()
+    {
+        try
+        {
+            SimulatedQuery.parse("select id from person where name like 'J%'");
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            SimulatedQuery.parse("select id from person p where q.id = 1");
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            table.addRow(1, "x");
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        try
+        {
+            select("select unknown from person");
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        assertEquals(2, SimulatedQuery.parse("select * from person where id = ? and name <> 'it''s' and age between 1 and ?").getParameterCount());
+    }
+}
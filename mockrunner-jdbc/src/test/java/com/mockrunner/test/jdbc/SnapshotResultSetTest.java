@@ -0,0 +1,157 @@
+package com.mockrunner.test.jdbc;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.base.NestedApplicationException;
+import com.mockrunner.jdbc.FileResultSetFactory;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.SnapshotResultSet;
+
+public class SnapshotResultSetTest extends TestCase
+{
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        file = File.createTempFile("snapshot", ".bin");
+        file.deleteOnExit();
+    }
+
+    public void testWriteAndRead() throws Exception
+    {
+        Timestamp timestamp = new Timestamp(1000000);
+        timestamp.setNanos(123456789);
+        MockResultSet source = new MockResultSet("source");
+        source.addColumn("int", new Object[] {1, null, 3});
+        source.addColumn("long", new Object[] {Long.MAX_VALUE, 2L, null});
+        source.addColumn("double", new Object[] {1.5, 2.5, 3.5});
+        source.addColumn("boolean", new Object[] {true, false, null});
+        source.addColumn("string", new Object[] {"a", "\u00e4\u00f6\u00fc", null});
+        source.addColumn("bytes", new Object[] {new byte[] {1, 2}, new byte[0], null});
+        source.addColumn("decimal", new Object[] {new BigDecimal("1.23"), null, new BigDecimal("-4")});
+        source.addColumn("date", new Object[] {new Date(0), new Date(86400000), null});
+        source.addColumn("time", new Object[] {new Time(1000), null, null});
+        source.addColumn("timestamp", new Object[] {timestamp, null, null});
+        source.addColumn("empty", new Object[] {null, null, null});
+        SnapshotResultSet.write(source, file);
+        SnapshotResultSet.Factory factory = new SnapshotResultSet.Factory(file);
+        SnapshotResultSet resultSet = factory.create("id");
+        assertEquals("id", resultSet.getId());
+        assertEquals(3, resultSet.getRowCount());
+        assertEquals(11, resultSet.getColumnCount());
+        assertTrue(resultSet.isEqual(source));
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt("int"));
+        assertEquals(Long.MAX_VALUE, resultSet.getLong(2));
+        assertEquals(1.5, resultSet.getDouble("double"), 0.0);
+        assertEquals(1, resultSet.getInt("double"));
+        assertTrue(Arrays.equals(new byte[] {1, 2}, resultSet.getBytes("bytes")));
+        assertEquals(timestamp, resultSet.getTimestamp("timestamp"));
+        assertTrue(resultSet.next());
+        assertEquals(0, resultSet.getInt(1));
+        assertTrue(resultSet.wasNull());
+        assertEquals("\u00e4\u00f6\u00fc", resultSet.getString("string"));
+        assertFalse(resultSet.wasNull());
+        assertNull(resultSet.getObject("empty"));
+        assertTrue(resultSet.next());
+        assertEquals(0, resultSet.getLong("long"));
+        assertTrue(resultSet.wasNull());
+        assertEquals(new BigDecimal("-4"), resultSet.getBigDecimal("decimal"));
+    }
+
+    public void testModify() throws Exception
+    {
+        MockResultSet source = new MockResultSet("source");
+        source.addColumn("id", new Object[] {1, 2});
+        source.addColumn("name", new Object[] {"a", "b"});
+        SnapshotResultSet.write(source, file);
+        SnapshotResultSet.Factory factory = new SnapshotResultSet.Factory(file);
+        MockConnection connection = new MockConnection();
+        connection.getStatementResultSetHandler().prepareGlobalResultSet(factory.create("id"));
+        ResultSet resultSet = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE).executeQuery("select");
+        resultSet.next();
+        resultSet.updateInt("id", 5);
+        resultSet.updateRow();
+        assertEquals(5, resultSet.getInt("id"));
+        resultSet.moveToInsertRow();
+        resultSet.updateInt("id", 3);
+        resultSet.updateString("name", "c");
+        resultSet.insertRow();
+        assertEquals(3, ((MockResultSet)resultSet).getRowCount());
+        MockResultSet otherResultSet = factory.create("other");
+        assertTrue(otherResultSet.isEqual(source));
+        otherResultSet.addRow(new ArrayList<Object>(Arrays.<Object>asList(4, "d")));
+        assertEquals(3, otherResultSet.getRowCount());
+        assertEquals(2, factory.create("id").getRowCount());
+    }
+
+    public void testConvert() throws Exception
+    {
+        File csvFile = File.createTempFile("snapshot", ".txt");
+        csvFile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(new FileWriter(csvFile));
+        writer.println("id;name");
+        writer.println("1;a");
+        writer.println("2;");
+        writer.close();
+        FileResultSetFactory fileFactory = new FileResultSetFactory(csvFile);
+        fileFactory.setFirstLineContainsColumnNames(true);
+        SnapshotResultSet.write(fileFactory, file);
+        MockResultSet resultSet = new SnapshotResultSet.Factory(file).create("id");
+        assertTrue(resultSet.isEqual(fileFactory.create("id")));
+        assertTrue(resultSet.last());
+        assertEquals(2, resultSet.getInt("id"));
+    }
+
+    public void testInvalid() throws Exception
+    {
+        MockResultSet source = new MockResultSet("source");
+        source.addColumn("column", new Object[] {1, "2"});
+        try
+        {
+            SnapshotResultSet.write(source, file);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        source = new MockResultSet("source");
+        source.addColumn("column", new Object[] {new Object()});
+        try
+        {
+            SnapshotResultSet.write(source, file);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        writer.println("no snapshot");
+        writer.close();
+        try
+        {
+            new SnapshotResultSet.Factory(file).create("id");
+            fail();
+        }
+        catch(NestedApplicationException exc)
+        {
+            //should throw exception
+        }
+    }
+}
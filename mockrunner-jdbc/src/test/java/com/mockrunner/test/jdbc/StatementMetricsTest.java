@@ -0,0 +1,205 @@
+package com.mockrunner.test.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.StatementMetrics;
+import com.mockrunner.jdbc.StatementMetrics.Snapshot;
+import com.mockrunner.jdbc.StatementMetrics.Statistics;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockConnectionPool;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class StatementMetricsTest extends TestCase
+{
+    private MockConnection connection;
+    private StatementMetrics metrics;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        connection = new MockConnection();
+        MockResultSet resultSet = connection.getStatementResultSetHandler().createResultSet();
+        resultSet.addColumn("column", new Object[] {"1", "2", "3"});
+        connection.getStatementResultSetHandler().prepareGlobalResultSet(resultSet);
+        connection.getPreparedStatementResultSetHandler().prepareGlobalResultSet(resultSet);
+        metrics = new StatementMetrics();
+    }
+
+    public void testDisabled() throws Exception
+    {
+        assertNull(connection.getStatementMetrics());
+        assertNull(connection.getPreparedStatementResultSetHandler().getStatementMetrics());
+        ResultSet resultSet = connection.createStatement().executeQuery("select * from x");
+        while(resultSet.next());
+        resultSet.close();
+        connection.commit();
+        assertEquals(0, metrics.getSnapshot().getNumberExecutions());
+    }
+
+    public void testStatements() throws Exception
+    {
+        connection.setStatementMetrics(metrics);
+        assertSame(metrics, connection.getCallableStatementResultSetHandler().getStatementMetrics());
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 3; ii++)
+        {
+            ResultSet resultSet = statement.executeQuery("select * from x");
+            while(resultSet.next());
+            Thread.sleep(5);
+            resultSet.close();
+        }
+        ResultSet openResultSet = connection.createStatement().executeQuery("select * from y");
+        openResultSet.next();
+        statement.executeUpdate("update x");
+        PreparedStatement preparedStatement = connection.prepareStatement("select * from z where id = ?");
+        preparedStatement.setInt(1, 1);
+        preparedStatement.executeQuery().close();
+        preparedStatement.addBatch();
+        connection.commit();
+        connection.rollback();
+        Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(6, snapshot.getNumberExecutions());
+        assertEquals(10, snapshot.getNumberRowsFetched());
+        assertEquals(1, snapshot.getNumberOpenResultSets());
+        assertEquals(0, snapshot.getNumberLeakedResultSets());
+        assertEquals(1, snapshot.getNumberCommits());
+        assertEquals(1, snapshot.getNumberRollbacks());
+        assertEquals(4, snapshot.getStatistics().size());
+        Statistics statistics = snapshot.getStatistics().values().iterator().next();
+        assertEquals("select * from x", statistics.getSQL());
+        assertEquals(3, statistics.getNumberExecutions());
+        assertEquals(9, statistics.getNumberRowsFetched());
+        assertEquals(3, statistics.getNumberOpenedResultSets());
+        assertEquals(3, statistics.getNumberClosedResultSets());
+        assertEquals(0, statistics.getNumberOpenResultSets());
+        assertTrue(statistics.getTotalOpenTime(TimeUnit.MILLISECONDS) >= 15);
+        assertTrue(statistics.getMaxOpenTime(TimeUnit.MILLISECONDS) >= 5);
+        assertEquals(1, snapshot.getStatistics("update x").getNumberExecutions());
+        assertEquals(0, snapshot.getStatistics("update x").getNumberOpenedResultSets());
+        assertEquals(1, snapshot.getStatistics("select * from z where id = ?").getNumberClosedResultSets());
+        connection.close();
+        snapshot = metrics.getSnapshot();
+        assertEquals(1, snapshot.getNumberLeakedResultSets());
+        assertEquals(1, snapshot.getStatistics("select * from y").getNumberLeakedResultSets());
+        openResultSet.close();
+        assertEquals(0, metrics.getSnapshot().getNumberOpenResultSets());
+        metrics.reset();
+        assertTrue(metrics.getSnapshot().getStatistics().isEmpty());
+        assertEquals(0, metrics.getNumberCommits());
+    }
+
+    public void testBatchAndImplicitClose() throws Exception
+    {
+        connection.setStatementMetrics(metrics);
+        Statement statement = connection.createStatement();
+        statement.addBatch("insert into x");
+        statement.addBatch("insert into x");
+        statement.executeBatch();
+        ResultSet resultSet = statement.executeQuery("select * from x");
+        statement.executeQuery("select * from x");
+        assertTrue(((MockResultSet)resultSet).isClosed());
+        Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getStatistics("insert into x").getNumberExecutions());
+        assertEquals(1, snapshot.getStatistics("select * from x").getNumberOpenResultSets());
+        MockResultSet copy = (MockResultSet)((MockResultSet)resultSet).clone();
+        copy.beforeFirst();
+        copy.next();
+        assertEquals(0, metrics.getSnapshot().getNumberRowsFetched());
+    }
+
+    public void testMaxStatements() throws Exception
+    {
+        metrics = new StatementMetrics(2);
+        connection.setStatementMetrics(metrics);
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 5; ii++)
+        {
+            statement.executeUpdate("update x" + ii);
+        }
+        Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(3, snapshot.getStatistics().size());
+        assertEquals(3, snapshot.getStatistics(StatementMetrics.OTHER_STATEMENTS).getNumberExecutions());
+        try
+        {
+            new StatementMetrics(0);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testMBean() throws Exception
+    {
+        connection.setStatementMetrics(metrics);
+        connection.createStatement().executeUpdate("update x");
+        metrics.registerMBean("test");
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.mockrunner:type=StatementMetrics,name=test");
+            assertEquals(1L, server.getAttribute(name, "NumberExecutions"));
+            String[] report = (String[])server.getAttribute(name, "StatementReport");
+            assertEquals(1, report.length);
+            assertTrue(report[0].startsWith("update x: executions=1"));
+        }
+        finally
+        {
+            metrics.unregisterMBean();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("com.mockrunner:type=StatementMetrics,name=test")));
+    }
+
+    public void testNormalizeSQL() throws Exception
+    {
+        metrics = new StatementMetrics(2);
+        metrics.setNormalizeSQL(true);
+        assertTrue(metrics.isNormalizeSQL());
+        connection.setStatementMetrics(metrics);
+        Statement statement = connection.createStatement();
+        for(int ii = 0; ii < 5; ii++)
+        {
+            statement.executeUpdate("update x set a = " + ii);
+        }
+        statement.executeQuery("SELECT * FROM x WHERE id IN (1, 2)").close();
+        Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getStatistics().size());
+        assertEquals(5, snapshot.getStatistics("update x set a = ?").getNumberExecutions());
+        assertEquals(1, snapshot.getStatistics("select * from x where id in (?)").getNumberClosedResultSets());
+        assertNull(snapshot.getStatistics(StatementMetrics.OTHER_STATEMENTS));
+    }
+
+    public void testPooledConnections() throws Exception
+    {
+        connection.setStatementMetrics(metrics);
+        MockConnectionPool pool = new MockConnectionPool(connection, 2);
+        Connection connection1 = pool.borrowConnection();
+        Connection connection2 = pool.borrowConnection();
+        assertSame(metrics, ((MockConnection)connection1).getStatementMetrics());
+        connection1.createStatement().executeQuery("select * from x").next();
+        connection2.createStatement().executeQuery("select * from y").next();
+        connection1.commit();
+        assertEquals(1, metrics.getNumberCommits());
+        connection2.close();
+        Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(1, snapshot.getNumberLeakedResultSets());
+        assertEquals(1, snapshot.getStatistics("select * from y").getNumberLeakedResultSets());
+        assertEquals(0, snapshot.getStatistics("select * from x").getNumberLeakedResultSets());
+        connection.close();
+        assertEquals(1, metrics.getNumberLeakedResultSets());
+        connection1.close();
+        assertEquals(2, metrics.getNumberLeakedResultSets());
+    }
+}
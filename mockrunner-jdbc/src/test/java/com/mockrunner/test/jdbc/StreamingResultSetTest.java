@@ -0,0 +1,140 @@
+package com.mockrunner.test.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.mockrunner.jdbc.LatencyClock;
+import com.mockrunner.jdbc.LatencyModel;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.StreamingResultSet;
+
+public class StreamingResultSetTest extends TestCase
+{
+    private MockConnection connection;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        connection = new MockConnection();
+    }
+
+    private StreamingResultSet createResultSet(int numberRows)
+    {
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        for(int ii = 1; ii <= numberRows; ii++)
+        {
+            rows.add(Arrays.<Object>asList(ii, "name" + ii));
+        }
+        return new StreamingResultSet("id", Arrays.asList("id", "name"), StreamingResultSet.fromIterable(rows));
+    }
+
+    public void testFetchSize() throws Exception
+    {
+        connection.getStatementResultSetHandler().prepareGlobalResultSet(createResultSet(25));
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        StreamingResultSet resultSet = (StreamingResultSet)statement.executeQuery("select * from x");
+        assertEquals(10, resultSet.getFetchSize());
+        assertEquals(0, resultSet.getNumberRoundTrips());
+        int numberRows = 0;
+        while(resultSet.next())
+        {
+            numberRows++;
+            assertEquals(numberRows, resultSet.getInt("id"));
+            assertEquals(numberRows, resultSet.getRow());
+            assertTrue(resultSet.getRowCount() <= 10);
+        }
+        assertEquals(25, numberRows);
+        assertEquals(3, resultSet.getNumberRoundTrips());
+        assertTrue(resultSet.isExhausted());
+        resultSet = (StreamingResultSet)connection.createStatement().executeQuery("select * from x");
+        while(resultSet.next());
+        assertEquals(26, resultSet.getNumberRoundTrips());
+    }
+
+    public void testScrollable() throws Exception
+    {
+        StreamingResultSet resultSet = createResultSet(25);
+        resultSet.setResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE);
+        resultSet.setFetchSize(5);
+        assertTrue(resultSet.absolute(7));
+        assertEquals(2, resultSet.getNumberRoundTrips());
+        assertTrue(resultSet.last());
+        assertEquals(25, resultSet.getInt(1));
+        assertEquals(6, resultSet.getNumberRoundTrips());
+        assertTrue(resultSet.first());
+        assertEquals(25, resultSet.getRowCount());
+    }
+
+    public void testRoundTripLatency() throws Exception
+    {
+        LatencyClock clock = LatencyClock.virtual(0);
+        StreamingResultSet resultSet = createResultSet(20);
+        resultSet.setRoundTripLatency(LatencyModel.fixed(100), clock);
+        resultSet.setFetchSize(8);
+        StreamingResultSet copy = (StreamingResultSet)resultSet.clone();
+        while(copy.next());
+        assertEquals(3, copy.getNumberRoundTrips());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), clock.getTotalDelay());
+        assertEquals(0, ((StreamingResultSet)copy.clone()).getNumberRoundTrips());
+        try
+        {
+            resultSet.setRoundTripLatency(LatencyModel.fixed(100), null);
+            fail();
+        }
+        catch(IllegalArgumentException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testIterator() throws Exception
+    {
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        rows.add(Arrays.<Object>asList("1"));
+        rows.add(Arrays.<Object>asList("2"));
+        StreamingResultSet resultSet = new StreamingResultSet("id", Arrays.asList("column"), StreamingResultSet.fromIterator(rows.iterator()));
+        StreamingResultSet copy = (StreamingResultSet)resultSet.clone();
+        assertTrue(copy.next());
+        assertEquals("1", copy.getString(1));
+        assertTrue(copy.next());
+        assertFalse(copy.next());
+        try
+        {
+            ((StreamingResultSet)resultSet.clone()).next();
+            fail();
+        }
+        catch(SQLException exc)
+        {
+            //should throw exception
+        }
+    }
+
+    public void testGenerator() throws Exception
+    {
+        StreamingResultSet resultSet = new StreamingResultSet("id", Arrays.asList("number", "square"), StreamingResultSet.fromGenerator(new StreamingResultSet.RowGenerator()
+        {
+            public List<Object> generateRow(int rowNumber)
+            {
+                if(rowNumber > 100000) return null;
+                return Arrays.<Object>asList(rowNumber, (long)rowNumber * rowNumber);
+            }
+        }));
+        resultSet.setFetchSize(1000);
+        long sum = 0;
+        while(resultSet.next())
+        {
+            sum += resultSet.getLong("square");
+        }
+        assertEquals(333338333350000L, sum);
+        assertEquals(101, resultSet.getNumberRoundTrips());
+    }
+}